@@ -4,8 +4,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.time.Duration;
 
 /**
  * Configuration class for AWS S3 client using IAM Roles.
@@ -24,6 +29,12 @@ import software.amazon.awssdk.services.s3.S3Client;
  * Required properties in application.properties:
  * - aws.s3.region (e.g., us-east-1)
  * - aws.s3.bucket-name (e.g., anypet-images-bucket)
+ *
+ * Image uploads go through the S3AsyncClient, so all renditions of an upload are sent concurrently
+ * over a shared, pooled set of connections (aws.s3.async.max-concurrency).
+ *
+ * The S3Presigner signs URLs locally (no request to AWS) with the same credentials, so clients can
+ * upload originals straight to S3 instead of through the application.
  */
 @Configuration
 public class S3Config {
@@ -31,6 +42,12 @@ public class S3Config {
     @Value("${aws.s3.region}")
     private String region;
 
+    @Value("${aws.s3.async.max-concurrency:64}")
+    private int maxConcurrency;
+
+    @Value("${aws.s3.async.connection-acquisition-timeout-seconds:10}")
+    private long connectionAcquisitionTimeoutSeconds;
+
     @Bean
     public S3Client s3Client() {
         // Use DefaultCredentialsProvider for automatic credential discovery
@@ -41,4 +58,23 @@ public class S3Config {
                 .credentialsProvider(DefaultCredentialsProvider.create())
                 .build();
     }
+
+    @Bean
+    public S3AsyncClient s3AsyncClient() {
+        return S3AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .connectionAcquisitionTimeout(Duration.ofSeconds(connectionAcquisitionTimeoutSeconds)))
+                .build();
+    }
+
+    @Bean
+    public S3Presigner s3Presigner() {
+        return S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(DefaultCredentialsProvider.create())
+                .build();
+    }
 }
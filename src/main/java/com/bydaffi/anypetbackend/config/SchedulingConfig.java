@@ -1,8 +1,11 @@
 package com.bydaffi.anypetbackend.config;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.time.Clock;
+
 /**
  * Configuration to enable Spring's scheduled task execution capability.
  * This allows the use of @Scheduled annotations for periodic tasks.
@@ -11,4 +14,13 @@ import org.springframework.scheduling.annotation.EnableScheduling;
 @EnableScheduling
 public class SchedulingConfig {
     // This class enables scheduled tasks across the application
+
+    /**
+     * Clock used by the reminder scheduler.
+     * Injected so simulations and tests can run reminders on a virtual clock.
+     */
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
 }
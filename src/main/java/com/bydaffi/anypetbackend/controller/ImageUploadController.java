@@ -1,5 +1,7 @@
 package com.bydaffi.anypetbackend.controller;
 
+import com.bydaffi.anypetbackend.service.ImageJobService;
+import com.bydaffi.anypetbackend.service.ImageMemoryBudget;
 import com.bydaffi.anypetbackend.service.S3Service;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseToken;
@@ -8,22 +10,54 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST Controller for handling image uploads for pets and vaccine batches.
  * Supports profile images for pets and batch lot images for vaccines.
+ *
+ * Uploads are processed within the request by default. With async=true the upload is queued as an
+ * image job instead: the response is 202 Accepted with a job ID to poll at /api/images/jobs/{jobId},
+ * or 429 Too Many Requests when the processing queue is full.
+ *
+ * In-request uploads that find the image memory budget exhausted get 503 Service Unavailable with
+ * Retry-After; queued jobs wait for room instead.
+ *
+ * Clients can keep image bytes off the application servers: POST /api/images/uploads returns a
+ * presigned PUT for a staging key, the client uploads the original to S3 with it, then calls
+ * POST /api/images/uploads/complete, which processes the staged object (in-request or as a job).
+ *
+ * The bucket is private: clients display images through presigned GET URLs, signing every image
+ * of a screen (e.g. the user's pets and records) with one call to POST /api/images/presigned-urls.
  */
 @RestController
 @RequestMapping("/api/images")
 public class ImageUploadController {
 
+    private static final Set<String> IMAGE_TYPES =
+            Set.of(ImageJobService.PET_PROFILE, ImageJobService.VACCINE_BATCH, ImageJobService.USER_PROFILE);
+
+    /**
+     * Most URLs signed by one presigned-urls request
+     */
+    private static final int MAX_PRESIGN_BATCH = 500;
+
     private final S3Service s3Service;
+    private final ImageJobService imageJobService;
+    private final ImageMemoryBudget imageMemoryBudget;
     private final FirebaseAuth firebaseAuth;
 
-    public ImageUploadController(S3Service s3Service, FirebaseAuth firebaseAuth) {
+    public ImageUploadController(S3Service s3Service, ImageJobService imageJobService,
+                                 ImageMemoryBudget imageMemoryBudget, FirebaseAuth firebaseAuth) {
         this.s3Service = s3Service;
+        this.imageJobService = imageJobService;
+        this.imageMemoryBudget = imageMemoryBudget;
         this.firebaseAuth = firebaseAuth;
     }
 
@@ -49,27 +83,34 @@ public class ImageUploadController {
      * @param petId the pet ID
      * @param file the image file
      * @param authorization Firebase auth token (Bearer token)
-     * @return response with image URL
+     * @param async process the image in the background and return a job ID
+     * @param notifyToken FCM token to notify when an async job finishes (optional)
+     * @return response with image URL, or the queued job when async
      */
     @PostMapping("/pet/{petId}/profile")
-    public ResponseEntity<ImageUploadResponse> uploadPetProfileImage(
+    public ResponseEntity<?> uploadPetProfileImage(
             @PathVariable Long petId,
             @RequestParam("file") MultipartFile file,
-            @RequestHeader("Authorization") String authorization) {
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "notifyToken", required = false) String notifyToken) {
 
         try {
             // Verify Firebase token and get user ID
             String userId = verifyTokenAndGetUserId(authorization);
 
-            // Upload image with user ID for proper S3 organization
-            String imageUrl = s3Service.uploadPetProfileImage(file, petId, userId);
-            String thumbnailUrl = s3Service.uploadThumbnail(file, "pet", petId, userId);
+            if (async) {
+                return submitJob(() -> imageJobService.submit(ImageJobService.PET_PROFILE, file, petId, userId,
+                        notifyToken));
+            }
+
+            // Upload every rendition with user ID for proper S3 organization
+            S3Service.UploadedImage uploaded = s3Service.uploadPetProfileImage(file, petId, userId);
 
             ImageUploadResponse response = new ImageUploadResponse(
                     true,
                     "Pet profile image uploaded successfully",
-                    imageUrl,
-                    thumbnailUrl,
+                    uploaded,
                     petId,
                     "PET_PROFILE"
             );
@@ -86,6 +127,19 @@ public class ImageUploadController {
                     "PET_PROFILE"
             );
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (RejectedExecutionException e) {
+            // The image memory budget is exhausted; the upload can be retried shortly
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    e.getMessage(),
+                    null,
+                    null,
+                    petId,
+                    "PET_PROFILE"
+            );
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(errorResponse);
         } catch (Exception e) {
             ImageUploadResponse errorResponse = new ImageUploadResponse(
                     false,
@@ -108,27 +162,34 @@ public class ImageUploadController {
      * @param vaccinationRecordId the vaccination record ID
      * @param file the image file
      * @param authorization Firebase auth token (Bearer token)
-     * @return response with image URL
+     * @param async process the image in the background and return a job ID
+     * @param notifyToken FCM token to notify when an async job finishes (optional)
+     * @return response with image URL, or the queued job when async
      */
     @PostMapping("/vaccine/{vaccinationRecordId}/batch")
-    public ResponseEntity<ImageUploadResponse> uploadVaccineBatchImage(
+    public ResponseEntity<?> uploadVaccineBatchImage(
             @PathVariable Long vaccinationRecordId,
             @RequestParam("file") MultipartFile file,
-            @RequestHeader("Authorization") String authorization) {
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "notifyToken", required = false) String notifyToken) {
 
         try {
             // Verify Firebase token and get user ID
             String userId = verifyTokenAndGetUserId(authorization);
 
-            // Upload image with user ID for proper S3 organization
-            String imageUrl = s3Service.uploadVaccineBatchImage(file, vaccinationRecordId, userId);
-            String thumbnailUrl = s3Service.uploadThumbnail(file, "vaccine", vaccinationRecordId, userId);
+            if (async) {
+                return submitJob(() -> imageJobService.submit(ImageJobService.VACCINE_BATCH, file, vaccinationRecordId,
+                        userId, notifyToken));
+            }
+
+            // Upload every rendition with user ID for proper S3 organization
+            S3Service.UploadedImage uploaded = s3Service.uploadVaccineBatchImage(file, vaccinationRecordId, userId);
 
             ImageUploadResponse response = new ImageUploadResponse(
                     true,
                     "Vaccine batch image uploaded successfully",
-                    imageUrl,
-                    thumbnailUrl,
+                    uploaded,
                     vaccinationRecordId,
                     "VACCINE_BATCH"
             );
@@ -145,6 +206,19 @@ public class ImageUploadController {
                     "VACCINE_BATCH"
             );
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (RejectedExecutionException e) {
+            // The image memory budget is exhausted; the upload can be retried shortly
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    e.getMessage(),
+                    null,
+                    null,
+                    vaccinationRecordId,
+                    "VACCINE_BATCH"
+            );
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(errorResponse);
         } catch (Exception e) {
             ImageUploadResponse errorResponse = new ImageUploadResponse(
                     false,
@@ -168,13 +242,17 @@ public class ImageUploadController {
      * @param userId the user ID
      * @param file the image file
      * @param authorization Firebase auth token (Bearer token)
-     * @return response with image URL
+     * @param async process the image in the background and return a job ID
+     * @param notifyToken FCM token to notify when an async job finishes (optional)
+     * @return response with image URL, or the queued job when async
      */
     @PostMapping("/user/{userId}/profile")
-    public ResponseEntity<ImageUploadResponse> uploadUserProfileImage(
+    public ResponseEntity<?> uploadUserProfileImage(
             @PathVariable String userId,
             @RequestParam("file") MultipartFile file,
-            @RequestHeader("Authorization") String authorization) {
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "notifyToken", required = false) String notifyToken) {
 
         try {
             // Verify Firebase token and get authenticated user ID
@@ -193,15 +271,18 @@ public class ImageUploadController {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).body(errorResponse);
             }
 
-            // Upload image
-            String imageUrl = s3Service.uploadUserProfileImage(file, userId);
-            String thumbnailUrl = s3Service.uploadThumbnail(file, "user", null, userId);
+            if (async) {
+                return submitJob(() -> imageJobService.submit(ImageJobService.USER_PROFILE, file, null, userId,
+                        notifyToken));
+            }
+
+            // Upload every rendition
+            S3Service.UploadedImage uploaded = s3Service.uploadUserProfileImage(file, userId);
 
             ImageUploadResponse response = new ImageUploadResponse(
                     true,
                     "User profile image uploaded successfully",
-                    imageUrl,
-                    thumbnailUrl,
+                    uploaded,
                     null,
                     "USER_PROFILE"
             );
@@ -218,6 +299,19 @@ public class ImageUploadController {
                     "USER_PROFILE"
             );
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (RejectedExecutionException e) {
+            // The image memory budget is exhausted; the upload can be retried shortly
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    e.getMessage(),
+                    null,
+                    null,
+                    null,
+                    "USER_PROFILE"
+            );
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(errorResponse);
         } catch (Exception e) {
             ImageUploadResponse errorResponse = new ImageUploadResponse(
                     false,
@@ -231,31 +325,346 @@ public class ImageUploadController {
         }
     }
 
+    /**
+     * POST /api/images/uploads
+     * Issue a presigned PUT for uploading an image straight to S3
+     *
+     * Requires Firebase Authentication token in Authorization header. The client must PUT exactly
+     * contentLength bytes to the returned URL, with the returned headers, before it expires, and
+     * then call /api/images/uploads/complete with the returned key.
+     *
+     * @param contentType the image content type, e.g. image/jpeg
+     * @param contentLength the image size in bytes (at most app.image.max-size-mb)
+     * @param authorization Firebase auth token (Bearer token)
+     * @return the staging key, upload URL, method, headers to send and expiry
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> createDirectUpload(
+            @RequestParam("contentType") String contentType,
+            @RequestParam("contentLength") long contentLength,
+            @RequestHeader("Authorization") String authorization) {
+
+        Map<String, Object> response = new HashMap<>();
+        String userId;
+        try {
+            userId = verifyTokenAndGetUserId(authorization);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Authentication failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        try {
+            response.put("success", true);
+            response.put("upload", s3Service.createDirectUpload(userId, contentType, contentLength));
+            return ResponseEntity.ok(response);
+
+        } catch (IOException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Failed to create upload: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * POST /api/images/uploads/complete
+     * Process an image uploaded straight to S3 into its renditions
+     *
+     * Requires Firebase Authentication token in Authorization header; the staging key must be one
+     * issued to the authenticated user. The staged original is deleted once processed.
+     *
+     * @param key the staging key returned by /api/images/uploads
+     * @param imageType PET_PROFILE, VACCINE_BATCH or USER_PROFILE
+     * @param entityId the pet or vaccination record ID (not needed for USER_PROFILE)
+     * @param authorization Firebase auth token (Bearer token)
+     * @param async process the image in the background and return a job ID
+     * @param notifyToken FCM token to notify when an async job finishes (optional)
+     * @return response with image URL, or the queued job when async
+     */
+    @PostMapping("/uploads/complete")
+    public ResponseEntity<?> completeDirectUpload(
+            @RequestParam("key") String key,
+            @RequestParam("imageType") String imageType,
+            @RequestParam(value = "entityId", required = false) Long entityId,
+            @RequestHeader("Authorization") String authorization,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestParam(value = "notifyToken", required = false) String notifyToken) {
+
+        if (!IMAGE_TYPES.contains(imageType)) {
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    "Unknown image type: " + imageType,
+                    null,
+                    null,
+                    entityId,
+                    imageType
+            );
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        try {
+            // Verify Firebase token and get user ID
+            String userId = verifyTokenAndGetUserId(authorization);
+
+            if (async) {
+                return submitJob(() -> imageJobService.submitStaged(imageType, key, entityId, userId, notifyToken));
+            }
+
+            S3Service.UploadedImage uploaded = imageJobService.completeStaged(imageType, key, entityId, userId);
+
+            ImageUploadResponse response = new ImageUploadResponse(
+                    true,
+                    "Image uploaded successfully",
+                    uploaded,
+                    entityId,
+                    imageType
+            );
+
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    "Authentication failed: " + e.getMessage(),
+                    null,
+                    null,
+                    entityId,
+                    imageType
+            );
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(errorResponse);
+        } catch (IOException e) {
+            // Not the user's staged upload, missing, too large or not an image
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    e.getMessage(),
+                    null,
+                    null,
+                    entityId,
+                    imageType
+            );
+            return ResponseEntity.badRequest().body(errorResponse);
+        } catch (RejectedExecutionException e) {
+            // The image memory budget is exhausted; the completion can be retried shortly
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    e.getMessage(),
+                    null,
+                    null,
+                    entityId,
+                    imageType
+            );
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "5")
+                    .body(errorResponse);
+        } catch (Exception e) {
+            ImageUploadResponse errorResponse = new ImageUploadResponse(
+                    false,
+                    "Failed to upload image: " + e.getMessage(),
+                    null,
+                    null,
+                    entityId,
+                    imageType
+            );
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    /**
+     * POST /api/images/presigned-urls
+     * Sign the S3 URLs of the user's images for temporary read access, all in one call
+     *
+     * Requires Firebase Authentication token in Authorization header; only URLs of the
+     * authenticated user's images are signed, the others are listed as rejected
+     *
+     * @param urls the S3 URLs (as returned by uploads), at most 500
+     * @param authorization Firebase auth token (Bearer token)
+     * @return presigned URL and expiry by S3 URL
+     */
+    @PostMapping("/presigned-urls")
+    public ResponseEntity<Map<String, Object>> getPresignedUrls(
+            @RequestBody List<String> urls,
+            @RequestHeader("Authorization") String authorization) {
+
+        Map<String, Object> response = new HashMap<>();
+        String userId;
+        try {
+            userId = verifyTokenAndGetUserId(authorization);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Authentication failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        if (urls.size() > MAX_PRESIGN_BATCH) {
+            response.put("success", false);
+            response.put("message", "At most " + MAX_PRESIGN_BATCH + " URLs can be signed per request");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try {
+            Map<String, S3Service.PresignedUrl> signed = s3Service.getPresignedUrls(urls, userId);
+            List<String> rejected = new ArrayList<>();
+            for (String url : urls) {
+                if (!signed.containsKey(url)) {
+                    rejected.add(url);
+                }
+            }
+
+            response.put("success", true);
+            response.put("urls", signed);
+            response.put("rejected", rejected);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Failed to sign URLs: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * GET /api/images/jobs/{jobId}
+     * Get the status of an async image job; once COMPLETED it includes the rendition URLs
+     *
+     * Requires Firebase Authentication token in Authorization header; only the uploader can see the job
+     *
+     * @param jobId the job ID returned by an async upload
+     * @param authorization Firebase auth token (Bearer token)
+     * @return job status
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getImageJob(
+            @PathVariable String jobId,
+            @RequestHeader("Authorization") String authorization) {
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            String userId = verifyTokenAndGetUserId(authorization);
+
+            ImageJobService.ImageJob job = imageJobService.getJob(jobId);
+            if (job == null || !job.getUserId().equals(userId)) {
+                response.put("success", false);
+                response.put("message", "Image job not found: " + jobId);
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+
+            response.put("success", true);
+            response.put("job", job);
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Authentication failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+    }
+
+    /**
+     * GET /api/images/memory-budget
+     * Current use of the heap budget shared by image processing
+     *
+     * @return budget, bytes in use, active and waiting reservations, and timeouts so far
+     */
+    @GetMapping("/memory-budget")
+    public ResponseEntity<Map<String, Object>> getMemoryBudget() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("budget", imageMemoryBudget.getStatus());
+        response.put("queuedJobs", imageJobService.getQueuedCount());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Helper method to queue an async image job: 202 with the job ID, 429 if the queue is full
+     */
+    private ResponseEntity<Map<String, Object>> submitJob(JobSubmission submission) throws Exception {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            ImageJobService.ImageJob job = submission.submit();
+
+            response.put("success", true);
+            response.put("message", "Image queued for processing");
+            response.put("jobId", job.getJobId());
+            response.put("status", job.getStatus());
+            response.put("statusUrl", "/api/images/jobs/" + job.getJobId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (RejectedExecutionException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Retry-After", "5")
+                    .body(response);
+        }
+    }
+
+    /**
+     * Queues a job on the ImageJobService: a multipart upload or a staged direct upload
+     */
+    @FunctionalInterface
+    private interface JobSubmission {
+        ImageJobService.ImageJob submit() throws IOException;
+    }
+
     /**
      * DELETE /api/images
-     * Delete an image from S3
+     * Delete a record's image from S3, with all its renditions, unless other records still use it
+     *
+     * Requires Firebase Authentication token in Authorization header; only the authenticated
+     * user's images can be deleted
      *
      * @param imageUrl the S3 URL of the image to delete
-     * @return success response
+     * @param entityId the pet or vaccination record ID the image belongs to (not needed for USER_PROFILE)
+     * @param authorization Firebase auth token (Bearer token)
+     * @return success response; "deleted" is false if the objects were kept for other records
      */
     @DeleteMapping
-    public ResponseEntity<Map<String, Object>> deleteImage(@RequestParam("url") String imageUrl) {
+    public ResponseEntity<Map<String, Object>> deleteImage(
+            @RequestParam("url") String imageUrl,
+            @RequestParam(value = "entityId", required = false) Long entityId,
+            @RequestHeader("Authorization") String authorization) {
+
+        Map<String, Object> response = new HashMap<>();
+        String userId;
         try {
-            s3Service.deleteImage(imageUrl);
+            userId = verifyTokenAndGetUserId(authorization);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Authentication failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+        }
+
+        if (!s3Service.isImageOfUser(imageUrl, userId)) {
+            response.put("success", false);
+            response.put("message", "Not an image of this user: " + imageUrl);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+        }
+
+        try {
+            boolean deleted = s3Service.deleteImage(imageUrl, entityId, userId);
 
-            Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Image deleted successfully");
+            response.put("message", deleted
+                    ? "Image deleted successfully"
+                    : "Image released; it is kept because other records may still use it");
             response.put("deletedUrl", imageUrl);
+            response.put("deleted", deleted);
 
             return ResponseEntity.ok(response);
 
+        } catch (IllegalArgumentException e) {
+            // Missing entity ID, or not an S3 URL of this bucket
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
         } catch (Exception e) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "Failed to delete image: " + e.getMessage());
-
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+            response.put("success", false);
+            response.put("message", "Failed to delete image: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
 
@@ -300,6 +709,11 @@ public class ImageUploadController {
         private final String thumbnailUrl;
         private final Long entityId;
         private final String imageType;
+        private final Map<String, String> renditions;
+        private final String format;
+        private final Long originalBytes;
+        private final Long storedBytes;
+        private final Boolean deduplicated;
 
         public ImageUploadResponse(boolean success, String message, String imageUrl,
                                    String thumbnailUrl, Long entityId, String imageType) {
@@ -309,6 +723,26 @@ public class ImageUploadController {
             this.thumbnailUrl = thumbnailUrl;
             this.entityId = entityId;
             this.imageType = imageType;
+            this.renditions = null;
+            this.format = null;
+            this.originalBytes = null;
+            this.storedBytes = null;
+            this.deduplicated = null;
+        }
+
+        public ImageUploadResponse(boolean success, String message, S3Service.UploadedImage uploaded,
+                                   Long entityId, String imageType) {
+            this.success = success;
+            this.message = message;
+            this.imageUrl = uploaded.getImageUrl();
+            this.thumbnailUrl = uploaded.getThumbnailUrl();
+            this.entityId = entityId;
+            this.imageType = imageType;
+            this.renditions = uploaded.getRenditionUrls();
+            this.format = uploaded.getFormat();
+            this.originalBytes = uploaded.getOriginalBytes();
+            this.storedBytes = uploaded.getStoredBytes();
+            this.deduplicated = uploaded.isDeduplicated();
         }
 
         // Getters
@@ -318,5 +752,10 @@ public class ImageUploadController {
         public String getThumbnailUrl() { return thumbnailUrl; }
         public Long getEntityId() { return entityId; }
         public String getImageType() { return imageType; }
+        public Map<String, String> getRenditions() { return renditions; }
+        public String getFormat() { return format; }
+        public Long getOriginalBytes() { return originalBytes; }
+        public Long getStoredBytes() { return storedBytes; }
+        public Boolean getDeduplicated() { return deduplicated; }
     }
 }
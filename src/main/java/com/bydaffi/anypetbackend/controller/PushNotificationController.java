@@ -1,18 +1,29 @@
 package com.bydaffi.anypetbackend.controller;
 
 import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.models.PetType;
+import com.bydaffi.anypetbackend.service.DeliveryAnalyticsService;
+import com.bydaffi.anypetbackend.service.NotificationSendException;
+import com.bydaffi.anypetbackend.service.NotificationStreamService;
 import com.bydaffi.anypetbackend.service.PushNotificationService;
-import com.google.firebase.messaging.BatchResponse;
-import com.google.firebase.messaging.FirebaseMessagingException;
+import com.bydaffi.anypetbackend.util.NotificationTopics;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * REST controller for sending push notifications to mobile devices.
@@ -25,6 +36,8 @@ import java.util.Map;
 public class PushNotificationController {
 
     private final PushNotificationService pushNotificationService;
+    private final NotificationStreamService notificationStreamService;
+    private final DeliveryAnalyticsService deliveryAnalyticsService;
 
     /**
      * Sends a push notification to a single device.
@@ -59,45 +72,33 @@ public class PushNotificationController {
      * @return ResponseEntity with success/failure message
      */
     @PostMapping("/send")
-    public ResponseEntity<Map<String, Object>> sendNotification(@RequestBody PushNotificationRequest request) {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> sendNotification(@RequestBody PushNotificationRequest request) {
         Map<String, Object> response = new HashMap<>();
 
-        try {
-            // Validate request
-            if (request.getToken() == null || request.getToken().trim().isEmpty()) {
-                response.put("success", false);
-                response.put("message", "FCM token is required");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-                response.put("success", false);
-                response.put("message", "Message is required");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            // Send notification
-            String messageId = pushNotificationService.sendPushNotification(request);
-
-            response.put("success", true);
-            response.put("message", "Notification sent successfully");
-            response.put("messageId", messageId);
-
-            log.info("Notification sent successfully. Message ID: {}", messageId);
-            return ResponseEntity.ok(response);
-
-        } catch (FirebaseMessagingException e) {
-            log.error("Error sending push notification: {}", e.getMessage(), e);
+        // Validate request
+        if (request.getToken() == null || request.getToken().trim().isEmpty()) {
             response.put("success", false);
-            response.put("message", "Failed to send notification: " + e.getMessage());
-            response.put("errorCode", e.getErrorCode());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
-        } catch (Exception e) {
-            log.error("Unexpected error sending push notification: {}", e.getMessage(), e);
+            response.put("message", "FCM token is required");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
             response.put("success", false);
-            response.put("message", "Unexpected error: " + e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+            response.put("message", "Message is required");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
         }
+
+        // Send notification; the servlet thread is released until FCM answers
+        return pushNotificationService.sendPushNotificationAsync(request)
+                .thenApply(messageId -> {
+                    response.put("success", true);
+                    response.put("message", "Notification sent successfully");
+                    response.put("messageId", messageId);
+
+                    log.info("Notification sent successfully. Message ID: {}", messageId);
+                    return ResponseEntity.ok(response);
+                })
+                .exceptionally(error -> errorResponse(response, "Failed to send notification", error));
     }
 
     /**
@@ -115,12 +116,202 @@ public class PushNotificationController {
      * @return ResponseEntity with batch send results
      */
     @PostMapping("/send/batch")
-    public ResponseEntity<Map<String, Object>> sendBatchNotification(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> sendBatchNotification(
             @RequestBody Map<String, Object> requestBody) {
         Map<String, Object> response = new HashMap<>();
 
+        // Extract tokens
+        @SuppressWarnings("unchecked")
+        List<String> tokens = (List<String>) requestBody.get("tokens");
+
+        if (tokens == null || tokens.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "At least one token is required");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+
+        // Build request object
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setPetName((String) requestBody.get("petName"));
+        request.setMessage((String) requestBody.get("message"));
+        request.setTitle((String) requestBody.get("title"));
+
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            response.put("success", false);
+            response.put("message", "Message is required");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+
+        // Send notifications
+        return pushNotificationService.sendPushNotificationToMultipleDevicesAsync(request, tokens)
+                .thenApply(multicastResult -> {
+                    response.put("success", true);
+                    response.put("message", "Batch notifications sent");
+                    response.put("successCount", multicastResult.getSuccessCount());
+                    response.put("failureCount", multicastResult.getFailureCount());
+                    response.put("totalCount", tokens.size());
+
+                    log.info("Batch notifications sent. Success: {}, Failure: {}",
+                            multicastResult.getSuccessCount(), multicastResult.getFailureCount());
+
+                    return ResponseEntity.ok(response);
+                })
+                .exceptionally(error -> errorResponse(response, "Failed to send batch notifications", error));
+    }
+
+    /**
+     * Sends a notification to an audience of any size, streamed as NDJSON (Content-Type: application/x-ndjson).
+     * The first line is the notification, every following line a token:
+     *
+     * {"petName": "Luna", "message": "tiene hambre", "title": "Alerta de Mascota"}
+     * "token1"
+     * {"token": "token2"}
+     *
+     * Tokens are sent in multicasts of 500 as they are read. The response is NDJSON too: one line per
+     * chunk with its success/failure counts and failed tokens, then a summary line with "done": true.
+     *
+     * @param request Servlet request whose body is read incrementally
+     * @return Streaming NDJSON response
+     */
+    @PostMapping(value = "/send/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> sendStreamNotification(HttpServletRequest request) {
+        StreamingResponseBody body = output -> notificationStreamService.stream(request.getInputStream(), output);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Sends a notification to every device subscribed to a topic, with a single FCM message.
+     *
+     * Example request (POST /api/notifications/topic/pet-type-dog):
+     * {
+     *   "message": "Campaña de vacunación antirrábica este sábado",
+     *   "title": "Vacunación"
+     * }
+     *
+     * @param topic Topic name, e.g. "pet-type-dog" or "locale-es"
+     * @param request The push notification request; token is not needed
+     * @return ResponseEntity with the message ID
+     */
+    @PostMapping("/topic/{topic}")
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> sendTopicNotification(
+            @PathVariable String topic,
+            @RequestBody PushNotificationRequest request) {
+        Map<String, Object> response = new HashMap<>();
+
+        if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            response.put("success", false);
+            response.put("message", "Message is required");
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+
+        try {
+            return pushNotificationService.sendToTopicAsync(request, topic)
+                    .thenApply(messageId -> {
+                        response.put("success", true);
+                        response.put("message", "Topic notification sent successfully");
+                        response.put("topic", topic);
+                        response.put("messageId", messageId);
+                        return ResponseEntity.ok(response);
+                    })
+                    .exceptionally(error -> errorResponse(response, "Failed to send topic notification", error));
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(response));
+        }
+    }
+
+    /**
+     * Subscribes devices to a topic. Tokens are sent to FCM in batches of 1000.
+     *
+     * Example request:
+     * {
+     *   "tokens": ["token1", "token2"]
+     * }
+     *
+     * @param topic Topic name
+     * @param requestBody Map containing the list of tokens
+     * @return ResponseEntity with success and failure counts
+     */
+    @PostMapping("/topic/{topic}/subscribe")
+    public ResponseEntity<Map<String, Object>> subscribeToTopic(
+            @PathVariable String topic,
+            @RequestBody Map<String, Object> requestBody) {
+        return manageTopic(topic, requestBody, true);
+    }
+
+    /**
+     * Unsubscribes devices from a topic. Tokens are sent to FCM in batches of 1000.
+     *
+     * @param topic Topic name
+     * @param requestBody Map containing the list of tokens
+     * @return ResponseEntity with success and failure counts
+     */
+    @PostMapping("/topic/{topic}/unsubscribe")
+    public ResponseEntity<Map<String, Object>> unsubscribeFromTopic(
+            @PathVariable String topic,
+            @RequestBody Map<String, Object> requestBody) {
+        return manageTopic(topic, requestBody, false);
+    }
+
+    /**
+     * Lists the topic names used for pet type broadcasts and the locale topic format
+     *
+     * @return ResponseEntity with the topic names
+     */
+    @GetMapping("/topics")
+    public ResponseEntity<Map<String, Object>> getTopics() {
+        Map<String, String> petTypeTopics = new LinkedHashMap<>();
+        for (PetType petType : PetType.values()) {
+            if (petType != PetType.ANY) {
+                petTypeTopics.put(petType.name(), NotificationTopics.forPetType(petType));
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("petTypes", petTypeTopics);
+        response.put("locales", Map.of("es", NotificationTopics.forLocale("es"), "en", NotificationTopics.forLocale("en")));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Delivery analytics of recent sends, aggregated in memory: volume, failure rate,
+     * errors by FCM error code and latency, per window.
+     *
+     * Example: GET /api/notifications/analytics?minutes=1440&windowMinutes=60 (per hour, last day)
+     *
+     * @param minutes How far back to look
+     * @param windowMinutes Size of each window
+     * @return ResponseEntity with the windows and their total
+     */
+    @GetMapping("/analytics")
+    public ResponseEntity<Map<String, Object>> getDeliveryAnalytics(
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(defaultValue = "1") int windowMinutes) {
+        Map<String, Object> response = new HashMap<>();
+
+        if (minutes <= 0 || windowMinutes <= 0) {
+            response.put("success", false);
+            response.put("message", "minutes and windowMinutes must be positive");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        DeliveryAnalyticsService.DeliveryReport report = deliveryAnalyticsService.getReport(minutes, windowMinutes);
+        response.put("success", true);
+        response.put("windows", report.getWindows());
+        response.put("total", report.getTotal());
+        response.put("droppedOutcomes", report.getDroppedOutcomes());
+        response.put("pendingOutcomes", report.getPendingOutcomes());
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> manageTopic(String topic, Map<String, Object> requestBody, boolean subscribe) {
+        Map<String, Object> response = new HashMap<>();
+
         try {
-            // Extract tokens
             @SuppressWarnings("unchecked")
             List<String> tokens = (List<String>) requestBody.get("tokens");
 
@@ -130,47 +321,70 @@ public class PushNotificationController {
                 return ResponseEntity.badRequest().body(response);
             }
 
-            // Build request object
-            PushNotificationRequest request = new PushNotificationRequest();
-            request.setPetName((String) requestBody.get("petName"));
-            request.setMessage((String) requestBody.get("message"));
-            request.setTitle((String) requestBody.get("title"));
-
-            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
-                response.put("success", false);
-                response.put("message", "Message is required");
-                return ResponseEntity.badRequest().body(response);
-            }
-
-            // Send notifications
-            BatchResponse batchResponse = pushNotificationService.sendPushNotificationToMultipleDevices(
-                    request, tokens);
+            PushNotificationService.TopicSubscriptionResult result = subscribe
+                    ? pushNotificationService.subscribeToTopic(tokens, topic)
+                    : pushNotificationService.unsubscribeFromTopic(tokens, topic);
 
             response.put("success", true);
-            response.put("message", "Batch notifications sent");
-            response.put("successCount", batchResponse.getSuccessCount());
-            response.put("failureCount", batchResponse.getFailureCount());
-            response.put("totalCount", tokens.size());
-
-            log.info("Batch notifications sent. Success: {}, Failure: {}",
-                    batchResponse.getSuccessCount(), batchResponse.getFailureCount());
-
+            response.put("message", subscribe ? "Tokens subscribed to topic" : "Tokens unsubscribed from topic");
+            response.put("topic", result.getTopic());
+            response.put("successCount", result.getSuccessCount());
+            response.put("failureCount", result.getFailureCount());
+            response.put("errors", result.getErrors());
             return ResponseEntity.ok(response);
 
-        } catch (FirebaseMessagingException e) {
-            log.error("Error sending batch push notifications: {}", e.getMessage(), e);
+        } catch (IllegalArgumentException e) {
             response.put("success", false);
-            response.put("message", "Failed to send batch notifications: " + e.getMessage());
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (NotificationSendException e) {
+            log.error("Error managing topic {}: {}", topic, e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Failed to update topic subscriptions: " + e.getMessage());
             response.put("errorCode", e.getErrorCode());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         } catch (Exception e) {
-            log.error("Unexpected error sending batch push notifications: {}", e.getMessage(), e);
+            log.error("Unexpected error managing topic {}: {}", topic, e.getMessage(), e);
             response.put("success", false);
             response.put("message", "Unexpected error: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
         }
     }
 
+    /**
+     * Maps a failed send to an error response
+     */
+    private ResponseEntity<Map<String, Object>> errorResponse(Map<String, Object> response, String message, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        response.put("success", false);
+
+        if (cause instanceof NotificationSendException sendError) {
+            log.error("{}: {}", message, sendError.getMessage(), sendError);
+            response.put("message", message + ": " + sendError.getMessage());
+            response.put("errorCode", sendError.getErrorCode());
+            HttpStatus status = NotificationSendException.QUOTA_EXCEEDED.equals(sendError.getErrorCode())
+                    ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.INTERNAL_SERVER_ERROR;
+            return ResponseEntity.status(status).body(response);
+        }
+
+        if (cause instanceof RejectedExecutionException) {
+            log.warn("{}: {}", message, cause.getMessage());
+            response.put("message", cause.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(response);
+        }
+
+        if (cause instanceof IllegalArgumentException) {
+            response.put("message", cause.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        log.error("Unexpected error: {}", cause.getMessage(), cause);
+        response.put("message", "Unexpected error: " + cause.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+    }
+
     /**
      * Health check endpoint for notification service.
      *
@@ -3,7 +3,10 @@ package com.bydaffi.anypetbackend.controller;
 import com.bydaffi.anypetbackend.dto.ReminderRequest;
 import com.bydaffi.anypetbackend.dto.ReminderResponse;
 import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.service.ReminderBackfillService;
+import com.bydaffi.anypetbackend.service.ReminderIdempotencyService;
 import com.bydaffi.anypetbackend.service.ReminderService;
+import com.bydaffi.anypetbackend.service.ReminderStatisticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
@@ -14,6 +17,7 @@ import java.time.LocalTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -27,6 +31,10 @@ import java.util.stream.Collectors;
 public class ReminderController {
 
     private final ReminderService reminderService;
+    // Firestore-only maintenance services, absent with the jdbc or memory reminder store
+    private final Optional<ReminderStatisticsService> reminderStatisticsService;
+    private final Optional<ReminderBackfillService> reminderBackfillService;
+    private final ReminderIdempotencyService reminderIdempotencyService;
 
     /**
      * Creates a new reminder.
@@ -43,11 +51,18 @@ public class ReminderController {
      *   "active": true
      * }
      *
+     * Clients should send an Idempotency-Key header (e.g. a UUID generated once per reminder) so that
+     * retries after a timeout return the originally created reminder instead of creating a duplicate.
+     * Replayed responses carry the header "Idempotent-Replayed: true".
+     *
      * @param request Reminder creation request
+     * @param idempotencyKey Optional client-generated key identifying this creation
      * @return Created reminder
      */
     @PostMapping
-    public ResponseEntity<Map<String, Object>> createReminder(@RequestBody ReminderRequest request) {
+    public ResponseEntity<Map<String, Object>> createReminder(
+            @RequestBody ReminderRequest request,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         Map<String, Object> response = new HashMap<>();
 
         try {
@@ -93,15 +108,43 @@ public class ReminderController {
             reminder.setDeviceToken(request.getDeviceToken());
             reminder.setActive(request.getActive() != null ? request.getActive() : true);
 
-            Reminder created = reminderService.createReminder(reminder);
+            if (idempotencyKey == null || idempotencyKey.trim().isEmpty()) {
+                Reminder created = reminderService.createReminder(reminder);
+
+                response.put("success", true);
+                response.put("message", "Reminder created successfully");
+                response.put("reminder", ReminderResponse.fromEntity(created));
+
+                log.info("Created reminder: {} for user: {}", created.getId(), created.getUserId());
+                return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            }
+
+            if (idempotencyKey.length() > 255) {
+                response.put("success", false);
+                response.put("message", "Idempotency-Key must be at most 255 characters");
+                return ResponseEntity.badRequest().body(response);
+            }
+
+            ReminderIdempotencyService.IdempotentResult result = reminderIdempotencyService.createOnce(
+                    request.getUserId(), idempotencyKey.trim(), () -> reminderService.createReminder(reminder));
 
             response.put("success", true);
             response.put("message", "Reminder created successfully");
-            response.put("reminder", ReminderResponse.fromEntity(created));
+            response.put("reminder", result.getReminder());
 
-            log.info("Created reminder: {} for user: {}", created.getId(), created.getUserId());
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            if (result.isReplayed()) {
+                log.info("Replayed reminder: {} for idempotency key of user: {}",
+                        result.getReminder().getId(), request.getUserId());
+            }
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .header("Idempotent-Replayed", String.valueOf(result.isReplayed()))
+                    .body(response);
 
+        } catch (IllegalStateException e) {
+            log.warn("Idempotency conflict: {}", e.getMessage());
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         } catch (IllegalArgumentException e) {
             log.error("Invalid reminder data: {}", e.getMessage());
             response.put("success", false);
@@ -285,6 +328,112 @@ public class ReminderController {
         }
     }
 
+    /**
+     * Gets operational statistics about reminders.
+     * Values are computed with Firestore count() aggregations and cached for a few seconds,
+     * so dashboards can poll this endpoint frequently.
+     *
+     * @return Active reminders, counts per repeat interval, due within the next hour and without device token
+     */
+    @GetMapping("/admin/statistics")
+    public ResponseEntity<Map<String, Object>> getStatistics() {
+        Map<String, Object> response = new HashMap<>();
+
+        if (reminderStatisticsService.isEmpty()) {
+            return firestoreOnly(response);
+        }
+
+        try {
+            response.put("success", true);
+            response.put("statistics", reminderStatisticsService.get().getStatistics());
+
+            return ResponseEntity.ok(response);
+
+        } catch (Exception e) {
+            log.error("Error computing reminder statistics: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Failed to compute reminder statistics: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Starts the backfill job that recomputes nextExecution and rewrites every reminder
+     * with the current Firestore field layout.
+     *
+     * @param resume Continue from the last checkpoint instead of the first document (default true)
+     * @return Progress of the started job
+     */
+    @PostMapping("/admin/backfill")
+    public ResponseEntity<Map<String, Object>> startBackfill(
+            @RequestParam(defaultValue = "true") boolean resume) {
+        Map<String, Object> response = new HashMap<>();
+        if (reminderBackfillService.isEmpty()) {
+            return firestoreOnly(response);
+        }
+
+        try {
+            response.put("success", true);
+            response.put("message", "Reminder backfill started");
+            response.put("progress", reminderBackfillService.get().start(resume));
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("progress", reminderBackfillService.get().getProgress());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (Exception e) {
+            log.error("Error starting reminder backfill: {}", e.getMessage(), e);
+            response.put("success", false);
+            response.put("message", "Failed to start reminder backfill: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+
+    /**
+     * Gets the progress of the reminder backfill job.
+     *
+     * @return Backfill progress
+     */
+    @GetMapping("/admin/backfill")
+    public ResponseEntity<Map<String, Object>> getBackfillProgress() {
+        Map<String, Object> response = new HashMap<>();
+        if (reminderBackfillService.isEmpty()) {
+            return firestoreOnly(response);
+        }
+        response.put("success", true);
+        response.put("progress", reminderBackfillService.get().getProgress());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Stops the reminder backfill job after the current page. It can be resumed later.
+     *
+     * @return Backfill progress
+     */
+    @PostMapping("/admin/backfill/stop")
+    public ResponseEntity<Map<String, Object>> stopBackfill() {
+        Map<String, Object> response = new HashMap<>();
+        if (reminderBackfillService.isEmpty()) {
+            return firestoreOnly(response);
+        }
+        response.put("success", true);
+        response.put("message", "Reminder backfill stop requested");
+        response.put("progress", reminderBackfillService.get().stop());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Response for the admin endpoints that only exist with the Firestore reminder store
+     */
+    private ResponseEntity<Map<String, Object>> firestoreOnly(Map<String, Object> response) {
+        response.put("success", false);
+        response.put("message", "Only available with app.reminders.store=firestore");
+        return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body(response);
+    }
+
     /**
      * Health check endpoint for reminder service.
      *
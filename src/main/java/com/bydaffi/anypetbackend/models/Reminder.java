@@ -17,6 +17,11 @@ import java.time.LocalTime;
 @NoArgsConstructor
 public class Reminder {
 
+    /**
+     * Device token stored by clients that had no FCM token when the reminder was created
+     */
+    public static final String NO_DEVICE_TOKEN = "no-token-available";
+
     /**
      * Firebase document ID (primary identifier)
      */
@@ -82,16 +87,40 @@ public class Reminder {
      */
     private LocalDateTime updatedAt;
 
+    /**
+     * Whether the reminder has a device token notifications can be sent to.
+     * Null, blank and NO_DEVICE_TOKEN values cannot be delivered.
+     */
+    public boolean hasDeviceToken() {
+        return deviceToken != null && !deviceToken.trim().isEmpty() && !deviceToken.trim().equals(NO_DEVICE_TOKEN);
+    }
+
+    /**
+     * Trims the device token, so a blank token is stored as "" and counted as missing by queries
+     */
+    public void normalizeDeviceToken() {
+        if (deviceToken != null) {
+            deviceToken = deviceToken.trim();
+        }
+    }
+
     /**
      * Initializes timestamps when creating a new reminder
      */
     public void initializeTimestamps() {
+        initializeTimestamps(LocalDateTime.now());
+    }
+
+    /**
+     * Initializes timestamps when creating a new reminder, using the given current time
+     */
+    public void initializeTimestamps(LocalDateTime now) {
         if (createdAt == null) {
-            createdAt = LocalDateTime.now();
+            createdAt = now;
         }
-        updatedAt = LocalDateTime.now();
+        updatedAt = now;
         if (nextExecution == null) {
-            calculateNextExecution();
+            calculateNextExecution(now);
         }
     }
 
@@ -99,14 +128,27 @@ public class Reminder {
      * Updates the updatedAt timestamp
      */
     public void updateTimestamp() {
-        updatedAt = LocalDateTime.now();
+        updateTimestamp(LocalDateTime.now());
+    }
+
+    /**
+     * Updates the updatedAt timestamp to the given current time
+     */
+    public void updateTimestamp(LocalDateTime now) {
+        updatedAt = now;
     }
 
     /**
      * Calculates the next execution time based on current time, scheduled time, and repeat interval
      */
     public void calculateNextExecution() {
-        LocalDateTime now = LocalDateTime.now();
+        calculateNextExecution(LocalDateTime.now());
+    }
+
+    /**
+     * Calculates the next execution time based on the given current time, scheduled time, and repeat interval
+     */
+    public void calculateNextExecution(LocalDateTime now) {
         LocalDateTime todayScheduled = LocalDateTime.of(now.toLocalDate(), scheduledTime);
 
         if (lastTriggered == null) {
@@ -144,8 +186,15 @@ public class Reminder {
      * Marks this reminder as triggered and calculates next execution
      */
     public void markAsTriggered() {
-        this.lastTriggered = LocalDateTime.now();
-        calculateNextExecution();
+        markAsTriggered(LocalDateTime.now());
+    }
+
+    /**
+     * Marks this reminder as triggered at the given time and calculates next execution
+     */
+    public void markAsTriggered(LocalDateTime now) {
+        this.lastTriggered = now;
+        calculateNextExecution(now);
     }
 
     /**
@@ -0,0 +1,66 @@
+package com.bydaffi.anypetbackend.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Relational mapping of a reminder, used by the JDBC reminder store (app.reminders.store=jdbc).
+ * The "reminders" table and its indexes are created by schema.sql, which this mapping must match
+ * (Hibernate only validates or, on embedded databases, recreates it); the store itself reads and
+ * writes it with plain JDBC so due reminders can be claimed with SELECT ... FOR UPDATE SKIP LOCKED.
+ */
+@Entity
+@Getter @Setter
+@NoArgsConstructor
+@Table(name = "reminders", indexes = {
+        @Index(name = "idx_reminders_active_next_execution", columnList = "active, next_execution"),
+        @Index(name = "idx_reminders_user_id", columnList = "user_id")
+})
+public class ReminderEntity {
+
+    @Id
+    @Column(length = 64)
+    private String id;
+
+    @Column(nullable = false)
+    private String title;
+
+    @Column(length = 1000)
+    private String message;
+
+    @Column(name = "scheduled_time", nullable = false)
+    private LocalTime scheduledTime;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "repeat_interval", nullable = false, length = 32)
+    private Reminder.RepeatInterval repeatInterval;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(name = "pet_id")
+    private String petId;
+
+    @Column(name = "device_token", length = 512)
+    private String deviceToken;
+
+    @Column(nullable = false)
+    private boolean active = true;
+
+    @Column(name = "last_triggered")
+    private LocalDateTime lastTriggered;
+
+    @Column(name = "next_execution")
+    private LocalDateTime nextExecution;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
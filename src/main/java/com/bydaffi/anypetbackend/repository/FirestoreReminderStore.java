@@ -0,0 +1,163 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Reminder store backed by the Firestore "reminders" collection (default backend).
+ *
+ * claimDue reads the due reminders and pushes their nextExecution to the lease time in one transaction,
+ * like the JDBC claim: a reminder that fails to send is not claimed again until the lease expires, and
+ * a concurrent claimer retries its transaction instead of claiming the same reminders.
+ */
+@Repository
+@Slf4j
+@ConditionalOnProperty(name = "app.reminders.store", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreReminderStore implements ReminderStore {
+
+    private static final String REMINDERS_COLLECTION = "reminders";
+
+    /**
+     * Maximum number of writes in a Firestore batch
+     */
+    private static final int MAX_BATCH_WRITES = 500;
+
+    private final Firestore firestore;
+    private final ReminderFirestoreMapper mapper;
+
+    public FirestoreReminderStore(Firestore firestore, ReminderFirestoreMapper mapper) {
+        this.firestore = firestore;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public Reminder create(Reminder reminder) throws ExecutionException, InterruptedException {
+        DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document();
+        reminder.setId(docRef.getId());
+        docRef.set(mapper.convertToFirestoreMap(reminder)).get();
+        return reminder;
+    }
+
+    @Override
+    public Reminder save(Reminder reminder) throws ExecutionException, InterruptedException {
+        firestore.collection(REMINDERS_COLLECTION).document(reminder.getId())
+                .set(mapper.convertToFirestoreMap(reminder)).get();
+        return reminder;
+    }
+
+    @Override
+    public Optional<Reminder> findById(String id) throws ExecutionException, InterruptedException {
+        DocumentSnapshot snapshot = firestore.collection(REMINDERS_COLLECTION).document(id).get().get();
+        return snapshot.exists() ? Optional.of(mapper.convertFromFirestore(snapshot)) : Optional.empty();
+    }
+
+    @Override
+    public boolean deleteById(String id) throws ExecutionException, InterruptedException {
+        DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document(id);
+        if (!docRef.get().get().exists()) {
+            return false;
+        }
+        docRef.delete().get();
+        return true;
+    }
+
+    @Override
+    public List<Reminder> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        return firestore.collection(REMINDERS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .get().get()
+                .getDocuments().stream()
+                .map(mapper::convertFromFirestore)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Reminder> findActiveByUserId(String userId) throws ExecutionException, InterruptedException {
+        return firestore.collection(REMINDERS_COLLECTION)
+                .whereEqualTo("userId", userId)
+                .whereEqualTo("active", true)
+                .get().get()
+                .getDocuments().stream()
+                .map(mapper::convertFromFirestore)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Reminder> claimDue(LocalDateTime now, int limit, LocalDateTime leaseUntil) throws ExecutionException, InterruptedException {
+        // Uses the (active, nextExecution) composite index from firestore.indexes.json
+        Query due = firestore.collection(REMINDERS_COLLECTION)
+                .whereEqualTo("active", true)
+                .whereLessThanOrEqualTo("nextExecution", mapper.toTimestamp(now))
+                .orderBy("nextExecution")
+                .limit(limit);
+        Timestamp lease = mapper.toTimestamp(leaseUntil);
+
+        return firestore.runTransaction(transaction -> {
+            List<QueryDocumentSnapshot> documents = transaction.get(due).get().getDocuments();
+            List<Reminder> claimed = new ArrayList<>(documents.size());
+            for (QueryDocumentSnapshot document : documents) {
+                // Converted before the update, so the reminder keeps the time it was due
+                claimed.add(mapper.convertFromFirestore(document));
+                transaction.update(document.getReference(), "nextExecution", lease);
+            }
+            return claimed;
+        }).get();
+    }
+
+    @Override
+    public void markTriggered(List<Reminder> reminders) throws ExecutionException, InterruptedException {
+        List<List<Reminder>> chunks = new ArrayList<>();
+        List<ApiFuture<List<WriteResult>>> commits = new ArrayList<>();
+
+        for (int start = 0; start < reminders.size(); start += MAX_BATCH_WRITES) {
+            List<Reminder> chunk = reminders.subList(start, Math.min(start + MAX_BATCH_WRITES, reminders.size()));
+            WriteBatch batch = firestore.batch();
+            for (Reminder reminder : chunk) {
+                batch.update(firestore.collection(REMINDERS_COLLECTION).document(reminder.getId()),
+                        mapper.convertToTriggeredUpdate(reminder));
+            }
+            chunks.add(chunk);
+            commits.add(batch.commit());
+        }
+
+        for (int i = 0; i < commits.size(); i++) {
+            try {
+                commits.get(i).get();
+            } catch (ExecutionException e) {
+                // A batch is atomic: one reminder deleted meanwhile fails all of them, so retry one by one
+                log.warn("Batch update of {} triggered reminders failed, retrying individually: {}",
+                        chunks.get(i).size(), e.getMessage());
+                updateIndividually(chunks.get(i));
+            }
+        }
+    }
+
+    private void updateIndividually(List<Reminder> reminders) throws InterruptedException {
+        for (Reminder reminder : reminders) {
+            try {
+                firestore.collection(REMINDERS_COLLECTION).document(reminder.getId())
+                        .update(mapper.convertToTriggeredUpdate(reminder)).get();
+            } catch (ExecutionException e) {
+                log.error("Error updating triggered reminder {}: {}", reminder.getId(), e.getMessage());
+            }
+        }
+    }
+}
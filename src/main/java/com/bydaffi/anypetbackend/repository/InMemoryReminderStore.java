@@ -0,0 +1,170 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Reminder store kept in memory, for tests, simulations and local development without Firestore.
+ * Active reminders are indexed by next execution, so claiming due reminders does not scan the whole store.
+ * Stored reminders are copied on the way in and out, like a real backend would.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.reminders.store", havingValue = "memory")
+public class InMemoryReminderStore implements ReminderStore {
+
+    private final Map<String, Reminder> reminders = new HashMap<>();
+    private final NavigableSet<DueKey> dueIndex = new TreeSet<>();
+
+    @Override
+    public synchronized Reminder create(Reminder reminder) {
+        reminder.setId(UUID.randomUUID().toString());
+        put(reminder);
+        return reminder;
+    }
+
+    @Override
+    public synchronized Reminder save(Reminder reminder) {
+        unindex(reminders.get(reminder.getId()));
+        put(reminder);
+        return reminder;
+    }
+
+    @Override
+    public synchronized Optional<Reminder> findById(String id) {
+        return Optional.ofNullable(reminders.get(id)).map(InMemoryReminderStore::copy);
+    }
+
+    @Override
+    public synchronized boolean deleteById(String id) {
+        Reminder removed = reminders.remove(id);
+        unindex(removed);
+        return removed != null;
+    }
+
+    @Override
+    public synchronized List<Reminder> findByUserId(String userId) {
+        return reminders.values().stream()
+                .filter(reminder -> userId.equals(reminder.getUserId()))
+                .map(InMemoryReminderStore::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<Reminder> findActiveByUserId(String userId) {
+        return reminders.values().stream()
+                .filter(reminder -> reminder.isActive() && userId.equals(reminder.getUserId()))
+                .map(InMemoryReminderStore::copy)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<Reminder> claimDue(LocalDateTime now, int limit, LocalDateTime leaseUntil) {
+        List<Reminder> claimed = new ArrayList<>();
+        List<Reminder> leased = new ArrayList<>();
+        Iterator<DueKey> iterator = dueIndex.iterator();
+
+        while (iterator.hasNext() && claimed.size() < limit) {
+            DueKey key = iterator.next();
+            if (key.nextExecution().isAfter(now)) {
+                break;
+            }
+            iterator.remove();
+
+            Reminder stored = reminders.get(key.id());
+            claimed.add(copy(stored));
+            leased.add(stored);
+        }
+
+        // Lease: hide the claimed reminders until leaseUntil unless they are marked as triggered before
+        for (Reminder stored : leased) {
+            stored.setNextExecution(leaseUntil);
+            index(stored);
+        }
+
+        return claimed;
+    }
+
+    @Override
+    public synchronized void markTriggered(List<Reminder> triggered) {
+        for (Reminder reminder : triggered) {
+            Reminder stored = reminders.get(reminder.getId());
+            if (stored == null) {
+                continue;
+            }
+            unindex(stored);
+            stored.setLastTriggered(reminder.getLastTriggered());
+            stored.setNextExecution(reminder.getNextExecution());
+            stored.setUpdatedAt(reminder.getUpdatedAt());
+            index(stored);
+        }
+    }
+
+    /**
+     * Number of stored reminders
+     */
+    public synchronized int size() {
+        return reminders.size();
+    }
+
+    private void put(Reminder reminder) {
+        Reminder stored = copy(reminder);
+        reminders.put(stored.getId(), stored);
+        index(stored);
+    }
+
+    private void index(Reminder reminder) {
+        if (reminder.isActive() && reminder.getNextExecution() != null) {
+            dueIndex.add(new DueKey(reminder.getNextExecution(), reminder.getId()));
+        }
+    }
+
+    private void unindex(Reminder reminder) {
+        if (reminder != null && reminder.getNextExecution() != null) {
+            dueIndex.remove(new DueKey(reminder.getNextExecution(), reminder.getId()));
+        }
+    }
+
+    private static Reminder copy(Reminder source) {
+        Reminder copy = new Reminder();
+        copy.setId(source.getId());
+        copy.setTitle(source.getTitle());
+        copy.setMessage(source.getMessage());
+        copy.setScheduledTime(source.getScheduledTime());
+        copy.setRepeatInterval(source.getRepeatInterval());
+        copy.setUserId(source.getUserId());
+        copy.setPetId(source.getPetId());
+        copy.setDeviceToken(source.getDeviceToken());
+        copy.setActive(source.isActive());
+        copy.setLastTriggered(source.getLastTriggered());
+        copy.setNextExecution(source.getNextExecution());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        return copy;
+    }
+
+    private record DueKey(LocalDateTime nextExecution, String id) implements Comparable<DueKey> {
+
+        private static final Comparator<DueKey> ORDER = Comparator
+                .comparing(DueKey::nextExecution)
+                .thenComparing(DueKey::id);
+
+        @Override
+        public int compareTo(DueKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Reminder store backed by the relational "reminders" table (see ReminderEntity).
+ * Due reminders are selected with FOR UPDATE SKIP LOCKED and leased in the same transaction,
+ * so several scheduler nodes can dispatch without sending twice. Works on PostgreSQL and H2.
+ */
+@Repository
+@ConditionalOnProperty(name = "app.reminders.store", havingValue = "jdbc")
+public class JdbcReminderStore implements ReminderStore {
+
+    private static final String COLUMNS = "id, title, message, scheduled_time, repeat_interval, user_id, pet_id, "
+            + "device_token, active, last_triggered, next_execution, created_at, updated_at";
+
+    private static final String INSERT_SQL = "INSERT INTO reminders (" + COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL = "UPDATE reminders SET title = ?, message = ?, scheduled_time = ?, "
+            + "repeat_interval = ?, user_id = ?, pet_id = ?, device_token = ?, active = ?, last_triggered = ?, "
+            + "next_execution = ?, created_at = ?, updated_at = ? WHERE id = ?";
+
+    /**
+     * Locks up to N due rows that no other node holds; they stay locked until the claim commits
+     */
+    private static final String SELECT_DUE_SQL = "SELECT " + COLUMNS + " FROM reminders"
+            + " WHERE active = TRUE AND next_execution <= ?"
+            + " ORDER BY next_execution"
+            + " LIMIT ?"
+            + " FOR UPDATE SKIP LOCKED";
+
+    /**
+     * Pushes the next_execution of a claimed row to the lease time
+     */
+    private static final String LEASE_SQL = "UPDATE reminders SET next_execution = ? WHERE id = ?";
+
+    private static final String MARK_TRIGGERED_SQL = "UPDATE reminders SET last_triggered = ?, next_execution = ?, "
+            + "updated_at = ? WHERE id = ?";
+
+    private static final RowMapper<Reminder> ROW_MAPPER = JdbcReminderStore::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcReminderStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Reminder create(Reminder reminder) {
+        reminder.setId(UUID.randomUUID().toString());
+        jdbcTemplate.update(INSERT_SQL,
+                reminder.getId(), reminder.getTitle(), reminder.getMessage(), reminder.getScheduledTime(),
+                reminder.getRepeatInterval().name(), reminder.getUserId(), reminder.getPetId(),
+                reminder.getDeviceToken(), reminder.isActive(), reminder.getLastTriggered(),
+                reminder.getNextExecution(), reminder.getCreatedAt(), reminder.getUpdatedAt());
+        return reminder;
+    }
+
+    @Override
+    public Reminder save(Reminder reminder) {
+        jdbcTemplate.update(UPDATE_SQL,
+                reminder.getTitle(), reminder.getMessage(), reminder.getScheduledTime(),
+                reminder.getRepeatInterval().name(), reminder.getUserId(), reminder.getPetId(),
+                reminder.getDeviceToken(), reminder.isActive(), reminder.getLastTriggered(),
+                reminder.getNextExecution(), reminder.getCreatedAt(), reminder.getUpdatedAt(), reminder.getId());
+        return reminder;
+    }
+
+    @Override
+    public Optional<Reminder> findById(String id) {
+        List<Reminder> reminders = jdbcTemplate.query(
+                "SELECT " + COLUMNS + " FROM reminders WHERE id = ?", ROW_MAPPER, id);
+        return reminders.stream().findFirst();
+    }
+
+    @Override
+    public boolean deleteById(String id) {
+        return jdbcTemplate.update("DELETE FROM reminders WHERE id = ?", id) > 0;
+    }
+
+    @Override
+    public List<Reminder> findByUserId(String userId) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM reminders WHERE user_id = ?", ROW_MAPPER, userId);
+    }
+
+    @Override
+    public List<Reminder> findActiveByUserId(String userId) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM reminders WHERE user_id = ? AND active = TRUE",
+                ROW_MAPPER, userId);
+    }
+
+    @Override
+    @Transactional
+    public List<Reminder> claimDue(LocalDateTime now, int limit, LocalDateTime leaseUntil) {
+        // Read before the lease is written, so the reminders keep the time they were due
+        List<Reminder> claimed = jdbcTemplate.query(SELECT_DUE_SQL, ROW_MAPPER, now, limit);
+        if (!claimed.isEmpty()) {
+            jdbcTemplate.batchUpdate(LEASE_SQL, claimed, claimed.size(), (statement, reminder) -> {
+                statement.setObject(1, leaseUntil);
+                statement.setString(2, reminder.getId());
+            });
+        }
+        return claimed;
+    }
+
+    @Override
+    @Transactional
+    public void markTriggered(List<Reminder> reminders) {
+        jdbcTemplate.batchUpdate(MARK_TRIGGERED_SQL, reminders, reminders.size(), (statement, reminder) -> {
+            statement.setObject(1, reminder.getLastTriggered());
+            statement.setObject(2, reminder.getNextExecution());
+            statement.setObject(3, reminder.getUpdatedAt());
+            statement.setString(4, reminder.getId());
+        });
+    }
+
+    private static Reminder mapRow(ResultSet rs, int rowNum) throws SQLException {
+        Reminder reminder = new Reminder();
+        reminder.setId(rs.getString("id"));
+        reminder.setTitle(rs.getString("title"));
+        reminder.setMessage(rs.getString("message"));
+        reminder.setScheduledTime(rs.getObject("scheduled_time", LocalTime.class));
+        reminder.setRepeatInterval(Reminder.RepeatInterval.valueOf(rs.getString("repeat_interval")));
+        reminder.setUserId(rs.getString("user_id"));
+        reminder.setPetId(rs.getString("pet_id"));
+        reminder.setDeviceToken(rs.getString("device_token"));
+        reminder.setActive(rs.getBoolean("active"));
+        reminder.setLastTriggered(rs.getObject("last_triggered", LocalDateTime.class));
+        reminder.setNextExecution(rs.getObject("next_execution", LocalDateTime.class));
+        reminder.setCreatedAt(rs.getObject("created_at", LocalDateTime.class));
+        reminder.setUpdatedAt(rs.getObject("updated_at", LocalDateTime.class));
+        return reminder;
+    }
+}
@@ -0,0 +1,30 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Pet;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PetRepository extends JpaRepository<Pet, Long> {
+
+    /**
+     * Find the names of several pets in one query, without loading the entities
+     * @param ids pet IDs
+     * @return ID and name of the pets that exist
+     */
+    @Query("select p.id as id, p.name as name from Pet p where p.id in :ids")
+    List<PetName> findNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * ID and name of a pet
+     */
+    interface PetName {
+        Long getId();
+        String getName();
+    }
+}
@@ -0,0 +1,96 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Converts reminders to and from their Firestore document layout.
+ * Shared by the Firestore reminder store and the reminder backfill job.
+ */
+@Component
+public class ReminderFirestoreMapper {
+
+    /**
+     * Converts a Reminder object to a Firestore map
+     */
+    public Map<String, Object> convertToFirestoreMap(Reminder reminder) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("title", reminder.getTitle());
+        data.put("message", reminder.getMessage());
+        data.put("scheduledTime", reminder.getScheduledTime().toString());
+        data.put("repeatInterval", reminder.getRepeatInterval().name());
+        data.put("userId", reminder.getUserId());
+        data.put("petId", reminder.getPetId());
+        data.put("deviceToken", reminder.getDeviceToken());
+        data.put("active", reminder.isActive());
+        data.put("lastTriggered", toTimestamp(reminder.getLastTriggered()));
+        data.put("nextExecution", toTimestamp(reminder.getNextExecution()));
+        data.put("createdAt", toTimestamp(reminder.getCreatedAt()));
+        data.put("updatedAt", toTimestamp(reminder.getUpdatedAt()));
+
+        return data;
+    }
+
+    /**
+     * Converts the fields changed when a reminder is triggered to a Firestore update map
+     */
+    public Map<String, Object> convertToTriggeredUpdate(Reminder reminder) {
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("lastTriggered", toTimestamp(reminder.getLastTriggered()));
+        updates.put("nextExecution", toTimestamp(reminder.getNextExecution()));
+        updates.put("updatedAt", toTimestamp(reminder.getUpdatedAt()));
+        return updates;
+    }
+
+    /**
+     * Converts a Firestore document to a Reminder object
+     */
+    public Reminder convertFromFirestore(DocumentSnapshot document) {
+        Reminder reminder = new Reminder();
+        reminder.setId(document.getId());
+        reminder.setTitle(document.getString("title"));
+        reminder.setMessage(document.getString("message"));
+        reminder.setScheduledTime(LocalTime.parse(document.getString("scheduledTime")));
+        reminder.setRepeatInterval(Reminder.RepeatInterval.valueOf(document.getString("repeatInterval")));
+        reminder.setUserId(document.getString("userId"));
+
+        // Pet ID is now a Firebase document ID (String)
+        reminder.setPetId(document.getString("petId"));
+
+        reminder.setDeviceToken(document.getString("deviceToken"));
+        reminder.setActive(Boolean.TRUE.equals(document.getBoolean("active")));
+        reminder.setLastTriggered(toLocalDateTime(document.getTimestamp("lastTriggered")));
+        // A malformed nextExecution (not a timestamp) reads as missing, so the backfill recomputes it
+        Object nextExecution = document.get("nextExecution");
+        reminder.setNextExecution(nextExecution instanceof Timestamp timestamp ? toLocalDateTime(timestamp) : null);
+        reminder.setCreatedAt(toLocalDateTime(document.getTimestamp("createdAt")));
+        reminder.setUpdatedAt(toLocalDateTime(document.getTimestamp("updatedAt")));
+
+        return reminder;
+    }
+
+    /**
+     * Converts a LocalDateTime in the system time zone to a Firestore Timestamp
+     */
+    public Timestamp toTimestamp(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return null;
+        }
+        return Timestamp.of(java.util.Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    private LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        if (timestamp == null) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(timestamp.toDate().toInstant(), ZoneId.systemDefault());
+    }
+}
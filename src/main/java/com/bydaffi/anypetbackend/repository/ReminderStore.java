@@ -0,0 +1,74 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Storage abstraction for reminders.
+ * The backend is selected with app.reminders.store (firestore, jdbc or memory).
+ */
+public interface ReminderStore {
+
+    /**
+     * Stores a new reminder and assigns its ID
+     *
+     * @param reminder Reminder to create
+     * @return Created reminder with its ID
+     */
+    Reminder create(Reminder reminder) throws ExecutionException, InterruptedException;
+
+    /**
+     * Replaces an existing reminder
+     *
+     * @param reminder Reminder with ID
+     * @return Saved reminder
+     */
+    Reminder save(Reminder reminder) throws ExecutionException, InterruptedException;
+
+    /**
+     * Finds a reminder by ID
+     */
+    Optional<Reminder> findById(String id) throws ExecutionException, InterruptedException;
+
+    /**
+     * Deletes a reminder by ID
+     *
+     * @return false if the reminder did not exist
+     */
+    boolean deleteById(String id) throws ExecutionException, InterruptedException;
+
+    /**
+     * Finds all reminders of a user
+     */
+    List<Reminder> findByUserId(String userId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Finds all active reminders of a user
+     */
+    List<Reminder> findActiveByUserId(String userId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Claims up to {@code limit} active reminders whose next execution is at or before {@code now},
+     * oldest first. The claimed reminders are hidden from later claims until {@code leaseUntil}
+     * (unless marked as triggered before), so a reminder that fails to send is retried after the lease
+     * and several nodes can dispatch concurrently without sending twice.
+     *
+     * @param now Current time
+     * @param limit Maximum number of reminders to claim
+     * @param leaseUntil Time until which the claimed reminders are reserved for this caller
+     * @return Claimed reminders, with nextExecution set to the time they were due
+     */
+    List<Reminder> claimDue(LocalDateTime now, int limit, LocalDateTime leaseUntil) throws ExecutionException, InterruptedException;
+
+    /**
+     * Persists lastTriggered, nextExecution and updatedAt of dispatched reminders in one batch.
+     * Writing claimed reminders back unchanged releases their lease, so they are due again at once.
+     *
+     * @param reminders Reminders already advanced to their next execution, or claimed reminders to release
+     */
+    void markTriggered(List<Reminder> reminders) throws ExecutionException, InterruptedException;
+}
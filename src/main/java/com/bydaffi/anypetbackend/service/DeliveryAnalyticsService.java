@@ -0,0 +1,324 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.util.DeliveryOutcomeBuffer;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-process analytics of push notification deliveries.
+ *
+ * Every send outcome (reminder id, latency, FCM error code) is offered to a lock-free ring buffer;
+ * that is all the send path pays. A background aggregator drains the buffer every second into
+ * per-minute buckets kept in memory for app.analytics.delivery.retention-minutes, and buckets that
+ * changed are periodically written to the deliveryStats Firestore collection in batched writes.
+ * Queries only read the buckets, never the buffer.
+ */
+@Service
+@Slf4j
+public class DeliveryAnalyticsService {
+
+    private static final String DELIVERY_STATS_COLLECTION = "deliveryStats";
+
+    /**
+     * Maximum writes per Firestore batch
+     */
+    private static final int FIRESTORE_BATCH_LIMIT = 500;
+
+    /**
+     * Failed reminder ids kept per bucket, to find the reminders behind an error spike
+     */
+    private static final int FAILED_REMINDER_SAMPLE = 20;
+
+    private static final long MINUTE_MILLIS = 60_000;
+
+    private final Firestore firestore;
+    private final Clock clock;
+    private final DeliveryOutcomeBuffer buffer;
+    private final int retentionMinutes;
+    private final boolean flushEnabled;
+
+    /**
+     * Buckets by epoch minute, guarded by itself. Only the aggregator writes them.
+     */
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+
+    public DeliveryAnalyticsService(Firestore firestore,
+                                    Clock clock,
+                                    @Value("${app.analytics.delivery.buffer-capacity:65536}") int bufferCapacity,
+                                    @Value("${app.analytics.delivery.retention-minutes:1440}") int retentionMinutes,
+                                    @Value("${app.analytics.delivery.flush-enabled:true}") boolean flushEnabled) {
+        this.firestore = firestore;
+        this.clock = clock;
+        this.buffer = new DeliveryOutcomeBuffer(bufferCapacity);
+        this.retentionMinutes = retentionMinutes;
+        this.flushEnabled = flushEnabled && firestore != null;
+    }
+
+    /**
+     * Records the outcome of one send. Never blocks; if the aggregator has fallen a whole buffer
+     * behind, the outcome is dropped and counted.
+     *
+     * @param reminderId Reminder that triggered the send, or null for direct sends
+     * @param latencyMillis Time FCM took to answer
+     * @param errorCode FCM error code (MessagingErrorCode name), or null if the send succeeded
+     */
+    public void record(String reminderId, long latencyMillis, String errorCode) {
+        buffer.offer(clock.millis(), reminderId, latencyMillis, errorCode);
+    }
+
+    /**
+     * Drains the ring buffer into the per-minute buckets and drops buckets past the retention
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.delivery.aggregate-interval-ms:1000}")
+    public void aggregate() {
+        synchronized (buckets) {
+            buffer.drain((timestampMillis, reminderId, latencyMillis, errorCode) ->
+                    buckets.computeIfAbsent(Math.floorDiv(timestampMillis, MINUTE_MILLIS), Bucket::new)
+                            .add(reminderId, latencyMillis, errorCode));
+
+            long oldest = Math.floorDiv(clock.millis(), MINUTE_MILLIS) - retentionMinutes;
+            buckets.headMap(oldest).clear();
+        }
+    }
+
+    /**
+     * Writes the buckets that changed since the last flush to Firestore, in batched writes.
+     * Each bucket is one document per minute, overwritten as the minute fills up.
+     */
+    @Scheduled(fixedDelayString = "${app.analytics.delivery.flush-interval-ms:60000}",
+               initialDelayString = "${app.analytics.delivery.flush-interval-ms:60000}")
+    public void flush() {
+        if (!flushEnabled) {
+            return;
+        }
+
+        List<Map.Entry<Long, Map<String, Object>>> pending = new ArrayList<>();
+        synchronized (buckets) {
+            for (Bucket bucket : buckets.values()) {
+                if (bucket.dirty) {
+                    pending.add(Map.entry(bucket.epochMinute, bucket.toDocument()));
+                    bucket.dirty = false;
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        CollectionReference collection = firestore.collection(DELIVERY_STATS_COLLECTION);
+        int written = 0;
+        try {
+            for (int from = 0; from < pending.size(); from += FIRESTORE_BATCH_LIMIT) {
+                WriteBatch batch = firestore.batch();
+                for (Map.Entry<Long, Map<String, Object>> entry
+                        : pending.subList(from, Math.min(from + FIRESTORE_BATCH_LIMIT, pending.size()))) {
+                    batch.set(collection.document(documentId(entry.getKey())), entry.getValue());
+                }
+                batch.commit().get();
+                written = Math.min(from + FIRESTORE_BATCH_LIMIT, pending.size());
+            }
+            log.debug("Flushed {} delivery stats buckets", written);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Mark the unwritten buckets dirty again so the next flush retries them
+            synchronized (buckets) {
+                for (Map.Entry<Long, Map<String, Object>> entry : pending.subList(written, pending.size())) {
+                    Bucket bucket = buckets.get(entry.getKey());
+                    if (bucket != null) {
+                        bucket.dirty = true;
+                    }
+                }
+            }
+            log.error("Error flushing delivery stats: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Aggregates the recent in-memory buckets
+     *
+     * @param minutes How far back to look (up to the retention)
+     * @param windowMinutes Size of each returned window, e.g. 1 for per-minute or 60 for per-hour
+     * @return Windows oldest first, only those with sends, plus their total
+     */
+    public DeliveryReport getReport(int minutes, int windowMinutes) {
+        long now = Math.floorDiv(clock.millis(), MINUTE_MILLIS);
+        long from = now - Math.min(minutes, retentionMinutes) + 1;
+        int window = Math.max(windowMinutes, 1);
+
+        Map<Long, Bucket> windows = new LinkedHashMap<>();
+        Bucket total = new Bucket(from);
+
+        synchronized (buckets) {
+            for (Bucket bucket : buckets.tailMap(from).values()) {
+                long windowStart = bucket.epochMinute - Math.floorMod(bucket.epochMinute - from, (long) window);
+                windows.computeIfAbsent(windowStart, Bucket::new).merge(bucket);
+                total.merge(bucket);
+            }
+        }
+
+        List<DeliveryWindow> result = new ArrayList<>(windows.size());
+        for (Bucket bucket : windows.values()) {
+            result.add(new DeliveryWindow(bucket, window));
+        }
+        return new DeliveryReport(result, new DeliveryWindow(total, (int) (now - from + 1)),
+                buffer.getDroppedCount(), buffer.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        aggregate();
+        flush();
+    }
+
+    private static String documentId(long epochMinute) {
+        return Instant.ofEpochMilli(epochMinute * MINUTE_MILLIS).toString();
+    }
+
+    /**
+     * Mutable counters of one minute (or of a merged window)
+     */
+    private static class Bucket {
+        private final long epochMinute;
+        private long sent;
+        private long failed;
+        private long reminderSends;
+        private long totalLatencyMillis;
+        private long maxLatencyMillis;
+        private final Map<String, Long> errorsByCode = new HashMap<>();
+        private final List<String> failedReminderIds = new ArrayList<>();
+        private boolean dirty;
+
+        Bucket(long epochMinute) {
+            this.epochMinute = epochMinute;
+        }
+
+        void add(String reminderId, long latencyMillis, String errorCode) {
+            if (errorCode == null) {
+                sent++;
+            } else {
+                failed++;
+                errorsByCode.merge(errorCode, 1L, Long::sum);
+                if (reminderId != null && failedReminderIds.size() < FAILED_REMINDER_SAMPLE) {
+                    failedReminderIds.add(reminderId);
+                }
+            }
+            if (reminderId != null) {
+                reminderSends++;
+            }
+            totalLatencyMillis += latencyMillis;
+            maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+            dirty = true;
+        }
+
+        void merge(Bucket other) {
+            sent += other.sent;
+            failed += other.failed;
+            reminderSends += other.reminderSends;
+            totalLatencyMillis += other.totalLatencyMillis;
+            maxLatencyMillis = Math.max(maxLatencyMillis, other.maxLatencyMillis);
+            other.errorsByCode.forEach((code, count) -> errorsByCode.merge(code, count, Long::sum));
+            for (String reminderId : other.failedReminderIds) {
+                if (failedReminderIds.size() == FAILED_REMINDER_SAMPLE) {
+                    break;
+                }
+                failedReminderIds.add(reminderId);
+            }
+        }
+
+        Map<String, Object> toDocument() {
+            Map<String, Object> document = new HashMap<>();
+            document.put("minute", Timestamp.ofTimeMicroseconds(epochMinute * MINUTE_MILLIS * 1000));
+            document.put("sent", sent);
+            document.put("failed", failed);
+            document.put("reminderSends", reminderSends);
+            document.put("totalLatencyMillis", totalLatencyMillis);
+            document.put("maxLatencyMillis", maxLatencyMillis);
+            document.put("errorsByCode", new HashMap<>(errorsByCode));
+            document.put("failedReminderIds", new ArrayList<>(failedReminderIds));
+            return document;
+        }
+    }
+
+    /**
+     * Delivery counters of one time window
+     */
+    public static class DeliveryWindow {
+        private final Instant start;
+        private final int minutes;
+        private final long sent;
+        private final long failed;
+        private final long reminderSends;
+        private final double meanLatencyMillis;
+        private final long maxLatencyMillis;
+        private final Map<String, Long> errorsByCode;
+        private final List<String> failedReminderIds;
+
+        private DeliveryWindow(Bucket bucket, int minutes) {
+            long total = bucket.sent + bucket.failed;
+            this.start = Instant.ofEpochMilli(bucket.epochMinute * MINUTE_MILLIS);
+            this.minutes = minutes;
+            this.sent = bucket.sent;
+            this.failed = bucket.failed;
+            this.reminderSends = bucket.reminderSends;
+            this.meanLatencyMillis = total == 0 ? 0 : (double) bucket.totalLatencyMillis / total;
+            this.maxLatencyMillis = bucket.maxLatencyMillis;
+            this.errorsByCode = Collections.unmodifiableMap(new TreeMap<>(bucket.errorsByCode));
+            this.failedReminderIds = List.copyOf(bucket.failedReminderIds);
+        }
+
+        // Getters
+        public Instant getStart() { return start; }
+        public int getMinutes() { return minutes; }
+        public long getSent() { return sent; }
+        public long getFailed() { return failed; }
+        public long getReminderSends() { return reminderSends; }
+        public double getFailureRate() { return sent + failed == 0 ? 0 : (double) failed / (sent + failed); }
+        public double getMeanLatencyMillis() { return meanLatencyMillis; }
+        public long getMaxLatencyMillis() { return maxLatencyMillis; }
+        public Map<String, Long> getErrorsByCode() { return errorsByCode; }
+        public List<String> getFailedReminderIds() { return failedReminderIds; }
+    }
+
+    /**
+     * Recent delivery windows and their total
+     */
+    public static class DeliveryReport {
+        private final List<DeliveryWindow> windows;
+        private final DeliveryWindow total;
+        private final long droppedOutcomes;
+        private final int pendingOutcomes;
+
+        public DeliveryReport(List<DeliveryWindow> windows, DeliveryWindow total, long droppedOutcomes,
+                              int pendingOutcomes) {
+            this.windows = Collections.unmodifiableList(windows);
+            this.total = total;
+            this.droppedOutcomes = droppedOutcomes;
+            this.pendingOutcomes = pendingOutcomes;
+        }
+
+        // Getters
+        public List<DeliveryWindow> getWindows() { return windows; }
+        public DeliveryWindow getTotal() { return total; }
+        public long getDroppedOutcomes() { return droppedOutcomes; }
+        public int getPendingOutcomes() { return pendingOutcomes; }
+    }
+}
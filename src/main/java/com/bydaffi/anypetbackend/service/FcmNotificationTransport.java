@@ -0,0 +1,109 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.util.FutureConverters;
+import com.google.api.core.ApiFuture;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.messaging.BatchResponse;
+import com.google.firebase.messaging.FirebaseMessaging;
+import com.google.firebase.messaging.FirebaseMessagingException;
+import com.google.firebase.messaging.SendResponse;
+import com.google.firebase.messaging.TopicManagementResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Notification transport backed by Firebase Cloud Messaging
+ */
+@Component
+@ConditionalOnProperty(name = "app.notifications.transport", havingValue = "fcm", matchIfMissing = true)
+public class FcmNotificationTransport implements NotificationTransport {
+
+    private final FirebaseMessaging messaging;
+    private final PushMessageFactory messageFactory;
+
+    public FcmNotificationTransport(FirebaseApp firebaseApp, PushMessageFactory messageFactory) {
+        this.messaging = FirebaseMessaging.getInstance(firebaseApp);
+        this.messageFactory = messageFactory;
+    }
+
+    @Override
+    public CompletableFuture<String> send(PushNotificationRequest request) {
+        return adapt(messaging.sendAsync(messageFactory.buildMessage(request)));
+    }
+
+    @Override
+    public CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request, List<String> tokens) {
+        return adapt(messaging.sendEachForMulticastAsync(messageFactory.buildMulticastMessage(request, tokens)))
+                .thenApply(response -> toMulticastResult(tokens, response));
+    }
+
+    @Override
+    public CompletableFuture<String> sendToTopic(PushNotificationRequest request, String topic) {
+        return adapt(messaging.sendAsync(messageFactory.buildTopicMessage(request, topic)));
+    }
+
+    @Override
+    public CompletableFuture<TopicResult> subscribeToTopic(List<String> tokens, String topic) {
+        return adapt(messaging.subscribeToTopicAsync(tokens, topic)).thenApply(this::toTopicResult);
+    }
+
+    @Override
+    public CompletableFuture<TopicResult> unsubscribeFromTopic(List<String> tokens, String topic) {
+        return adapt(messaging.unsubscribeFromTopicAsync(tokens, topic)).thenApply(this::toTopicResult);
+    }
+
+    private MulticastResult toMulticastResult(List<String> tokens, BatchResponse response) {
+        List<SendResult> results = new ArrayList<>(tokens.size());
+        List<SendResponse> responses = response.getResponses();
+        for (int i = 0; i < responses.size(); i++) {
+            SendResponse sendResponse = responses.get(i);
+            results.add(sendResponse.isSuccessful()
+                    ? SendResult.success(tokens.get(i), sendResponse.getMessageId())
+                    : SendResult.failure(tokens.get(i), errorCode(sendResponse.getException())));
+        }
+        return new MulticastResult(results);
+    }
+
+    private TopicResult toTopicResult(TopicManagementResponse response) {
+        List<TopicFailure> failures = new ArrayList<>();
+        for (TopicManagementResponse.Error error : response.getErrors()) {
+            failures.add(new TopicFailure(error.getIndex(), error.getReason()));
+        }
+        return new TopicResult(response.getSuccessCount(), failures);
+    }
+
+    /**
+     * Adapts an SDK future, translating FirebaseMessagingException into NotificationSendException
+     */
+    private static <T> CompletableFuture<T> adapt(ApiFuture<T> apiFuture) {
+        return FutureConverters.toCompletableFuture(apiFuture)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        return result;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof FirebaseMessagingException firebaseError) {
+                        throw new CompletionException(new NotificationSendException(
+                                errorCode(firebaseError), firebaseError.getMessage(), firebaseError));
+                    }
+                    throw cause instanceof CompletionException completion ? completion : new CompletionException(cause);
+                });
+    }
+
+    private static String errorCode(FirebaseMessagingException exception) {
+        if (exception == null) {
+            return "UNKNOWN";
+        }
+        if (exception.getMessagingErrorCode() != null) {
+            return exception.getMessagingErrorCode().name();
+        }
+        return String.valueOf(exception.getErrorCode());
+    }
+}
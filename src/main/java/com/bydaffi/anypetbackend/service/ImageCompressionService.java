@@ -1,85 +1,248 @@
 package com.bydaffi.anypetbackend.service;
 
+import com.bydaffi.anypetbackend.util.ColorPalette;
+import com.bydaffi.anypetbackend.util.ImageWriterPool;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.imgscalr.Scalr;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Service for compressing and resizing images before uploading to S3.
  * Reduces storage costs and improves loading performance.
+ *
+ * Encoded renditions are written straight to spool files in app.image.spool-dir instead of
+ * byte arrays, and uploaded from there, so the compressed output never sits on the heap.
+ *
+ * Oversized sources are decoded with subsampling: the dimensions are read from the image header
+ * first, and only every n-th pixel is decoded so the bitmap is no larger than needed for the
+ * biggest rendition (a 48 MP photo decodes to a few MP instead of ~190 MB of pixels).
+ *
+ * The set of renditions (e.g. 200/400/800/1920 px) is configured in app.image.renditions.
+ *
+ * The output format depends on the content, not on the uploaded file's extension: opaque photos
+ * are stored as JPEG, images with transparency as PNG, and flat graphics (256 colours or fewer,
+ * e.g. logos or simple drawings) as palette PNG.
+ *
+ * Every upload reserves its estimated heap from the ImageMemoryBudget before decoding, so concurrent
+ * uploads wait, or are rejected, instead of exhausting the heap.
+ *
+ * Encoders are reused from a bounded pool (ImageWriterPool) and disposed on shutdown, JPEG
+ * renditions are handed to the encoder as 3-byte BGR, which its scanline copies convert cheaply,
+ * and ImageIO's disk cache is disabled, so reading an upload does not copy it to a cache file first.
  */
 @Service
+@Slf4j
 public class ImageCompressionService {
 
+    static {
+        // Uploads are read from streams; with the cache on, ImageIO copies each of them to a temporary
+        // cache file as it decodes. Without it, the readers (set to seek forward only) keep just
+        // the bytes they have not consumed yet in memory.
+        ImageIO.setUseCache(false);
+    }
+
+    private final ImageMemoryBudget memoryBudget;
+
     @Value("${app.image.compression-quality:0.85}")
     private float compressionQuality;
 
-    @Value("${app.image.max-width:1920}")
-    private int maxWidth;
+    /**
+     * Renditions to generate, as name:size pairs; each rendition fits within a size x size box
+     */
+    @Value("${app.image.renditions:thumbnail:200,small:400,medium:800,full:1920}")
+    private String[] renditions;
 
-    @Value("${app.image.max-height:1920}")
-    private int maxHeight;
+    @Value("${app.image.spool-dir:${java.io.tmpdir}}")
+    private String spoolDirectory;
 
-    @Value("${app.image.thumbnail-size:200}")
-    private int thumbnailSize;
+    public ImageCompressionService(ImageMemoryBudget memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
 
     /**
-     * Compresses an image file and returns the compressed byte array
-     *
-     * @param file the image file to compress
-     * @return compressed image as byte array
-     * @throws IOException if compression fails
+     * Releases the pooled encoders and their native codec state, e.g. on redeploy
      */
-    public byte[] compressImage(MultipartFile file) throws IOException {
-        BufferedImage originalImage = ImageIO.read(file.getInputStream());
+    @PreDestroy
+    public void shutdown() {
+        ImageWriterPool.disposeAll();
+    }
 
-        if (originalImage == null) {
-            throw new IOException("Invalid image file");
+    /**
+     * Creates every configured rendition of an uploaded image.
+     * The upload is decoded once, subsampled down to the largest rendition. Renditions are then
+     * produced by successive downscaling from largest to smallest, each step resizing the previous
+     * rendition rather than the original, with the resize method picked per step.
+     * All renditions share one output format, chosen from the decoded image.
+     *
+     * @param file the image file
+     * @return compressed renditions by name, spooled to disk; the caller must close them
+     * @throws IOException if decoding or compression fails
+     * @throws java.util.concurrent.RejectedExecutionException if the memory budget has no room
+     */
+    public ImageRenditions createRenditions(MultipartFile file) throws IOException {
+        List<RenditionSpec> specs = renditionSpecs();
+        int largestSize = specs.get(0).size();
+
+        String format;
+        Map<String, EncodedImage> encoded = new LinkedHashMap<>();
+
+        // Reserve the heap the decode and resizes will take before allocating any of it
+        try (ImageMemoryBudget.Reservation reservation =
+                     memoryBudget.reserve(estimateHeapBytes(file, largestSize, largestSize))) {
+            BufferedImage image = decode(file, largestSize, largestSize);
+            ImageAnalysis analysis = analyze(image);
+            format = analysis.isPhoto() ? "jpg" : "png";
+
+            for (RenditionSpec spec : specs) {
+                // Each step feeds the next one
+                BufferedImage resized = resizeIfNeeded(image, spec.size(), spec.size());
+                if (resized != image && format.equals("png")) {
+                    // Resampling blends colours: a downscaled graphic may no longer fit a palette
+                    analysis = analyze(resized);
+                }
+                image = resized;
+                encoded.put(spec.name(), compressBufferedImage(prepareForFormat(image, format, analysis), format));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (EncodedImage rendition : encoded.values()) {
+                rendition.close();
+            }
+            throw e;
         }
 
-        // Resize if image is too large
-        BufferedImage resizedImage = resizeIfNeeded(originalImage, maxWidth, maxHeight);
+        ImageRenditions result = new ImageRenditions(encoded, format, file.getSize());
+        log.info("Encoded {} as {}: {} -> {} bytes ({}% saved)", file.getOriginalFilename(), format,
+                result.getOriginalSize(), result.getStoredSize(), Math.round(result.getSavedPercent()));
+        return result;
+    }
+
+    /**
+     * Configured renditions, largest first
+     */
+    private List<RenditionSpec> renditionSpecs() {
+        List<RenditionSpec> specs = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        for (String rendition : renditions) {
+            String[] parts = rendition.trim().split(":");
+            if (parts.length != 2 || !parts[0].matches("[a-z0-9-]+") || !parts[1].matches("\\d+")
+                    || Integer.parseInt(parts[1]) <= 0 || !names.add(parts[0])) {
+                throw new IllegalStateException("Invalid app.image.renditions entry: " + rendition);
+            }
+            specs.add(new RenditionSpec(parts[0], Integer.parseInt(parts[1])));
+        }
+        if (specs.isEmpty()) {
+            throw new IllegalStateException("app.image.renditions must not be empty");
+        }
 
-        // Compress the image
-        return compressBufferedImage(resizedImage, getImageFormat(file.getOriginalFilename()));
+        specs.sort(Comparator.comparingInt(RenditionSpec::size).reversed());
+        return specs;
     }
 
     /**
-     * Creates a thumbnail version of the image
-     *
-     * @param file the original image file
-     * @return thumbnail as byte array
-     * @throws IOException if thumbnail creation fails
+     * Estimates the heap needed to process an image from its header: the decoded (subsampled)
+     * ARGB bitmap, plus as much again for resize intermediates and the converted renditions
      */
-    public byte[] createThumbnail(MultipartFile file) throws IOException {
-        BufferedImage originalImage = ImageIO.read(file.getInputStream());
+    private long estimateHeapBytes(MultipartFile file, int targetWidth, int targetHeight) throws IOException {
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageInput = ImageIO.createImageInputStream(inputStream)) {
+
+            Iterator<ImageReader> readers = imageInput != null ? ImageIO.getImageReaders(imageInput) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Invalid image file");
+            }
 
-        if (originalImage == null) {
-            throw new IOException("Invalid image file");
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                int subsampling = subsamplingFactor(width, height, targetWidth, targetHeight);
+                long decodedPixels = (long) ((width + subsampling - 1) / subsampling)
+                        * ((height + subsampling - 1) / subsampling);
+                return decodedPixels * 4 * 2;
+            } finally {
+                reader.dispose();
+            }
         }
+    }
 
-        // Create square thumbnail
-        BufferedImage thumbnail = Scalr.resize(originalImage,
-                Scalr.Method.QUALITY,
-                Scalr.Mode.FIT_TO_WIDTH,
-                thumbnailSize,
-                thumbnailSize,
-                Scalr.OP_ANTIALIAS);
+    /**
+     * Decodes an image, subsampled so it still covers a resize to fit targetWidth x targetHeight
+     */
+    private BufferedImage decode(MultipartFile file, int targetWidth, int targetHeight) throws IOException {
+        try (InputStream inputStream = file.getInputStream();
+             ImageInputStream imageInput = ImageIO.createImageInputStream(inputStream)) {
+
+            Iterator<ImageReader> readers = imageInput != null ? ImageIO.getImageReaders(imageInput) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Invalid image file");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+
+                // Only the header is read here
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = subsamplingFactor(width, height, targetWidth, targetHeight);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
 
-        return compressBufferedImage(thumbnail, getImageFormat(file.getOriginalFilename()));
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Largest integer subsampling that keeps the decoded image at least as large as the resize
+     * output, so the following quality resize still has enough pixels to work with.
+     * Mirrors Scalr.Mode.AUTOMATIC: landscape and square images are fitted to the width,
+     * portrait ones to the height.
+     */
+    private static int subsamplingFactor(int width, int height, int targetWidth, int targetHeight) {
+        int factor = height <= width ? width / targetWidth : height / targetHeight;
+        return Math.max(1, factor);
     }
 
     /**
@@ -96,7 +259,7 @@ public class ImageCompressionService {
 
         // Calculate new dimensions maintaining aspect ratio
         return Scalr.resize(image,
-                Scalr.Method.QUALITY,
+                resizeMethod(originalWidth, originalHeight, maxWidth, maxHeight),
                 Scalr.Mode.AUTOMATIC,
                 maxWidth,
                 maxHeight,
@@ -104,56 +267,148 @@ public class ImageCompressionService {
     }
 
     /**
-     * Compresses a BufferedImage with specified quality
+     * Picks the resize method for one step: a single bilinear pass (BALANCED) when shrinking by
+     * at most half, which does not alias; incremental QUALITY scaling for larger reductions.
+     * SPEED (nearest neighbour) is never used, it visibly aliases photos at any size.
      */
-    private byte[] compressBufferedImage(BufferedImage image, String format) throws IOException {
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private static Scalr.Method resizeMethod(int width, int height, int maxWidth, int maxHeight) {
+        double reduction = Math.max((double) width / maxWidth, (double) height / maxHeight);
+        return reduction <= 2 ? Scalr.Method.BALANCED : Scalr.Method.QUALITY;
+    }
 
-        // For JPEG compression with quality control
-        if (format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg")) {
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-            if (!writers.hasNext()) {
-                throw new IOException("No JPEG writer found");
+    /**
+     * Scans the pixels for transparency and counts distinct colours, up to a palette's worth.
+     * Stops early once both answers are known, so photos are rejected after a few hundred pixels.
+     */
+    private static ImageAnalysis analyze(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alphaChannel = image.getColorModel().hasAlpha();
+        boolean translucent = false;
+        ColorPalette palette = new ColorPalette();
+
+        int[] row = new int[width];
+        for (int y = 0; y < height && (palette != null || (alphaChannel && !translucent)); y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int argb = opaqueOrClear(row[x]);
+                if (alphaChannel && (argb >>> 24) != 0xFF) {
+                    translucent = true;
+                }
+                if (palette != null && !palette.add(argb)) {
+                    palette = null;
+                }
             }
+        }
 
-            ImageWriter writer = writers.next();
-            ImageWriteParam param = writer.getDefaultWriteParam();
+        return new ImageAnalysis(translucent, palette);
+    }
 
-            if (param.canWriteCompressed()) {
-                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                param.setCompressionQuality(compressionQuality);
-            }
+    /**
+     * Fully transparent pixels all count as one colour, whatever their RGB
+     */
+    private static int opaqueOrClear(int argb) {
+        return (argb >>> 24) == 0 ? 0 : argb;
+    }
 
-            try (ImageOutputStream ios = ImageIO.createImageOutputStream(outputStream)) {
-                writer.setOutput(ios);
-                writer.write(null, new IIOImage(image, null, null), param);
-                writer.dispose();
-            }
-        } else {
-            // For PNG and other formats
-            ImageIO.write(image, format, outputStream);
+    /**
+     * Converts a rendition to the pixel layout its encoder handles best: JPEG needs an opaque RGB
+     * image, and a PNG whose colours fit a palette is written indexed (1 to 8 bits per pixel).
+     */
+    private static BufferedImage prepareForFormat(BufferedImage image, String format, ImageAnalysis analysis) {
+        if (format.equals("jpg")) {
+            return toRgb(image);
+        }
+        if (analysis.palette() == null) {
+            return image;
         }
 
-        return outputStream.toByteArray();
+        ColorPalette palette = analysis.palette();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        IndexColorModel colorModel = palette.toColorModel(analysis.translucent());
+        BufferedImage indexed = new BufferedImage(width, height,
+                colorModel.getPixelSize() < 8 ? BufferedImage.TYPE_BYTE_BINARY : BufferedImage.TYPE_BYTE_INDEXED,
+                colorModel);
+
+        WritableRaster raster = indexed.getRaster();
+        int[] row = new int[width];
+        int[] indices = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                indices[x] = palette.indexOf(opaqueOrClear(row[x]));
+            }
+            raster.setPixels(0, y, width, 1, indices);
+        }
+        return indexed;
     }
 
     /**
-     * Gets the image format from filename
+     * Returns the image unchanged if it is already byte-interleaved, or a 3-byte BGR copy.
+     *
+     * The JPEG writer copies the image one scanline at a time into its own byte layout; from an
+     * int-packed image (what Scalr produces) that conversion allocates about four times the
+     * pixel data, so copying to 3-byte BGR once first halves the heap one encode allocates.
      */
-    private String getImageFormat(String filename) {
-        if (filename == null || !filename.contains(".")) {
-            return "jpg";
+    private static BufferedImage toRgb(BufferedImage image) {
+        int type = image.getType();
+        if (type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_BYTE_GRAY) {
+            return image;
         }
 
-        String extension = filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+
+    /**
+     * Compresses a BufferedImage into a spool file: JPEG with the configured quality,
+     * PNG with maximum deflate compression (still lossless)
+     */
+    private EncodedImage compressBufferedImage(BufferedImage image, String format) throws IOException {
+        Path spoolFile = Files.createTempFile(Paths.get(spoolDirectory), "rendition-", "." + format);
+
+        try {
+            // The encoder writes straight to the file, with no in-memory copy of the output,
+            // using this thread's pooled writer. For PNG, quality 0 selects the highest deflate level
+            try (ImageOutputStream ios = new FileImageOutputStream(spoolFile.toFile())) {
+                ImageWriterPool.write(image, format, format.equals("jpg") ? compressionQuality : 0f, ios);
+            }
+
+            return new EncodedImage(spoolFile, Files.size(spoolFile), sha256(spoolFile));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+    }
 
-        // Supported formats
-        if (extension.equals("png") || extension.equals("jpg") ||
-                extension.equals("jpeg") || extension.equals("gif")) {
-            return extension;
+    /**
+     * Hex SHA-256 of an encoded file, read back right after the encoder closed it (still in the
+     * page cache). The PNG writer seeks back to patch chunk lengths, so the bytes as written in
+     * order are not the file's content and cannot be hashed on the fly.
+     */
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
 
-        return "jpg"; // default
+        try (InputStream input = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
     /**
@@ -185,4 +440,99 @@ public class ImageCompressionService {
     public InputStream byteArrayToInputStream(byte[] bytes) {
         return new ByteArrayInputStream(bytes);
     }
+
+    /**
+     * A configured rendition: name and bounding box size
+     */
+    private record RenditionSpec(String name, int size) {
+    }
+
+    /**
+     * What the encoder needs to know about an image: whether any pixel is transparent, and its
+     * colours if there are no more than a palette's worth (null otherwise)
+     */
+    private record ImageAnalysis(boolean translucent, ColorPalette palette) {
+
+        /**
+         * Opaque with many colours: JPEG compresses it best
+         */
+        boolean isPhoto() {
+            return !translucent && palette == null;
+        }
+    }
+
+    /**
+     * Inner class for the renditions of one upload, largest first. Closing it deletes their spool files.
+     */
+    public static class ImageRenditions implements Closeable {
+        private final Map<String, EncodedImage> renditions;
+        private final String format;
+        private final long originalSize;
+
+        public ImageRenditions(Map<String, EncodedImage> renditions, String format, long originalSize) {
+            this.renditions = Collections.unmodifiableMap(renditions);
+            this.format = format;
+            this.originalSize = originalSize;
+        }
+
+        // Getters
+        public Map<String, EncodedImage> getRenditions() { return renditions; }
+        public String getFormat() { return format; }
+        public String getContentType() { return format.equals("jpg") ? "image/jpeg" : "image/" + format; }
+        public long getOriginalSize() { return originalSize; }
+
+        /**
+         * Size of the largest rendition, the one that replaces the original
+         */
+        public long getStoredSize() { return renditions.values().iterator().next().getSize(); }
+
+        /**
+         * SHA-256 of the largest rendition, identifying the normalised content of the upload
+         */
+        public String getContentHash() { return renditions.values().iterator().next().getSha256(); }
+
+        public double getSavedPercent() {
+            return originalSize == 0 ? 0 : 100.0 * (originalSize - getStoredSize()) / originalSize;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (EncodedImage rendition : renditions.values()) {
+                try {
+                    rendition.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * An encoded image spooled to disk, with the SHA-256 of its content. Closing it deletes the file.
+     */
+    public static class EncodedImage implements Closeable {
+        private final Path path;
+        private final long size;
+        private final String sha256;
+
+        public EncodedImage(Path path, long size, String sha256) {
+            this.path = path;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        // Getters
+        public Path getPath() { return path; }
+        public long getSize() { return size; }
+        public String getSha256() { return sha256; }
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
 }
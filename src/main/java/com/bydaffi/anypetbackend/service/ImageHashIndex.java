@@ -0,0 +1,397 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.util.BoundedTtlCache;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Index of image content already stored in S3, so re-uploads of the same photo skip the PUTs.
+ *
+ * Entries are keyed by content key: the upload prefix (which includes the user) plus the SHA-256
+ * of the encoded image, and hold the rendition names stored under it and the IDs of the records
+ * that use them. Identical uploads share their objects, so an image is only deleted from S3 once
+ * the last record using it is released; releasing a record twice, or one that never used the
+ * image, changes nothing. Entries live in the Firestore "imageHashes" collection, updated in
+ * transactions so uploads and deletes on other nodes or after a restart see the same records;
+ * with app.image.dedup.firestore-index=false they are kept in a bounded TTL cache on this node
+ * instead. Either way, an image without an entry is never reported as unused.
+ *
+ * Content that is not stored yet is reserved before it is uploaded, so concurrent first uploads of
+ * the same image do not both upload it: the others see the reservation and wait for the upload to
+ * be committed. A reservation not committed within app.image.dedup.reservation-timeout-seconds
+ * (e.g. its node died) can be taken over.
+ */
+@Service
+@Slf4j
+public class ImageHashIndex {
+
+    private static final String IMAGE_HASHES_COLLECTION = "imageHashes";
+
+    /**
+     * Stands for the records of entries written before records were tracked, which are unknown;
+     * it is never released, so the objects of those entries are kept
+     */
+    static final String UNKNOWN_RECORD = "?";
+
+    private final Firestore firestore;
+    private final BoundedTtlCache<String, Entry> stored;
+
+    @Value("${app.image.dedup.firestore-index:true}")
+    private boolean firestoreIndex;
+
+    @Value("${app.image.dedup.reservation-timeout-seconds:120}")
+    private long reservationTimeoutSeconds = 120;
+
+    public ImageHashIndex(Firestore firestore,
+                          @Value("${app.image.dedup.max-entries:10000}") int maxEntries,
+                          @Value("${app.image.dedup.ttl-hours:24}") long ttlHours) {
+        this.firestore = firestore;
+        this.stored = new BoundedTtlCache<>(maxEntries, ttlHours * 3_600_000);
+    }
+
+    /**
+     * Adds a record to the users of a content key if all the given renditions are already stored;
+     * otherwise reserves the content key for this caller to upload them, unless another upload
+     * holds it
+     *
+     * @param contentKey upload prefix and content hash, e.g. users/{uid}/pets/{sha256}
+     * @param renditions rendition names the record uses
+     * @param recordId the record using the image, e.g. the pet ID
+     * @return STORED if the content is stored and now used by the record; a reservation token if
+     *         it must be uploaded, then committed or aborted; PENDING if another upload holds it
+     * @throws IllegalStateException if the index could not be read or updated
+     */
+    public Reservation reserve(String contentKey, Collection<String> renditions, String recordId) {
+        long now = System.currentTimeMillis();
+        long pendingUntil = now + reservationTimeoutSeconds * 1000;
+        if (!firestoreIndex) {
+            synchronized (stored) {
+                Entry entry = stored.get(contentKey);
+                if (entry != null && entry.renditions().containsAll(renditions)) {
+                    stored.put(contentKey, entry.withRecords(union(entry.records(), List.of(recordId))));
+                    return Reservation.STORED;
+                }
+                if (entry != null && entry.pendingUntil() > now) {
+                    return Reservation.PENDING;
+                }
+                String token = UUID.randomUUID().toString();
+                stored.put(contentKey, entry == null
+                        ? new Entry(Set.of(), Set.of(), token, pendingUntil)
+                        : new Entry(entry.renditions(), entry.records(), token, pendingUntil));
+                return new Reservation(false, token);
+            }
+        }
+
+        DocumentReference reference = entryReference(contentKey);
+        try {
+            return firestore.runTransaction(transaction -> {
+                DocumentSnapshot snapshot = transaction.get(reference).get();
+                if (snapshot.exists() && renditionsOf(snapshot).containsAll(renditions)) {
+                    transaction.update(reference, "records", new ArrayList<>(union(recordsOf(snapshot), List.of(recordId))),
+                            "updatedAt", Timestamp.now());
+                    return Reservation.STORED;
+                }
+                if (snapshot.exists() && pendingUntilOf(snapshot) > now) {
+                    return Reservation.PENDING;
+                }
+                String token = UUID.randomUUID().toString();
+                if (snapshot.exists()) {
+                    transaction.update(reference, "pendingToken", token, "pendingUntil", pendingUntil,
+                            "updatedAt", Timestamp.now());
+                } else {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("contentKey", contentKey);
+                    data.put("renditions", List.of());
+                    data.put("records", List.of());
+                    data.put("pendingToken", token);
+                    data.put("pendingUntil", pendingUntil);
+                    data.put("createdAt", Timestamp.now());
+                    data.put("updatedAt", Timestamp.now());
+                    transaction.set(reference, data);
+                }
+                return new Reservation(false, token);
+            }).get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Could not reserve image " + contentKey + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Records that the renditions of a reserved content key were uploaded for a record, and ends
+     * the reservation if this caller still holds it
+     *
+     * @param token the token returned by reserve
+     * @throws IllegalStateException if the record could not be added; the objects could
+     *         otherwise be deleted while the record still uses them
+     */
+    public void commit(String contentKey, Collection<String> renditions, String recordId, String token) {
+        if (!firestoreIndex) {
+            synchronized (stored) {
+                Entry entry = stored.get(contentKey);
+                stored.put(contentKey, entry == null
+                        ? new Entry(Set.copyOf(renditions), Set.of(recordId), null, 0)
+                        : new Entry(union(entry.renditions(), renditions), union(entry.records(), List.of(recordId)),
+                                token.equals(entry.pendingToken()) ? null : entry.pendingToken(),
+                                token.equals(entry.pendingToken()) ? 0 : entry.pendingUntil()));
+            }
+            return;
+        }
+
+        DocumentReference reference = entryReference(contentKey);
+        try {
+            firestore.runTransaction(transaction -> {
+                DocumentSnapshot snapshot = transaction.get(reference).get();
+                Map<String, Object> data = new HashMap<>();
+                data.put("contentKey", contentKey);
+                data.put("updatedAt", Timestamp.now());
+                if (snapshot.exists()) {
+                    data.put("renditions", new ArrayList<>(union(renditionsOf(snapshot), renditions)));
+                    data.put("records", new ArrayList<>(union(recordsOf(snapshot), List.of(recordId))));
+                    data.put("createdAt", snapshot.get("createdAt"));
+                    // A reservation taken over by another upload stays with it
+                    String pendingToken = snapshot.getString("pendingToken");
+                    if (pendingToken != null && !pendingToken.equals(token)) {
+                        data.put("pendingToken", pendingToken);
+                        data.put("pendingUntil", pendingUntilOf(snapshot));
+                    }
+                } else {
+                    data.put("renditions", new ArrayList<>(renditions));
+                    data.put("records", List.of(recordId));
+                    data.put("createdAt", Timestamp.now());
+                }
+                transaction.set(reference, data);
+                return null;
+            }).get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Could not record image reference " + contentKey + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Ends a reservation after its upload failed
+     *
+     * @param token the token returned by reserve
+     * @return true if this caller still held the reservation and no record uses the content, so
+     *         the objects it uploaded can be deleted; false if they must be kept
+     */
+    public boolean abort(String contentKey, String token) {
+        if (!firestoreIndex) {
+            synchronized (stored) {
+                Entry entry = stored.get(contentKey);
+                if (entry == null || !token.equals(entry.pendingToken())) {
+                    return false;
+                }
+                if (entry.records().isEmpty()) {
+                    stored.remove(contentKey);
+                    return true;
+                }
+                stored.put(contentKey, new Entry(entry.renditions(), entry.records(), null, 0));
+                return false;
+            }
+        }
+
+        DocumentReference reference = entryReference(contentKey);
+        try {
+            return firestore.runTransaction(transaction -> {
+                DocumentSnapshot snapshot = transaction.get(reference).get();
+                if (!snapshot.exists() || !token.equals(snapshot.getString("pendingToken"))) {
+                    return false;
+                }
+                if (recordsOf(snapshot).isEmpty()) {
+                    transaction.delete(reference);
+                    return true;
+                }
+                transaction.update(reference, "pendingToken", FieldValue.delete(), "pendingUntil", FieldValue.delete(),
+                        "updatedAt", Timestamp.now());
+                return false;
+            }).get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Unknown whether another upload uses the objects, so they are kept
+            log.warn("Could not abort image reservation {}: {}", contentKey, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * How long a reservation is held before another upload can take it over
+     */
+    public long getReservationTimeoutMillis() {
+        return reservationTimeoutSeconds * 1000;
+    }
+
+    /**
+     * Removes a record from the users of a content key, after it stopped using the image.
+     * The entry is removed once no record is left; a record that is not a user changes nothing.
+     *
+     * @return whether the content key is indexed, the records still using it and the stored
+     *         rendition names
+     * @throws IllegalStateException if the index could not be updated, so it is unknown whether
+     *         the objects are still used
+     */
+    public Release release(String contentKey, String recordId) {
+        if (!firestoreIndex) {
+            synchronized (stored) {
+                Entry entry = stored.get(contentKey);
+                if (entry == null) {
+                    return Release.NOT_INDEXED;
+                }
+                Set<String> records = without(entry.records(), recordId);
+                if (records.size() == entry.records().size()) {
+                    return new Release(true, false, records, entry.renditions());
+                }
+                // An upload holding a reservation may be about to use the objects
+                boolean unused = records.isEmpty() && entry.pendingUntil() <= System.currentTimeMillis();
+                if (unused) {
+                    stored.remove(contentKey);
+                } else {
+                    stored.put(contentKey, entry.withRecords(records));
+                }
+                return new Release(true, unused, records, entry.renditions());
+            }
+        }
+
+        DocumentReference reference = entryReference(contentKey);
+        try {
+            return firestore.runTransaction(transaction -> {
+                DocumentSnapshot snapshot = transaction.get(reference).get();
+                if (!snapshot.exists()) {
+                    return Release.NOT_INDEXED;
+                }
+                Set<String> current = recordsOf(snapshot);
+                Set<String> records = without(current, recordId);
+                if (records.size() == current.size()) {
+                    return new Release(true, false, records, renditionsOf(snapshot));
+                }
+                // An upload holding a reservation may be about to use the objects
+                boolean unused = records.isEmpty() && pendingUntilOf(snapshot) <= System.currentTimeMillis();
+                if (unused) {
+                    transaction.delete(reference);
+                } else {
+                    transaction.update(reference, "records", new ArrayList<>(records), "updatedAt", Timestamp.now());
+                }
+                return new Release(true, unused, records, renditionsOf(snapshot));
+            }).get();
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("Could not release image reference " + contentKey + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Result of reserving a content key
+     *
+     * @param stored whether the content is stored and now used by the record
+     * @param token reservation token if the content must be uploaded by this caller, otherwise null
+     */
+    public record Reservation(boolean stored, String token) {
+
+        public static final Reservation STORED = new Reservation(true, null);
+        public static final Reservation PENDING = new Reservation(false, null);
+
+        /**
+         * Whether another upload holds the content key, so this caller should wait and reserve again
+         */
+        public boolean pending() {
+            return !stored && token == null;
+        }
+    }
+
+    /**
+     * Result of releasing a record
+     *
+     * @param indexed whether the content key has an entry; without one its users are unknown
+     * @param unused whether the record was the last user, so the objects can be deleted
+     * @param records records still using the image
+     * @param renditions rendition names stored under the content key
+     */
+    public record Release(boolean indexed, boolean unused, Set<String> records, Set<String> renditions) {
+
+        static final Release NOT_INDEXED = new Release(false, false, Set.of(), Set.of());
+    }
+
+    /**
+     * Entry of the local index, used when the Firestore index is disabled
+     */
+    private record Entry(Set<String> renditions, Set<String> records, String pendingToken, long pendingUntil) {
+
+        Entry withRecords(Set<String> records) {
+            return new Entry(renditions, records, pendingToken, pendingUntil);
+        }
+    }
+
+    private static Set<String> renditionsOf(DocumentSnapshot snapshot) {
+        @SuppressWarnings("unchecked")
+        List<String> names = (List<String>) snapshot.get("renditions");
+        return names != null ? Set.copyOf(names) : Set.of();
+    }
+
+    /**
+     * Entries written before records were tracked have unknown records
+     */
+    private static Set<String> recordsOf(DocumentSnapshot snapshot) {
+        @SuppressWarnings("unchecked")
+        List<String> records = (List<String>) snapshot.get("records");
+        return records != null ? Set.copyOf(records) : Set.of(UNKNOWN_RECORD);
+    }
+
+    private static long pendingUntilOf(DocumentSnapshot snapshot) {
+        Long pendingUntil = snapshot.getLong("pendingUntil");
+        return pendingUntil != null ? pendingUntil : 0;
+    }
+
+    private static Set<String> union(Set<String> stored, Collection<String> added) {
+        Set<String> values = new HashSet<>(stored);
+        values.addAll(added);
+        return Set.copyOf(values);
+    }
+
+    private static Set<String> without(Set<String> stored, String removed) {
+        Set<String> values = new HashSet<>(stored);
+        values.remove(removed);
+        return Set.copyOf(values);
+    }
+
+    /**
+     * Content keys contain slashes, which document IDs cannot, so the document ID is their hash
+     */
+    private DocumentReference entryReference(String contentKey) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(contentKey.getBytes(StandardCharsets.UTF_8));
+            return firestore.collection(IMAGE_HASHES_COLLECTION).document(HexFormat.of().formatHex(hash));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.util.BoundedTtlCache;
+import com.bydaffi.anypetbackend.util.SpooledMultipartFile;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous image processing jobs.
+ *
+ * The upload is spooled to disk and processed (decode, resize, encode, S3 upload) on a worker pool
+ * sized to the CPUs, so request threads return immediately instead of waiting behind CPU-bound
+ * resizes. The queue is bounded: when it is full, submit() throws RejectedExecutionException and
+ * the caller should retry later. Job status is kept in memory for app.image.jobs.retention-minutes;
+ * optionally a push notification is sent to the uploader's device when the job finishes.
+ *
+ * Direct uploads (presigned PUT to a staging key) are completed the same way, except that the
+ * worker downloads the staged original from S3 itself and deletes it once processed.
+ */
+@Service
+@Slf4j
+public class ImageJobService {
+
+    public static final String PET_PROFILE = "PET_PROFILE";
+    public static final String VACCINE_BATCH = "VACCINE_BATCH";
+    public static final String USER_PROFILE = "USER_PROFILE";
+
+    private final S3Service s3Service;
+    private final PushNotificationService pushNotificationService;
+    private final ThreadPoolExecutor executor;
+    private final BoundedTtlCache<String, ImageJob> jobs;
+
+    @Value("${app.image.spool-dir:${java.io.tmpdir}}")
+    private String spoolDirectory;
+
+    public ImageJobService(S3Service s3Service,
+                           PushNotificationService pushNotificationService,
+                           @Value("${app.image.jobs.workers:0}") int workers,
+                           @Value("${app.image.jobs.queue-capacity:100}") int queueCapacity,
+                           @Value("${app.image.jobs.max-entries:10000}") int maxEntries,
+                           @Value("${app.image.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.s3Service = s3Service;
+        this.pushNotificationService = pushNotificationService;
+        this.jobs = new BoundedTtlCache<>(maxEntries, TimeUnit.MINUTES.toMillis(retentionMinutes));
+
+        // Image processing is CPU-bound: one worker per core unless configured otherwise
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> new Thread(runnable, "image-job-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        log.info("Image job pool: {} workers, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    /**
+     * Validates and spools an upload, then queues it for processing
+     *
+     * @param imageType PET_PROFILE, VACCINE_BATCH or USER_PROFILE
+     * @param file the image file
+     * @param entityId the pet or vaccination record ID (null for user profiles)
+     * @param userId the Firebase user ID of the uploader
+     * @param notifyToken FCM token to notify when the job finishes, or null
+     * @return the queued job
+     * @throws IOException if the file is not a valid image or cannot be spooled
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ImageJob submit(String imageType, MultipartFile file, Long entityId, String userId, String notifyToken)
+            throws IOException {
+        s3Service.validateImage(file);
+
+        SpooledMultipartFile spooled = SpooledMultipartFile.spool(file, Paths.get(spoolDirectory));
+        ImageJob job = new ImageJob(UUID.randomUUID().toString(), imageType, entityId, userId);
+        jobs.put(job.getJobId(), job);
+
+        try {
+            executor.execute(() -> process(job, spooled, notifyToken));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            spooled.close();
+            throw new RejectedExecutionException("Image processing queue is full, retry later", e);
+        }
+
+        log.info("Queued image job {} ({}) for user {}", job.getJobId(), imageType, userId);
+        return job;
+    }
+
+    /**
+     * Checks a direct upload's staged object, then queues it for processing
+     *
+     * @param imageType PET_PROFILE, VACCINE_BATCH or USER_PROFILE
+     * @param stagingKey the staging key the client uploaded to
+     * @param entityId the pet or vaccination record ID (null for user profiles)
+     * @param userId the Firebase user ID of the uploader
+     * @param notifyToken FCM token to notify when the job finishes, or null
+     * @return the queued job
+     * @throws IOException if the staged upload does not exist, is not the user's or is too large
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public ImageJob submitStaged(String imageType, String stagingKey, Long entityId, String userId,
+                                 String notifyToken) throws IOException {
+        s3Service.checkStagedUpload(stagingKey, userId);
+
+        ImageJob job = new ImageJob(UUID.randomUUID().toString(), imageType, entityId, userId, stagingKey);
+        jobs.put(job.getJobId(), job);
+
+        try {
+            executor.execute(() -> process(job, null, notifyToken));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            throw new RejectedExecutionException("Image processing queue is full, retry later", e);
+        }
+
+        log.info("Queued image job {} ({}) for staged upload {}", job.getJobId(), imageType, stagingKey);
+        return job;
+    }
+
+    /**
+     * Processes a direct upload's staged object within the calling thread (the in-request
+     * counterpart of submitStaged), then deletes it
+     *
+     * @param imageType PET_PROFILE, VACCINE_BATCH or USER_PROFILE
+     * @param stagingKey the staging key the client uploaded to
+     * @param entityId the pet or vaccination record ID (null for user profiles)
+     * @param userId the Firebase user ID of the uploader
+     * @return the uploaded renditions
+     * @throws IOException if the staged upload is not acceptable or processing fails
+     * @throws RejectedExecutionException if the image memory budget has no room
+     */
+    public S3Service.UploadedImage completeStaged(String imageType, String stagingKey, Long entityId, String userId)
+            throws IOException {
+        S3Service.UploadedImage uploaded;
+        try (SpooledMultipartFile file = s3Service.downloadStagedUpload(stagingKey, userId)) {
+            uploaded = upload(imageType, file, entityId, userId);
+        }
+        s3Service.deleteStagedUpload(stagingKey);
+        return uploaded;
+    }
+
+    /**
+     * Gets a job by ID
+     *
+     * @param jobId the job ID
+     * @return the job, or null if unknown or expired
+     */
+    public ImageJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Jobs waiting for a worker
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Runs a job on a worker. Jobs of direct uploads have no spooled file: the staged object is
+     * downloaded here, and deleted once its renditions are stored.
+     */
+    private void process(ImageJob job, SpooledMultipartFile spooled, String notifyToken) {
+        job.status = JobStatus.PROCESSING;
+
+        try (SpooledMultipartFile file = spooled != null
+                ? spooled
+                : s3Service.downloadStagedUpload(job.getStagingKey(), job.getUserId())) {
+            S3Service.UploadedImage uploaded = uploadWhenBudgetAllows(job, file);
+            if (job.getStagingKey() != null) {
+                s3Service.deleteStagedUpload(job.getStagingKey());
+            }
+
+            job.imageUrl = uploaded.getImageUrl();
+            job.thumbnailUrl = uploaded.getThumbnailUrl();
+            job.renditions = uploaded.getRenditionUrls();
+            job.format = uploaded.getFormat();
+            job.originalBytes = uploaded.getOriginalBytes();
+            job.storedBytes = uploaded.getStoredBytes();
+            job.deduplicated = uploaded.isDeduplicated();
+            job.completedAt = LocalDateTime.now();
+            job.status = JobStatus.COMPLETED;
+            log.info("Completed image job {}", job.getJobId());
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.completedAt = LocalDateTime.now();
+            job.status = JobStatus.FAILED;
+            log.error("Image job {} failed: {}", job.getJobId(), e.getMessage(), e);
+        }
+
+        if (notifyToken != null && !notifyToken.isBlank()) {
+            notifyUploader(job, notifyToken);
+        }
+    }
+
+    /**
+     * Uploads the job's image. Unlike in-request uploads, a job is not rejected when the image
+     * memory budget is exhausted: the worker keeps waiting for room.
+     */
+    private S3Service.UploadedImage uploadWhenBudgetAllows(ImageJob job, SpooledMultipartFile file) throws IOException {
+        while (true) {
+            try {
+                return upload(job.getImageType(), file, job.getEntityId(), job.getUserId());
+            } catch (RejectedExecutionException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.debug("Image job {} waiting for memory budget", job.getJobId());
+            }
+        }
+    }
+
+    private S3Service.UploadedImage upload(String imageType, SpooledMultipartFile file, Long entityId, String userId)
+            throws IOException {
+        return switch (imageType) {
+            case PET_PROFILE -> s3Service.uploadPetProfileImage(file, entityId, userId);
+            case VACCINE_BATCH -> s3Service.uploadVaccineBatchImage(file, entityId, userId);
+            case USER_PROFILE -> s3Service.uploadUserProfileImage(file, userId);
+            default -> throw new IllegalArgumentException("Unknown image type: " + imageType);
+        };
+    }
+
+    private void notifyUploader(ImageJob job, String notifyToken) {
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setTitle("AnyPet");
+        request.setMessage(job.getStatus() == JobStatus.COMPLETED
+                ? "Tu imagen ya está lista"
+                : "No se pudo procesar tu imagen");
+        request.setToken(notifyToken);
+
+        pushNotificationService.sendPushNotificationAsync(request)
+                .whenComplete((messageId, error) -> {
+                    if (error != null) {
+                        log.warn("Could not notify image job {} result: {}", job.getJobId(), error.getMessage());
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public enum JobStatus {
+        QUEUED,
+        PROCESSING,
+        COMPLETED,
+        FAILED
+    }
+
+    /**
+     * Inner class for the state of an image job. Updated by the worker, read by status requests.
+     */
+    public static class ImageJob {
+        private final String jobId;
+        private final String imageType;
+        private final Long entityId;
+        private final String userId;
+        private final String stagingKey;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile String imageUrl;
+        private volatile String thumbnailUrl;
+        private volatile Map<String, String> renditions;
+        private volatile String format;
+        private volatile Long originalBytes;
+        private volatile Long storedBytes;
+        private volatile Boolean deduplicated;
+        private volatile String error;
+        private volatile LocalDateTime completedAt;
+
+        public ImageJob(String jobId, String imageType, Long entityId, String userId) {
+            this(jobId, imageType, entityId, userId, null);
+        }
+
+        public ImageJob(String jobId, String imageType, Long entityId, String userId, String stagingKey) {
+            this.jobId = jobId;
+            this.imageType = imageType;
+            this.entityId = entityId;
+            this.userId = userId;
+            this.stagingKey = stagingKey;
+        }
+
+        // Getters
+        public String getJobId() { return jobId; }
+        public String getImageType() { return imageType; }
+        public Long getEntityId() { return entityId; }
+        public String getUserId() { return userId; }
+        public String getStagingKey() { return stagingKey; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public JobStatus getStatus() { return status; }
+        public String getImageUrl() { return imageUrl; }
+        public String getThumbnailUrl() { return thumbnailUrl; }
+        public Map<String, String> getRenditions() { return renditions; }
+        public String getFormat() { return format; }
+        public Long getOriginalBytes() { return originalBytes; }
+        public Long getStoredBytes() { return storedBytes; }
+        public Boolean getDeduplicated() { return deduplicated; }
+        public String getError() { return error; }
+        public LocalDateTime getCompletedAt() { return completedAt; }
+    }
+}
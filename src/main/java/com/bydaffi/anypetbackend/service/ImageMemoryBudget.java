@@ -0,0 +1,133 @@
+package com.bydaffi.anypetbackend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heap budget shared by all image processing, so a burst of large uploads cannot exhaust the heap
+ * (and take reminder dispatch down with it).
+ *
+ * Before decoding, the pipeline reserves the bytes the decode and resize will need, estimated from
+ * the image header. A reservation waits up to app.image.memory-budget.acquire-timeout-ms for room
+ * and is then rejected with RejectedExecutionException. The budget is app.image.memory-budget.mb,
+ * or a quarter of the maximum heap when that is 0. It is counted in KiB so a Semaphore can hold it.
+ */
+@Service
+@Slf4j
+public class ImageMemoryBudget {
+
+    private static final long KIB = 1024;
+
+    private final Semaphore available;
+    private final int budgetKib;
+    private final long acquireTimeoutMillis;
+    private final AtomicInteger activeReservations = new AtomicInteger();
+    private final LongAdder timeouts = new LongAdder();
+
+    public ImageMemoryBudget(@Value("${app.image.memory-budget.mb:0}") long budgetMb,
+                             @Value("${app.image.memory-budget.acquire-timeout-ms:2000}") long acquireTimeoutMillis) {
+        long budgetBytes = budgetMb > 0 ? budgetMb * KIB * KIB : Runtime.getRuntime().maxMemory() / 4;
+        this.budgetKib = (int) Math.min(budgetBytes / KIB, Integer.MAX_VALUE);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.available = new Semaphore(budgetKib, true);
+
+        log.info("Image memory budget: {} MB", budgetKib / KIB);
+    }
+
+    /**
+     * Reserves heap for one image, waiting for room if needed. An image larger than the whole
+     * budget reserves all of it, so it runs alone rather than never.
+     *
+     * @param bytes estimated heap the processing will allocate
+     * @return the reservation, to close once the images are no longer referenced
+     * @throws RejectedExecutionException if there was no room within the acquire timeout
+     */
+    public Reservation reserve(long bytes) {
+        int kib = (int) Math.min(Math.max((bytes + KIB - 1) / KIB, 1), budgetKib);
+
+        try {
+            if (!available.tryAcquire(kib, acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new RejectedExecutionException("Image processing is at its memory budget, retry later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for image memory budget", e);
+        }
+
+        activeReservations.incrementAndGet();
+        return new Reservation(kib);
+    }
+
+    /**
+     * Current use of the budget
+     */
+    public BudgetStatus getStatus() {
+        long budgetBytes = budgetKib * KIB;
+        return new BudgetStatus(budgetBytes, budgetBytes - available.availablePermits() * KIB,
+                activeReservations.get(), available.getQueueLength(), timeouts.sum());
+    }
+
+    /**
+     * Heap reserved for one image; closing it returns the heap to the budget
+     */
+    public class Reservation implements AutoCloseable {
+        private final int kib;
+        private boolean released;
+
+        private Reservation(int kib) {
+            this.kib = kib;
+        }
+
+        public long getBytes() {
+            return kib * KIB;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                activeReservations.decrementAndGet();
+                available.release(kib);
+            }
+        }
+    }
+
+    /**
+     * Snapshot of the budget
+     */
+    public static class BudgetStatus {
+        private final long budgetBytes;
+        private final long usedBytes;
+        private final int activeReservations;
+        private final int waiting;
+        private final long timeouts;
+
+        public BudgetStatus(long budgetBytes, long usedBytes, int activeReservations, int waiting, long timeouts) {
+            this.budgetBytes = budgetBytes;
+            this.usedBytes = usedBytes;
+            this.activeReservations = activeReservations;
+            this.waiting = waiting;
+            this.timeouts = timeouts;
+        }
+
+        // Getters
+        public long getBudgetBytes() { return budgetBytes; }
+        public long getUsedBytes() { return usedBytes; }
+        public double getUsedPercent() { return budgetBytes == 0 ? 0 : 100.0 * usedBytes / budgetBytes; }
+        public int getActiveReservations() { return activeReservations; }
+        public int getWaiting() { return waiting; }
+
+        /**
+         * Reservations that gave up waiting: in-request uploads answered 503, or jobs that retried
+         */
+        public long getTimeouts() { return timeouts; }
+    }
+}
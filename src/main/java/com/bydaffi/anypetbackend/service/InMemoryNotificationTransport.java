@@ -0,0 +1,122 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notification transport that records notifications in memory instead of sending them, for tests,
+ * simulations and local development without FCM credentials. Every send succeeds immediately.
+ * Only the most recent notifications are kept; counters cover all of them.
+ */
+@Component
+@ConditionalOnProperty(name = "app.notifications.transport", havingValue = "memory")
+public class InMemoryNotificationTransport implements NotificationTransport {
+
+    private final int maxRecorded;
+    private final Deque<RecordedNotification> recent = new ArrayDeque<>();
+    private final Map<String, Set<String>> subscriptions = new HashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    public InMemoryNotificationTransport(@Value("${app.notifications.memory.max-recorded:10000}") int maxRecorded) {
+        this.maxRecorded = maxRecorded;
+    }
+
+    @Override
+    public CompletableFuture<String> send(PushNotificationRequest request) {
+        return CompletableFuture.completedFuture(record(request, request.getToken()));
+    }
+
+    @Override
+    public CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request, List<String> tokens) {
+        List<SendResult> results = new ArrayList<>(tokens.size());
+        for (String token : tokens) {
+            results.add(SendResult.success(token, record(request, token)));
+        }
+        return CompletableFuture.completedFuture(new MulticastResult(results));
+    }
+
+    @Override
+    public CompletableFuture<String> sendToTopic(PushNotificationRequest request, String topic) {
+        return CompletableFuture.completedFuture(record(request, "/topics/" + topic));
+    }
+
+    @Override
+    public synchronized CompletableFuture<TopicResult> subscribeToTopic(List<String> tokens, String topic) {
+        subscriptions.computeIfAbsent(topic, key -> new LinkedHashSet<>()).addAll(tokens);
+        return CompletableFuture.completedFuture(new TopicResult(tokens.size(), List.of()));
+    }
+
+    @Override
+    public synchronized CompletableFuture<TopicResult> unsubscribeFromTopic(List<String> tokens, String topic) {
+        Set<String> subscribers = subscriptions.get(topic);
+        if (subscribers != null) {
+            tokens.forEach(subscribers::remove);
+        }
+        return CompletableFuture.completedFuture(new TopicResult(tokens.size(), List.of()));
+    }
+
+    private String record(PushNotificationRequest request, String target) {
+        String messageId = "memory-" + messageIds.incrementAndGet();
+        sent.incrementAndGet();
+
+        if (maxRecorded > 0) {
+            synchronized (this) {
+                if (recent.size() == maxRecorded) {
+                    recent.removeFirst();
+                }
+                recent.addLast(new RecordedNotification(messageId, target, request.getTitle(), request.getMessage(),
+                        request.getPetName(), Instant.now()));
+            }
+        }
+        return messageId;
+    }
+
+    /**
+     * Total notifications delivered (one per token, one per topic message)
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * Most recent notifications, oldest first
+     */
+    public synchronized List<RecordedNotification> getRecent() {
+        return new ArrayList<>(recent);
+    }
+
+    /**
+     * Tokens currently subscribed to a topic
+     */
+    public synchronized Set<String> getSubscribers(String topic) {
+        return Set.copyOf(subscriptions.getOrDefault(topic, Set.of()));
+    }
+
+    public synchronized void clear() {
+        recent.clear();
+        subscriptions.clear();
+        sent.set(0);
+    }
+
+    /**
+     * A notification as it would have been sent
+     */
+    public record RecordedNotification(String messageId, String target, String title, String message,
+                                       String petName, Instant sentAt) {
+    }
+}
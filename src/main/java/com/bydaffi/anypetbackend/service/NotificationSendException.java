@@ -0,0 +1,26 @@
+package com.bydaffi.anypetbackend.service;
+
+/**
+ * A notification transport call failed as a whole.
+ * The error code follows FCM's MessagingErrorCode names (e.g. QUOTA_EXCEEDED, UNAVAILABLE).
+ */
+public class NotificationSendException extends Exception {
+
+    public static final String QUOTA_EXCEEDED = "QUOTA_EXCEEDED";
+
+    private final String errorCode;
+
+    public NotificationSendException(String errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    public NotificationSendException(String errorCode, String message, Throwable cause) {
+        super(message, cause);
+        this.errorCode = errorCode;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,274 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends one notification to an audience of any size streamed as NDJSON.
+ *
+ * Input: the first line is the notification ({"petName", "message", "title"}), every following
+ * line is a token, either as a JSON string or as {"token": "..."}. Tokens are read one at a time
+ * and sent in multicasts of at most 500 (the FCM limit), with a bounded number of chunks in flight.
+ * Output: one NDJSON line per chunk as soon as it completes, then a summary line.
+ * Only the chunks in flight are held in memory, whatever the audience size.
+ *
+ * Chunk size and parallelism are clamped at startup so the chunks in flight always fit in the
+ * multicast share of the PushNotificationService in-flight window, which leaves room for single
+ * sends such as reminders. That share is also used by other streams, so a chunk rejected because
+ * it is momentarily full is retried with backoff on the streaming thread.
+ */
+@Service
+@Slf4j
+public class NotificationStreamService {
+
+    /**
+     * Maximum tokens per sendEachForMulticast call
+     */
+    public static final int MULTICAST_LIMIT = 500;
+
+    /**
+     * Backoff between attempts of a chunk rejected by a full in-flight window
+     */
+    private static final long MIN_RETRY_DELAY_MILLIS = 50;
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+
+    private final PushNotificationService pushNotificationService;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int parallelism;
+    private final long retryTimeoutMillis;
+
+    public NotificationStreamService(PushNotificationService pushNotificationService,
+                                     ObjectMapper objectMapper,
+                                     @Value("${app.notifications.stream.parallelism:2}") int parallelism,
+                                     @Value("${app.notifications.stream.retry-timeout-ms:30000}") long retryTimeoutMillis) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("app.notifications.stream.parallelism must be positive");
+        }
+        this.pushNotificationService = pushNotificationService;
+        this.objectMapper = objectMapper;
+        this.retryTimeoutMillis = retryTimeoutMillis;
+
+        int maxInFlight = pushNotificationService.getMaxMulticastInFlight();
+        this.chunkSize = Math.min(MULTICAST_LIMIT, maxInFlight);
+        this.parallelism = Math.min(parallelism, Math.max(1, maxInFlight / chunkSize));
+        if (this.parallelism < parallelism || chunkSize < MULTICAST_LIMIT) {
+            log.warn("Streamed notifications use {} chunks of {} tokens in flight instead of {} of {}, to fit "
+                            + "app.notifications.max-in-flight minus app.notifications.reserved-for-single-sends ({})",
+                    this.parallelism, chunkSize, parallelism, MULTICAST_LIMIT, maxInFlight);
+        }
+    }
+
+    /**
+     * Reads the notification and tokens from the input and writes per-chunk results to the output
+     *
+     * @param input NDJSON request body
+     * @param output NDJSON response body
+     */
+    public void stream(InputStream input, OutputStream output) throws IOException {
+        Semaphore chunksInFlight = new Semaphore(parallelism);
+        AtomicLong successCount = new AtomicLong();
+        AtomicLong failureCount = new AtomicLong();
+        long totalCount = 0;
+        long invalidLines = 0;
+        int chunkIndex = 0;
+
+        try (MappingIterator<JsonNode> lines = objectMapper.readerFor(JsonNode.class).readValues(input)) {
+            if (!lines.hasNextValue()) {
+                writeError(output, "Notification line is required");
+                return;
+            }
+
+            PushNotificationRequest request = toRequest(lines.nextValue());
+            if (request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+                writeError(output, "Message is required");
+                return;
+            }
+
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (lines.hasNextValue()) {
+                String token = toToken(lines.nextValue());
+                if (token == null) {
+                    invalidLines++;
+                    continue;
+                }
+
+                chunk.add(token);
+                totalCount++;
+                if (chunk.size() == chunkSize) {
+                    dispatch(request, chunk, chunkIndex++, chunksInFlight, successCount, failureCount, output);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                dispatch(request, chunk, chunkIndex++, chunksInFlight, successCount, failureCount, output);
+            }
+        } finally {
+            // Wait for the chunks in flight, so no result is written after the response completes
+            chunksInFlight.acquireUninterruptibly(parallelism);
+        }
+
+        ObjectNode summary = objectMapper.createObjectNode();
+        summary.put("done", true);
+        summary.put("chunks", chunkIndex);
+        summary.put("totalCount", totalCount);
+        summary.put("successCount", successCount.get());
+        summary.put("failureCount", failureCount.get());
+        summary.put("invalidLines", invalidLines);
+        writeLine(output, summary);
+
+        log.info("Streamed notification to {} tokens in {} chunks. Success: {}, Failure: {}",
+                totalCount, chunkIndex, successCount.get(), failureCount.get());
+    }
+
+    /**
+     * Sends one chunk once fewer than parallelism chunks are in flight; the result line is
+     * written from the completion callback
+     */
+    private void dispatch(PushNotificationRequest request, List<String> tokens, int chunkIndex, Semaphore chunksInFlight,
+                          AtomicLong successCount, AtomicLong failureCount, OutputStream output) {
+        chunksInFlight.acquireUninterruptibly();
+
+        sendWithRetry(request, tokens, chunkIndex)
+                .whenComplete((multicastResult, error) -> {
+                    try {
+                        ObjectNode line = objectMapper.createObjectNode();
+                        line.put("chunk", chunkIndex);
+                        line.put("size", tokens.size());
+
+                        if (error == null) {
+                            successCount.addAndGet(multicastResult.getSuccessCount());
+                            failureCount.addAndGet(multicastResult.getFailureCount());
+                            line.put("successCount", multicastResult.getSuccessCount());
+                            line.put("failureCount", multicastResult.getFailureCount());
+                            line.set("failures", failures(multicastResult));
+                        } else {
+                            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                    ? error.getCause() : error;
+                            failureCount.addAndGet(tokens.size());
+                            line.put("successCount", 0);
+                            line.put("failureCount", tokens.size());
+                            line.put("error", cause.getMessage());
+                            if (cause instanceof NotificationSendException sendError) {
+                                line.put("errorCode", sendError.getErrorCode());
+                            }
+                            log.warn("Notification chunk {} failed: {}", chunkIndex, cause.getMessage());
+                        }
+
+                        writeLine(output, line);
+                    } catch (IOException e) {
+                        // The caller went away; remaining chunks are still sent
+                        log.warn("Could not write result of notification chunk {}: {}", chunkIndex, e.getMessage());
+                    } finally {
+                        chunksInFlight.release();
+                    }
+                });
+    }
+
+    /**
+     * Sends a chunk, retrying with backoff while the in-flight window is full (other sends hold it),
+     * for up to retry-timeout-ms. Blocks only the streaming thread, which already waits for chunks.
+     */
+    private CompletableFuture<NotificationTransport.MulticastResult> sendWithRetry(
+            PushNotificationRequest request, List<String> tokens, int chunkIndex) {
+        long deadline = System.currentTimeMillis() + retryTimeoutMillis;
+        long delay = MIN_RETRY_DELAY_MILLIS;
+
+        while (true) {
+            CompletableFuture<NotificationTransport.MulticastResult> send =
+                    pushNotificationService.sendPushNotificationToMultipleDevicesAsync(request, tokens);
+            // A full window rejects synchronously, so the future is already failed
+            if (!isRejected(send) || System.currentTimeMillis() + delay > deadline) {
+                return send;
+            }
+
+            log.debug("Notification chunk {} rejected by a full in-flight window, retrying in {} ms", chunkIndex, delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return send;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private static boolean isRejected(CompletableFuture<?> send) {
+        if (!send.isCompletedExceptionally()) {
+            return false;
+        }
+        try {
+            send.join();
+            return false;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RejectedExecutionException;
+        } catch (CancellationException e) {
+            return false;
+        }
+    }
+
+    private ArrayNode failures(NotificationTransport.MulticastResult multicastResult) {
+        ArrayNode failures = objectMapper.createArrayNode();
+        for (NotificationTransport.SendResult result : multicastResult.getResults()) {
+            if (!result.isSuccessful()) {
+                ObjectNode failure = failures.addObject();
+                failure.put("token", result.getToken());
+                failure.put("errorCode", result.getErrorCode());
+            }
+        }
+        return failures;
+    }
+
+    private PushNotificationRequest toRequest(JsonNode node) {
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setPetName(text(node, "petName"));
+        request.setMessage(text(node, "message"));
+        request.setTitle(text(node, "title"));
+        return request;
+    }
+
+    private String toToken(JsonNode node) {
+        String token = node.isTextual() ? node.asText() : text(node, "token");
+        return token != null && !token.trim().isEmpty() ? token.trim() : null;
+    }
+
+    private String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value != null && value.isTextual() ? value.asText() : null;
+    }
+
+    private void writeError(OutputStream output, String message) throws IOException {
+        ObjectNode line = objectMapper.createObjectNode();
+        line.put("success", false);
+        line.put("message", message);
+        writeLine(output, line);
+    }
+
+    private void writeLine(OutputStream output, JsonNode line) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(line);
+        synchronized (output) {
+            output.write(bytes);
+            output.write('\n');
+            output.flush();
+        }
+    }
+}
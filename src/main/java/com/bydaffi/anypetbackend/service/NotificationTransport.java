@@ -0,0 +1,121 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers push notifications. PushNotificationService owns validation, backpressure and batching,
+ * and hands each FCM call to the transport selected with app.notifications.transport:
+ * - fcm (default): FcmNotificationTransport, Firebase Cloud Messaging
+ * - memory: InMemoryNotificationTransport, records notifications without sending them
+ * - simulated: SimulatedNotificationTransport, fake FCM with latency, errors and quota bursts
+ *
+ * Failed calls complete exceptionally with NotificationSendException. Results use our own types,
+ * since the Firebase result classes cannot be created outside the SDK.
+ */
+public interface NotificationTransport {
+
+    /**
+     * Sends a notification to the device of request.getToken()
+     *
+     * @return Future completed with the message ID
+     */
+    CompletableFuture<String> send(PushNotificationRequest request);
+
+    /**
+     * Sends the same notification to up to 500 devices
+     *
+     * @return Future completed with one result per token, in token order
+     */
+    CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request, List<String> tokens);
+
+    /**
+     * Sends a notification to every device subscribed to a topic
+     *
+     * @return Future completed with the message ID
+     */
+    CompletableFuture<String> sendToTopic(PushNotificationRequest request, String topic);
+
+    /**
+     * Subscribes up to 1000 devices to a topic
+     */
+    CompletableFuture<TopicResult> subscribeToTopic(List<String> tokens, String topic);
+
+    /**
+     * Unsubscribes up to 1000 devices from a topic
+     */
+    CompletableFuture<TopicResult> unsubscribeFromTopic(List<String> tokens, String topic);
+
+    /**
+     * Result of sending to one token of a multicast
+     */
+    class SendResult {
+        private final String token;
+        private final String messageId;
+        private final String errorCode;
+
+        public SendResult(String token, String messageId, String errorCode) {
+            this.token = token;
+            this.messageId = messageId;
+            this.errorCode = errorCode;
+        }
+
+        public static SendResult success(String token, String messageId) {
+            return new SendResult(token, messageId, null);
+        }
+
+        public static SendResult failure(String token, String errorCode) {
+            return new SendResult(token, null, errorCode);
+        }
+
+        // Getters
+        public String getToken() { return token; }
+        public String getMessageId() { return messageId; }
+        public String getErrorCode() { return errorCode; }
+        public boolean isSuccessful() { return errorCode == null; }
+    }
+
+    /**
+     * Results of a multicast, in token order
+     */
+    class MulticastResult {
+        private final List<SendResult> results;
+        private final int successCount;
+
+        public MulticastResult(List<SendResult> results) {
+            this.results = Collections.unmodifiableList(results);
+            this.successCount = (int) results.stream().filter(SendResult::isSuccessful).count();
+        }
+
+        // Getters
+        public List<SendResult> getResults() { return results; }
+        public int getSuccessCount() { return successCount; }
+        public int getFailureCount() { return results.size() - successCount; }
+    }
+
+    /**
+     * Result of a topic subscription change; failures refer to token positions in the call
+     */
+    class TopicResult {
+        private final int successCount;
+        private final List<TopicFailure> failures;
+
+        public TopicResult(int successCount, List<TopicFailure> failures) {
+            this.successCount = successCount;
+            this.failures = Collections.unmodifiableList(failures);
+        }
+
+        // Getters
+        public int getSuccessCount() { return successCount; }
+        public List<TopicFailure> getFailures() { return failures; }
+    }
+
+    /**
+     * Token of a topic subscription call that failed, by position
+     */
+    record TopicFailure(int index, String reason) {
+    }
+}
@@ -0,0 +1,117 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.repository.PetRepository;
+import com.bydaffi.anypetbackend.util.BoundedTtlCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves pet names for reminder notifications.
+ * Names are read from the Pet entities in bulk (one query per batch of pet IDs) and kept in a
+ * bounded TTL cache, so enriching a batch of due reminders costs at most one lookup.
+ * Pets that are not found are cached for a much shorter time, so a pet created after its
+ * reminder (or an ID that is not a pet ID) does not hide the name for the full TTL.
+ */
+@Service
+@Slf4j
+public class PetNameResolver {
+
+    /**
+     * Cached marker for pets that do not exist or have no name, so they are not looked up again
+     */
+    private static final String NO_NAME = "";
+
+    private final PetRepository petRepository;
+    private final BoundedTtlCache<String, String> cache;
+    private final long missTtlMillis;
+
+    public PetNameResolver(PetRepository petRepository,
+                           @Value("${app.pets.name-cache.max-entries:10000}") int maxEntries,
+                           @Value("${app.pets.name-cache.ttl-minutes:30}") long ttlMinutes,
+                           @Value("${app.pets.name-cache.miss-ttl-seconds:60}") long missTtlSeconds) {
+        this.petRepository = petRepository;
+        this.cache = new BoundedTtlCache<>(maxEntries, ttlMinutes * 60_000);
+        this.missTtlMillis = missTtlSeconds * 1000;
+    }
+
+    /**
+     * Resolves the names of the given pets
+     *
+     * @param petIds Pet IDs as stored on the reminders; nulls and blanks are ignored
+     * @return Map of pet ID to name, containing only the pets that have a name
+     */
+    public Map<String, String> resolveNames(Collection<String> petIds) {
+        Set<String> distinctIds = new LinkedHashSet<>();
+        for (String petId : petIds) {
+            if (petId != null && !petId.trim().isEmpty()) {
+                distinctIds.add(petId);
+            }
+        }
+        if (distinctIds.isEmpty()) {
+            // Not Map.of(): callers look up reminders without pet (null key)
+            return new HashMap<>();
+        }
+
+        Map<String, String> names = new HashMap<>(cache.getAll(distinctIds));
+        distinctIds.removeAll(names.keySet());
+
+        if (!distinctIds.isEmpty()) {
+            try {
+                Map<String, String> loaded = loadNames(distinctIds);
+                cache.putAll(loaded);
+                names.putAll(loaded);
+                for (String petId : distinctIds) {
+                    if (!loaded.containsKey(petId)) {
+                        cache.put(petId, NO_NAME, missTtlMillis);
+                    }
+                }
+            } catch (Exception e) {
+                // Notifications are still sent without the pet name if the lookup fails
+                log.warn("Could not resolve names for {} pets: {}", distinctIds.size(), e.getMessage());
+            }
+        }
+
+        names.values().removeIf(NO_NAME::equals);
+        return names;
+    }
+
+    /**
+     * Loads pet names from the pet table in a single query, reading only the ID and name columns
+     *
+     * @param petIds Pet IDs not present in the cache; IDs that are not numeric match no pet
+     * @return Map of pet ID to name for the pets that exist and have a name
+     */
+    protected Map<String, String> loadNames(Set<String> petIds) {
+        // Keyed by the numeric ID, valued by the ID as the reminders store it
+        Map<Long, String> ids = new HashMap<>();
+        for (String petId : petIds) {
+            try {
+                ids.put(Long.valueOf(petId.trim()), petId);
+            } catch (NumberFormatException e) {
+                log.debug("Ignoring pet ID that is not numeric: {}", petId);
+            }
+        }
+
+        Map<String, String> names = new HashMap<>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+        for (PetRepository.PetName pet : petRepository.findNamesByIdIn(ids.keySet())) {
+            String petId = ids.get(pet.getId());
+            String name = pet.getName();
+            if (petId != null && name != null && !name.trim().isEmpty()) {
+                names.put(petId, name);
+            }
+        }
+
+        log.debug("Loaded {} pet names with one bulk lookup of {} IDs", names.size(), ids.size());
+        return names;
+    }
+}
@@ -0,0 +1,148 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.AndroidNotification;
+import com.google.firebase.messaging.ApnsConfig;
+import com.google.firebase.messaging.Aps;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MulticastMessage;
+import com.google.firebase.messaging.Notification;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds FCM messages from push notification requests.
+ *
+ * The Android and APNs configs are identical for every message with the same sound and colour,
+ * so they are built once per template and shared; Firebase config objects are immutable after
+ * build(). Only the per-recipient parts (token, notification body and data payload) are created
+ * for each message.
+ */
+@Component
+public class PushMessageFactory {
+
+    public static final String DEFAULT_TITLE = "AnyPet";
+    public static final String DEFAULT_SOUND = "default";
+    public static final String DEFAULT_COLOR = "#FF6B6B";
+
+    private final Map<TemplateKey, PlatformTemplate> templates = new ConcurrentHashMap<>();
+    private final PlatformTemplate defaultTemplate = template(DEFAULT_SOUND, DEFAULT_COLOR);
+
+    /**
+     * Builds a message for a single device
+     *
+     * @param request The push notification request with token, message and optional pet name
+     * @return Message ready to be sent
+     */
+    public Message buildMessage(PushNotificationRequest request) {
+        return newMessageBuilder(request)
+                .setToken(request.getToken())
+                .build();
+    }
+
+    /**
+     * Builds a message for all devices subscribed to a topic
+     *
+     * @param request The push notification request; its token is ignored
+     * @param topic Topic name without the "/topics/" prefix
+     * @return Message ready to be sent
+     */
+    public Message buildTopicMessage(PushNotificationRequest request, String topic) {
+        return newMessageBuilder(request)
+                .setTopic(topic)
+                .build();
+    }
+
+    private Message.Builder newMessageBuilder(PushNotificationRequest request) {
+        Message.Builder builder = Message.builder()
+                .setNotification(buildNotification(request))
+                .setAndroidConfig(defaultTemplate.androidConfig())
+                .setApnsConfig(defaultTemplate.apnsConfig());
+        if (request.getPetName() != null) {
+            builder.putData("petName", request.getPetName());
+        }
+        return builder
+                .putData("message", request.getMessage())
+                .putData("timestamp", String.valueOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Builds a multicast message sharing one notification across devices
+     *
+     * @param request The push notification request
+     * @param tokens FCM device tokens
+     * @return MulticastMessage ready to be sent
+     */
+    public MulticastMessage buildMulticastMessage(PushNotificationRequest request, List<String> tokens) {
+        MulticastMessage.Builder builder = MulticastMessage.builder()
+                .addAllTokens(tokens)
+                .setNotification(buildNotification(request))
+                .setAndroidConfig(defaultTemplate.androidConfig())
+                .setApnsConfig(defaultTemplate.apnsConfig());
+        if (request.getPetName() != null) {
+            builder.putData("petName", request.getPetName());
+        }
+        return builder
+                .putData("message", request.getMessage())
+                .putData("timestamp", String.valueOf(System.currentTimeMillis()))
+                .build();
+    }
+
+    /**
+     * Gets the shared platform configs for a sound and notification colour, building them on first use
+     *
+     * @param sound Sound played on both platforms
+     * @param color Android notification colour in #RRGGBB format
+     * @return Shared immutable template
+     */
+    public PlatformTemplate template(String sound, String color) {
+        return templates.computeIfAbsent(new TemplateKey(sound, color), key -> new PlatformTemplate(
+                AndroidConfig.builder()
+                        .setPriority(AndroidConfig.Priority.HIGH)
+                        .setNotification(AndroidNotification.builder()
+                                .setSound(key.sound())
+                                .setColor(key.color())
+                                .build())
+                        .build(),
+                ApnsConfig.builder()
+                        .setAps(Aps.builder()
+                                .setSound(key.sound())
+                                .setBadge(1)
+                                .build())
+                        .build()));
+    }
+
+    private Notification buildNotification(PushNotificationRequest request) {
+        return Notification.builder()
+                .setTitle(request.getTitle() != null ? request.getTitle() : DEFAULT_TITLE)
+                .setBody(buildBody(request.getPetName(), request.getMessage()))
+                .build();
+    }
+
+    /**
+     * Builds the complete message by combining pet name and message.
+     *
+     * @param petName Optional pet name
+     * @param message The message content
+     * @return The complete formatted message
+     */
+    private String buildBody(String petName, String message) {
+        if (petName != null && !petName.trim().isEmpty()) {
+            return petName + " " + message;
+        }
+        return message;
+    }
+
+    private record TemplateKey(String sound, String color) {
+    }
+
+    /**
+     * Android and APNs configs shared by all messages of a template
+     */
+    public record PlatformTemplate(AndroidConfig androidConfig, ApnsConfig apnsConfig) {
+    }
+}
@@ -1,71 +1,77 @@
 package com.bydaffi.anypetbackend.service;
 
 import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
-import com.google.firebase.messaging.*;
+import com.bydaffi.anypetbackend.util.NotificationTopics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
 
 /**
  * Service for sending push notifications using Firebase Cloud Messaging (FCM).
+ * The FCM calls themselves go through the configured NotificationTransport.
+ *
+ * The async variants do not hold a thread while FCM responds. The number of messages in flight
+ * is bounded by app.notifications.max-in-flight; a send that does not fit in the window is
+ * rejected at once (RejectedExecutionException) instead of blocking the caller's thread.
+ * Multicast sends (streamed campaigns) may only use the window minus
+ * app.notifications.reserved-for-single-sends, so single sends such as reminders still get
+ * through while a campaign fills its share.
+ *
+ * Broadcasts to large audiences go through FCM topics (see NotificationTopics): one topic message
+ * reaches every subscribed device, instead of one message per token.
+ *
+ * The outcome and latency of every send are recorded in DeliveryAnalyticsService.
  */
 @Service
 @Slf4j
 public class PushNotificationService {
 
+    /**
+     * Maximum tokens per subscribeToTopic / unsubscribeFromTopic call
+     */
+    public static final int TOPIC_MANAGEMENT_LIMIT = 1000;
+
+    private final NotificationTransport transport;
+    private final DeliveryAnalyticsService deliveryAnalytics;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final Semaphore multicastInFlight;
+    private final int maxMulticastInFlight;
+
+    public PushNotificationService(NotificationTransport transport,
+                                   DeliveryAnalyticsService deliveryAnalytics,
+                                   @Value("${app.notifications.max-in-flight:1000}") int maxInFlight,
+                                   @Value("${app.notifications.reserved-for-single-sends:500}") int reservedForSingleSends) {
+        this.transport = transport;
+        this.deliveryAnalytics = deliveryAnalytics;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxMulticastInFlight = Math.max(1, maxInFlight - Math.max(reservedForSingleSends, 0));
+        this.multicastInFlight = new Semaphore(maxMulticastInFlight);
+        if (reservedForSingleSends >= maxInFlight) {
+            log.warn("app.notifications.reserved-for-single-sends={} leaves no room for multicasts in "
+                    + "app.notifications.max-in-flight={}; allowing 1", reservedForSingleSends, maxInFlight);
+        }
+    }
+
     /**
      * Sends a push notification to a specific device.
      *
      * @param request The push notification request containing message, token, and optional pet name
      * @return The message ID if successful
-     * @throws FirebaseMessagingException if sending fails
-     */
-    public String sendPushNotification(PushNotificationRequest request) throws FirebaseMessagingException {
-        // Build the notification message
-        String fullMessage = buildMessage(request.getPetName(), request.getMessage());
-        String title = request.getTitle() != null ? request.getTitle() : "AnyPet";
-
-        // Create notification
-        Notification notification = Notification.builder()
-                .setTitle(title)
-                .setBody(fullMessage)
-                .build();
-
-        // Add custom data payload
-        Map<String, String> data = new HashMap<>();
-        if (request.getPetName() != null) {
-            data.put("petName", request.getPetName());
-        }
-        data.put("message", request.getMessage());
-        data.put("timestamp", String.valueOf(System.currentTimeMillis()));
-
-        // Build the message
-        Message message = Message.builder()
-                .setToken(request.getToken())
-                .setNotification(notification)
-                .putAllData(data)
-                .setAndroidConfig(AndroidConfig.builder()
-                        .setPriority(AndroidConfig.Priority.HIGH)
-                        .setNotification(AndroidNotification.builder()
-                                .setSound("default")
-                                .setColor("#FF6B6B")
-                                .build())
-                        .build())
-                .setApnsConfig(ApnsConfig.builder()
-                        .setAps(Aps.builder()
-                                .setSound("default")
-                                .setBadge(1)
-                                .build())
-                        .build())
-                .build();
-
-        // Send the message
-        String response = FirebaseMessaging.getInstance().send(message);
-        log.info("Successfully sent push notification. Message ID: {}", response);
-
-        return response;
+     * @throws NotificationSendException if sending fails
+     */
+    public String sendPushNotification(PushNotificationRequest request) throws NotificationSendException {
+        return await(sendPushNotificationAsync(request));
     }
 
     /**
@@ -73,69 +79,289 @@ public class PushNotificationService {
      *
      * @param request The push notification request
      * @param tokens List of FCM device tokens
-     * @return BatchResponse containing results for each token
-     * @throws FirebaseMessagingException if sending fails
+     * @return MulticastResult containing results for each token
+     * @throws NotificationSendException if sending fails
      */
-    public BatchResponse sendPushNotificationToMultipleDevices(
+    public NotificationTransport.MulticastResult sendPushNotificationToMultipleDevices(
             PushNotificationRequest request,
-            java.util.List<String> tokens) throws FirebaseMessagingException {
+            java.util.List<String> tokens) throws NotificationSendException {
+        return await(sendPushNotificationToMultipleDevicesAsync(request, tokens));
+    }
 
-        String fullMessage = buildMessage(request.getPetName(), request.getMessage());
-        String title = request.getTitle() != null ? request.getTitle() : "AnyPet";
+    /**
+     * Sends a push notification to a specific device without blocking on the FCM response.
+     *
+     * @param request The push notification request containing message, token, and optional pet name
+     * @return Future completed with the message ID, or exceptionally with NotificationSendException,
+     *         or RejectedExecutionException if the in-flight window is full
+     */
+    public CompletableFuture<String> sendPushNotificationAsync(PushNotificationRequest request) {
+        return sendPushNotificationAsync(request, null);
+    }
 
-        // Create notification
-        Notification notification = Notification.builder()
-                .setTitle(title)
-                .setBody(fullMessage)
-                .build();
+    /**
+     * Sends a push notification triggered by a reminder, without blocking on the FCM response.
+     *
+     * @param request The push notification request
+     * @param reminderId Reminder the notification belongs to, recorded with its outcome
+     * @return Future completed with the message ID
+     */
+    public CompletableFuture<String> sendPushNotificationAsync(PushNotificationRequest request, String reminderId) {
+        return withinWindow(1, false, () -> {
+                    long start = System.nanoTime();
+                    return transport.send(request).whenComplete((messageId, error) ->
+                            deliveryAnalytics.record(reminderId, elapsedMillis(start), errorCode(error)));
+                })
+                .whenComplete((messageId, error) -> {
+                    if (error == null) {
+                        log.info("Successfully sent push notification. Message ID: {}", messageId);
+                    }
+                });
+    }
 
-        // Add custom data payload
-        Map<String, String> data = new HashMap<>();
-        if (request.getPetName() != null) {
-            data.put("petName", request.getPetName());
-        }
-        data.put("message", request.getMessage());
-        data.put("timestamp", String.valueOf(System.currentTimeMillis()));
-
-        // Build multicast message
-        MulticastMessage message = MulticastMessage.builder()
-                .addAllTokens(tokens)
-                .setNotification(notification)
-                .putAllData(data)
-                .setAndroidConfig(AndroidConfig.builder()
-                        .setPriority(AndroidConfig.Priority.HIGH)
-                        .setNotification(AndroidNotification.builder()
-                                .setSound("default")
-                                .setColor("#FF6B6B")
-                                .build())
-                        .build())
-                .setApnsConfig(ApnsConfig.builder()
-                        .setAps(Aps.builder()
-                                .setSound("default")
-                                .setBadge(1)
-                                .build())
-                        .build())
-                .build();
-
-        // Send the message to multiple devices
-        BatchResponse response = FirebaseMessaging.getInstance().sendEachForMulticast(message);
-        log.info("Successfully sent {} notifications. Failure count: {}",
-                response.getSuccessCount(), response.getFailureCount());
-
-        return response;
-    }
-
-    /**
-     * Builds the complete message by combining pet name and message.
+    /**
+     * Sends push notifications to multiple devices without blocking on the FCM responses.
+     *
+     * @param request The push notification request
+     * @param tokens List of FCM device tokens (at most 500, the FCM multicast limit, and at most
+     *               getMaxMulticastInFlight())
+     * @return Future completed with the results for each token, or exceptionally with
+     *         IllegalArgumentException if there are more tokens than the multicast share of the window holds
+     */
+    public CompletableFuture<NotificationTransport.MulticastResult> sendPushNotificationToMultipleDevicesAsync(
+            PushNotificationRequest request,
+            java.util.List<String> tokens) {
+        return withinWindow(tokens.size(), true, () -> {
+                    long start = System.nanoTime();
+                    return transport.sendMulticast(request, tokens).whenComplete((response, error) ->
+                            recordMulticast(tokens.size(), response, error, elapsedMillis(start)));
+                })
+                .whenComplete((response, error) -> {
+                    if (error == null) {
+                        log.info("Successfully sent {} notifications. Failure count: {}",
+                                response.getSuccessCount(), response.getFailureCount());
+                    }
+                });
+    }
+
+    /**
+     * Sends a push notification to every device subscribed to a topic, as a single FCM message.
      *
-     * @param petName Optional pet name
-     * @param message The message content
-     * @return The complete formatted message
+     * @param request The push notification request; its token is ignored
+     * @param topic Topic name (see NotificationTopics)
+     * @return Future completed with the message ID
      */
-    private String buildMessage(String petName, String message) {
-        if (petName != null && !petName.trim().isEmpty()) {
-            return petName + " " + message;
+    public CompletableFuture<String> sendToTopicAsync(PushNotificationRequest request, String topic) {
+        String topicName = NotificationTopics.validate(topic);
+
+        return withinWindow(1, false, () -> {
+                    long start = System.nanoTime();
+                    return transport.sendToTopic(request, topicName).whenComplete((messageId, error) ->
+                            deliveryAnalytics.record(null, elapsedMillis(start), errorCode(error)));
+                })
+                .whenComplete((messageId, error) -> {
+                    if (error == null) {
+                        log.info("Successfully sent notification to topic {}. Message ID: {}", topic, messageId);
+                    }
+                });
+    }
+
+    /**
+     * Subscribes devices to a topic, in batches of 1000 tokens
+     *
+     * @param tokens FCM device tokens
+     * @param topic Topic name (see NotificationTopics)
+     * @return Combined result of all batches
+     * @throws NotificationSendException if a batch fails as a whole
+     */
+    public TopicSubscriptionResult subscribeToTopic(List<String> tokens, String topic) throws NotificationSendException {
+        return manageTopic(tokens, NotificationTopics.validate(topic), true);
+    }
+
+    /**
+     * Unsubscribes devices from a topic, in batches of 1000 tokens
+     *
+     * @param tokens FCM device tokens
+     * @param topic Topic name (see NotificationTopics)
+     * @return Combined result of all batches
+     * @throws NotificationSendException if a batch fails as a whole
+     */
+    public TopicSubscriptionResult unsubscribeFromTopic(List<String> tokens, String topic) throws NotificationSendException {
+        return manageTopic(tokens, NotificationTopics.validate(topic), false);
+    }
+
+    private TopicSubscriptionResult manageTopic(List<String> tokens, String topic, boolean subscribe)
+            throws NotificationSendException {
+        int successCount = 0;
+        List<TopicSubscriptionError> errors = new ArrayList<>();
+
+        for (int from = 0; from < tokens.size(); from += TOPIC_MANAGEMENT_LIMIT) {
+            List<String> batch = tokens.subList(from, Math.min(from + TOPIC_MANAGEMENT_LIMIT, tokens.size()));
+            NotificationTransport.TopicResult result = await(subscribe
+                    ? transport.subscribeToTopic(batch, topic)
+                    : transport.unsubscribeFromTopic(batch, topic));
+
+            successCount += result.getSuccessCount();
+            for (NotificationTransport.TopicFailure failure : result.getFailures()) {
+                errors.add(new TopicSubscriptionError(batch.get(failure.index()), failure.reason()));
+            }
         }
-        return message;
+
+        log.info("{} {} tokens {} topic {}. Failure count: {}", subscribe ? "Subscribed" : "Unsubscribed",
+                successCount, subscribe ? "to" : "from", topic, errors.size());
+        return new TopicSubscriptionResult(topic, successCount, errors);
+    }
+
+    /**
+     * Maximum number of messages the async variants keep in flight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Maximum number of messages multicast sends keep in flight, the window minus the part
+     * reserved for single sends
+     */
+    public int getMaxMulticastInFlight() {
+        return maxMulticastInFlight;
+    }
+
+    /**
+     * Number of messages currently being sent by the async variants
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Records one outcome per token of a multicast send
+     */
+    private void recordMulticast(int tokenCount, NotificationTransport.MulticastResult response, Throwable error,
+                                 long latencyMillis) {
+        if (error != null) {
+            String errorCode = errorCode(error);
+            for (int i = 0; i < tokenCount; i++) {
+                deliveryAnalytics.record(null, latencyMillis, errorCode);
+            }
+            return;
+        }
+        for (NotificationTransport.SendResult result : response.getResults()) {
+            deliveryAnalytics.record(null, latencyMillis, result.getErrorCode());
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * FCM error code of a failed transport call, or null if it succeeded
+     */
+    private static String errorCode(Throwable error) {
+        if (error == null) {
+            return null;
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof NotificationSendException sendException && sendException.getErrorCode() != null
+                ? sendException.getErrorCode()
+                : "UNKNOWN";
+    }
+
+    /**
+     * Waits for a transport call, unwrapping its failure
+     */
+    private static <T> T await(CompletableFuture<T> future) throws NotificationSendException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NotificationSendException sendException) {
+                throw sendException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Runs an async send if the in-flight window has room for the given number of messages right now,
+     * and frees the room when the send completes. Never waits for room. Multicasts must also fit in
+     * their share of the window, so they cannot take the room reserved for single sends.
+     */
+    private <T> CompletableFuture<T> withinWindow(int messages, boolean multicast, Supplier<CompletableFuture<T>> send) {
+        int permits = Math.max(messages, 1);
+        int limit = multicast ? maxMulticastInFlight : maxInFlight;
+
+        if (permits > limit) {
+            // Could never fit: reject instead of holding the whole window
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Cannot send " + permits + " messages at once, the limit is " + limit));
+        }
+        if (multicast && !multicastInFlight.tryAcquire(permits)) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Too many multicast notifications in flight (" + maxMulticastInFlight + ")"));
+        }
+        if (!inFlight.tryAcquire(permits)) {
+            if (multicast) {
+                multicastInFlight.release(permits);
+            }
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "Too many notifications in flight (" + maxInFlight + ")"));
+        }
+
+        Runnable release = () -> {
+            inFlight.release(permits);
+            if (multicast) {
+                multicastInFlight.release(permits);
+            }
+        };
+        CompletableFuture<T> future;
+        try {
+            future = send.get();
+        } catch (RuntimeException e) {
+            release.run();
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> release.run());
+    }
+
+    /**
+     * Inner class for the result of a topic subscription change
+     */
+    public static class TopicSubscriptionResult {
+        private final String topic;
+        private final int successCount;
+        private final List<TopicSubscriptionError> errors;
+
+        public TopicSubscriptionResult(String topic, int successCount, List<TopicSubscriptionError> errors) {
+            this.topic = topic;
+            this.successCount = successCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        // Getters
+        public String getTopic() { return topic; }
+        public int getSuccessCount() { return successCount; }
+        public int getFailureCount() { return errors.size(); }
+        public List<TopicSubscriptionError> getErrors() { return errors; }
+    }
+
+    /**
+     * Token that could not be (un)subscribed, with the reason reported by FCM
+     */
+    public static class TopicSubscriptionError {
+        private final String token;
+        private final String reason;
+
+        public TopicSubscriptionError(String token, String reason) {
+            this.token = token;
+            this.reason = reason;
+        }
+
+        // Getters
+        public String getToken() { return token; }
+        public String getReason() { return reason; }
     }
 }
@@ -0,0 +1,364 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.repository.ReminderFirestoreMapper;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterOptions;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Precondition;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import io.grpc.Status;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Maintenance job that rewrites every document of the reminders collection with the derived
+ * fields older documents lack (nextExecution, timestamps) and the current field layout of
+ * ReminderFirestoreMapper.convertToFirestoreMap.
+ *
+ * The nextExecution of active reminders is recomputed with the current calculateNextExecution
+ * logic, so schedules stored by older logic are repaired. Only a stored value that is already past
+ * due is kept, since such a reminder is about to be sent by the scheduler. A missing (or malformed)
+ * nextExecution is computed from the reminder's creation or last trigger, so it may come out in the
+ * past too, and the reminder is then sent on the next scheduler run.
+ *
+ * The collection is streamed page by page ordered by document ID, and the last processed ID is
+ * checkpointed in Firestore after every page so an interrupted run can be resumed. Writes go through
+ * a throttled BulkWriter so the job never competes with the live scheduler for write capacity.
+ * Only available with the Firestore reminder store.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.reminders.store", havingValue = "firestore", matchIfMissing = true)
+public class ReminderBackfillService {
+
+    private static final String REMINDERS_COLLECTION = "reminders";
+    private static final String MAINTENANCE_COLLECTION = "maintenance";
+    private static final String CHECKPOINT_DOCUMENT = "reminderBackfill";
+
+    private final Firestore firestore;
+    private final ReminderFirestoreMapper mapper;
+    private final Clock clock;
+
+    @Value("${app.reminders.backfill.page-size:500}")
+    private int pageSize;
+
+    @Value("${app.reminders.backfill.max-ops-per-second:200}")
+    private int maxOpsPerSecond;
+
+    @Value("${app.reminders.backfill.parallelism:4}")
+    private int parallelism;
+
+    private final ExecutorService jobExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "reminder-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong updated = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile String status = "IDLE";
+    private volatile String lastDocumentId;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String lastError;
+
+    public ReminderBackfillService(Firestore firestore, ReminderFirestoreMapper mapper, Clock clock) {
+        this.firestore = firestore;
+        this.mapper = mapper;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts the backfill in the background
+     *
+     * @param resume true to continue after the last checkpoint, false to start from the first document
+     * @return Progress snapshot at start time
+     */
+    public BackfillProgress start(boolean resume) throws ExecutionException, InterruptedException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Reminder backfill is already running");
+        }
+
+        try {
+            resetCounters();
+            lastDocumentId = resume ? loadCheckpoint() : null;
+            stopRequested.set(false);
+            startedAt = LocalDateTime.now(clock);
+            finishedAt = null;
+            lastError = null;
+            status = "RUNNING";
+        } catch (ExecutionException | InterruptedException | RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+
+        jobExecutor.submit(this::run);
+
+        log.info("Started reminder backfill (resume: {}, from: {})", resume, lastDocumentId);
+        return getProgress();
+    }
+
+    /**
+     * Asks a running backfill to stop after the current page. Progress is kept in the checkpoint.
+     */
+    public BackfillProgress stop() {
+        if (running.get()) {
+            stopRequested.set(true);
+            status = "STOPPING";
+        }
+        return getProgress();
+    }
+
+    /**
+     * Gets the current progress of the backfill job
+     */
+    public BackfillProgress getProgress() {
+        double docsPerSecond = 0;
+        if (startedAt != null) {
+            LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now(clock);
+            long elapsedMillis = Math.max(1, ChronoUnit.MILLIS.between(startedAt, end));
+            docsPerSecond = processed.get() * 1000.0 / elapsedMillis;
+        }
+
+        return new BackfillProgress(status, processed.get(), updated.get(), unchanged.get(), conflicts.get(),
+                failed.get(), lastDocumentId, startedAt, finishedAt, docsPerSecond, lastError);
+    }
+
+    private void run() {
+        BulkWriter bulkWriter = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(Math.min(maxOpsPerSecond, 500))
+                .setMaxOpsPerSecond(maxOpsPerSecond)
+                .build());
+        bulkWriter.addWriteResultListener((documentReference, result) -> updated.incrementAndGet());
+        bulkWriter.addWriteErrorListener(error -> {
+            // The document changed after we read it (e.g. the scheduler just advanced it): skip it
+            if (error.getStatus().getCode() == Status.Code.FAILED_PRECONDITION) {
+                conflicts.incrementAndGet();
+                return false;
+            }
+            if (error.getFailedAttempts() < BulkWriter.MAX_RETRY_ATTEMPTS) {
+                return true;
+            }
+            log.warn("Backfill write failed for reminder {}: {}",
+                    error.getDocumentReference().getId(), error.getMessage());
+            failed.incrementAndGet();
+            return false;
+        });
+
+        ForkJoinPool recomputePool = new ForkJoinPool(parallelism);
+
+        try {
+            while (!stopRequested.get()) {
+                Query page = firestore.collection(REMINDERS_COLLECTION)
+                        .orderBy(FieldPath.documentId())
+                        .limit(pageSize);
+                if (lastDocumentId != null) {
+                    page = page.startAfter(lastDocumentId);
+                }
+
+                List<QueryDocumentSnapshot> documents = page.get().get().getDocuments();
+                if (documents.isEmpty()) {
+                    break;
+                }
+
+                // Recompute derived fields in parallel, then enqueue the writes on the throttled writer
+                List<PendingWrite> writes = recomputePool.submit(() -> documents.parallelStream()
+                        .map(this::recompute)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList())).get();
+
+                for (PendingWrite write : writes) {
+                    bulkWriter.update(write.reference(), write.data(), Precondition.updatedAt(write.readTime()));
+                }
+                bulkWriter.flush().get();
+
+                processed.addAndGet(documents.size());
+                lastDocumentId = documents.get(documents.size() - 1).getId();
+                saveCheckpoint();
+
+                log.info("Reminder backfill progress: {} processed, {} updated, last document: {}",
+                        processed.get(), updated.get(), lastDocumentId);
+            }
+
+            status = stopRequested.get() ? "STOPPED" : "COMPLETED";
+        } catch (Exception e) {
+            log.error("Reminder backfill failed after document {}: {}", lastDocumentId, e.getMessage(), e);
+            lastError = e.getMessage();
+            status = "FAILED";
+        } finally {
+            try {
+                bulkWriter.close();
+            } catch (Exception e) {
+                log.warn("Error closing backfill BulkWriter: {}", e.getMessage());
+            }
+            recomputePool.shutdown();
+            finishedAt = LocalDateTime.now(clock);
+            running.set(false);
+            log.info("Reminder backfill finished with status {}: {}", status, getProgress());
+        }
+    }
+
+    /**
+     * Recomputes a single reminder. Returns null when the stored document is already up to date.
+     */
+    PendingWrite recompute(QueryDocumentSnapshot document) {
+        try {
+            Reminder reminder = mapper.convertFromFirestore(document);
+            fillDerivedFields(reminder);
+
+            Map<String, Object> data = mapper.convertToFirestoreMap(reminder);
+            if (data.equals(document.getData())) {
+                unchanged.incrementAndGet();
+                return null;
+            }
+
+            return new PendingWrite(document.getReference(), data, document.getUpdateTime());
+        } catch (Exception e) {
+            // Malformed documents (e.g. missing scheduledTime) are reported and skipped
+            log.warn("Skipping reminder {} in backfill: {}", document.getId(), e.getMessage());
+            failed.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Fills in the derived fields a reminder lacks and recomputes the future schedule of an active one
+     */
+    void fillDerivedFields(Reminder reminder) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        if (reminder.getCreatedAt() == null) {
+            reminder.setCreatedAt(now);
+        }
+        if (reminder.getUpdatedAt() == null) {
+            reminder.setUpdatedAt(reminder.getCreatedAt());
+        }
+        if (reminder.getNextExecution() == null) {
+            // First occurrence after creation (or next after the last trigger), not after now:
+            // an occurrence that has passed unsent is still due. A ONCE reminder that already
+            // fired stays without one.
+            reminder.calculateNextExecution(reminder.getCreatedAt());
+        } else if (reminder.isActive() && reminder.getNextExecution().isAfter(now)) {
+            // Not due yet, so it may have been stored by older logic. A past-due value is kept:
+            // that reminder is about to be sent
+            reminder.calculateNextExecution(now);
+        }
+    }
+
+    private String loadCheckpoint() throws ExecutionException, InterruptedException {
+        DocumentSnapshot checkpoint = checkpointReference().get().get();
+        return checkpoint.exists() ? checkpoint.getString("lastDocumentId") : null;
+    }
+
+    private void saveCheckpoint() throws ExecutionException, InterruptedException {
+        Map<String, Object> checkpoint = new HashMap<>();
+        checkpoint.put("lastDocumentId", lastDocumentId);
+        checkpoint.put("processed", processed.get());
+        checkpoint.put("updated", updated.get());
+        checkpoint.put("updatedAt", mapper.toTimestamp(LocalDateTime.now(clock)));
+        checkpointReference().set(checkpoint).get();
+    }
+
+    private DocumentReference checkpointReference() {
+        return firestore.collection(MAINTENANCE_COLLECTION).document(CHECKPOINT_DOCUMENT);
+    }
+
+    private void resetCounters() {
+        processed.set(0);
+        updated.set(0);
+        unchanged.set(0);
+        conflicts.set(0);
+        failed.set(0);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        jobExecutor.shutdown();
+    }
+
+    record PendingWrite(DocumentReference reference, Map<String, Object> data, Timestamp readTime) {
+    }
+
+    /**
+     * Inner class for backfill progress
+     */
+    public static class BackfillProgress {
+        private final String status;
+        private final long processed;
+        private final long updated;
+        private final long unchanged;
+        private final long conflicts;
+        private final long failed;
+        private final String lastDocumentId;
+        private final LocalDateTime startedAt;
+        private final LocalDateTime finishedAt;
+        private final double documentsPerSecond;
+        private final String lastError;
+
+        public BackfillProgress(String status, long processed, long updated, long unchanged, long conflicts,
+                                long failed, String lastDocumentId, LocalDateTime startedAt,
+                                LocalDateTime finishedAt, double documentsPerSecond, String lastError) {
+            this.status = status;
+            this.processed = processed;
+            this.updated = updated;
+            this.unchanged = unchanged;
+            this.conflicts = conflicts;
+            this.failed = failed;
+            this.lastDocumentId = lastDocumentId;
+            this.startedAt = startedAt;
+            this.finishedAt = finishedAt;
+            this.documentsPerSecond = documentsPerSecond;
+            this.lastError = lastError;
+        }
+
+        // Getters
+        public String getStatus() { return status; }
+        public long getProcessed() { return processed; }
+        public long getUpdated() { return updated; }
+        public long getUnchanged() { return unchanged; }
+        public long getConflicts() { return conflicts; }
+        public long getFailed() { return failed; }
+        public String getLastDocumentId() { return lastDocumentId; }
+        public LocalDateTime getStartedAt() { return startedAt; }
+        public LocalDateTime getFinishedAt() { return finishedAt; }
+        public double getDocumentsPerSecond() { return documentsPerSecond; }
+        public String getLastError() { return lastError; }
+
+        @Override
+        public String toString() {
+            return String.format("Estado: %s | Procesados: %d | Actualizados: %d | Sin cambios: %d | Conflictos: %d | Fallidos: %d",
+                    status, processed, updated, unchanged, conflicts, failed);
+        }
+    }
+}
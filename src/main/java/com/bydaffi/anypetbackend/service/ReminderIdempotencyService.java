@@ -0,0 +1,283 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.ReminderResponse;
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.util.BoundedTtlCache;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.Precondition;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Makes reminder creation idempotent per Idempotency-Key header, so mobile retries after a
+ * timeout do not create duplicate reminders.
+ *
+ * Completed keys are kept in a bounded TTL cache on this node and, with the Firestore reminder
+ * store, in the Firestore "idempotencyKeys" collection. There the key is reserved with an atomic
+ * create (status PENDING) before the reminder is created and marked COMPLETED afterwards, so only
+ * one request per key creates a reminder even when retries reach different nodes. A reservation
+ * whose request died is taken over once app.idempotency.pending-timeout-seconds have passed.
+ * With the jdbc or memory store keys are only remembered per node.
+ * Requests with the same key on the same node are serialized.
+ */
+@Service
+@Slf4j
+public class ReminderIdempotencyService {
+
+    private static final String IDEMPOTENCY_COLLECTION = "idempotencyKeys";
+
+    private static final String STATUS_PENDING = "PENDING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+
+    /**
+     * Attempts to reserve a key or to record its reminder before giving up
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Firestore firestore;
+    private final ReminderService reminderService;
+    private final BoundedTtlCache<String, ReminderResponse> completed;
+    private final Map<String, Object> keyLocks = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final long pendingTimeoutMillis;
+    private final boolean firestoreFallback;
+
+    public ReminderIdempotencyService(Firestore firestore,
+                                      ReminderService reminderService,
+                                      @Value("${app.idempotency.max-entries:10000}") int maxEntries,
+                                      @Value("${app.idempotency.ttl-hours:24}") long ttlHours,
+                                      @Value("${app.idempotency.pending-timeout-seconds:60}") long pendingTimeoutSeconds,
+                                      @Value("${app.idempotency.firestore-fallback:true}") boolean firestoreFallback,
+                                      @Value("${app.reminders.store:firestore}") String reminderStore) {
+        this.firestore = firestore;
+        this.reminderService = reminderService;
+        this.ttlMillis = ttlHours * 3_600_000;
+        this.pendingTimeoutMillis = pendingTimeoutSeconds * 1000;
+        this.completed = new BoundedTtlCache<>(maxEntries, ttlMillis);
+
+        // The key records live next to the reminders; other stores must not depend on Firestore
+        this.firestoreFallback = firestoreFallback && "firestore".equals(reminderStore);
+        if (firestoreFallback && !this.firestoreFallback) {
+            log.warn("app.idempotency.firestore-fallback is ignored with app.reminders.store={}: "
+                    + "idempotency keys are only remembered per node", reminderStore);
+        }
+    }
+
+    /**
+     * Creates a reminder at most once per user and idempotency key
+     *
+     * @param userId Firebase UID of the owner
+     * @param idempotencyKey Value of the Idempotency-Key header
+     * @param creation Creates the reminder when the key has not been used yet
+     * @return The created reminder, or the one created by the first request with this key
+     * @throws IllegalStateException if another request with this key is still in progress, or the key
+     *                               was used for a reminder that no longer exists
+     * @throws ExecutionException if the key cannot be reserved or its reminder cannot be recorded in Firestore
+     */
+    public IdempotentResult createOnce(String userId, String idempotencyKey, Callable<Reminder> creation) throws Exception {
+        String scope = userId + ":" + idempotencyKey;
+        Object lock = keyLocks.computeIfAbsent(scope, key -> new Object());
+
+        try {
+            synchronized (lock) {
+                ReminderResponse cached = completed.get(scope);
+                if (cached != null) {
+                    return new IdempotentResult(cached, true);
+                }
+
+                if (!firestoreFallback) {
+                    ReminderResponse created = ReminderResponse.fromEntity(creation.call());
+                    completed.put(scope, created);
+                    return new IdempotentResult(created, false);
+                }
+
+                DocumentReference keyReference = keyReference(scope);
+                ReminderResponse stored = reserve(keyReference, userId);
+                if (stored != null) {
+                    completed.put(scope, stored);
+                    return new IdempotentResult(stored, true);
+                }
+
+                Reminder reminder;
+                try {
+                    reminder = creation.call();
+                } catch (Exception e) {
+                    release(keyReference);
+                    throw e;
+                }
+
+                ReminderResponse created = ReminderResponse.fromEntity(reminder);
+                completed.put(scope, created);
+                complete(keyReference, created.getId());
+
+                return new IdempotentResult(created, false);
+            }
+        } finally {
+            keyLocks.remove(scope, lock);
+        }
+    }
+
+    /**
+     * Reserves the key for this request with an atomic create of a PENDING record
+     *
+     * @return the reminder of an earlier completed request with this key, or null if the key is now
+     *         reserved for this request
+     */
+    private ReminderResponse reserve(DocumentReference keyReference, String userId) throws Exception {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            try {
+                keyReference.create(pendingRecord(userId)).get();
+                return null;
+            } catch (ExecutionException e) {
+                if (!isAlreadyExists(e.getCause())) {
+                    throw e;
+                }
+            }
+
+            DocumentSnapshot snapshot = keyReference.get().get();
+            if (!snapshot.exists()) {
+                // Released by a request whose creation failed: try to reserve it again
+                continue;
+            }
+
+            Timestamp expiresAt = snapshot.getTimestamp("expiresAt");
+            if (expiresAt == null || expiresAt.compareTo(Timestamp.now()) >= 0) {
+                if (STATUS_PENDING.equals(snapshot.getString("status"))) {
+                    throw new IllegalStateException("A request with this idempotency key is still in progress");
+                }
+                return findReminder(snapshot.getString("reminderId"));
+            }
+
+            // Expired key, or a reservation whose request died: take it over unless another request does first
+            try {
+                keyReference.update(pendingRecord(userId), Precondition.updatedAt(snapshot.getUpdateTime())).get();
+                return null;
+            } catch (ExecutionException e) {
+                log.debug("Idempotency key changed while taking it over, reading it again: {}", e.getMessage());
+            }
+        }
+
+        throw new IllegalStateException("A request with this idempotency key is still in progress");
+    }
+
+    private ReminderResponse findReminder(String reminderId) throws ExecutionException, InterruptedException {
+        try {
+            return ReminderResponse.fromEntity(reminderService.getReminderById(reminderId));
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Idempotency key was already used for reminder " + reminderId
+                    + ", which no longer exists");
+        }
+    }
+
+    /**
+     * Records the created reminder on the reserved key, retrying failed writes
+     */
+    private void complete(DocumentReference keyReference, String reminderId) throws Exception {
+        Map<String, Object> data = new HashMap<>();
+        data.put("status", STATUS_COMPLETED);
+        data.put("reminderId", reminderId);
+        data.put("expiresAt", Timestamp.ofTimeMicroseconds((System.currentTimeMillis() + ttlMillis) * 1000));
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                keyReference.update(data).get();
+                return;
+            } catch (ExecutionException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    // The key stays PENDING: retries get a conflict instead of creating a second reminder
+                    log.error("Could not record reminder {} on its idempotency key: {}", reminderId, e.getMessage());
+                    throw e;
+                }
+                log.warn("Recording reminder {} on its idempotency key failed (attempt {}), retrying: {}",
+                        reminderId, attempt, e.getMessage());
+                Thread.sleep(100L * attempt);
+            }
+        }
+    }
+
+    /**
+     * Drops the reservation of a request whose creation failed, so the client can retry with the same key
+     */
+    private void release(DocumentReference keyReference) {
+        try {
+            keyReference.delete().get();
+        } catch (Exception e) {
+            // Retries with this key get a conflict until the reservation times out
+            log.warn("Could not release idempotency key {}: {}", keyReference.getId(), e.getMessage());
+        }
+    }
+
+    private Map<String, Object> pendingRecord(String userId) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("userId", userId);
+        data.put("status", STATUS_PENDING);
+        data.put("reminderId", null);
+        data.put("createdAt", Timestamp.now());
+        data.put("expiresAt", Timestamp.ofTimeMicroseconds((System.currentTimeMillis() + pendingTimeoutMillis) * 1000));
+        return data;
+    }
+
+    /**
+     * Whether a failed create was rejected because the document exists; the client reports this
+     * either as a gax ApiException or as a FirestoreException, possibly wrapping one another
+     */
+    private static boolean isAlreadyExists(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException apiException
+                    && apiException.getStatusCode().getCode() == StatusCode.Code.ALREADY_EXISTS) {
+                return true;
+            }
+            if (cause instanceof FirestoreException firestoreException && firestoreException.getStatus() != null
+                    && firestoreException.getStatus().getCode() == Status.Code.ALREADY_EXISTS) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Keys are client supplied, so the document ID is a hash of user and key
+     */
+    private DocumentReference keyReference(String scope) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(scope.getBytes(StandardCharsets.UTF_8));
+            return firestore.collection(IDEMPOTENCY_COLLECTION).document(HexFormat.of().formatHex(hash));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Result of an idempotent creation
+     */
+    public static class IdempotentResult {
+        private final ReminderResponse reminder;
+        private final boolean replayed;
+
+        public IdempotentResult(ReminderResponse reminder, boolean replayed) {
+            this.reminder = reminder;
+            this.replayed = replayed;
+        }
+
+        public ReminderResponse getReminder() { return reminder; }
+        public boolean isReplayed() { return replayed; }
+    }
+}
@@ -2,160 +2,149 @@ package com.bydaffi.anypetbackend.service;
 
 import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
 import com.bydaffi.anypetbackend.models.Reminder;
-import com.google.api.core.ApiFuture;
-import com.google.cloud.firestore.*;
-import com.google.cloud.Timestamp;
-import com.google.firebase.messaging.FirebaseMessagingException;
-import lombok.RequiredArgsConstructor;
+import com.bydaffi.anypetbackend.repository.ReminderStore;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
- * Service for managing reminders with Firebase Firestore as the only storage.
- * Handles CRUD operations and notification scheduling.
+ * Service for managing reminders.
+ * Handles CRUD operations and notification scheduling on top of the configured ReminderStore
+ * (Firestore by default, see app.reminders.store).
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class ReminderService {
 
-    private final Firestore firestore;
+    private final ReminderStore reminderStore;
     private final PushNotificationService pushNotificationService;
+    private final PetNameResolver petNameResolver;
+    private final Clock clock;
 
-    private static final String REMINDERS_COLLECTION = "reminders";
+    @Value("${app.reminders.dispatch.batch-size:500}")
+    private int dispatchBatchSize;
+
+    @Value("${app.reminders.dispatch.lease-seconds:300}")
+    private long claimLeaseSeconds;
+
+    @Value("${app.reminders.dispatch.retry-timeout-ms:5000}")
+    private long rejectedRetryTimeoutMillis;
 
     /**
-     * Creates a new reminder in Firestore
+     * Backoff between attempts of sends rejected by a full in-flight window
+     */
+    private static final long MIN_RETRY_DELAY_MILLIS = 50;
+    private static final long MAX_RETRY_DELAY_MILLIS = 1000;
+
+    public ReminderService(ReminderStore reminderStore,
+                           PushNotificationService pushNotificationService,
+                           PetNameResolver petNameResolver,
+                           Clock clock) {
+        this.reminderStore = reminderStore;
+        this.pushNotificationService = pushNotificationService;
+        this.petNameResolver = petNameResolver;
+        this.clock = clock;
+    }
+
+    /**
+     * Creates a new reminder
      *
      * @param reminder Reminder to create
-     * @return Created reminder with Firebase ID
+     * @return Created reminder with its ID
      */
     public Reminder createReminder(Reminder reminder) throws ExecutionException, InterruptedException {
         // Initialize timestamps and calculate next execution
-        reminder.initializeTimestamps();
-        reminder.calculateNextExecution();
-
-        // Create new document in Firestore
-        DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document();
-        reminder.setId(docRef.getId());
+        LocalDateTime now = LocalDateTime.now(clock);
+        reminder.normalizeDeviceToken();
+        reminder.initializeTimestamps(now);
+        reminder.calculateNextExecution(now);
 
-        // Save to Firestore
-        Map<String, Object> reminderData = convertToFirestoreMap(reminder);
-        ApiFuture<WriteResult> result = docRef.set(reminderData);
-        result.get(); // Wait for completion
+        Reminder created = reminderStore.create(reminder);
 
-        log.info("Created reminder: {} for user: {}", reminder.getId(), reminder.getUserId());
-        return reminder;
+        log.info("Created reminder: {} for user: {}", created.getId(), created.getUserId());
+        return created;
     }
 
     /**
-     * Updates an existing reminder in Firestore
+     * Updates an existing reminder
      *
      * @param id Reminder ID
      * @param updatedReminder Updated reminder data
      * @return Updated reminder
      */
     public Reminder updateReminder(String id, Reminder updatedReminder) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document(id);
-
-        // Verify the document exists
-        DocumentSnapshot snapshot = docRef.get().get();
-        if (!snapshot.exists()) {
-            throw new RuntimeException("Reminder not found with id: " + id);
-        }
+        // Verify the reminder exists
+        Reminder existing = reminderStore.findById(id)
+                .orElseThrow(() -> new RuntimeException("Reminder not found with id: " + id));
 
         // Update fields
+        LocalDateTime now = LocalDateTime.now(clock);
         updatedReminder.setId(id);
-        updatedReminder.updateTimestamp();
-        updatedReminder.calculateNextExecution();
+        if (updatedReminder.getCreatedAt() == null) {
+            updatedReminder.setCreatedAt(existing.getCreatedAt() != null ? existing.getCreatedAt() : now);
+        }
+        updatedReminder.normalizeDeviceToken();
+        updatedReminder.updateTimestamp(now);
+        updatedReminder.calculateNextExecution(now);
 
-        // Save to Firestore
-        Map<String, Object> reminderData = convertToFirestoreMap(updatedReminder);
-        ApiFuture<WriteResult> result = docRef.set(reminderData);
-        result.get();
+        reminderStore.save(updatedReminder);
 
         log.info("Updated reminder: {}", id);
         return updatedReminder;
     }
 
     /**
-     * Deletes a reminder from Firestore
+     * Deletes a reminder
      *
      * @param id Reminder ID
      */
     public void deleteReminder(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document(id);
-
-        // Verify the document exists
-        DocumentSnapshot snapshot = docRef.get().get();
-        if (!snapshot.exists()) {
+        if (!reminderStore.deleteById(id)) {
             throw new RuntimeException("Reminder not found with id: " + id);
         }
 
-        // Delete from Firestore
-        ApiFuture<WriteResult> result = docRef.delete();
-        result.get();
-
         log.info("Deleted reminder: {}", id);
     }
 
     /**
-     * Gets all reminders for a user from Firestore
+     * Gets all reminders for a user
      *
      * @param userId Firebase UID
      * @return List of reminders
      */
     public List<Reminder> getRemindersByUserId(String userId) throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> future = firestore.collection(REMINDERS_COLLECTION)
-                .whereEqualTo("userId", userId)
-                .get();
-
-        QuerySnapshot querySnapshot = future.get();
-        return querySnapshot.getDocuments().stream()
-                .map(this::convertFromFirestore)
-                .collect(Collectors.toList());
+        return reminderStore.findByUserId(userId);
     }
 
     /**
-     * Gets all active reminders for a user from Firestore
+     * Gets all active reminders for a user
      *
      * @param userId Firebase UID
      * @return List of active reminders
      */
     public List<Reminder> getActiveRemindersByUserId(String userId) throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> future = firestore.collection(REMINDERS_COLLECTION)
-                .whereEqualTo("userId", userId)
-                .whereEqualTo("active", true)
-                .get();
-
-        QuerySnapshot querySnapshot = future.get();
-        return querySnapshot.getDocuments().stream()
-                .map(this::convertFromFirestore)
-                .collect(Collectors.toList());
+        return reminderStore.findActiveByUserId(userId);
     }
 
     /**
-     * Gets a reminder by ID from Firestore
+     * Gets a reminder by ID
      *
      * @param id Reminder ID
      * @return Reminder
      */
     public Reminder getReminderById(String id) throws ExecutionException, InterruptedException {
-        DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document(id);
-        DocumentSnapshot snapshot = docRef.get().get();
-
-        if (!snapshot.exists()) {
-            throw new RuntimeException("Reminder not found with id: " + id);
-        }
-
-        return convertFromFirestore(snapshot);
+        return reminderStore.findById(id)
+                .orElseThrow(() -> new RuntimeException("Reminder not found with id: " + id));
     }
 
     /**
@@ -163,140 +152,171 @@ public class ReminderService {
      * This method is called by the scheduler
      */
     public void processDueReminders() throws ExecutionException, InterruptedException {
-        LocalDateTime now = LocalDateTime.now();
-        Timestamp nowTimestamp = Timestamp.of(java.util.Date.from(now.atZone(ZoneId.systemDefault()).toInstant()));
+        LocalDateTime now = LocalDateTime.now(clock);
+
+        // Claim due reminders in batches. Each claim leases its reminders past `now`, so reminders that
+        // failed are not claimed again in this run and every page moves on to reminders not seen yet.
+        Set<String> attempted = new HashSet<>();
+        List<Reminder> rejected = new ArrayList<>();
+        int processed = 0;
+
+        while (true) {
+            LocalDateTime leaseUntil = LocalDateTime.now(clock).plusSeconds(claimLeaseSeconds);
+            List<Reminder> claimed = reminderStore.claimDue(now, dispatchBatchSize, leaseUntil);
+            if (claimed.isEmpty()) {
+                break;
+            }
+
+            List<Reminder> dueReminders = claimed.stream()
+                    .filter(reminder -> attempted.add(reminder.getId()))
+                    .collect(Collectors.toList());
 
-        // Query Firestore for active reminders that are due
-        ApiFuture<QuerySnapshot> future = firestore.collection(REMINDERS_COLLECTION)
-                .whereEqualTo("active", true)
-                .whereLessThanOrEqualTo("nextExecution", nowTimestamp)
-                .get();
+            if (dueReminders.isEmpty()) {
+                // Only possible if the claim did not lease past now (lease-seconds <= 0): stop instead of spinning
+                log.warn("Claimed {} reminders already attempted in this run; check app.reminders.dispatch.lease-seconds",
+                        claimed.size());
+                break;
+            }
 
-        QuerySnapshot querySnapshot = future.get();
-        List<Reminder> dueReminders = querySnapshot.getDocuments().stream()
-                .map(this::convertFromFirestore)
-                .collect(Collectors.toList());
+            rejected.addAll(dispatchBatch(dueReminders));
+            processed += dueReminders.size();
 
+            if (claimed.size() < dispatchBatchSize) {
+                break;
+            }
+        }
+
+        if (!rejected.isEmpty()) {
+            // Released after the last claim, so this run does not claim them again. They still carry
+            // the time they were due, which ends the lease: the next run sends them first
+            reminderStore.markTriggered(rejected);
+            log.warn("Released {} reminders rejected by a full notification window for the next run", rejected.size());
+        }
+
+        log.info("Processed {} due reminders", processed);
+    }
+
+    /**
+     * Sends the notifications of a batch of due reminders and advances them in one batched store update
+     *
+     * @return Reminders whose send was still rejected by a full in-flight window, unchanged
+     */
+    private List<Reminder> dispatchBatch(List<Reminder> dueReminders) throws ExecutionException, InterruptedException {
         log.info("Processing {} due reminders", dueReminders.size());
 
+        // Resolve the pet names of the whole batch with one bulk lookup instead of one per reminder
+        Map<String, String> petNames = petNameResolver.resolveNames(dueReminders.stream()
+                .map(Reminder::getPetId)
+                .collect(Collectors.toSet()));
+
+        // Start every send of the batch before waiting, so FCM round trips overlap without extra threads
+        List<CompletableFuture<Void>> sends = new ArrayList<>(dueReminders.size());
         for (Reminder reminder : dueReminders) {
-            try {
-                sendReminderNotification(reminder);
-                reminder.setLastTriggered(LocalDateTime.now());
-                reminder.calculateNextExecution();
-                reminder.updateTimestamp();
+            sends.add(sendReminderNotificationAsync(reminder, petNames.get(reminder.getPetId())));
+        }
+        retryRejected(dueReminders, petNames, sends);
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture[0]))
+                .exceptionally(error -> null)
+                .join();
 
-                // Update in Firestore
-                DocumentReference docRef = firestore.collection(REMINDERS_COLLECTION).document(reminder.getId());
-                Map<String, Object> updates = new HashMap<>();
-                updates.put("lastTriggered", Timestamp.of(java.util.Date.from(reminder.getLastTriggered().atZone(ZoneId.systemDefault()).toInstant())));
-                updates.put("nextExecution", reminder.getNextExecution() != null ?
-                        Timestamp.of(java.util.Date.from(reminder.getNextExecution().atZone(ZoneId.systemDefault()).toInstant())) : null);
-                updates.put("updatedAt", Timestamp.of(java.util.Date.from(reminder.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant())));
+        List<Reminder> triggered = new ArrayList<>(dueReminders.size());
+        List<Reminder> rejected = new ArrayList<>();
+        LocalDateTime triggeredAt = LocalDateTime.now(clock);
 
-                docRef.update(updates).get();
+        for (int i = 0; i < dueReminders.size(); i++) {
+            Reminder reminder = dueReminders.get(i);
+            try {
+                sends.get(i).join();
+                reminder.setLastTriggered(triggeredAt);
+                reminder.calculateNextExecution(triggeredAt);
+                reminder.updateTimestamp(triggeredAt);
+                triggered.add(reminder);
 
                 log.info("Successfully processed reminder: {} - Next execution: {}",
                         reminder.getId(), reminder.getNextExecution());
             } catch (Exception e) {
-                log.error("Error processing reminder {}: {}", reminder.getId(), e.getMessage(), e);
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof RejectedExecutionException) {
+                    rejected.add(reminder);
+                    continue;
+                }
+                log.error("Error processing reminder {}: {}", reminder.getId(), cause.getMessage(), cause);
             }
         }
+
+        if (!triggered.isEmpty()) {
+            reminderStore.markTriggered(triggered);
+        }
+        return rejected;
+    }
+
+    /**
+     * Sends again, with backoff, the sends rejected because the in-flight window was full (other
+     * sends hold it), for up to retry-timeout-ms. A full window rejects synchronously, so the
+     * rejected futures have already failed. Blocks only the scheduler thread.
+     */
+    private void retryRejected(List<Reminder> dueReminders, Map<String, String> petNames,
+                               List<CompletableFuture<Void>> sends) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + rejectedRetryTimeoutMillis;
+        long delay = MIN_RETRY_DELAY_MILLIS;
+
+        while (true) {
+            List<Integer> rejected = new ArrayList<>();
+            for (int i = 0; i < sends.size(); i++) {
+                if (isRejected(sends.get(i))) {
+                    rejected.add(i);
+                }
+            }
+            if (rejected.isEmpty() || System.currentTimeMillis() + delay > deadline) {
+                return;
+            }
+
+            log.debug("{} reminder sends rejected by a full in-flight window, retrying in {} ms", rejected.size(), delay);
+            Thread.sleep(delay);
+            for (int i : rejected) {
+                Reminder reminder = dueReminders.get(i);
+                sends.set(i, sendReminderNotificationAsync(reminder, petNames.get(reminder.getPetId())));
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+        }
+    }
+
+    private static boolean isRejected(CompletableFuture<?> send) {
+        if (!send.isCompletedExceptionally()) {
+            return false;
+        }
+        try {
+            send.join();
+            return false;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RejectedExecutionException;
+        } catch (CancellationException e) {
+            return false;
+        }
     }
 
     /**
      * Sends a push notification for a reminder
      *
      * @param reminder Reminder to send notification for
+     * @param petName Name of the reminder's pet, or null if it has none
+     * @return Future completed when FCM has accepted the notification
      */
-    private void sendReminderNotification(Reminder reminder) throws FirebaseMessagingException {
+    private CompletableFuture<Void> sendReminderNotificationAsync(Reminder reminder, String petName) {
         // Check if device token is available
-        if (reminder.getDeviceToken() == null ||
-            reminder.getDeviceToken().trim().isEmpty() ||
-            reminder.getDeviceToken().equals("no-token-available")) {
+        if (!reminder.hasDeviceToken()) {
             log.warn("Skipping notification for reminder: {} - No valid device token", reminder.getId());
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         PushNotificationRequest notificationRequest = new PushNotificationRequest();
         notificationRequest.setTitle(reminder.getTitle());
         notificationRequest.setMessage(reminder.getMessage() != null ? reminder.getMessage() : "Es hora de tu recordatorio");
         notificationRequest.setToken(reminder.getDeviceToken());
+        notificationRequest.setPetName(petName);
 
-        // Note: petName would need to be fetched separately if needed
-        // For now, we'll just send the reminder without pet name
-
-        pushNotificationService.sendPushNotification(notificationRequest);
-
-        log.info("Sent notification for reminder: {} to device: {}",
-                reminder.getId(), reminder.getDeviceToken());
-    }
-
-    /**
-     * Converts a Reminder object to a Firestore map
-     */
-    private Map<String, Object> convertToFirestoreMap(Reminder reminder) {
-        Map<String, Object> data = new HashMap<>();
-        data.put("title", reminder.getTitle());
-        data.put("message", reminder.getMessage());
-        data.put("scheduledTime", reminder.getScheduledTime().toString());
-        data.put("repeatInterval", reminder.getRepeatInterval().name());
-        data.put("userId", reminder.getUserId());
-        data.put("petId", reminder.getPetId());
-        data.put("deviceToken", reminder.getDeviceToken());
-        data.put("active", reminder.isActive());
-        data.put("lastTriggered", reminder.getLastTriggered() != null ?
-                Timestamp.of(java.util.Date.from(reminder.getLastTriggered().atZone(ZoneId.systemDefault()).toInstant())) : null);
-        data.put("nextExecution", reminder.getNextExecution() != null ?
-                Timestamp.of(java.util.Date.from(reminder.getNextExecution().atZone(ZoneId.systemDefault()).toInstant())) : null);
-        data.put("createdAt", Timestamp.of(java.util.Date.from(reminder.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant())));
-        data.put("updatedAt", Timestamp.of(java.util.Date.from(reminder.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant())));
-
-        return data;
-    }
-
-    /**
-     * Converts a Firestore document to a Reminder object
-     */
-    private Reminder convertFromFirestore(DocumentSnapshot document) {
-        Reminder reminder = new Reminder();
-        reminder.setId(document.getId());
-        reminder.setTitle(document.getString("title"));
-        reminder.setMessage(document.getString("message"));
-        reminder.setScheduledTime(LocalTime.parse(document.getString("scheduledTime")));
-        reminder.setRepeatInterval(Reminder.RepeatInterval.valueOf(document.getString("repeatInterval")));
-        reminder.setUserId(document.getString("userId"));
-
-        // Pet ID is now a Firebase document ID (String)
-        reminder.setPetId(document.getString("petId"));
-
-        reminder.setDeviceToken(document.getString("deviceToken"));
-        reminder.setActive(Boolean.TRUE.equals(document.getBoolean("active")));
-
-        Timestamp lastTriggered = document.getTimestamp("lastTriggered");
-        if (lastTriggered != null) {
-            reminder.setLastTriggered(LocalDateTime.ofInstant(
-                    lastTriggered.toDate().toInstant(), ZoneId.systemDefault()));
-        }
-
-        Timestamp nextExecution = document.getTimestamp("nextExecution");
-        if (nextExecution != null) {
-            reminder.setNextExecution(LocalDateTime.ofInstant(
-                    nextExecution.toDate().toInstant(), ZoneId.systemDefault()));
-        }
-
-        Timestamp createdAt = document.getTimestamp("createdAt");
-        if (createdAt != null) {
-            reminder.setCreatedAt(LocalDateTime.ofInstant(
-                    createdAt.toDate().toInstant(), ZoneId.systemDefault()));
-        }
-
-        Timestamp updatedAt = document.getTimestamp("updatedAt");
-        if (updatedAt != null) {
-            reminder.setUpdatedAt(LocalDateTime.ofInstant(
-                    updatedAt.toDate().toInstant(), ZoneId.systemDefault()));
-        }
-
-        return reminder;
+        return pushNotificationService.sendPushNotificationAsync(notificationRequest, reminder.getId())
+                .thenAccept(messageId -> log.info("Sent notification for reminder: {} to device: {}",
+                        reminder.getId(), reminder.getDeviceToken()));
     }
 }
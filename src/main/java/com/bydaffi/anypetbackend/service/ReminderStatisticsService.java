@@ -0,0 +1,169 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Service for computing operational statistics about reminders.
+ * Uses Firestore count() aggregation queries, so only counts are transferred
+ * and no reminder documents are read. Results are cached for a short time.
+ * Only available with the Firestore reminder store.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "app.reminders.store", havingValue = "firestore", matchIfMissing = true)
+public class ReminderStatisticsService {
+
+    private static final String REMINDERS_COLLECTION = "reminders";
+
+    /**
+     * Stored device token values that mean the reminder cannot be delivered (see Reminder.hasDeviceToken).
+     * ReminderService stores tokens trimmed, so a blank token is stored as ""
+     */
+    private static final List<String> MISSING_TOKEN_VALUES = Arrays.asList(null, "", Reminder.NO_DEVICE_TOKEN);
+
+    private final Firestore firestore;
+    private final Clock clock;
+
+    @Value("${app.reminders.stats.cache-ttl-seconds:15}")
+    private long cacheTtlSeconds;
+
+    private volatile ReminderStatistics cachedStatistics;
+    private volatile long cachedAtMillis;
+
+    public ReminderStatisticsService(Firestore firestore, Clock clock) {
+        this.firestore = firestore;
+        this.clock = clock;
+    }
+
+    /**
+     * Gets reminder statistics, served from cache while it is still fresh
+     *
+     * @return Reminder statistics
+     */
+    public ReminderStatistics getStatistics() throws ExecutionException, InterruptedException {
+        ReminderStatistics statistics = cachedStatistics;
+        if (statistics != null && !isExpired()) {
+            return statistics;
+        }
+
+        // Only one caller recomputes; concurrent dashboard refreshes wait and reuse the result
+        synchronized (this) {
+            if (cachedStatistics != null && !isExpired()) {
+                return cachedStatistics;
+            }
+
+            statistics = computeStatistics();
+            cachedStatistics = statistics;
+            cachedAtMillis = clock.millis();
+            return statistics;
+        }
+    }
+
+    private boolean isExpired() {
+        return clock.millis() - cachedAtMillis > cacheTtlSeconds * 1000;
+    }
+
+    /**
+     * Runs all count() aggregations in parallel and waits for them together
+     */
+    private ReminderStatistics computeStatistics() throws ExecutionException, InterruptedException {
+        CollectionReference reminders = firestore.collection(REMINDERS_COLLECTION);
+        Query active = reminders.whereEqualTo("active", true);
+
+        // The scheduler's clock, so "due" means the same here as for the reminders it claims
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime inOneHour = now.plusHours(1);
+        Timestamp inOneHourTimestamp = Timestamp.of(java.util.Date.from(inOneHour.atZone(ZoneId.systemDefault()).toInstant()));
+
+        List<ApiFuture<AggregateQuerySnapshot>> futures = new ArrayList<>();
+
+        // Index 0: active reminders
+        futures.add(active.count().get());
+
+        // Index 1: active reminders due within the next hour (includes overdue ones)
+        futures.add(active.whereLessThanOrEqualTo("nextExecution", inOneHourTimestamp).count().get());
+
+        // Next: active reminders per repeat interval
+        Reminder.RepeatInterval[] intervals = Reminder.RepeatInterval.values();
+        for (Reminder.RepeatInterval interval : intervals) {
+            futures.add(active.whereEqualTo("repeatInterval", interval.name()).count().get());
+        }
+
+        // Last: active reminders without a usable device token
+        for (String missingValue : MISSING_TOKEN_VALUES) {
+            futures.add(active.whereEqualTo("deviceToken", missingValue).count().get());
+        }
+
+        List<AggregateQuerySnapshot> results = ApiFutures.allAsList(futures).get();
+
+        Map<String, Long> byRepeatInterval = new LinkedHashMap<>();
+        for (int i = 0; i < intervals.length; i++) {
+            byRepeatInterval.put(intervals[i].name(), results.get(2 + i).getCount());
+        }
+
+        long withoutToken = 0;
+        for (int i = 2 + intervals.length; i < results.size(); i++) {
+            withoutToken += results.get(i).getCount();
+        }
+
+        ReminderStatistics statistics = new ReminderStatistics(
+                results.get(0).getCount(),
+                results.get(1).getCount(),
+                withoutToken,
+                byRepeatInterval,
+                now
+        );
+
+        log.info("Computed reminder statistics with {} count queries", futures.size());
+        return statistics;
+    }
+
+    /**
+     * Inner class for reminder statistics
+     */
+    public static class ReminderStatistics {
+        private final long activeReminders;
+        private final long dueWithinNextHour;
+        private final long withoutDeviceToken;
+        private final Map<String, Long> activeByRepeatInterval;
+        private final LocalDateTime generatedAt;
+
+        public ReminderStatistics(long activeReminders, long dueWithinNextHour, long withoutDeviceToken,
+                                  Map<String, Long> activeByRepeatInterval, LocalDateTime generatedAt) {
+            this.activeReminders = activeReminders;
+            this.dueWithinNextHour = dueWithinNextHour;
+            this.withoutDeviceToken = withoutDeviceToken;
+            this.activeByRepeatInterval = Collections.unmodifiableMap(activeByRepeatInterval);
+            this.generatedAt = generatedAt;
+        }
+
+        // Getters
+        public long getActiveReminders() { return activeReminders; }
+        public long getDueWithinNextHour() { return dueWithinNextHour; }
+        public long getWithoutDeviceToken() { return withoutDeviceToken; }
+        public Map<String, Long> getActiveByRepeatInterval() { return activeByRepeatInterval; }
+        public LocalDateTime getGeneratedAt() { return generatedAt; }
+    }
+}
@@ -1,26 +1,75 @@
 package com.bydaffi.anypetbackend.service;
 
+import com.bydaffi.anypetbackend.util.BoundedTtlCache;
+import com.bydaffi.anypetbackend.util.SpooledMultipartFile;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BooleanSupplier;
 
 /**
  * Service for managing file uploads and downloads to/from AWS S3.
  * Handles pet profile images and vaccine batch lot images.
+ *
+ * The renditions of an upload are sent concurrently through the S3AsyncClient; if any of them
+ * fails, the ones this upload created are deleted so no partial upload is left behind. Objects
+ * that already existed are neither uploaded again nor deleted, since other records use them.
+ * New content is reserved in the ImageHashIndex before it is uploaded, so a concurrent upload of
+ * the same image waits for this one instead of racing it, and only the reservation holder rolls back.
+ *
+ * Object keys are the SHA-256 of the encoded image, so an image the user already uploaded is found
+ * in the ImageHashIndex and returned without uploading it again. Since an object never changes
+ * content, it is stored with an immutable Cache-Control header.
+ *
+ * Clients can also upload the original straight to S3 with a presigned PUT (createDirectUpload) to
+ * a staging key, users/{uid}/uploads/{uuid}, tagged staging=true. The signature covers the declared
+ * Content-Length and Content-Type, so S3 itself rejects a body of another size. Completing the
+ * upload downloads the staged object, processes it like a multipart upload and deletes it.
+ *
+ * Images are read through presigned GET URLs, so the bucket can stay private. Signed URLs are
+ * cached per object key and expiry bucket: every URL signed within one bucket
+ * (app.image.presigned-get.reuse-minutes) expires at the same instant, url-expiry-minutes after
+ * the bucket ends, and is reused until then. A list of URLs is signed in one pass, with one cache
+ * lookup for all of them.
  */
 @Service
+@Slf4j
 public class S3Service {
 
+    private static final String STAGING_TAGGING = "staging=true";
+
     private final S3Client s3Client;
+    private final S3AsyncClient s3AsyncClient;
     private final ImageCompressionService imageCompressionService;
+    private final ImageHashIndex imageHashIndex;
+    private final S3Presigner s3Presigner;
+    private final BoundedTtlCache<String, PresignedUrl> presignedUrls;
+    private final long presignReuseMillis;
 
     @Value("${aws.s3.bucket-name}")
     private String bucketName;
@@ -31,144 +80,384 @@ public class S3Service {
     @Value("${app.image.max-size-mb:10}")
     private int maxSizeMB;
 
-    public S3Service(S3Client s3Client, ImageCompressionService imageCompressionService) {
+    @Value("${app.image.cache-control:public, max-age=31536000, immutable}")
+    private String cacheControl;
+
+    @Value("${app.image.direct-upload.url-expiry-minutes:15}")
+    private long directUploadExpiryMinutes;
+
+    @Value("${app.image.spool-dir:${java.io.tmpdir}}")
+    private String spoolDirectory;
+
+    @Value("${app.image.presigned-get.url-expiry-minutes:60}")
+    private long presignedGetExpiryMinutes;
+
+    public S3Service(S3Client s3Client, S3AsyncClient s3AsyncClient, ImageCompressionService imageCompressionService,
+                     ImageHashIndex imageHashIndex, S3Presigner s3Presigner,
+                     @Value("${app.image.presigned-get.cache.max-entries:10000}") int presignedCacheEntries,
+                     @Value("${app.image.presigned-get.reuse-minutes:15}") long presignReuseMinutes) {
         this.s3Client = s3Client;
+        this.s3AsyncClient = s3AsyncClient;
         this.imageCompressionService = imageCompressionService;
+        this.imageHashIndex = imageHashIndex;
+        this.s3Presigner = s3Presigner;
+        this.presignReuseMillis = Duration.ofMinutes(presignReuseMinutes).toMillis();
+        this.presignedUrls = new BoundedTtlCache<>(presignedCacheEntries, presignReuseMillis);
     }
 
     /**
-     * Uploads a pet profile image to S3
+     * Uploads the renditions of a pet profile image to S3
      *
      * @param file the image file
-     * @param petId the pet ID
+     * @param petId the pet ID (not part of the key: the same photo is stored once per user)
      * @param userId the Firebase user ID (owner of the pet)
-     * @return the S3 URL of the uploaded image
+     * @return the S3 URLs of the uploaded renditions
      * @throws IOException if upload fails
      */
-    public String uploadPetProfileImage(MultipartFile file, Long petId, String userId) throws IOException {
-        validateImage(file);
-
-        // Compress the image
-        byte[] compressedImage = imageCompressionService.compressImage(file);
-
-        // Generate unique filename with user-specific path
-        String filename = generateFilename("users/" + userId + "/pets/profiles", petId.toString(), file.getOriginalFilename());
-
-        // Upload to S3
-        return uploadToS3(compressedImage, filename, file.getContentType());
+    public UploadedImage uploadPetProfileImage(MultipartFile file, Long petId, String userId) throws IOException {
+        return uploadRenditions(file, "users/" + userId + "/pets", recordIdOf(petId));
     }
 
     /**
-     * Uploads a vaccine batch lot image to S3
+     * Uploads the renditions of a vaccine batch lot image to S3
      *
      * @param file the image file
-     * @param vaccinationRecordId the vaccination record ID
+     * @param vaccinationRecordId the vaccination record ID (not part of the key: the same photo is stored once per user)
      * @param userId the Firebase user ID (owner of the pet)
-     * @return the S3 URL of the uploaded image
+     * @return the S3 URLs of the uploaded renditions
      * @throws IOException if upload fails
      */
-    public String uploadVaccineBatchImage(MultipartFile file, Long vaccinationRecordId, String userId) throws IOException {
-        validateImage(file);
-
-        // Compress the image
-        byte[] compressedImage = imageCompressionService.compressImage(file);
-
-        // Generate unique filename with user-specific path
-        String filename = generateFilename("users/" + userId + "/vaccines/batches", vaccinationRecordId.toString(), file.getOriginalFilename());
-
-        // Upload to S3
-        return uploadToS3(compressedImage, filename, file.getContentType());
+    public UploadedImage uploadVaccineBatchImage(MultipartFile file, Long vaccinationRecordId, String userId) throws IOException {
+        return uploadRenditions(file, "users/" + userId + "/vaccines", recordIdOf(vaccinationRecordId));
     }
 
     /**
-     * Uploads a user profile image to S3
+     * Uploads the renditions of a user profile image to S3
      *
      * @param file the image file
      * @param userId the Firebase user ID
-     * @return the S3 URL of the uploaded image
+     * @return the S3 URLs of the uploaded renditions
      * @throws IOException if upload fails
      */
-    public String uploadUserProfileImage(MultipartFile file, String userId) throws IOException {
-        validateImage(file);
+    public UploadedImage uploadUserProfileImage(MultipartFile file, String userId) throws IOException {
+        return uploadRenditions(file, "users/" + userId + "/profile", userId);
+    }
 
-        // Compress the image
-        byte[] compressedImage = imageCompressionService.compressImage(file);
+    /**
+     * Issues a presigned PUT for uploading an original image straight to a staging key of the user
+     *
+     * @param userId the Firebase user ID of the uploader
+     * @param contentType the image content type the client will send
+     * @param contentLength the exact size in bytes the client will send
+     * @return the URL, and the headers the client must send with it
+     * @throws IOException if the content type or size is not acceptable
+     */
+    public DirectUpload createDirectUpload(String userId, String contentType, long contentLength) throws IOException {
+        if (contentType == null || !contentType.startsWith("image/")) {
+            throw new IOException("File is not a valid image");
+        }
+        if (contentLength <= 0) {
+            throw new IOException("File is empty");
+        }
+        checkSize(contentLength);
+
+        String key = stagingPrefix(userId) + UUID.randomUUID();
+        PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentLength(contentLength)
+                // Lets a lifecycle rule expire staged uploads that are never completed
+                .tagging(STAGING_TAGGING)
+                .build();
+
+        PresignedPutObjectRequest presigned = s3Presigner.presignPutObject(PutObjectPresignRequest.builder()
+                .signatureDuration(Duration.ofMinutes(directUploadExpiryMinutes))
+                .putObjectRequest(putRequest)
+                .build());
+
+        // Every signed header but Host (which the HTTP client sets) must be sent as signed
+        Map<String, String> headers = new LinkedHashMap<>();
+        presigned.signedHeaders().forEach((name, values) -> {
+            if (!name.equalsIgnoreCase("host")) {
+                headers.put(name, String.join(",", values));
+            }
+        });
+
+        return new DirectUpload(key, presigned.url().toString(), presigned.httpRequest().method().name(), headers,
+                presigned.expiration().toString());
+    }
 
-        // Generate unique filename with user-specific path
-        String filename = generateFilename("users/" + userId + "/profile", "avatar", file.getOriginalFilename());
+    /**
+     * Checks that a staged upload belongs to the user, exists and is within the size limit
+     *
+     * @param stagingKey the key returned by createDirectUpload
+     * @param userId the Firebase user ID of the uploader
+     * @throws IOException describing why the staged upload cannot be processed
+     */
+    public void checkStagedUpload(String stagingKey, String userId) throws IOException {
+        checkStagingKey(stagingKey, userId);
 
-        // Upload to S3
-        return uploadToS3(compressedImage, filename, file.getContentType());
+        try {
+            HeadObjectResponse response = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(stagingKey)
+                    .build());
+            checkSize(response.contentLength());
+        } catch (S3Exception e) {
+            // HEAD responses have no body, so a missing key is only a 404
+            if (e.statusCode() == 404) {
+                throw new IOException("Staged upload not found: " + stagingKey);
+            }
+            throw e;
+        }
     }
 
     /**
-     * Uploads a thumbnail version of an image
+     * Downloads a staged upload into the spool directory, so it can be processed like a
+     * multipart upload
      *
-     * @param file the original image file
-     * @param type the type of image (pet, vaccine, or user)
-     * @param entityId the entity ID (can be null for user type)
-     * @param userId the Firebase user ID (owner of the pet)
-     * @return the S3 URL of the uploaded thumbnail
-     * @throws IOException if upload fails
+     * @param stagingKey the key returned by createDirectUpload
+     * @param userId the Firebase user ID of the uploader
+     * @return the spooled image; the caller must close it
+     * @throws IOException if the staged upload is not acceptable or cannot be downloaded
      */
-    public String uploadThumbnail(MultipartFile file, String type, Long entityId, String userId) throws IOException {
-        validateImage(file);
-
-        // Create thumbnail
-        byte[] thumbnail = imageCompressionService.createThumbnail(file);
+    public SpooledMultipartFile downloadStagedUpload(String stagingKey, String userId) throws IOException {
+        checkStagingKey(stagingKey, userId);
+
+        GetObjectRequest getRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(stagingKey)
+                .build();
+
+        SpooledMultipartFile file;
+        try (ResponseInputStream<GetObjectResponse> object = s3Client.getObject(getRequest)) {
+            checkSize(object.response().contentLength());
+            String filename = stagingKey.substring(stagingKey.lastIndexOf('/') + 1);
+            file = SpooledMultipartFile.spool(object, filename, object.response().contentType(),
+                    Paths.get(spoolDirectory));
+        } catch (NoSuchKeyException e) {
+            throw new IOException("Staged upload not found: " + stagingKey);
+        }
 
-        // Generate unique filename for thumbnail with user-specific path
-        String prefix;
-        String entityIdStr;
+        try {
+            validateImage(file);
+            return file;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
 
-        if (type.equals("pet")) {
-            prefix = "users/" + userId + "/pets/thumbnails";
-            entityIdStr = entityId.toString();
-        } else if (type.equals("user")) {
-            prefix = "users/" + userId + "/profile/thumbnails";
-            entityIdStr = "avatar";
-        } else {
-            prefix = "users/" + userId + "/vaccines/thumbnails";
-            entityIdStr = entityId.toString();
+    /**
+     * Deletes a staged upload once it has been processed. A failure is only logged: the
+     * renditions are stored, and the lifecycle rule removes the staged object eventually.
+     *
+     * @param stagingKey the key returned by createDirectUpload
+     */
+    public void deleteStagedUpload(String stagingKey) {
+        try {
+            s3Client.deleteObject(DeleteObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(stagingKey)
+                    .build());
+        } catch (Exception e) {
+            log.warn("Failed to delete staged upload {}: {}", stagingKey, e.getMessage());
         }
+    }
 
-        String filename = generateFilename(prefix, entityIdStr, file.getOriginalFilename());
+    /**
+     * Private helper: Compress an image once into every configured rendition and upload them.
+     * Keys are content-addressed: all renditions are stored under prefix/{rendition}/{sha256}.{ext},
+     * so the same image uploaded again maps to the same keys and, if already stored, is not uploaded.
+     * The record ID (pet, vaccination record or user) is added to the users of the stored image.
+     */
+    private UploadedImage uploadRenditions(MultipartFile file, String prefix, String recordId) throws IOException {
+        validateImage(file);
 
-        // Upload to S3
-        return uploadToS3(thumbnail, filename, file.getContentType());
+        // Decode once and derive every rendition from the same bitmap;
+        // the spool files are deleted once uploaded
+        try (ImageCompressionService.ImageRenditions renditions = imageCompressionService.createRenditions(file)) {
+            // The extension is the encoded format, which may differ from the uploaded file's
+            String filename = renditions.getContentHash() + "." + renditions.getFormat();
+            String contentKey = prefix + "/" + renditions.getContentHash();
+
+            List<String> keys = new ArrayList<>();
+            List<ImageCompressionService.EncodedImage> bodies = new ArrayList<>();
+            Map<String, String> renditionUrls = new LinkedHashMap<>();
+            renditions.getRenditions().forEach((name, rendition) -> {
+                String key = prefix + "/" + name + "/" + filename;
+                keys.add(key);
+                bodies.add(rendition);
+                renditionUrls.put(name, toUrl(key));
+            });
+
+            // A hit also adds this record to the users of the stored objects
+            ImageHashIndex.Reservation reservation = reserve(contentKey, renditionUrls.keySet(), recordId);
+            boolean deduplicated = reservation.stored();
+            if (deduplicated) {
+                log.info("Image {} is already stored, skipping upload", contentKey);
+            } else {
+                // Upload all renditions to S3 concurrently; only the reservation holder may roll back
+                uploadAllToS3(keys, bodies, renditions.getContentType(),
+                        () -> imageHashIndex.abort(contentKey, reservation.token()));
+                imageHashIndex.commit(contentKey, renditionUrls.keySet(), recordId, reservation.token());
+            }
+
+            return new UploadedImage(renditionUrls, renditions.getFormat(),
+                    renditions.getOriginalSize(), renditions.getStoredSize(), deduplicated);
+        }
     }
 
     /**
-     * Deletes an image from S3
+     * Private helper: Reserve a content key for upload, waiting while a concurrent upload of the same
+     * image holds it. Reservations expire, so the wait ends once it is committed or can be taken over.
+     */
+    private ImageHashIndex.Reservation reserve(String contentKey, Collection<String> renditions, String recordId) {
+        long deadline = System.currentTimeMillis() + imageHashIndex.getReservationTimeoutMillis();
+        long backoffMillis = 50;
+        while (true) {
+            ImageHashIndex.Reservation reservation = imageHashIndex.reserve(contentKey, renditions, recordId);
+            if (!reservation.pending()) {
+                return reservation;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IllegalStateException("Another upload of image " + contentKey + " is still in progress");
+            }
+
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for upload of image " + contentKey, e);
+            }
+            backoffMillis = Math.min(backoffMillis * 2, 1000);
+        }
+    }
+
+    /**
+     * Deletes a user's image from S3. Identical uploads share their objects, so this only removes
+     * the record from the users of the image, and every rendition is deleted once no other record
+     * uses it. Deleting for the same record again, or for a record that does not use the image,
+     * deletes nothing; neither does an image the index has no entry for, since its users are unknown.
      *
-     * @param imageUrl the full S3 URL of the image
+     * @param imageUrl the full S3 URL of the image (any of its renditions)
+     * @param entityId the pet or vaccination record ID the image was uploaded for (not needed for
+     *                 user profile images)
+     * @param userId the Firebase user ID the image must belong to
+     * @return true if the objects were deleted, false if they were kept
+     * @throws IllegalArgumentException if the image is not the user's, or the entity ID is missing
      */
-    public void deleteImage(String imageUrl) {
-        try {
-            // Extract key from URL
-            String key = extractKeyFromUrl(imageUrl);
+    public boolean deleteImage(String imageUrl, Long entityId, String userId) {
+        String key = extractKeyFromUrl(imageUrl);
+        if (!isKeyOfUser(key, userId)) {
+            throw new IllegalArgumentException("Not an image of this user: " + imageUrl);
+        }
 
-            DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
+        try {
+            String contentKey = contentKeyOf(key);
+            List<String> keys = new ArrayList<>();
+            keys.add(key);
+            if (contentKey != null) {
+                String recordId = recordIdOf(contentKey, entityId, userId);
+                ImageHashIndex.Release release = imageHashIndex.release(contentKey, recordId);
+                if (!release.indexed()) {
+                    log.warn("Image {} has no index entry, keeping it", contentKey);
+                    return false;
+                }
+                if (!release.unused()) {
+                    log.info("Image {} is still used by {} record(s) or an upload in progress, keeping it",
+                            contentKey, release.records().size());
+                    return false;
+                }
+
+                // prefix/{rendition}/{sha256}.{ext}: the other renditions share prefix and filename
+                String prefix = contentKey.substring(0, contentKey.lastIndexOf('/'));
+                String filename = key.substring(key.lastIndexOf('/') + 1);
+                for (String rendition : release.renditions()) {
+                    String renditionKey = prefix + "/" + rendition + "/" + filename;
+                    if (!keys.contains(renditionKey)) {
+                        keys.add(renditionKey);
+                    }
+                }
+            }
+
+            DeleteObjectsRequest deleteRequest = DeleteObjectsRequest.builder()
                     .bucket(bucketName)
-                    .key(key)
+                    .delete(Delete.builder()
+                            .objects(keys.stream()
+                                    .map(objectKey -> ObjectIdentifier.builder().key(objectKey).build())
+                                    .toList())
+                            .build())
                     .build();
 
-            s3Client.deleteObject(deleteRequest);
+            DeleteObjectsResponse response = s3Client.deleteObjects(deleteRequest);
+            if (response.hasErrors() && !response.errors().isEmpty()) {
+                S3Error error = response.errors().get(0);
+                throw new IllegalStateException(error.key() + ": " + error.message());
+            }
+            return true;
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException("Failed to delete image from S3: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Whether an S3 URL is an image of the user (a key of this bucket under users/{uid}/)
+     *
+     * @param imageUrl the S3 URL
+     * @param userId the Firebase user ID
+     * @return true if the image belongs to the user
+     */
+    public boolean isImageOfUser(String imageUrl, String userId) {
+        try {
+            return isKeyOfUser(extractKeyFromUrl(imageUrl), userId);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * Gets a presigned URL for temporary direct access to an image
      *
      * @param imageUrl the S3 URL
-     * @return presigned URL (valid for 1 hour)
+     * @return presigned URL (valid for at least app.image.presigned-get.url-expiry-minutes)
      */
     public String getPresignedUrl(String imageUrl) {
-        // For production, implement presigned URL generation
-        // For now, return the direct URL (make sure bucket has proper CORS)
-        return imageUrl;
+        String key = extractKeyFromUrl(imageUrl);
+        return presignAll(List.of(key)).get(key).getUrl();
+    }
+
+    /**
+     * Gets presigned URLs for a list of a user's images, e.g. every image of a list response.
+     * URLs that are not images of the user (or not S3 URLs of this bucket) are left out.
+     *
+     * @param imageUrls the S3 URLs
+     * @param userId the Firebase user ID the images must belong to
+     * @return presigned URL and its expiry by S3 URL, in request order
+     */
+    public Map<String, PresignedUrl> getPresignedUrls(Collection<String> imageUrls, String userId) {
+        Map<String, String> keysByUrl = new LinkedHashMap<>();
+        for (String imageUrl : imageUrls) {
+            if (imageUrl == null) {
+                continue;
+            }
+            try {
+                String key = extractKeyFromUrl(imageUrl);
+                if (isKeyOfUser(key, userId)) {
+                    keysByUrl.put(imageUrl, key);
+                }
+            } catch (IllegalArgumentException e) {
+                log.debug("Not signing {}: {}", imageUrl, e.getMessage());
+            }
+        }
+
+        Map<String, PresignedUrl> byKey = presignAll(keysByUrl.values());
+        Map<String, PresignedUrl> result = new LinkedHashMap<>();
+        keysByUrl.forEach((imageUrl, key) -> result.put(imageUrl, byKey.get(key)));
+        return result;
     }
 
     /**
@@ -194,46 +483,234 @@ public class S3Service {
     }
 
     /**
-     * Private helper: Upload bytes to S3
+     * Private helper: Upload several spooled images to S3 concurrently, streaming them from disk.
+     * Keys are content-addressed and may already hold the same image for other records (e.g. when
+     * the index missed them), so every key is checked first: existing objects are not uploaded
+     * again. If any upload fails, the reservation is aborted, and only if this upload still held it
+     * are the objects it created deleted.
      */
-    private String uploadToS3(byte[] imageBytes, String key, String contentType) {
-        try {
+    private void uploadAllToS3(List<String> keys, List<ImageCompressionService.EncodedImage> bodies,
+                               String contentType, BooleanSupplier abortReservation) {
+        List<Boolean> existed = existingKeys(keys);
+
+        List<CompletableFuture<PutObjectResponse>> uploads = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(existed.get(i))) {
+                uploads.add(CompletableFuture.completedFuture(null));
+                continue;
+            }
+
             PutObjectRequest putRequest = PutObjectRequest.builder()
                     .bucket(bucketName)
-                    .key(key)
+                    .key(keys.get(i))
                     .contentType(contentType)
-                    .contentLength((long) imageBytes.length)
+                    .contentLength(bodies.get(i).getSize())
+                    // Content-addressed keys never change content, so clients may cache them forever
+                    .cacheControl(cacheControl)
                     .build();
 
-            s3Client.putObject(putRequest, RequestBody.fromBytes(imageBytes));
+            uploads.add(s3AsyncClient.putObject(putRequest, AsyncRequestBody.fromFile(bodies.get(i).getPath())));
+        }
 
-            // Return the S3 URL with region
-            // Format: https://bucket-name.s3.region.amazonaws.com/key
-            return String.format("https://%s.s3.%s.amazonaws.com/%s", bucketName, region, key);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to upload image to S3: " + e.getMessage(), e);
+        try {
+            // allOf completes once every upload has, successfully or not
+            CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (abortReservation.getAsBoolean()) {
+                deleteUploaded(keys, existed, uploads);
+            }
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Failed to upload image to S3: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Private helper: Whether each key already exists, checked concurrently with HEAD requests.
+     * A key whose check failed for another reason than not existing is null: it is uploaded, but
+     * never deleted on rollback.
+     */
+    private List<Boolean> existingKeys(List<String> keys) {
+        List<CompletableFuture<Boolean>> heads = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            HeadObjectRequest headRequest = HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build();
+
+            heads.add(s3AsyncClient.headObject(headRequest)
+                    .handle((response, error) -> {
+                        if (error == null) {
+                            return Boolean.TRUE;
+                        }
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        if (cause instanceof NoSuchKeyException
+                                || (cause instanceof S3Exception s3Error && s3Error.statusCode() == 404)) {
+                            return Boolean.FALSE;
+                        }
+                        log.warn("Could not check whether {} exists: {}", key, cause.getMessage());
+                        return null;
+                    }));
+        }
+        return heads.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * Private helper: Delete the objects this upload created, after a sibling upload failed.
+     * Objects that existed before belong to other records and are left alone.
+     */
+    private void deleteUploaded(List<String> keys, List<Boolean> existed,
+                                List<CompletableFuture<PutObjectResponse>> uploads) {
+        List<CompletableFuture<?>> deletes = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (!Boolean.FALSE.equals(existed.get(i)) || uploads.get(i).isCompletedExceptionally()) {
+                continue;
+            }
+            String key = keys.get(i);
+            DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .build();
+
+            deletes.add(s3AsyncClient.deleteObject(deleteRequest)
+                    .whenComplete((response, error) -> {
+                        if (error != null) {
+                            log.error("Failed to delete orphaned upload {}: {}", key, error.getMessage());
+                        }
+                    }));
+        }
+        CompletableFuture.allOf(deletes.toArray(new CompletableFuture[0]))
+                .exceptionally(error -> null)
+                .join();
+    }
+
+    /**
+     * Private helper: Presigned GET URLs for object keys, from the cache or signed now.
+     * The cache key is the object key plus the current expiry bucket; URLs signed during a bucket
+     * all expire url-expiry-minutes after it ends, so a cached URL always has at least that left.
+     */
+    private Map<String, PresignedUrl> presignAll(Collection<String> keys) {
+        long now = System.currentTimeMillis();
+        long bucket = now / presignReuseMillis;
+        Instant expiresAt = Instant.ofEpochMilli((bucket + 1) * presignReuseMillis)
+                .plus(Duration.ofMinutes(presignedGetExpiryMinutes));
+
+        Map<String, String> cacheKeys = new LinkedHashMap<>();
+        for (String key : keys) {
+            cacheKeys.put(key, key + "@" + bucket);
+        }
+        Map<String, PresignedUrl> cached = presignedUrls.getAll(cacheKeys.values());
+
+        Map<String, PresignedUrl> result = new HashMap<>();
+        Map<String, PresignedUrl> signed = new HashMap<>();
+        Duration signatureDuration = Duration.between(Instant.ofEpochMilli(now), expiresAt);
+        cacheKeys.forEach((key, cacheKey) -> {
+            PresignedUrl url = cached.get(cacheKey);
+            if (url == null) {
+                url = new PresignedUrl(s3Presigner.presignGetObject(GetObjectPresignRequest.builder()
+                        .signatureDuration(signatureDuration)
+                        .getObjectRequest(GetObjectRequest.builder()
+                                .bucket(bucketName)
+                                .key(key)
+                                .build())
+                        .build()).url().toString(), expiresAt.toString());
+                signed.put(cacheKey, url);
+            }
+            result.put(key, url);
+        });
+
+        if (!signed.isEmpty()) {
+            presignedUrls.putAll(signed);
+        }
+        return result;
+    }
+
+    /**
+     * Private helper: Staging prefix of a user's direct uploads
+     */
+    private String stagingPrefix(String userId) {
+        return "users/" + userId + "/uploads/";
+    }
+
+    /**
+     * Private helper: Reject staging keys outside the user's staging prefix
+     */
+    private void checkStagingKey(String stagingKey, String userId) throws IOException {
+        String prefix = stagingPrefix(userId);
+        if (stagingKey == null || !stagingKey.startsWith(prefix)
+                || !stagingKey.substring(prefix.length()).matches("[0-9a-f-]{36}")) {
+            throw new IOException("Not a staged upload of this user: " + stagingKey);
         }
     }
 
     /**
-     * Private helper: Generate unique filename
+     * Private helper: Check a size against app.image.max-size-mb
      */
-    private String generateFilename(String prefix, String entityId, String originalFilename) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String uuid = UUID.randomUUID().toString().substring(0, 8);
-        String extension = getFileExtension(originalFilename);
+    private void checkSize(long bytes) throws IOException {
+        double fileSizeMB = bytes / (1024.0 * 1024.0);
+        if (fileSizeMB > maxSizeMB) {
+            throw new IOException(String.format("File size (%.2f MB) exceeds maximum allowed size (%d MB)",
+                    fileSizeMB, maxSizeMB));
+        }
+    }
 
-        return String.format("%s/%s_%s_%s.%s", prefix, entityId, timestamp, uuid, extension);
+    /**
+     * Private helper: Build the S3 URL of a key
+     */
+    private String toUrl(String key) {
+        // Format: https://bucket-name.s3.region.amazonaws.com/key
+        return String.format("https://%s.s3.%s.amazonaws.com/%s", bucketName, region, key);
+    }
+
+    /**
+     * Private helper: Whether a key is under the user's prefix, users/{uid}/
+     */
+    private boolean isKeyOfUser(String key, String userId) {
+        return userId != null && key.startsWith("users/" + userId + "/") && !key.contains("..");
     }
 
     /**
-     * Private helper: Extract file extension
+     * Private helper: Record ID of a pet or vaccine image upload, which the entity ID identifies
      */
-    private String getFileExtension(String filename) {
-        if (filename == null || !filename.contains(".")) {
-            return "jpg";
+    private String recordIdOf(Long entityId) throws IOException {
+        if (entityId == null) {
+            throw new IOException("entityId is required for pet and vaccine images");
         }
-        return filename.substring(filename.lastIndexOf(".") + 1).toLowerCase();
+        return String.valueOf(entityId);
+    }
+
+    /**
+     * Private helper: Record ID of an image by its content key, users/{uid}/{type}/{sha256}:
+     * the user for profile images, the entity ID otherwise
+     */
+    private String recordIdOf(String contentKey, Long entityId, String userId) {
+        String prefix = contentKey.substring(0, contentKey.lastIndexOf('/'));
+        if (prefix.equals("users/" + userId + "/profile")) {
+            return userId;
+        }
+        if (entityId == null) {
+            throw new IllegalArgumentException("entityId is required to delete a pet or vaccine image");
+        }
+        return String.valueOf(entityId);
+    }
+
+    /**
+     * Private helper: Content key (prefix/{sha256}) of a content-addressed object key
+     * (prefix/{rendition}/{sha256}.{ext}), or null for keys of other layouts
+     */
+    private String contentKeyOf(String key) {
+        int filenameStart = key.lastIndexOf('/');
+        int renditionStart = filenameStart > 0 ? key.lastIndexOf('/', filenameStart - 1) : -1;
+        int extensionStart = key.lastIndexOf('.');
+        if (renditionStart <= 0 || extensionStart < filenameStart) {
+            return null;
+        }
+
+        String hash = key.substring(filenameStart + 1, extensionStart);
+        if (!hash.matches("[0-9a-f]{64}")) {
+            return null;
+        }
+        return key.substring(0, renditionStart) + "/" + hash;
     }
 
     /**
@@ -242,24 +719,29 @@ public class S3Service {
     private String extractKeyFromUrl(String url) {
         // URL format: https://bucket-name.s3.amazonaws.com/key
         // Or: https://s3.amazonaws.com/bucket-name/key
-        String[] parts = url.split(bucketName + "/");
-        if (parts.length > 1) {
-            return parts[1];
+        // (plain indexOf: list responses extract a key for every image URL)
+        String bucketPath = bucketName + "/";
+        int bucketStart = url.indexOf(bucketPath);
+        if (bucketStart >= 0 && url.length() > bucketStart + bucketPath.length()) {
+            return url.substring(bucketStart + bucketPath.length());
         }
 
         // Fallback: extract everything after .com/
-        parts = url.split("\\.com/");
-        if (parts.length > 1) {
-            return parts[1];
+        int hostEnd = url.indexOf(".com/");
+        if (hostEnd >= 0 && url.length() > hostEnd + 5) {
+            return url.substring(hostEnd + 5);
         }
 
         throw new IllegalArgumentException("Invalid S3 URL format: " + url);
     }
 
     /**
-     * Private helper: Validate image file
+     * Validates an image file (not empty, image content type, within app.image.max-size-mb)
+     *
+     * @param file the image file
+     * @throws IOException describing why the file is not acceptable
      */
-    private void validateImage(MultipartFile file) throws IOException {
+    public void validateImage(MultipartFile file) throws IOException {
         if (file == null || file.isEmpty()) {
             throw new IOException("File is empty");
         }
@@ -269,11 +751,7 @@ public class S3Service {
         }
 
         // Check file size (before compression)
-        double fileSizeMB = file.getSize() / (1024.0 * 1024.0);
-        if (fileSizeMB > maxSizeMB) {
-            throw new IOException(String.format("File size (%.2f MB) exceeds maximum allowed size (%d MB)",
-                    fileSizeMB, maxSizeMB));
-        }
+        checkSize(file.getSize());
     }
 
     /**
@@ -301,6 +779,85 @@ public class S3Service {
         }
     }
 
+    /**
+     * Inner class for the URLs of an uploaded image's renditions, largest first, how much the
+     * encoding saved, and whether the content was already stored (so nothing was uploaded).
+     * The image URL is the largest rendition and the thumbnail URL the smallest.
+     */
+    public static class UploadedImage {
+        private final Map<String, String> renditionUrls;
+        private final String format;
+        private final long originalBytes;
+        private final long storedBytes;
+        private final boolean deduplicated;
+
+        public UploadedImage(Map<String, String> renditionUrls, String format, long originalBytes, long storedBytes,
+                             boolean deduplicated) {
+            this.renditionUrls = Collections.unmodifiableMap(renditionUrls);
+            this.format = format;
+            this.originalBytes = originalBytes;
+            this.storedBytes = storedBytes;
+            this.deduplicated = deduplicated;
+        }
+
+        public Map<String, String> getRenditionUrls() { return renditionUrls; }
+        public String getFormat() { return format; }
+        public long getOriginalBytes() { return originalBytes; }
+        public long getStoredBytes() { return storedBytes; }
+        public boolean isDeduplicated() { return deduplicated; }
+        public String getImageUrl() { return renditionUrls.values().iterator().next(); }
+        public String getThumbnailUrl() {
+            String smallest = null;
+            for (String url : renditionUrls.values()) {
+                smallest = url;
+            }
+            return smallest;
+        }
+    }
+
+    /**
+     * Inner class for a presigned direct upload: PUT the image to uploadUrl with exactly these
+     * headers before expiresAt, then complete it with the key
+     */
+    public static class DirectUpload {
+        private final String key;
+        private final String uploadUrl;
+        private final String method;
+        private final Map<String, String> headers;
+        private final String expiresAt;
+
+        public DirectUpload(String key, String uploadUrl, String method, Map<String, String> headers,
+                            String expiresAt) {
+            this.key = key;
+            this.uploadUrl = uploadUrl;
+            this.method = method;
+            this.headers = Collections.unmodifiableMap(headers);
+            this.expiresAt = expiresAt;
+        }
+
+        public String getKey() { return key; }
+        public String getUploadUrl() { return uploadUrl; }
+        public String getMethod() { return method; }
+        public Map<String, String> getHeaders() { return headers; }
+        public String getExpiresAt() { return expiresAt; }
+    }
+
+    /**
+     * Inner class for a presigned GET URL and when it expires
+     */
+    public static class PresignedUrl {
+        private final String url;
+        private final String expiresAt;
+
+        public PresignedUrl(String url, String expiresAt) {
+            this.url = url;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getUrl() { return url; }
+        public String getExpiresAt() { return expiresAt; }
+    }
+
     /**
      * Inner class for image metadata
      */
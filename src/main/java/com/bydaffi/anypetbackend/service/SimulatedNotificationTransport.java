@@ -0,0 +1,173 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Fake FCM for load tests without network or quota.
+ *
+ * Every call completes after a log-normally distributed delay (configured by its median and p99),
+ * on a small scheduler, so no thread is held per call, as with the real SDK.
+ * A fraction of sends fail with a configurable error code. Periodically, all sends fail with
+ * QUOTA_EXCEEDED for a while, to exercise backoff and backpressure.
+ */
+@Component
+@ConditionalOnProperty(name = "app.notifications.transport", havingValue = "simulated")
+@Slf4j
+public class SimulatedNotificationTransport implements NotificationTransport {
+
+    /**
+     * z-score of the 99th percentile of a standard normal distribution
+     */
+    private static final double Z_99 = 2.326;
+
+    private final double latencyMu;
+    private final double latencySigma;
+    private final double errorRate;
+    private final String errorCode;
+    private final long quotaBurstEveryMillis;
+    private final long quotaBurstDurationMillis;
+    private final long startedAtMillis = System.currentTimeMillis();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "simulated-fcm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong quotaExceeded = new AtomicLong();
+
+    public SimulatedNotificationTransport(
+            @Value("${app.notifications.simulated.latency-median-ms:40}") double latencyMedianMillis,
+            @Value("${app.notifications.simulated.latency-p99-ms:250}") double latencyP99Millis,
+            @Value("${app.notifications.simulated.error-rate:0.01}") double errorRate,
+            @Value("${app.notifications.simulated.error-code:UNAVAILABLE}") String errorCode,
+            @Value("${app.notifications.simulated.quota-burst-every-seconds:0}") long quotaBurstEverySeconds,
+            @Value("${app.notifications.simulated.quota-burst-duration-seconds:5}") long quotaBurstDurationSeconds) {
+        this.latencyMu = Math.log(Math.max(latencyMedianMillis, 0.001));
+        this.latencySigma = Math.max(0, (Math.log(Math.max(latencyP99Millis, latencyMedianMillis)) - latencyMu) / Z_99);
+        this.errorRate = errorRate;
+        this.errorCode = errorCode;
+        this.quotaBurstEveryMillis = quotaBurstEverySeconds * 1000;
+        this.quotaBurstDurationMillis = quotaBurstDurationSeconds * 1000;
+
+        log.info("Simulated FCM transport: latency median {} ms, p99 {} ms, error rate {}, quota burst every {} s",
+                latencyMedianMillis, latencyP99Millis, errorRate, quotaBurstEverySeconds);
+    }
+
+    @Override
+    public CompletableFuture<String> send(PushNotificationRequest request) {
+        return delayed(this::sendOne);
+    }
+
+    @Override
+    public CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request, List<String> tokens) {
+        return delayed(() -> {
+            boolean quotaBurst = inQuotaBurst();
+            List<SendResult> results = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                if (quotaBurst) {
+                    quotaExceeded.incrementAndGet();
+                    results.add(SendResult.failure(token, NotificationSendException.QUOTA_EXCEEDED));
+                } else if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                    failed.incrementAndGet();
+                    results.add(SendResult.failure(token, errorCode));
+                } else {
+                    sent.incrementAndGet();
+                    results.add(SendResult.success(token, nextMessageId()));
+                }
+            }
+            return new MulticastResult(results);
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> sendToTopic(PushNotificationRequest request, String topic) {
+        return delayed(this::sendOne);
+    }
+
+    @Override
+    public CompletableFuture<TopicResult> subscribeToTopic(List<String> tokens, String topic) {
+        return delayed(() -> new TopicResult(tokens.size(), List.of()));
+    }
+
+    @Override
+    public CompletableFuture<TopicResult> unsubscribeFromTopic(List<String> tokens, String topic) {
+        return delayed(() -> new TopicResult(tokens.size(), List.of()));
+    }
+
+    private String sendOne() {
+        if (inQuotaBurst()) {
+            quotaExceeded.incrementAndGet();
+            throw new CompletionException(new NotificationSendException(
+                    NotificationSendException.QUOTA_EXCEEDED, "Simulated FCM quota exceeded"));
+        }
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            failed.incrementAndGet();
+            throw new CompletionException(new NotificationSendException(
+                    errorCode, "Simulated FCM error"));
+        }
+        sent.incrementAndGet();
+        return nextMessageId();
+    }
+
+    /**
+     * Completes the outcome after a sampled latency, evaluated when the simulated response arrives
+     */
+    private <T> CompletableFuture<T> delayed(Supplier<T> outcome) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long delayMicros = (long) (Math.exp(latencyMu + latencySigma * ThreadLocalRandom.current().nextGaussian()) * 1000);
+
+        scheduler.schedule(() -> {
+            try {
+                future.complete(outcome.get());
+            } catch (CompletionException e) {
+                future.completeExceptionally(e.getCause());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, delayMicros, TimeUnit.MICROSECONDS);
+
+        return future;
+    }
+
+    private boolean inQuotaBurst() {
+        if (quotaBurstEveryMillis <= 0) {
+            return false;
+        }
+        long elapsed = System.currentTimeMillis() - startedAtMillis;
+        return elapsed % quotaBurstEveryMillis >= quotaBurstEveryMillis - quotaBurstDurationMillis;
+    }
+
+    private String nextMessageId() {
+        return "simulated-" + messageIds.incrementAndGet();
+    }
+
+    // Counters of simulated outcomes
+    public long getSentCount() { return sent.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getQuotaExceededCount() { return quotaExceeded.get(); }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,137 @@
+package com.bydaffi.anypetbackend.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Small thread-safe in-memory cache with a maximum size and a time-to-live per entry.
+ * When full, the least recently used entry is evicted. Expired entries are dropped on access.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedTtlCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    public BoundedTtlCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedTtlCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets a value if present and not expired
+     *
+     * @param key the key
+     * @return the cached value, or null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Gets all present, non-expired values for the given keys in one lock acquisition
+     *
+     * @param keys the keys to look up
+     * @return map containing only the keys that were found
+     */
+    public synchronized Map<K, V> getAll(Collection<K> keys) {
+        long now = System.currentTimeMillis();
+        Map<K, V> found = new HashMap<>();
+        for (K key : keys) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.isExpired(now)) {
+                entries.remove(key);
+            } else {
+                found.put(key, entry.value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Stores a value using the default time-to-live
+     */
+    public void put(K key, V value) {
+        put(key, value, ttlMillis);
+    }
+
+    /**
+     * Stores a value with a specific time-to-live
+     */
+    public synchronized void put(K key, V value, long entryTtlMillis) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + entryTtlMillis));
+    }
+
+    /**
+     * Stores all values using the default time-to-live
+     */
+    public synchronized void putAll(Map<K, V> values) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        values.forEach((key, value) -> entries.put(key, new Entry<>(value, expiresAt)));
+    }
+
+    /**
+     * Removes a value
+     */
+    public synchronized V remove(K key) {
+        Entry<V> entry = entries.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Removes every expired entry
+     */
+    public synchronized void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isExpired(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long expiresAtMillis;
+
+        private Entry(V value, long expiresAtMillis) {
+            this.value = value;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.bydaffi.anypetbackend.util;
+
+import java.awt.image.IndexColorModel;
+
+/**
+ * Set of up to 256 distinct ARGB colours, used to detect flat graphics and to build the palette
+ * of an indexed PNG.
+ *
+ * Colours are kept in a small open-addressing hash table of primitive ints, so adding the pixels
+ * of a full-size image allocates nothing. Each colour gets a palette index in insertion order.
+ */
+public class ColorPalette {
+
+    public static final int MAX_COLORS = 256;
+
+    /**
+     * Hash slots; four times the colours keeps the probes short
+     */
+    private static final int SLOTS = 1024;
+    private static final int SLOT_SHIFT = 32 - Integer.numberOfTrailingZeros(SLOTS);
+
+    private final int[] slotColors = new int[SLOTS];
+
+    /**
+     * Palette index + 1 of each slot, 0 when the slot is empty
+     */
+    private final short[] slotIndices = new short[SLOTS];
+
+    private final int[] colors = new int[MAX_COLORS];
+    private int size;
+
+    /**
+     * Adds a colour
+     *
+     * @param argb the colour
+     * @return false if the colour is new and the palette is already full
+     */
+    public boolean add(int argb) {
+        int slot = slotOf(argb);
+        if (slotIndices[slot] != 0) {
+            return true;
+        }
+        if (size == MAX_COLORS) {
+            return false;
+        }
+        colors[size] = argb;
+        slotColors[slot] = argb;
+        slotIndices[slot] = (short) ++size;
+        return true;
+    }
+
+    /**
+     * @return the palette index of a colour, or -1 if it is not in the palette
+     */
+    public int indexOf(int argb) {
+        return slotIndices[slotOf(argb)] - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Builds the colour model of an indexed image with this palette, using the smallest
+     * bit depth PNG supports for the number of colours (1, 2, 4 or 8 bits per pixel)
+     *
+     * @param translucent whether to keep the alpha of the colours
+     */
+    public IndexColorModel toColorModel(boolean translucent) {
+        int paletteSize = Math.max(size, 1);
+        byte[] reds = new byte[paletteSize];
+        byte[] greens = new byte[paletteSize];
+        byte[] blues = new byte[paletteSize];
+        byte[] alphas = new byte[paletteSize];
+        for (int i = 0; i < size; i++) {
+            alphas[i] = (byte) (colors[i] >>> 24);
+            reds[i] = (byte) (colors[i] >>> 16);
+            greens[i] = (byte) (colors[i] >>> 8);
+            blues[i] = (byte) colors[i];
+        }
+
+        int bits = paletteSize <= 2 ? 1 : paletteSize <= 4 ? 2 : paletteSize <= 16 ? 4 : 8;
+        return translucent
+                ? new IndexColorModel(bits, paletteSize, reds, greens, blues, alphas)
+                : new IndexColorModel(bits, paletteSize, reds, greens, blues);
+    }
+
+    /**
+     * Slot holding the colour, or the empty slot where it belongs (linear probing)
+     */
+    private int slotOf(int argb) {
+        int slot = (argb * 0x9E3779B9) >>> SLOT_SHIFT;
+        while (slotIndices[slot] != 0 && slotColors[slot] != argb) {
+            slot = (slot + 1) & (SLOTS - 1);
+        }
+        return slot;
+    }
+}
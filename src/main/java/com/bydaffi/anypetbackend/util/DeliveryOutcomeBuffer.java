@@ -0,0 +1,134 @@
+package com.bydaffi.anypetbackend.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free ring buffer of notification send outcomes.
+ *
+ * Any number of threads may offer outcomes (typically FCM response callbacks); a single consumer
+ * drains them. Offering never blocks and never allocates: a slot is claimed with a CAS on the write
+ * sequence, its fields are written into preallocated arrays, and the slot is then published by
+ * storing its sequence number. When the consumer falls a whole buffer behind, new outcomes are
+ * dropped and counted instead of overwriting unread ones.
+ */
+public class DeliveryOutcomeBuffer {
+
+    private final int capacity;
+    private final int mask;
+
+    private final long[] timestamps;
+    private final long[] latencies;
+    private final String[] reminderIds;
+    private final String[] errorCodes;
+
+    /**
+     * Sequence number stored in each slot once its fields are written
+     */
+    private final AtomicLongArray published;
+
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong readSequence = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity Number of slots, rounded up to a power of two
+     */
+    public DeliveryOutcomeBuffer(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.timestamps = new long[this.capacity];
+        this.latencies = new long[this.capacity];
+        this.reminderIds = new String[this.capacity];
+        this.errorCodes = new String[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Records an outcome without blocking
+     *
+     * @param timestampMillis When the send completed
+     * @param reminderId Reminder that triggered the send, or null
+     * @param latencyMillis Time FCM took to answer
+     * @param errorCode FCM error code, or null if the send succeeded
+     * @return false if the buffer was full and the outcome was dropped
+     */
+    public boolean offer(long timestampMillis, String reminderId, long latencyMillis, String errorCode) {
+        long sequence;
+        do {
+            sequence = writeSequence.get();
+            if (sequence - readSequence.get() >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!writeSequence.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) (sequence & mask);
+        timestamps[slot] = timestampMillis;
+        latencies[slot] = latencyMillis;
+        reminderIds[slot] = reminderId;
+        errorCodes[slot] = errorCode;
+        // Release: the fields above are visible to the consumer once it sees the sequence
+        published.setRelease(slot, sequence);
+        return true;
+    }
+
+    /**
+     * Hands every published outcome to the consumer and frees their slots.
+     * Must only be called from one thread at a time.
+     *
+     * @param consumer Receives the outcomes in publication order
+     * @return Number of outcomes drained
+     */
+    public int drain(OutcomeConsumer consumer) {
+        long start = readSequence.get();
+        long sequence = start;
+
+        while (true) {
+            int slot = (int) (sequence & mask);
+            if (published.getAcquire(slot) != sequence) {
+                break;
+            }
+            consumer.accept(timestamps[slot], reminderIds[slot], latencies[slot], errorCodes[slot]);
+            reminderIds[slot] = null;
+            errorCodes[slot] = null;
+            sequence++;
+        }
+
+        readSequence.set(sequence);
+        return (int) (sequence - start);
+    }
+
+    /**
+     * Outcomes dropped because the buffer was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Outcomes offered but not drained yet
+     */
+    public int size() {
+        return (int) (writeSequence.get() - readSequence.get());
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Receives drained outcomes field by field, so draining allocates nothing
+     */
+    @FunctionalInterface
+    public interface OutcomeConsumer {
+        void accept(long timestampMillis, String reminderId, long latencyMillis, String errorCode);
+    }
+}
@@ -0,0 +1,49 @@
+package com.bydaffi.anypetbackend.util;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Adapts Google API futures (returned by the Firebase Admin SDK) to CompletableFuture.
+ */
+public final class FutureConverters {
+
+    private FutureConverters() {
+    }
+
+    /**
+     * Converts an ApiFuture into a CompletableFuture without blocking a thread.
+     * Callbacks run on the thread that completes the ApiFuture, so dependent stages should stay cheap
+     * or switch executors. Cancelling the returned future cancels the ApiFuture.
+     *
+     * @param apiFuture the future to adapt
+     * @return a CompletableFuture completed with the same value or exception
+     */
+    public static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> apiFuture) {
+        CompletableFuture<T> future = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                apiFuture.cancel(mayInterruptIfRunning);
+                return super.cancel(mayInterruptIfRunning);
+            }
+        };
+
+        ApiFutures.addCallback(apiFuture, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+
+        return future;
+    }
+}
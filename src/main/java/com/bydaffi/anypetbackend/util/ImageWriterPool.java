@@ -0,0 +1,122 @@
+package com.bydaffi.anypetbackend.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded pool of ImageWriters, reused across encodes.
+ *
+ * Looking a writer up with ImageIO.getImageWritersByFormatName scans the service registry and
+ * instantiates a new writer every time; the JPEG writer also allocates its native codec state.
+ * Here an encode borrows an idle writer (with its write param) for the format and returns it when
+ * done. At most MAX_IDLE_PER_FORMAT idle writers are kept per format; extra ones are disposed on
+ * return, so the pool does not grow with the number of request or job threads. A writer that fails
+ * mid-encode is disposed, since its state is then unknown. disposeAll releases every idle writer
+ * on shutdown.
+ */
+public final class ImageWriterPool {
+
+    /**
+     * Idle writers kept per format: enough for every core to encode at once
+     */
+    static final int MAX_IDLE_PER_FORMAT = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final Map<String, BlockingQueue<PooledWriter>> IDLE = new ConcurrentHashMap<>();
+
+    private ImageWriterPool() {
+    }
+
+    /**
+     * Encodes an image with a pooled writer for the format
+     *
+     * @param image the image to encode
+     * @param format ImageIO format name, e.g. "jpg" or "png"
+     * @param quality compression quality (0-1); for PNG, 0 selects the highest deflate level
+     * @param output where to write the encoded image; not closed
+     * @throws IOException if there is no writer for the format or encoding fails
+     */
+    public static void write(RenderedImage image, String format, float quality, ImageOutputStream output)
+            throws IOException {
+        BlockingQueue<PooledWriter> idle = IDLE.computeIfAbsent(format,
+                key -> new ArrayBlockingQueue<>(MAX_IDLE_PER_FORMAT));
+        PooledWriter pooled = idle.poll();
+        if (pooled == null) {
+            pooled = PooledWriter.create(format);
+        }
+
+        boolean completed = false;
+        try {
+            if (pooled.param.canWriteCompressed()) {
+                pooled.param.setCompressionQuality(quality);
+            }
+            pooled.writer.setOutput(output);
+            pooled.writer.write(null, new IIOImage(image, null, null), pooled.param);
+            completed = true;
+        } finally {
+            if (completed) {
+                // Drop the reference to the stream, keep the writer if there is room
+                pooled.writer.setOutput(null);
+                if (!idle.offer(pooled)) {
+                    pooled.writer.dispose();
+                }
+            } else {
+                pooled.writer.dispose();
+            }
+        }
+    }
+
+    /**
+     * Number of idle writers currently kept for a format
+     */
+    public static int idleCount(String format) {
+        BlockingQueue<PooledWriter> idle = IDLE.get(format);
+        return idle != null ? idle.size() : 0;
+    }
+
+    /**
+     * Disposes every idle writer. Writers in use are disposed when returned if the pool is full,
+     * and later encodes create new writers as needed.
+     */
+    public static void disposeAll() {
+        for (BlockingQueue<PooledWriter> idle : IDLE.values()) {
+            PooledWriter pooled;
+            while ((pooled = idle.poll()) != null) {
+                pooled.writer.dispose();
+            }
+        }
+    }
+
+    private static final class PooledWriter {
+        private final ImageWriter writer;
+        private final ImageWriteParam param;
+
+        private PooledWriter(ImageWriter writer, ImageWriteParam param) {
+            this.writer = writer;
+            this.param = param;
+        }
+
+        static PooledWriter create(String format) throws IOException {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+            if (!writers.hasNext()) {
+                throw new IOException("No " + format + " writer found");
+            }
+
+            ImageWriter writer = writers.next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            }
+            return new PooledWriter(writer, param);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.bydaffi.anypetbackend.util;
+
+import com.bydaffi.anypetbackend.models.PetType;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Names of the FCM topics used for broadcasts.
+ *
+ * Devices are subscribed to one topic per pet type they own (e.g. "pet-type-dog") and to one
+ * topic for their language (e.g. "locale-es"), so species-wide campaigns and service notices
+ * go out as a single topic message.
+ */
+public final class NotificationTopics {
+
+    private static final String PET_TYPE_PREFIX = "pet-type-";
+    private static final String LOCALE_PREFIX = "locale-";
+
+    /**
+     * Characters FCM accepts in a topic name
+     */
+    private static final Pattern VALID_TOPIC = Pattern.compile("[a-zA-Z0-9\\-_.~%]{1,900}");
+
+    private NotificationTopics() {
+    }
+
+    /**
+     * Topic for owners of a pet type
+     *
+     * @param petType Pet type
+     * @return Topic name, e.g. "pet-type-dog"
+     */
+    public static String forPetType(PetType petType) {
+        return PET_TYPE_PREFIX + petType.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Topic for devices using a language
+     *
+     * @param languageTag Locale of the device, e.g. "es", "es-MX" or "es_MX"
+     * @return Topic name of the language, e.g. "locale-es"
+     */
+    public static String forLocale(String languageTag) {
+        if (languageTag == null || languageTag.trim().isEmpty()) {
+            throw new IllegalArgumentException("Locale is required");
+        }
+        String language = Locale.forLanguageTag(languageTag.trim().replace('_', '-')).getLanguage();
+        if (language.isEmpty()) {
+            throw new IllegalArgumentException("Invalid locale: " + languageTag);
+        }
+        return LOCALE_PREFIX + language;
+    }
+
+    /**
+     * Checks a topic name and strips the optional "/topics/" prefix
+     *
+     * @param topic Topic name
+     * @return Topic name without prefix
+     * @throws IllegalArgumentException if the name contains characters FCM does not accept
+     */
+    public static String validate(String topic) {
+        String name = topic != null && topic.startsWith("/topics/") ? topic.substring("/topics/".length()) : topic;
+        if (name == null || !VALID_TOPIC.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid topic name: " + topic);
+        }
+        return name;
+    }
+}
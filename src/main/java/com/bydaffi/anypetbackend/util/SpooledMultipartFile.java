@@ -0,0 +1,124 @@
+package com.bydaffi.anypetbackend.util;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * MultipartFile backed by a spooled copy of an upload, so it can be processed after the request
+ * that received it has finished (the container deletes its own temporary part files by then).
+ * Closing it deletes the spool file.
+ */
+public class SpooledMultipartFile implements MultipartFile, AutoCloseable {
+
+    private final Path path;
+    private final String name;
+    private final String originalFilename;
+    private final String contentType;
+    private final long size;
+
+    private SpooledMultipartFile(Path path, String name, String originalFilename, String contentType, long size) {
+        this.path = path;
+        this.name = name;
+        this.originalFilename = originalFilename;
+        this.contentType = contentType;
+        this.size = size;
+    }
+
+    /**
+     * Copies (or moves, when the container allows it) an upload into the spool directory
+     *
+     * @param file the received upload
+     * @param spoolDirectory directory for the spool file
+     * @return the spooled upload
+     * @throws IOException if the upload cannot be written
+     */
+    public static SpooledMultipartFile spool(MultipartFile file, Path spoolDirectory) throws IOException {
+        Path path = Files.createTempFile(spoolDirectory, "upload-", ".tmp");
+        try {
+            file.transferTo(path);
+            return new SpooledMultipartFile(path, file.getName(), file.getOriginalFilename(),
+                    file.getContentType(), Files.size(path));
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Copies a stream, e.g. an object downloaded from S3, into the spool directory
+     *
+     * @param in the content; not closed
+     * @param originalFilename file name to report
+     * @param contentType content type to report
+     * @param spoolDirectory directory for the spool file
+     * @return the spooled content
+     * @throws IOException if the stream cannot be read or written
+     */
+    public static SpooledMultipartFile spool(InputStream in, String originalFilename, String contentType,
+                                             Path spoolDirectory) throws IOException {
+        Path path = Files.createTempFile(spoolDirectory, "upload-", ".tmp");
+        try {
+            long size = Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+            return new SpooledMultipartFile(path, "file", originalFilename, contentType, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return originalFilename;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(path);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(path);
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+        transferTo(dest.toPath());
+    }
+
+    @Override
+    public void transferTo(Path dest) throws IOException {
+        Files.copy(path, dest, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
@@ -0,0 +1,25 @@
+-- Schema of the JDBC reminder store (app.reminders.store=jdbc), matching ReminderEntity.
+-- Runs as-is on PostgreSQL and H2. Embedded databases run it on startup; for PostgreSQL set
+-- spring.sql.init.mode=always (or apply it as a migration) and spring.jpa.hibernate.ddl-auto=validate.
+
+CREATE TABLE IF NOT EXISTS reminders (
+    id              VARCHAR(64)   PRIMARY KEY,
+    title           VARCHAR(255)  NOT NULL,
+    message         VARCHAR(1000),
+    scheduled_time  TIME          NOT NULL,
+    repeat_interval VARCHAR(32)   NOT NULL,
+    user_id         VARCHAR(255)  NOT NULL,
+    pet_id          VARCHAR(255),
+    device_token    VARCHAR(512),
+    active          BOOLEAN       NOT NULL,
+    last_triggered  TIMESTAMP,
+    next_execution  TIMESTAMP,
+    created_at      TIMESTAMP,
+    updated_at      TIMESTAMP
+);
+
+-- Due reminders are claimed with WHERE active = TRUE AND next_execution <= ? ORDER BY next_execution
+-- ... FOR UPDATE SKIP LOCKED; without this index every claim scans and locks its way through the table
+CREATE INDEX IF NOT EXISTS idx_reminders_active_next_execution ON reminders (active, next_execution);
+
+CREATE INDEX IF NOT EXISTS idx_reminders_user_id ON reminders (user_id);
@@ -0,0 +1,127 @@
+package com.bydaffi.anypetbackend.benchmark;
+
+import com.bydaffi.anypetbackend.service.ImageCompressionService;
+import com.bydaffi.anypetbackend.service.ImageMemoryBudget;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rendition pipeline on large phone-camera JPEGs.
+ *
+ * fullDecode decodes the whole image with ImageIO.read before resizing (the previous code);
+ * subsampledDecode is ImageCompressionService.createRenditions, which reads the dimensions from the
+ * header and decodes only the pixels needed for the 1920 px rendition. Both produce the full-size
+ * image and the 200 px thumbnail. The main method enables the GC profiler: gc.alloc.rate.norm is
+ * the heap allocated per upload, dominated by the decoded bitmap.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.bydaffi.anypetbackend.benchmark.ImageDecodeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class ImageDecodeBenchmark {
+
+    /**
+     * 12 MP and 48 MP sources
+     */
+    @Param({"4032x3024", "8000x6000"})
+    public String sourceSize;
+
+    private MockMultipartFile upload;
+    private ImageCompressionService service;
+    private Path spoolDirectory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] dimensions = sourceSize.split("x");
+        upload = new MockMultipartFile("file", "photo.jpg", "image/jpeg",
+                syntheticPhoto(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1])));
+
+        spoolDirectory = Files.createTempDirectory("image-decode-benchmark");
+        service = new ImageCompressionService(new ImageMemoryBudget(0, 2000));
+        ReflectionTestUtils.setField(service, "compressionQuality", 0.85f);
+        ReflectionTestUtils.setField(service, "renditions", new String[] {"full:1920", "thumbnail:200"});
+        ReflectionTestUtils.setField(service, "spoolDirectory", spoolDirectory.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(spoolDirectory);
+    }
+
+    @Benchmark
+    public void fullDecode(Blackhole blackhole) throws IOException {
+        BufferedImage original = ImageIO.read(upload.getInputStream());
+        BufferedImage fullSize = Scalr.resize(original, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC,
+                1920, 1920, Scalr.OP_ANTIALIAS);
+        BufferedImage thumbnail = Scalr.resize(fullSize, Scalr.Method.QUALITY, Scalr.Mode.FIT_TO_WIDTH,
+                200, 200, Scalr.OP_ANTIALIAS);
+
+        ByteArrayOutputStream fullSizeOutput = new ByteArrayOutputStream();
+        ImageIO.write(fullSize, "jpg", fullSizeOutput);
+        ByteArrayOutputStream thumbnailOutput = new ByteArrayOutputStream();
+        ImageIO.write(thumbnail, "jpg", thumbnailOutput);
+
+        blackhole.consume(fullSizeOutput.size() + thumbnailOutput.size());
+    }
+
+    @Benchmark
+    public void subsampledDecode(Blackhole blackhole) throws IOException {
+        try (ImageCompressionService.ImageRenditions renditions = service.createRenditions(upload)) {
+            for (ImageCompressionService.EncodedImage rendition : renditions.getRenditions().values()) {
+                blackhole.consume(rendition.getSize());
+            }
+        }
+    }
+
+    /**
+     * A JPEG with gradients and detail, so the encoder and decoder do realistic work
+     */
+    private static byte[] syntheticPhoto(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(90, 140, 60), width, height, new Color(200, 170, 120)));
+        graphics.fillRect(0, 0, width, height);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 4000; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(300), 20 + random.nextInt(200));
+        }
+        graphics.dispose();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", output);
+        return output.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageDecodeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
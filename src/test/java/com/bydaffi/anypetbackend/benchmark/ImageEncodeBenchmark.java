@@ -0,0 +1,136 @@
+package com.bydaffi.anypetbackend.benchmark;
+
+import com.bydaffi.anypetbackend.util.ImageWriterPool;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures JPEG encoding of one rendition into its spool file.
+ *
+ * The input is int-packed RGB, as Scalr returns renditions. writerPerEncode looks the writer up
+ * and creates its param for every image, then disposes it (the previous ImageCompressionService
+ * code); pooledWriter borrows a writer from ImageWriterPool; pooledWriterFromBgr first
+ * copies the image to 3-byte BGR, as ImageCompressionService now does. The main method enables
+ * the GC profiler: gc.alloc.rate.norm is the heap allocated per encode.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.bydaffi.anypetbackend.benchmark.ImageEncodeBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ImageEncodeBenchmark {
+
+    private static final float QUALITY = 0.85f;
+
+    /**
+     * Full-size and small renditions
+     */
+    @Param({"1920x1440", "400x300"})
+    public String renditionSize;
+
+    private BufferedImage image;
+    private Path spoolFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        String[] dimensions = renditionSize.split("x");
+        image = syntheticPhoto(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+        spoolFile = Files.createTempFile("image-encode-benchmark", ".jpg");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(spoolFile);
+    }
+
+    @Benchmark
+    public void writerPerEncode(Blackhole blackhole) throws IOException {
+        try (ImageOutputStream ios = new FileImageOutputStream(spoolFile.toFile())) {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+            ImageWriter writer = writers.next();
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(QUALITY);
+
+            try {
+                writer.setOutput(ios);
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            blackhole.consume(ios.getStreamPosition());
+        }
+    }
+
+    @Benchmark
+    public void pooledWriter(Blackhole blackhole) throws IOException {
+        try (ImageOutputStream ios = new FileImageOutputStream(spoolFile.toFile())) {
+            ImageWriterPool.write(image, "jpg", QUALITY, ios);
+            blackhole.consume(ios.getStreamPosition());
+        }
+    }
+
+    @Benchmark
+    public void pooledWriterFromBgr(Blackhole blackhole) throws IOException {
+        BufferedImage bgr = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = bgr.createGraphics();
+        graphics.drawImage(image, 0, 0, null);
+        graphics.dispose();
+
+        try (ImageOutputStream ios = new FileImageOutputStream(spoolFile.toFile())) {
+            ImageWriterPool.write(bgr, "jpg", QUALITY, ios);
+            blackhole.consume(ios.getStreamPosition());
+        }
+    }
+
+    /**
+     * An RGB image with gradients and detail, so the encoder does realistic work
+     */
+    private static BufferedImage syntheticPhoto(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(90, 140, 60), width, height, new Color(200, 170, 120)));
+        graphics.fillRect(0, 0, width, height);
+
+        Random random = new Random(42);
+        int shapes = width * height / 2000;
+        for (int i = 0; i < shapes; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 5 + random.nextInt(60), 5 + random.nextInt(40));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageEncodeBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.bydaffi.anypetbackend.benchmark;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.service.DeliveryAnalyticsService;
+import com.bydaffi.anypetbackend.service.PushNotificationService;
+import com.bydaffi.anypetbackend.service.SimulatedNotificationTransport;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Clock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures async dispatch throughput of PushNotificationService against the simulated FCM transport,
+ * for several in-flight windows. Each operation sends one scheduler-sized batch and waits for it;
+ * failures (simulated errors, or immediate rejections when the window is full) are counted, not thrown.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.bydaffi.anypetbackend.benchmark.NotificationDispatchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class NotificationDispatchBenchmark {
+
+    @Param({"100", "1000"})
+    public int maxInFlight;
+
+    @Param({"40"})
+    public double latencyMedianMillis;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private PushNotificationService service;
+    private SimulatedNotificationTransport transport;
+    private DeliveryAnalyticsService deliveryAnalytics;
+    private PushNotificationRequest[] requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        transport = new SimulatedNotificationTransport(latencyMedianMillis, latencyMedianMillis * 6, 0.01, "UNAVAILABLE", 0, 0);
+        deliveryAnalytics = new DeliveryAnalyticsService(null, Clock.systemUTC(), 65536, 60, false);
+        service = new PushNotificationService(transport, deliveryAnalytics, maxInFlight, 0);
+        requests = new PushNotificationRequest[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            requests[i] = new PushNotificationRequest("Luna", "tiene hambre", "token-" + i, "AnyPet");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        transport.shutdown();
+    }
+
+    @Benchmark
+    public void dispatchBatch(Blackhole blackhole) {
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            sends[i] = service.sendPushNotificationAsync(requests[i]).exceptionally(error -> null);
+        }
+        CompletableFuture.allOf(sends).join();
+        blackhole.consume(sends);
+        // Done by the background aggregator in the application
+        deliveryAnalytics.aggregate();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NotificationDispatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,105 @@
+package com.bydaffi.anypetbackend.benchmark;
+
+import com.bydaffi.anypetbackend.service.S3Service;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures signing the image URLs of one list response (e.g. a user's pets with their thumbnails).
+ *
+ * signEachUrl presigns every URL on every request; batchWithCache is S3Service.getPresignedUrls,
+ * which signs a URL once per expiry bucket and serves it from the cache afterwards. Signing is
+ * local (HMAC-SHA256 key derivation and signature), so no S3 endpoint is needed.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.bydaffi.anypetbackend.benchmark.PresignedUrlBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class PresignedUrlBenchmark {
+
+    private static final String BUCKET = "anypet-images-benchmark";
+    private static final String USER_ID = "benchmark-user";
+
+    /**
+     * Image URLs in one response
+     */
+    @Param({"10", "50"})
+    public int urlsPerResponse;
+
+    private S3Presigner presigner;
+    private S3Service s3Service;
+    private List<String> imageUrls;
+    private List<String> keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        presigner = S3Presigner.builder()
+                .region(Region.US_EAST_1)
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create("AKIDBENCHMARK", "benchmark-secret")))
+                .build();
+
+        s3Service = new S3Service(null, null, null, null, presigner, 10_000, 15);
+        ReflectionTestUtils.setField(s3Service, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(s3Service, "presignedGetExpiryMinutes", 60L);
+
+        imageUrls = new ArrayList<>(urlsPerResponse);
+        keys = new ArrayList<>(urlsPerResponse);
+        for (int i = 0; i < urlsPerResponse; i++) {
+            String key = String.format("users/%s/pets/thumbnail/%064x.jpg", USER_ID, i);
+            keys.add(key);
+            imageUrls.add("https://" + BUCKET + ".s3.us-east-1.amazonaws.com/" + key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        presigner.close();
+    }
+
+    @Benchmark
+    public void signEachUrl(Blackhole blackhole) {
+        for (String key : keys) {
+            blackhole.consume(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                    .signatureDuration(Duration.ofMinutes(60))
+                    .getObjectRequest(GetObjectRequest.builder()
+                            .bucket(BUCKET)
+                            .key(key)
+                            .build())
+                    .build()).url());
+        }
+    }
+
+    @Benchmark
+    public void batchWithCache(Blackhole blackhole) {
+        blackhole.consume(s3Service.getPresignedUrls(imageUrls, USER_ID));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PresignedUrlBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+package com.bydaffi.anypetbackend.benchmark;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.service.PushMessageFactory;
+import com.google.firebase.messaging.AndroidConfig;
+import com.google.firebase.messaging.AndroidNotification;
+import com.google.firebase.messaging.ApnsConfig;
+import com.google.firebase.messaging.Aps;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.Notification;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures FCM message construction for a batch of reminder notifications.
+ *
+ * perRequestConfigs rebuilds the platform configs and data map for every message (the previous
+ * PushNotificationService code); sharedTemplates uses PushMessageFactory. The main method enables
+ * the GC profiler, so gc.alloc.rate.norm reports bytes allocated per batch.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.bydaffi.anypetbackend.benchmark.PushMessageBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PushMessageBenchmark {
+
+    @Param({"500"})
+    public int batchSize;
+
+    private PushNotificationRequest[] requests;
+    private PushMessageFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        factory = new PushMessageFactory();
+        requests = new PushNotificationRequest[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            requests[i] = new PushNotificationRequest(i % 3 == 0 ? null : "Luna " + i,
+                    "Es hora de alimentar a tu mascota", "token-" + i, "Recordatorio " + (i % 10));
+        }
+    }
+
+    @Benchmark
+    public void perRequestConfigs(Blackhole blackhole) {
+        for (PushNotificationRequest request : requests) {
+            blackhole.consume(buildWithPerRequestConfigs(request));
+        }
+    }
+
+    @Benchmark
+    public void sharedTemplates(Blackhole blackhole) {
+        for (PushNotificationRequest request : requests) {
+            blackhole.consume(factory.buildMessage(request));
+        }
+    }
+
+    private static Message buildWithPerRequestConfigs(PushNotificationRequest request) {
+        String body = request.getPetName() != null ? request.getPetName() + " " + request.getMessage() : request.getMessage();
+        Notification notification = Notification.builder()
+                .setTitle(request.getTitle() != null ? request.getTitle() : "AnyPet")
+                .setBody(body)
+                .build();
+
+        Map<String, String> data = new HashMap<>();
+        if (request.getPetName() != null) {
+            data.put("petName", request.getPetName());
+        }
+        data.put("message", request.getMessage());
+        data.put("timestamp", String.valueOf(System.currentTimeMillis()));
+
+        return Message.builder()
+                .setToken(request.getToken())
+                .setNotification(notification)
+                .putAllData(data)
+                .setAndroidConfig(AndroidConfig.builder()
+                        .setPriority(AndroidConfig.Priority.HIGH)
+                        .setNotification(AndroidNotification.builder()
+                                .setSound("default")
+                                .setColor("#FF6B6B")
+                                .build())
+                        .build())
+                .setApnsConfig(ApnsConfig.builder()
+                        .setAps(Aps.builder()
+                                .setSound("default")
+                                .setBadge(1)
+                                .build())
+                        .build())
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PushMessageBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,142 @@
+package com.bydaffi.anypetbackend.benchmark;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.repository.FirestoreReminderStore;
+import com.bydaffi.anypetbackend.repository.InMemoryReminderStore;
+import com.bydaffi.anypetbackend.repository.JdbcReminderStore;
+import com.bydaffi.anypetbackend.repository.ReminderFirestoreMapper;
+import com.bydaffi.anypetbackend.repository.ReminderStore;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares due-reminder claim throughput across ReminderStore backends.
+ *
+ * Every reminder is due and claims use leaseUntil = now, so claimed rows stay due and each
+ * iteration measures the same query. Backends:
+ * - memory: InMemoryReminderStore
+ * - jdbc: PostgreSQL at -Dbenchmark.jdbc.url (user/password: -Dbenchmark.jdbc.username / -Dbenchmark.jdbc.password)
+ * - firestore: Firestore emulator at -Dbenchmark.firestore.emulator-host (e.g. localhost:8081)
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=com.bydaffi.anypetbackend.benchmark.ReminderStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ReminderStoreBenchmark {
+
+    @Param({"memory", "jdbc", "firestore"})
+    public String backend;
+
+    @Param({"100000"})
+    public int population;
+
+    @Param({"500"})
+    public int batchSize;
+
+    private ReminderStore store;
+    private LocalDateTime now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        now = LocalDateTime.now();
+        List<Reminder> reminders = generateDueReminders(population, now);
+
+        switch (backend) {
+            case "memory" -> {
+                InMemoryReminderStore memoryStore = new InMemoryReminderStore();
+                for (Reminder reminder : reminders) {
+                    memoryStore.create(reminder);
+                }
+                store = memoryStore;
+            }
+            case "jdbc" -> {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                        System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/anypet"),
+                        System.getProperty("benchmark.jdbc.username", "postgres"),
+                        System.getProperty("benchmark.jdbc.password", "postgres")));
+                createReminderTable(jdbcTemplate);
+                JdbcReminderStore jdbcStore = new JdbcReminderStore(jdbcTemplate);
+                for (Reminder reminder : reminders) {
+                    jdbcStore.create(reminder);
+                }
+                store = jdbcStore;
+            }
+            case "firestore" -> {
+                Firestore firestore = FirestoreOptions.newBuilder()
+                        .setEmulatorHost(System.getProperty("benchmark.firestore.emulator-host", "localhost:8081"))
+                        .setProjectId("anypet-benchmark")
+                        .build()
+                        .getService();
+                ReminderFirestoreMapper mapper = new ReminderFirestoreMapper();
+                try (BulkWriter writer = firestore.bulkWriter()) {
+                    for (Reminder reminder : reminders) {
+                        reminder.setId(UUID.randomUUID().toString());
+                        writer.set(firestore.collection("reminders").document(reminder.getId()),
+                                mapper.convertToFirestoreMap(reminder));
+                    }
+                }
+                store = new FirestoreReminderStore(firestore, mapper);
+            }
+            default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    @Benchmark
+    public List<Reminder> claimDue() throws Exception {
+        return store.claimDue(now, batchSize, now);
+    }
+
+    private static List<Reminder> generateDueReminders(int count, LocalDateTime now) {
+        List<Reminder> reminders = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Reminder reminder = new Reminder();
+            reminder.setTitle("Benchmark reminder " + i);
+            reminder.setMessage("Es hora de tu recordatorio");
+            reminder.setScheduledTime(LocalTime.of(i % 24, i % 60));
+            reminder.setRepeatInterval(Reminder.RepeatInterval.DAILY);
+            reminder.setUserId("user-" + (i % 1000));
+            reminder.setDeviceToken("token-" + i);
+            reminder.setActive(true);
+            reminder.setNextExecution(now.minusMinutes(i % 120));
+            reminder.setCreatedAt(now);
+            reminder.setUpdatedAt(now);
+            reminders.add(reminder);
+        }
+        return reminders;
+    }
+
+    private static void createReminderTable(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS reminders");
+        jdbcTemplate.execute("CREATE TABLE reminders ("
+                + " id VARCHAR(64) PRIMARY KEY, title VARCHAR(255) NOT NULL, message VARCHAR(1000),"
+                + " scheduled_time TIME NOT NULL, repeat_interval VARCHAR(32) NOT NULL, user_id VARCHAR(255) NOT NULL,"
+                + " pet_id VARCHAR(255), device_token VARCHAR(512), active BOOLEAN NOT NULL,"
+                + " last_triggered TIMESTAMP, next_execution TIMESTAMP, created_at TIMESTAMP, updated_at TIMESTAMP)");
+        jdbcTemplate.execute("CREATE INDEX idx_reminders_active_next_execution ON reminders (active, next_execution)");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReminderStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
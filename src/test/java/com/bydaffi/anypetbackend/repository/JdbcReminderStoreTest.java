@@ -0,0 +1,246 @@
+package com.bydaffi.anypetbackend.repository;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the claim SQL against H2 (the application's default datasource), through the transactional
+ * proxy Spring puts around the store.
+ */
+@SpringJUnitConfig(JdbcReminderStoreTest.Config.class)
+class JdbcReminderStoreTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 10, 9, 0);
+    private static final LocalDateTime LEASE_UNTIL = NOW.plusMinutes(5);
+
+    @Autowired
+    private JdbcReminderStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    void createTable() {
+        // The shipped schema, so the DDL production runs is the one under test
+        jdbcTemplate.execute("DROP TABLE IF EXISTS reminders");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+    }
+
+    @Test
+    void claimsDueRemindersOldestFirstWithTheTimeTheyWereDue() {
+        Reminder later = store.create(reminder(NOW.minusMinutes(1), true));
+        Reminder earlier = store.create(reminder(NOW.minusHours(1), true));
+        store.create(reminder(NOW.plusMinutes(1), true));
+        store.create(reminder(NOW.minusHours(2), false));
+
+        List<Reminder> claimed = store.claimDue(NOW, 10, LEASE_UNTIL);
+
+        assertThat(claimed).extracting(Reminder::getId).containsExactly(earlier.getId(), later.getId());
+        assertThat(claimed).extracting(Reminder::getNextExecution)
+                .containsExactly(NOW.minusHours(1), NOW.minusMinutes(1));
+    }
+
+    @Test
+    void claimLeasesTheRemindersUntilLeaseUntil() {
+        Reminder reminder = store.create(reminder(NOW.minusMinutes(1), true));
+
+        assertThat(store.claimDue(NOW, 10, LEASE_UNTIL)).hasSize(1);
+
+        assertThat(store.findById(reminder.getId()).orElseThrow().getNextExecution()).isEqualTo(LEASE_UNTIL);
+        assertThat(store.claimDue(NOW, 10, LEASE_UNTIL)).isEmpty();
+        assertThat(store.claimDue(LEASE_UNTIL.minusSeconds(1), 10, LEASE_UNTIL.plusMinutes(5))).isEmpty();
+
+        // Not marked as triggered (the send failed): claimed again once the lease expires
+        assertThat(store.claimDue(LEASE_UNTIL, 10, LEASE_UNTIL.plusMinutes(5)))
+                .extracting(Reminder::getNextExecution).containsExactly(LEASE_UNTIL);
+    }
+
+    @Test
+    void claimRespectsTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            store.create(reminder(NOW.minusMinutes(5 - i), true));
+        }
+
+        assertThat(store.claimDue(NOW, 2, LEASE_UNTIL)).hasSize(2);
+        assertThat(store.claimDue(NOW, 2, LEASE_UNTIL)).hasSize(2);
+        assertThat(store.claimDue(NOW, 2, LEASE_UNTIL)).hasSize(1);
+        assertThat(store.claimDue(NOW, 2, LEASE_UNTIL)).isEmpty();
+    }
+
+    @Test
+    void markTriggeredReplacesTheLease() {
+        Reminder reminder = store.create(reminder(NOW.minusMinutes(1), true));
+        Reminder claimed = store.claimDue(NOW, 10, LEASE_UNTIL).get(0);
+
+        claimed.setLastTriggered(NOW);
+        claimed.setNextExecution(NOW.plusDays(1));
+        claimed.setUpdatedAt(NOW);
+        store.markTriggered(List.of(claimed));
+
+        Reminder stored = store.findById(reminder.getId()).orElseThrow();
+        assertThat(stored.getNextExecution()).isEqualTo(NOW.plusDays(1));
+        assertThat(stored.getLastTriggered()).isEqualTo(NOW);
+        assertThat(store.claimDue(LEASE_UNTIL, 10, LEASE_UNTIL.plusMinutes(5))).isEmpty();
+    }
+
+    @Test
+    void rowsLockedByAnOpenClaimAreSkippedByAnotherClaimer() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            store.create(reminder(NOW.minusMinutes(6 - i), true));
+        }
+
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        // The first claimer keeps its transaction (and row locks) open until the second has claimed
+        CompletableFuture<List<Reminder>> first = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    List<Reminder> claimed = store.claimDue(NOW, 3, LEASE_UNTIL);
+                    firstClaimed.countDown();
+                    await(secondDone);
+                    return claimed;
+                }));
+
+        assertThat(firstClaimed.await(5, TimeUnit.SECONDS)).isTrue();
+        List<Reminder> second = store.claimDue(NOW, 6, LEASE_UNTIL);
+        secondDone.countDown();
+
+        Set<String> firstIds = ids(first.get(5, TimeUnit.SECONDS));
+        assertThat(firstIds).hasSize(3);
+        assertThat(ids(second)).doesNotContainAnyElementsOf(firstIds);
+    }
+
+    @Test
+    void twoClaimersClaimEveryReminderExactlyOnce() throws Exception {
+        int reminderCount = 200;
+        Set<String> allIds = new HashSet<>();
+        for (int i = 0; i < reminderCount; i++) {
+            allIds.add(store.create(reminder(NOW.minusSeconds(reminderCount - i), true)).getId());
+        }
+
+        Set<String> claimedIds = Collections.synchronizedSet(new HashSet<>());
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<List<String>>> claimers = new ArrayList<>();
+        for (int c = 0; c < 2; c++) {
+            claimers.add(CompletableFuture.supplyAsync(() -> {
+                await(start);
+                List<String> mine = new ArrayList<>();
+                long deadline = System.currentTimeMillis() + 10_000;
+                // A claim can come back empty while the other claimer holds the remaining rows
+                while (claimedIds.size() < reminderCount && System.currentTimeMillis() < deadline) {
+                    for (Reminder reminder : store.claimDue(NOW, 7, LEASE_UNTIL)) {
+                        mine.add(reminder.getId());
+                        claimedIds.add(reminder.getId());
+                    }
+                }
+                return mine;
+            }));
+        }
+        start.countDown();
+
+        List<String> all = new ArrayList<>();
+        for (CompletableFuture<List<String>> claimer : claimers) {
+            all.addAll(claimer.get(15, TimeUnit.SECONDS));
+        }
+
+        assertThat(all).doesNotHaveDuplicates();
+        assertThat(new HashSet<>(all)).isEqualTo(allIds);
+    }
+
+    private static Set<String> ids(List<Reminder> reminders) {
+        return reminders.stream().map(Reminder::getId).collect(Collectors.toSet());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out waiting for the other claimer");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Reminder reminder(LocalDateTime nextExecution, boolean active) {
+        Reminder reminder = new Reminder();
+        reminder.setTitle("Alimentar a Luna");
+        reminder.setMessage("Hora de comer");
+        reminder.setScheduledTime(LocalTime.of(8, 0));
+        reminder.setRepeatInterval(Reminder.RepeatInterval.DAILY);
+        reminder.setUserId("user-1");
+        reminder.setDeviceToken("token-1");
+        reminder.setActive(active);
+        reminder.setNextExecution(nextExecution);
+        reminder.setCreatedAt(NOW.minusDays(1));
+        reminder.setUpdatedAt(NOW.minusDays(1));
+        return reminder;
+    }
+
+    @Configuration
+    @EnableTransactionManagement(proxyTargetClass = true)
+    static class Config {
+
+        @Bean
+        DataSource dataSource() {
+            return new EmbeddedDatabaseBuilder()
+                    .setType(EmbeddedDatabaseType.H2)
+                    .generateUniqueName(true)
+                    .build();
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+            return new TransactionTemplate(transactionManager);
+        }
+
+        @Bean
+        JdbcReminderStore reminderStore(JdbcTemplate jdbcTemplate) {
+            return new JdbcReminderStore(jdbcTemplate);
+        }
+    }
+}
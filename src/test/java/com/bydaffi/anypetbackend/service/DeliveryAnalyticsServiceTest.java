@@ -0,0 +1,141 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.simulation.VirtualClock;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DeliveryAnalyticsServiceTest {
+
+    private static final Instant START = Instant.parse("2025-03-10T09:00:00Z");
+
+    private final VirtualClock clock = new VirtualClock(START, ZoneOffset.UTC);
+    private final Firestore firestore = mock(Firestore.class);
+    private final CollectionReference collection = mock(CollectionReference.class);
+    private final WriteBatch batch = mock(WriteBatch.class);
+
+    @BeforeEach
+    void setUp() {
+        when(firestore.collection("deliveryStats")).thenReturn(collection);
+        when(collection.document(anyString())).thenAnswer(invocation -> {
+            DocumentReference document = mock(DocumentReference.class);
+            when(document.getId()).thenReturn(invocation.getArgument(0));
+            return document;
+        });
+        when(firestore.batch()).thenReturn(batch);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+    }
+
+    @Test
+    void outcomesAreAggregatedPerMinute() {
+        DeliveryAnalyticsService analytics = new DeliveryAnalyticsService(null, clock, 1024, 60, false);
+
+        analytics.record("r1", 40, null);
+        analytics.record(null, 60, null);
+        clock.advance(Duration.ofMinutes(1));
+        analytics.record("r2", 200, "UNAVAILABLE");
+        analytics.aggregate();
+
+        DeliveryAnalyticsService.DeliveryReport report = analytics.getReport(60, 1);
+        assertThat(report.getWindows()).hasSize(2);
+        DeliveryAnalyticsService.DeliveryWindow first = report.getWindows().get(0);
+        assertThat(first.getStart()).isEqualTo(START);
+        assertThat(first.getSent()).isEqualTo(2);
+        assertThat(first.getMeanLatencyMillis()).isEqualTo(50.0);
+        DeliveryAnalyticsService.DeliveryWindow total = report.getTotal();
+        assertThat(total.getSent()).isEqualTo(2);
+        assertThat(total.getFailed()).isEqualTo(1);
+        assertThat(total.getReminderSends()).isEqualTo(2);
+        assertThat(total.getMaxLatencyMillis()).isEqualTo(200);
+        assertThat(total.getErrorsByCode()).containsEntry("UNAVAILABLE", 1L);
+        assertThat(total.getFailedReminderIds()).containsExactly("r2");
+    }
+
+    @Test
+    void bucketsPastTheRetentionAreDropped() {
+        DeliveryAnalyticsService analytics = new DeliveryAnalyticsService(null, clock, 1024, 5, false);
+
+        analytics.record("r1", 40, null);
+        analytics.aggregate();
+        clock.advance(Duration.ofMinutes(10));
+        analytics.aggregate();
+
+        assertThat(analytics.getReport(60, 1).getWindows()).isEmpty();
+    }
+
+    @Test
+    void flushWritesOnlyChangedBucketsInOneBatch() throws Exception {
+        DeliveryAnalyticsService analytics = new DeliveryAnalyticsService(firestore, clock, 1024, 60, true);
+        analytics.record("r1", 40, null);
+        clock.advance(Duration.ofMinutes(1));
+        analytics.record("r2", 60, "UNAVAILABLE");
+        analytics.aggregate();
+
+        analytics.flush();
+
+        ArgumentCaptor<DocumentReference> documents = ArgumentCaptor.forClass(DocumentReference.class);
+        verify(batch, times(2)).set(documents.capture(), anyMap());
+        assertThat(documents.getAllValues()).extracting(DocumentReference::getId)
+                .containsExactly("2025-03-10T09:00:00Z", "2025-03-10T09:01:00Z");
+        verify(batch, times(1)).commit();
+
+        // Nothing changed since
+        analytics.flush();
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    void bucketsOfAFailedFlushAreWrittenByTheNextOne() {
+        DeliveryAnalyticsService analytics = new DeliveryAnalyticsService(firestore, clock, 1024, 60, true);
+        analytics.record("r1", 40, null);
+        analytics.aggregate();
+        when(batch.commit())
+                .thenReturn(ApiFutures.immediateFailedFuture(new IllegalStateException("unavailable")))
+                .thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        analytics.flush();
+        analytics.flush();
+
+        ArgumentCaptor<Map<String, Object>> document = mapCaptor();
+        verify(batch, times(2)).set(any(DocumentReference.class), document.capture());
+        assertThat(document.getValue()).containsEntry("sent", 1L);
+        verify(batch, times(2)).commit();
+    }
+
+    @Test
+    void flushIsDisabledWithoutFirestore() {
+        DeliveryAnalyticsService analytics = new DeliveryAnalyticsService(null, clock, 1024, 60, true);
+        analytics.record("r1", 40, null);
+        analytics.aggregate();
+
+        analytics.flush();
+
+        verify(firestore, never()).batch();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Map<String, Object>> mapCaptor() {
+        return ArgumentCaptor.forClass(Map.class);
+    }
+}
@@ -0,0 +1,277 @@
+package com.bydaffi.anypetbackend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageCompressionServiceTest {
+
+    @TempDir
+    Path spoolDirectory;
+
+    private ImageCompressionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = service(new ImageMemoryBudget(64, 0));
+    }
+
+    @Test
+    void everyRenditionIsCreatedLargestFirstWithinItsBox() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(320, 240)))) {
+
+            assertThat(result.getRenditions().keySet()).containsExactly("full", "thumbnail");
+            assertThat(read(result, "full")).satisfies(image -> {
+                assertThat(image.getWidth()).isEqualTo(120);
+                assertThat(image.getHeight()).isEqualTo(90);
+            });
+            assertThat(read(result, "thumbnail")).satisfies(image -> {
+                assertThat(image.getWidth()).isEqualTo(40);
+                assertThat(image.getHeight()).isEqualTo(30);
+            });
+        }
+    }
+
+    @Test
+    void contentHashIsThatOfTheLargestRendition() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(320, 240)))) {
+
+            assertThat(result.getContentHash()).isEqualTo(result.getRenditions().get("full").getSha256());
+            assertThat(result.getStoredSize()).isEqualTo(result.getRenditions().get("full").getSize());
+            assertThat(result.getRenditions().get("thumbnail").getSha256()).isNotEqualTo(result.getContentHash());
+        }
+    }
+
+    @Test
+    void sameImageEncodesToTheSameContentHash() throws IOException {
+        MockMultipartFile upload = png(gradient(320, 240));
+
+        try (ImageCompressionService.ImageRenditions first = service.createRenditions(upload);
+             ImageCompressionService.ImageRenditions second = service.createRenditions(upload)) {
+
+            assertThat(second.getContentHash()).isEqualTo(first.getContentHash());
+        }
+    }
+
+    @Test
+    void renditionsAreSpooledToDiskUntilClosed() throws IOException {
+        ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(320, 240)));
+
+        assertThat(result.getRenditions().values()).allSatisfy(rendition -> {
+            assertThat(rendition.getPath().getParent()).isEqualTo(spoolDirectory);
+            assertThat(Files.size(rendition.getPath())).isEqualTo(rendition.getSize());
+        });
+
+        result.close();
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void largeImageIsDecodedSubsampledToTheLargestRendition() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(2400, 1600)))) {
+
+            assertThat(read(result, "full")).satisfies(image -> {
+                assertThat(image.getWidth()).isEqualTo(120);
+                assertThat(image.getHeight()).isEqualTo(80);
+            });
+            assertThat(read(result, "thumbnail").getWidth()).isEqualTo(40);
+        }
+    }
+
+    @Test
+    void portraitImageFitsTheHeightOfTheBox() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(600, 1200)))) {
+
+            assertThat(read(result, "full")).satisfies(image -> {
+                assertThat(image.getWidth()).isEqualTo(60);
+                assertThat(image.getHeight()).isEqualTo(120);
+            });
+        }
+    }
+
+    @Test
+    void largeImageReservesOnlyItsSubsampledSize() throws IOException {
+        ImageMemoryBudget budget = new ImageMemoryBudget(4, 0);
+        ImageCompressionService constrained = service(budget);
+
+        // The full 2400x1600 bitmap would need ~30 MB; subsampled it needs well under the 1 MB left
+        try (ImageMemoryBudget.Reservation held = budget.reserve(3L * 1024 * 1024);
+             ImageCompressionService.ImageRenditions result = constrained.createRenditions(png(gradient(2400, 1600)))) {
+
+            assertThat(result.getRenditions()).hasSize(2);
+        }
+        assertThat(budget.getStatus().getUsedBytes()).isZero();
+    }
+
+    @Test
+    void renditionSetIsConfigurable() throws IOException {
+        renditions("small:60", "large:200", "tiny:20");
+
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(400, 400)))) {
+
+            assertThat(result.getRenditions().keySet()).containsExactly("large", "small", "tiny");
+            assertThat(read(result, "large").getWidth()).isEqualTo(200);
+            assertThat(read(result, "small").getWidth()).isEqualTo(60);
+            assertThat(read(result, "tiny").getWidth()).isEqualTo(20);
+        }
+    }
+
+    @Test
+    void smallerImagesAreNotUpscaled() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(80, 60)))) {
+
+            assertThat(read(result, "full")).satisfies(image -> {
+                assertThat(image.getWidth()).isEqualTo(80);
+                assertThat(image.getHeight()).isEqualTo(60);
+            });
+            assertThat(read(result, "thumbnail").getWidth()).isEqualTo(40);
+        }
+    }
+
+    @Test
+    void invalidRenditionEntriesAreRejected() throws IOException {
+        MockMultipartFile upload = png(gradient(80, 60));
+
+        for (String[] invalid : List.of(new String[]{"thumbnail"}, new String[]{"thumbnail:0"},
+                new String[]{"Thumb:40"}, new String[]{"thumbnail:40", "thumbnail:80"}, new String[0])) {
+            renditions(invalid);
+
+            assertThatThrownBy(() -> service.createRenditions(upload))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("app.image.renditions");
+        }
+    }
+
+    @Test
+    void opaquePhotoIsStoredAsJpeg() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(gradient(320, 240)))) {
+
+            assertThat(result.getFormat()).isEqualTo("jpg");
+            assertThat(result.getContentType()).isEqualTo("image/jpeg");
+            assertThat(read(result, "full").getColorModel().hasAlpha()).isFalse();
+        }
+    }
+
+    @Test
+    void translucentImageIsStoredAsPng() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(translucentGradient(320, 240)))) {
+
+            assertThat(result.getFormat()).isEqualTo("png");
+            assertThat(result.getContentType()).isEqualTo("image/png");
+            BufferedImage full = read(result, "full");
+            assertThat(full.getColorModel()).isNotInstanceOf(IndexColorModel.class);
+            assertThat(full.getColorModel().hasAlpha()).isTrue();
+        }
+    }
+
+    @Test
+    void flatGraphicIsStoredAsPalettePng() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(stripes(100, 80, false)))) {
+
+            assertThat(result.getFormat()).isEqualTo("png");
+            BufferedImage full = read(result, "full");
+            assertThat(full.getColorModel()).isInstanceOf(IndexColorModel.class);
+            assertThat(full.getRGB(0, 0)).isEqualTo(0xFFFF0000);
+            assertThat(full.getRGB(99, 0)).isEqualTo(0xFF0000FF);
+        }
+    }
+
+    @Test
+    void flatGraphicKeepsItsTransparencyInThePalette() throws IOException {
+        try (ImageCompressionService.ImageRenditions result = service.createRenditions(png(stripes(100, 80, true)))) {
+
+            BufferedImage full = read(result, "full");
+            assertThat(full.getColorModel()).isInstanceOf(IndexColorModel.class);
+            assertThat(full.getRGB(0, 0) >>> 24).isZero();
+            assertThat(full.getRGB(99, 0)).isEqualTo(0xFF0000FF);
+        }
+    }
+
+    @Test
+    void nonImageIsRejected() {
+        MockMultipartFile upload = new MockMultipartFile("file", "image.png", "image/png", new byte[]{1, 2, 3});
+
+        assertThatThrownBy(() -> service.createRenditions(upload))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Invalid image file");
+    }
+
+    private ImageCompressionService service(ImageMemoryBudget budget) {
+        ImageCompressionService service = new ImageCompressionService(budget);
+        ReflectionTestUtils.setField(service, "compressionQuality", 0.85f);
+        ReflectionTestUtils.setField(service, "spoolDirectory", spoolDirectory.toString());
+        ReflectionTestUtils.setField(service, "renditions", new String[]{"thumbnail:40", "full:120"});
+        return service;
+    }
+
+    private void renditions(String... renditions) {
+        ReflectionTestUtils.setField(service, "renditions", renditions);
+    }
+
+    private static BufferedImage read(ImageCompressionService.ImageRenditions result, String name) throws IOException {
+        return ImageIO.read(result.getRenditions().get(name).getPath().toFile());
+    }
+
+    /**
+     * Opaque image with many colours, like a photo
+     */
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x + y) % 256));
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Gradient whose alpha fades from opaque to clear
+     */
+    private static BufferedImage translucentGradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (255 - x * 255 / width) << 24 | (y * 255 / height) << 8 | 0x80);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Four flat vertical stripes, like a logo; the first one is fully transparent if clear is set
+     */
+    private static BufferedImage stripes(int width, int height, boolean clear) {
+        int[] colors = {clear ? 0x00000000 : 0xFFFF0000, 0xFF00FF00, 0xFFFFFFFF, 0xFF0000FF};
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, colors[x * colors.length / width]);
+            }
+        }
+        return image;
+    }
+
+    private static MockMultipartFile png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", output);
+        return new MockMultipartFile("file", "image.png", "image/png", output.toByteArray());
+    }
+}
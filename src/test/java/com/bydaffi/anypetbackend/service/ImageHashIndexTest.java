@@ -0,0 +1,141 @@
+package com.bydaffi.anypetbackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the local index (app.image.dedup.firestore-index=false)
+ */
+class ImageHashIndexTest {
+
+    private static final String CONTENT_KEY = "users/u1/pets/" + "a".repeat(64);
+    private static final List<String> RENDITIONS = List.of("thumbnail", "full");
+
+    private final ImageHashIndex index = new ImageHashIndex(null, 100, 24);
+
+    @Test
+    void storedContentIsAcquiredByAnotherRecord() {
+        store("1");
+
+        assertThat(index.reserve(CONTENT_KEY, RENDITIONS, "2").stored()).isTrue();
+        // A rendition that was never stored must be uploaded
+        ImageHashIndex.Reservation missing = index.reserve(CONTENT_KEY, List.of("thumbnail", "medium"), "3");
+        assertThat(missing.stored()).isFalse();
+        assertThat(missing.token()).isNotNull();
+    }
+
+    @Test
+    void concurrentFirstUploadWaitsForTheReservation() {
+        ImageHashIndex.Reservation first = index.reserve(CONTENT_KEY, RENDITIONS, "1");
+        assertThat(first.token()).isNotNull();
+
+        assertThat(index.reserve(CONTENT_KEY, RENDITIONS, "2").pending()).isTrue();
+
+        index.commit(CONTENT_KEY, RENDITIONS, "1", first.token());
+        assertThat(index.reserve(CONTENT_KEY, RENDITIONS, "2").stored()).isTrue();
+    }
+
+    @Test
+    void expiredReservationIsTakenOver() {
+        ReflectionTestUtils.setField(index, "reservationTimeoutSeconds", 0L);
+        ImageHashIndex.Reservation first = index.reserve(CONTENT_KEY, RENDITIONS, "1");
+
+        ImageHashIndex.Reservation second = index.reserve(CONTENT_KEY, RENDITIONS, "2");
+        assertThat(second.token()).isNotNull().isNotEqualTo(first.token());
+
+        // The first upload lost its reservation, so it must not roll back
+        assertThat(index.abort(CONTENT_KEY, first.token())).isFalse();
+        assertThat(index.abort(CONTENT_KEY, second.token())).isTrue();
+    }
+
+    @Test
+    void abortAfterAnotherUploadCommittedKeepsTheObjects() {
+        ReflectionTestUtils.setField(index, "reservationTimeoutSeconds", 0L);
+        ImageHashIndex.Reservation first = index.reserve(CONTENT_KEY, RENDITIONS, "1");
+        ImageHashIndex.Reservation second = index.reserve(CONTENT_KEY, RENDITIONS, "2");
+        index.commit(CONTENT_KEY, RENDITIONS, "2", second.token());
+
+        assertThat(index.abort(CONTENT_KEY, first.token())).isFalse();
+        assertThat(index.reserve(CONTENT_KEY, RENDITIONS, "3").stored()).isTrue();
+    }
+
+    @Test
+    void abortedReservationCanBeReservedAgain() {
+        ImageHashIndex.Reservation first = index.reserve(CONTENT_KEY, RENDITIONS, "1");
+        assertThat(index.abort(CONTENT_KEY, first.token())).isTrue();
+
+        assertThat(index.reserve(CONTENT_KEY, RENDITIONS, "2").token()).isNotNull();
+    }
+
+    @Test
+    void imageIsUnusedOnlyOnceEveryRecordIsReleased() {
+        store("1");
+        index.reserve(CONTENT_KEY, RENDITIONS, "2");
+
+        ImageHashIndex.Release first = index.release(CONTENT_KEY, "1");
+        assertThat(first.unused()).isFalse();
+        assertThat(first.records()).containsExactly("2");
+
+        ImageHashIndex.Release last = index.release(CONTENT_KEY, "2");
+        assertThat(last.unused()).isTrue();
+        assertThat(last.renditions()).isEqualTo(Set.copyOf(RENDITIONS));
+    }
+
+    @Test
+    void releasingTheSameRecordTwiceKeepsTheOtherRecords() {
+        store("1");
+        index.reserve(CONTENT_KEY, RENDITIONS, "2");
+
+        index.release(CONTENT_KEY, "1");
+        ImageHashIndex.Release repeated = index.release(CONTENT_KEY, "1");
+
+        assertThat(repeated.unused()).isFalse();
+        assertThat(repeated.records()).containsExactly("2");
+    }
+
+    @Test
+    void uploadingAgainForTheSameRecordAddsNoUser() {
+        store("1");
+        assertThat(index.reserve(CONTENT_KEY, RENDITIONS, "1").stored()).isTrue();
+
+        assertThat(index.release(CONTENT_KEY, "1").unused()).isTrue();
+    }
+
+    @Test
+    void releasingARecordThatDoesNotUseTheImageChangesNothing() {
+        store("1");
+
+        ImageHashIndex.Release release = index.release(CONTENT_KEY, "2");
+
+        assertThat(release.unused()).isFalse();
+        assertThat(index.release(CONTENT_KEY, "1").unused()).isTrue();
+    }
+
+    @Test
+    void lastReleaseKeepsTheObjectsWhileAnUploadHoldsAReservation() {
+        store("1");
+        // Adding a rendition reserves the stored content again
+        ImageHashIndex.Reservation upload = index.reserve(CONTENT_KEY, List.of("thumbnail", "medium"), "2");
+        assertThat(upload.token()).isNotNull();
+
+        assertThat(index.release(CONTENT_KEY, "1").unused()).isFalse();
+    }
+
+    @Test
+    void missingEntryIsNotUnused() {
+        ImageHashIndex.Release release = index.release(CONTENT_KEY, "1");
+
+        assertThat(release.indexed()).isFalse();
+        assertThat(release.unused()).isFalse();
+    }
+
+    private void store(String recordId) {
+        ImageHashIndex.Reservation reservation = index.reserve(CONTENT_KEY, RENDITIONS, recordId);
+        index.commit(CONTENT_KEY, RENDITIONS, recordId, reservation.token());
+    }
+}
@@ -0,0 +1,202 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.util.SpooledMultipartFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageJobServiceTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private final S3Service s3Service = mock(S3Service.class);
+    private final InMemoryNotificationTransport transport = new InMemoryNotificationTransport(10);
+    private final PushNotificationService pushNotificationService = new PushNotificationService(transport,
+            new DeliveryAnalyticsService(null, Clock.systemUTC(), 1024, 60, false), 100, 0);
+    private ImageJobService jobs;
+
+    @BeforeEach
+    void setUp() {
+        jobs = service(2, 10);
+    }
+
+    @AfterEach
+    void shutdown() {
+        jobs.shutdown();
+    }
+
+    @Test
+    void submittedJobCompletesWithItsRenditions() throws Exception {
+        when(s3Service.uploadPetProfileImage(any(), eq(7L), eq("u1"))).thenReturn(uploaded());
+
+        ImageJobService.ImageJob job = jobs.submit(ImageJobService.PET_PROFILE, upload(), 7L, "u1", "token-1");
+
+        assertThat(jobs.getJob(job.getJobId())).isSameAs(job);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> job.getStatus() == ImageJobService.JobStatus.COMPLETED);
+        assertThat(job.getImageUrl()).isEqualTo("https://bucket/full.jpg");
+        assertThat(job.getThumbnailUrl()).isEqualTo("https://bucket/thumbnail.jpg");
+        assertThat(job.getFormat()).isEqualTo("jpg");
+        assertThat(job.getDeduplicated()).isFalse();
+        assertThat(job.getCompletedAt()).isNotNull();
+        // The spool file is deleted right after the job completes
+        await().atMost(5, TimeUnit.SECONDS).until(() -> spooled().isEmpty());
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transport.getSentCount() == 1);
+        assertThat(transport.getRecent().get(0).target()).isEqualTo("token-1");
+        assertThat(transport.getRecent().get(0).message()).isEqualTo("Tu imagen ya está lista");
+    }
+
+    @Test
+    void failedJobKeepsTheError() throws Exception {
+        when(s3Service.uploadUserProfileImage(any(), eq("u1"))).thenThrow(new IOException("Invalid image file"));
+
+        ImageJobService.ImageJob job = jobs.submit(ImageJobService.USER_PROFILE, upload(), null, "u1", "token-1");
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> job.getStatus() == ImageJobService.JobStatus.FAILED);
+        assertThat(job.getError()).isEqualTo("Invalid image file");
+        assertThat(spooled()).isEmpty();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> transport.getSentCount() == 1);
+        assertThat(transport.getRecent().get(0).message()).isEqualTo("No se pudo procesar tu imagen");
+    }
+
+    @Test
+    void jobWaitsForTheMemoryBudgetInsteadOfFailing() throws Exception {
+        when(s3Service.uploadPetProfileImage(any(), eq(7L), eq("u1")))
+                .thenThrow(new RejectedExecutionException("Image processing is at its memory budget, retry later"))
+                .thenReturn(uploaded());
+
+        ImageJobService.ImageJob job = jobs.submit(ImageJobService.PET_PROFILE, upload(), 7L, "u1", null);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> job.getStatus() == ImageJobService.JobStatus.COMPLETED);
+        verify(s3Service, times(2)).uploadPetProfileImage(any(), eq(7L), eq("u1"));
+        assertThat(transport.getSentCount()).isZero();
+    }
+
+    @Test
+    void fullQueueRejectsTheJobAndDeletesItsSpoolFile() throws Exception {
+        jobs.shutdown();
+        jobs = service(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(s3Service.uploadPetProfileImage(any(), any(), eq("u1"))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return uploaded();
+        });
+
+        ImageJobService.ImageJob running = jobs.submit(ImageJobService.PET_PROFILE, upload(), 1L, "u1", null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> running.getStatus() == ImageJobService.JobStatus.PROCESSING);
+        ImageJobService.ImageJob queued = jobs.submit(ImageJobService.PET_PROFILE, upload(), 2L, "u1", null);
+
+        assertThatThrownBy(() -> jobs.submit(ImageJobService.PET_PROFILE, upload(), 3L, "u1", null))
+                .isInstanceOf(RejectedExecutionException.class);
+        assertThat(jobs.getQueuedCount()).isEqualTo(1);
+        assertThat(spooled()).hasSize(2);
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> queued.getStatus() == ImageJobService.JobStatus.COMPLETED);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> spooled().isEmpty());
+    }
+
+    @Test
+    void invalidUploadIsRejectedBeforeItIsQueued() throws Exception {
+        doThrow(new IOException("File is not a valid image")).when(s3Service).validateImage(any());
+
+        assertThatThrownBy(() -> jobs.submit(ImageJobService.PET_PROFILE, upload(), 7L, "u1", null))
+                .isInstanceOf(IOException.class);
+        assertThat(spooled()).isEmpty();
+        verify(s3Service, never()).uploadPetProfileImage(any(SpooledMultipartFile.class), any(), any());
+    }
+
+    @Test
+    void stagedUploadIsProcessedThenDeleted() throws Exception {
+        String stagingKey = "users/u1/uploads/" + UUID.randomUUID();
+        when(s3Service.downloadStagedUpload(stagingKey, "u1"))
+                .thenAnswer(invocation -> SpooledMultipartFile.spool(upload(), spoolDir));
+        when(s3Service.uploadVaccineBatchImage(any(), eq(9L), eq("u1"))).thenReturn(uploaded());
+
+        S3Service.UploadedImage uploaded = jobs.completeStaged(ImageJobService.VACCINE_BATCH, stagingKey, 9L, "u1");
+
+        assertThat(uploaded.getImageUrl()).isEqualTo("https://bucket/full.jpg");
+        verify(s3Service).deleteStagedUpload(stagingKey);
+        assertThat(spooled()).isEmpty();
+    }
+
+    @Test
+    void stagedJobDownloadsTheUploadOnTheWorker() throws Exception {
+        String stagingKey = "users/u1/uploads/" + UUID.randomUUID();
+        when(s3Service.downloadStagedUpload(stagingKey, "u1"))
+                .thenAnswer(invocation -> SpooledMultipartFile.spool(upload(), spoolDir));
+        when(s3Service.uploadPetProfileImage(any(), eq(7L), eq("u1"))).thenReturn(uploaded());
+
+        ImageJobService.ImageJob job = jobs.submitStaged(ImageJobService.PET_PROFILE, stagingKey, 7L, "u1", null);
+
+        verify(s3Service).checkStagedUpload(stagingKey, "u1");
+        assertThat(job.getStagingKey()).isEqualTo(stagingKey);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> job.getStatus() == ImageJobService.JobStatus.COMPLETED);
+        verify(s3Service).deleteStagedUpload(stagingKey);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> spooled().isEmpty());
+    }
+
+    @Test
+    void stagedUploadThatFailsIsKept() throws Exception {
+        String stagingKey = "users/u1/uploads/" + UUID.randomUUID();
+        when(s3Service.downloadStagedUpload(stagingKey, "u1"))
+                .thenAnswer(invocation -> SpooledMultipartFile.spool(upload(), spoolDir));
+        when(s3Service.uploadPetProfileImage(any(), eq(7L), eq("u1"))).thenThrow(new IOException("Invalid image file"));
+
+        assertThatThrownBy(() -> jobs.completeStaged(ImageJobService.PET_PROFILE, stagingKey, 7L, "u1"))
+                .isInstanceOf(IOException.class);
+        verify(s3Service, never()).deleteStagedUpload(any());
+        assertThat(spooled()).isEmpty();
+    }
+
+    private ImageJobService service(int workers, int queueCapacity) {
+        ImageJobService service = new ImageJobService(s3Service, pushNotificationService, workers, queueCapacity, 100, 60);
+        ReflectionTestUtils.setField(service, "spoolDirectory", spoolDir.toString());
+        return service;
+    }
+
+    private List<Path> spooled() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.toList();
+        }
+    }
+
+    private static MockMultipartFile upload() {
+        return new MockMultipartFile("file", "pet.png", "image/png", new byte[]{1, 2, 3});
+    }
+
+    private static S3Service.UploadedImage uploaded() {
+        Map<String, String> renditions = new LinkedHashMap<>();
+        renditions.put("full", "https://bucket/full.jpg");
+        renditions.put("thumbnail", "https://bucket/thumbnail.jpg");
+        return new S3Service.UploadedImage(renditions, "jpg", 3, 2, false);
+    }
+}
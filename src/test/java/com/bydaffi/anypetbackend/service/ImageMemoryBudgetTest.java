@@ -0,0 +1,94 @@
+package com.bydaffi.anypetbackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageMemoryBudgetTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void reservationsAreRoundedUpToWholeKib() {
+        ImageMemoryBudget budget = new ImageMemoryBudget(1, 0);
+
+        try (ImageMemoryBudget.Reservation empty = budget.reserve(0);
+             ImageMemoryBudget.Reservation small = budget.reserve(1025)) {
+            assertThat(empty.getBytes()).isEqualTo(1024);
+            assertThat(small.getBytes()).isEqualTo(2048);
+            assertThat(budget.getStatus().getUsedBytes()).isEqualTo(3072);
+        }
+    }
+
+    @Test
+    void closingAReservationReturnsItsBytes() {
+        ImageMemoryBudget budget = new ImageMemoryBudget(1, 0);
+
+        ImageMemoryBudget.Reservation reservation = budget.reserve(MB / 2);
+        assertThat(budget.getStatus().getUsedBytes()).isEqualTo(MB / 2);
+        assertThat(budget.getStatus().getActiveReservations()).isEqualTo(1);
+
+        reservation.close();
+        // Closing twice must not return the bytes twice
+        reservation.close();
+
+        assertThat(budget.getStatus().getUsedBytes()).isZero();
+        assertThat(budget.getStatus().getActiveReservations()).isZero();
+        assertThat(budget.reserve(MB).getBytes()).isEqualTo(MB);
+    }
+
+    @Test
+    void rejectsWhenThereIsNoRoomWithinTheTimeout() {
+        ImageMemoryBudget budget = new ImageMemoryBudget(1, 50);
+        ImageMemoryBudget.Reservation first = budget.reserve(MB / 2);
+        ImageMemoryBudget.Reservation second = budget.reserve(MB / 2);
+
+        assertThatThrownBy(() -> budget.reserve(1)).isInstanceOf(RejectedExecutionException.class);
+        assertThat(budget.getStatus().getTimeouts()).isEqualTo(1);
+        assertThat(budget.getStatus().getUsedBytes()).isEqualTo(MB);
+
+        second.close();
+        try (ImageMemoryBudget.Reservation third = budget.reserve(MB / 4)) {
+            assertThat(budget.getStatus().getUsedBytes()).isEqualTo(MB / 2 + MB / 4);
+        }
+        first.close();
+    }
+
+    @Test
+    void oversizedImageReservesTheWholeBudgetAndRunsAlone() {
+        ImageMemoryBudget budget = new ImageMemoryBudget(1, 50);
+
+        try (ImageMemoryBudget.Reservation oversized = budget.reserve(10 * MB)) {
+            assertThat(oversized.getBytes()).isEqualTo(MB);
+            assertThat(budget.getStatus().getUsedPercent()).isEqualTo(100.0);
+            assertThatThrownBy(() -> budget.reserve(1)).isInstanceOf(RejectedExecutionException.class);
+        }
+
+        assertThat(budget.getStatus().getUsedBytes()).isZero();
+    }
+
+    @Test
+    void oversizedImageWaitsUntilTheBudgetIsFree() throws Exception {
+        ImageMemoryBudget budget = new ImageMemoryBudget(1, 5_000);
+        ImageMemoryBudget.Reservation small = budget.reserve(MB / 4);
+
+        CompletableFuture<ImageMemoryBudget.Reservation> oversized =
+                CompletableFuture.supplyAsync(() -> budget.reserve(10 * MB));
+        while (budget.getStatus().getWaiting() == 0) {
+            Thread.sleep(5);
+        }
+        assertThat(oversized).isNotDone();
+
+        small.close();
+
+        try (ImageMemoryBudget.Reservation reservation = oversized.get(5, TimeUnit.SECONDS)) {
+            assertThat(reservation.getBytes()).isEqualTo(MB);
+        }
+        assertThat(budget.getStatus().getTimeouts()).isZero();
+    }
+}
@@ -0,0 +1,128 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NotificationStreamServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InMemoryNotificationTransport transport = new InMemoryNotificationTransport(0);
+    private final DeliveryAnalyticsService deliveryAnalytics =
+            new DeliveryAnalyticsService(null, Clock.systemUTC(), 1024, 60, false);
+
+    @Test
+    void tokensAreSentInChunksOfTheMulticastLimit() throws Exception {
+        NotificationStreamService stream = service(new PushNotificationService(transport, deliveryAnalytics, 2000, 0));
+
+        List<JsonNode> lines = stream(stream, "{\"message\":\"Campaña\"}", tokenLines(1_201));
+
+        assertThat(lines).hasSize(4);
+        assertThat(lines.subList(0, 3)).extracting(line -> line.get("size").asInt())
+                .containsExactlyInAnyOrder(500, 500, 201);
+        JsonNode summary = lines.get(3);
+        assertThat(summary.get("done").asBoolean()).isTrue();
+        assertThat(summary.get("chunks").asInt()).isEqualTo(3);
+        assertThat(summary.get("totalCount").asLong()).isEqualTo(1_201);
+        assertThat(summary.get("successCount").asLong()).isEqualTo(1_201);
+        assertThat(transport.getSentCount()).isEqualTo(1_201);
+    }
+
+    @Test
+    void chunksAreClampedToTheMulticastShareOfTheWindow() throws Exception {
+        NotificationStreamService stream = service(new PushNotificationService(transport, deliveryAnalytics, 150, 50));
+
+        List<JsonNode> lines = stream(stream, "{\"message\":\"Campaña\"}", tokenLines(250));
+
+        assertThat(lines.get(lines.size() - 1).get("chunks").asInt()).isEqualTo(3);
+        assertThat(lines.subList(0, 3)).allSatisfy(line -> assertThat(line.get("size").asInt()).isLessThanOrEqualTo(100));
+    }
+
+    @Test
+    void tokensMayBeObjectsAndInvalidLinesAreCounted() throws Exception {
+        NotificationStreamService stream = service(new PushNotificationService(transport, deliveryAnalytics, 2000, 0));
+
+        List<JsonNode> lines = stream(stream, "{\"message\":\"Campaña\",\"petName\":\"Luna\"}",
+                List.of("\"token-1\"", "{\"token\":\"token-2\"}", "{\"other\":1}", "\"  \"", "42"));
+
+        JsonNode summary = lines.get(lines.size() - 1);
+        assertThat(summary.get("totalCount").asLong()).isEqualTo(2);
+        assertThat(summary.get("invalidLines").asLong()).isEqualTo(3);
+        assertThat(transport.getSentCount()).isEqualTo(2);
+    }
+
+    @Test
+    void failedTokensAreListedPerChunk() throws Exception {
+        InMemoryNotificationTransport failing = new InMemoryNotificationTransport(0) {
+            @Override
+            public CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request, List<String> tokens) {
+                List<SendResult> results = new ArrayList<>();
+                for (String token : tokens) {
+                    results.add(token.equals("token-1")
+                            ? SendResult.failure(token, "UNREGISTERED")
+                            : SendResult.success(token, "id-" + token));
+                }
+                return CompletableFuture.completedFuture(new MulticastResult(results));
+            }
+        };
+        NotificationStreamService stream = service(new PushNotificationService(failing, deliveryAnalytics, 2000, 0));
+
+        List<JsonNode> lines = stream(stream, "{\"message\":\"Campaña\"}", tokenLines(3));
+
+        JsonNode chunk = lines.get(0);
+        assertThat(chunk.get("successCount").asInt()).isEqualTo(2);
+        assertThat(chunk.get("failureCount").asInt()).isEqualTo(1);
+        assertThat(chunk.get("failures").get(0).get("token").asText()).isEqualTo("token-1");
+        assertThat(chunk.get("failures").get(0).get("errorCode").asText()).isEqualTo("UNREGISTERED");
+        assertThat(lines.get(1).get("failureCount").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void notificationWithoutMessageIsAnError() throws Exception {
+        NotificationStreamService stream = service(new PushNotificationService(transport, deliveryAnalytics, 2000, 0));
+
+        List<JsonNode> lines = stream(stream, "{\"title\":\"AnyPet\"}", tokenLines(3));
+
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0).get("success").asBoolean()).isFalse();
+        assertThat(transport.getSentCount()).isZero();
+    }
+
+    private NotificationStreamService service(PushNotificationService push) {
+        return new NotificationStreamService(push, objectMapper, 2, 1_000);
+    }
+
+    private List<JsonNode> stream(NotificationStreamService stream, String notification, List<String> tokenLines)
+            throws Exception {
+        StringBuilder body = new StringBuilder(notification).append('\n');
+        tokenLines.forEach(line -> body.append(line).append('\n'));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        stream.stream(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), output);
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : output.toString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        return lines;
+    }
+
+    private static List<String> tokenLines(int count) {
+        List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            lines.add("\"token-" + i + "\"");
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,120 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Tests the offline transports and PushNotificationService on top of them
+ */
+class NotificationTransportTest {
+
+    private final DeliveryAnalyticsService deliveryAnalytics =
+            new DeliveryAnalyticsService(null, Clock.systemUTC(), 1024, 60, false);
+    private SimulatedNotificationTransport simulated;
+
+    @AfterEach
+    void shutdownSimulated() {
+        if (simulated != null) {
+            simulated.shutdown();
+        }
+    }
+
+    @Test
+    void inMemoryTransportRecordsWhatWouldHaveBeenSent() throws Exception {
+        InMemoryNotificationTransport transport = new InMemoryNotificationTransport(10);
+        PushNotificationService push = new PushNotificationService(transport, deliveryAnalytics, 100, 0);
+
+        String messageId = push.sendPushNotification(request("token-1"));
+        NotificationTransport.MulticastResult multicast =
+                push.sendPushNotificationToMultipleDevices(request(null), List.of("token-2", "token-3"));
+        push.sendToTopicAsync(request(null), "/topics/pet-type-dog").join();
+
+        assertThat(messageId).startsWith("memory-");
+        assertThat(multicast.getSuccessCount()).isEqualTo(2);
+        assertThat(transport.getSentCount()).isEqualTo(4);
+        assertThat(transport.getRecent()).extracting(InMemoryNotificationTransport.RecordedNotification::target)
+                .containsExactly("token-1", "token-2", "token-3", "/topics/pet-type-dog");
+        assertThat(transport.getRecent().get(0).petName()).isEqualTo("Luna");
+    }
+
+    @Test
+    void inMemoryTransportKeepsOnlyTheMostRecentButCountsAll() {
+        InMemoryNotificationTransport transport = new InMemoryNotificationTransport(2);
+
+        transport.sendMulticast(request(null), List.of("a", "b", "c")).join();
+
+        assertThat(transport.getSentCount()).isEqualTo(3);
+        assertThat(transport.getRecent()).extracting(InMemoryNotificationTransport.RecordedNotification::target)
+                .containsExactly("b", "c");
+    }
+
+    @Test
+    void topicSubscriptionsAreBatchedAndTracked() throws Exception {
+        InMemoryNotificationTransport transport = new InMemoryNotificationTransport(0);
+        PushNotificationService push = new PushNotificationService(transport, deliveryAnalytics, 100, 0);
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < PushNotificationService.TOPIC_MANAGEMENT_LIMIT + 5; i++) {
+            tokens.add("token-" + i);
+        }
+
+        PushNotificationService.TopicSubscriptionResult subscribed = push.subscribeToTopic(tokens, "locale-es");
+        push.unsubscribeFromTopic(List.of("token-0"), "locale-es");
+
+        assertThat(subscribed.getSuccessCount()).isEqualTo(tokens.size());
+        assertThat(transport.getSubscribers("locale-es")).hasSize(tokens.size() - 1).doesNotContain("token-0");
+    }
+
+    @Test
+    void simulatedTransportFailsWithTheConfiguredErrorCode() {
+        simulated = new SimulatedNotificationTransport(1, 2, 1.0, "UNAVAILABLE", 0, 5);
+
+        NotificationTransport.MulticastResult multicast =
+                simulated.sendMulticast(request(null), List.of("a", "b")).join();
+
+        assertThat(multicast.getFailureCount()).isEqualTo(2);
+        assertThat(multicast.getResults()).extracting(NotificationTransport.SendResult::getErrorCode)
+                .containsOnly("UNAVAILABLE");
+        assertThatThrownBy(() -> simulated.send(request("a")).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(NotificationSendException.class);
+        assertThat(simulated.getFailedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void simulatedTransportSucceedsWithoutErrors() {
+        simulated = new SimulatedNotificationTransport(1, 2, 0.0, "UNAVAILABLE", 0, 5);
+
+        assertThat(simulated.send(request("a")).join()).startsWith("simulated-");
+        assertThat(simulated.sendMulticast(request(null), List.of("a", "b")).join().getSuccessCount()).isEqualTo(2);
+        assertThat(simulated.getSentCount()).isEqualTo(3);
+    }
+
+    @Test
+    void simulatedQuotaBurstRejectsEverySend() {
+        // The burst lasts the whole period
+        simulated = new SimulatedNotificationTransport(1, 2, 0.0, "UNAVAILABLE", 1, 1);
+
+        assertThatThrownBy(() -> simulated.send(request("a")).get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(NotificationSendException.class)
+                .cause().hasFieldOrPropertyWithValue("errorCode", NotificationSendException.QUOTA_EXCEEDED);
+        assertThat(simulated.sendMulticast(request(null), List.of("a")).join().getResults().get(0).getErrorCode())
+                .isEqualTo(NotificationSendException.QUOTA_EXCEEDED);
+        assertThat(simulated.getQuotaExceededCount()).isEqualTo(2);
+    }
+
+    private static PushNotificationRequest request(String token) {
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setPetName(token != null ? "Luna" : null);
+        request.setMessage("Hora de comer");
+        request.setToken(token);
+        return request;
+    }
+}
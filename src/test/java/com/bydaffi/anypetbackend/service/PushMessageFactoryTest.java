@@ -0,0 +1,95 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.google.firebase.messaging.Message;
+import com.google.firebase.messaging.MulticastMessage;
+import com.google.firebase.messaging.Notification;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Firebase messages expose no public getters, so their fields are read reflectively
+ */
+class PushMessageFactoryTest {
+
+    private final PushMessageFactory factory = new PushMessageFactory();
+
+    @Test
+    void messagesShareTheDefaultPlatformConfigs() {
+        Message first = factory.buildMessage(request("Luna", "token-1"));
+        Message second = factory.buildMessage(request(null, "token-2"));
+
+        PushMessageFactory.PlatformTemplate template =
+                factory.template(PushMessageFactory.DEFAULT_SOUND, PushMessageFactory.DEFAULT_COLOR);
+        assertThat(field(first, "androidConfig")).isSameAs(template.androidConfig()).isSameAs(field(second, "androidConfig"));
+        assertThat(field(first, "apnsConfig")).isSameAs(template.apnsConfig()).isSameAs(field(second, "apnsConfig"));
+    }
+
+    @Test
+    void templatesAreBuiltOncePerSoundAndColor() {
+        PushMessageFactory.PlatformTemplate template = factory.template("bark", "#00FF00");
+
+        assertThat(factory.template("bark", "#00FF00")).isSameAs(template);
+        assertThat(factory.template("bark", "#0000FF")).isNotSameAs(template);
+    }
+
+    @Test
+    void perRecipientPartsAreSetOnEachMessage() {
+        Message message = factory.buildMessage(request("Luna", "token-1"));
+
+        assertThat(field(message, "token")).isEqualTo("token-1");
+        Notification notification = (Notification) field(message, "notification");
+        assertThat(field(notification, "title")).isEqualTo(PushMessageFactory.DEFAULT_TITLE);
+        assertThat(field(notification, "body")).isEqualTo("Luna necesita su vacuna");
+        assertThat(data(message)).containsEntry("petName", "Luna").containsEntry("message", "necesita su vacuna")
+                .containsKey("timestamp");
+    }
+
+    @Test
+    void messageWithoutPetNameHasOnlyTheMessage() {
+        Message message = factory.buildMessage(request(null, "token-1"));
+
+        Notification notification = (Notification) field(message, "notification");
+        assertThat(field(notification, "body")).isEqualTo("necesita su vacuna");
+        assertThat(data(message)).doesNotContainKey("petName");
+    }
+
+    @Test
+    void topicMessagesIgnoreTheToken() {
+        Message message = factory.buildTopicMessage(request(null, "token-1"), "pets-dog-es");
+
+        assertThat(field(message, "topic")).isEqualTo("pets-dog-es");
+        assertThat(field(message, "token")).isNull();
+    }
+
+    @Test
+    void multicastMessagesShareOneNotification() {
+        MulticastMessage message = factory.buildMulticastMessage(request("Luna", null), List.of("a", "b"));
+
+        assertThat(field(message, "tokens")).isEqualTo(List.of("a", "b"));
+        assertThat(field(message, "androidConfig")).isSameAs(
+                factory.template(PushMessageFactory.DEFAULT_SOUND, PushMessageFactory.DEFAULT_COLOR).androidConfig());
+    }
+
+    private static PushNotificationRequest request(String petName, String token) {
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setPetName(petName);
+        request.setMessage("necesita su vacuna");
+        request.setToken(token);
+        return request;
+    }
+
+    private static Object field(Object target, String name) {
+        return ReflectionTestUtils.getField(target, name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String> data(Message message) {
+        return (Map<String, String>) field(message, "data");
+    }
+}
@@ -0,0 +1,146 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+class PushNotificationServiceTest {
+
+    private final HeldMulticastTransport transport = new HeldMulticastTransport();
+    private final DeliveryAnalyticsService deliveryAnalytics =
+            new DeliveryAnalyticsService(null, Clock.systemUTC(), 1024, 60, false);
+
+    @AfterEach
+    void releaseMulticasts() {
+        transport.releaseAll();
+    }
+
+    @Test
+    void singleSendSucceedsWhileAFullSizeStreamIsInFlight() throws Exception {
+        PushNotificationService push = new PushNotificationService(transport, deliveryAnalytics, 1000, 500);
+        NotificationStreamService stream = new NotificationStreamService(push, new ObjectMapper(), 2, 30_000);
+
+        StringBuilder body = new StringBuilder("{\"message\":\"Campaña\"}\n");
+        for (int i = 0; i < 5_000; i++) {
+            body.append("\"token-").append(i).append("\"\n");
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CompletableFuture<Void> campaign = CompletableFuture.runAsync(() -> {
+            try {
+                stream.stream(new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), output);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        // The stream holds everything it may hold
+        await().atMost(5, TimeUnit.SECONDS).until(() -> push.getInFlightCount() == push.getMaxMulticastInFlight());
+
+        assertThat(push.sendPushNotificationAsync(request("token-reminder"), "reminder-1").join())
+                .startsWith("single-");
+
+        transport.releaseAll();
+        campaign.get(10, TimeUnit.SECONDS);
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("\"successCount\":5000");
+    }
+
+    @Test
+    void multicastCannotTakeTheReservedPartOfTheWindow() {
+        PushNotificationService push = new PushNotificationService(transport, deliveryAnalytics, 1000, 500);
+
+        push.sendPushNotificationToMultipleDevicesAsync(request(null), tokens(500));
+
+        assertThatThrownBy(() -> push.sendPushNotificationToMultipleDevicesAsync(request(null), tokens(1)).join())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThatThrownBy(() -> push.sendPushNotificationToMultipleDevicesAsync(request(null), tokens(501)).join())
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        assertThat(push.getInFlightCount()).isEqualTo(500);
+    }
+
+    @Test
+    void singleSendIsRejectedWhenTheWholeWindowIsFull() {
+        PushNotificationService push = new PushNotificationService(transport, deliveryAnalytics, 2, 0);
+        push.sendPushNotificationToMultipleDevicesAsync(request(null), tokens(2));
+
+        assertThatThrownBy(() -> push.sendPushNotificationAsync(request("token-1")).join())
+                .hasCauseInstanceOf(RejectedExecutionException.class);
+
+        transport.releaseAll();
+        assertThat(push.getInFlightCount()).isZero();
+        assertThat(push.sendPushNotificationAsync(request("token-1")).join()).startsWith("single-");
+    }
+
+    private static PushNotificationRequest request(String token) {
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setTitle("AnyPet");
+        request.setMessage("Hora de comer");
+        request.setToken(token);
+        return request;
+    }
+
+    private static List<String> tokens(int count) {
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add("token-" + i);
+        }
+        return tokens;
+    }
+
+    /**
+     * Single sends succeed at once; multicasts stay in flight until released, like a slow FCM
+     */
+    private static class HeldMulticastTransport extends InMemoryNotificationTransport {
+
+        private final List<Runnable> held = new ArrayList<>();
+        private boolean released;
+
+        HeldMulticastTransport() {
+            super(0);
+        }
+
+        @Override
+        public CompletableFuture<String> send(PushNotificationRequest request) {
+            return CompletableFuture.completedFuture("single-" + request.getToken());
+        }
+
+        @Override
+        public CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request, List<String> tokens) {
+            CompletableFuture<MulticastResult> result = new CompletableFuture<>();
+            Runnable complete = () -> result.complete(super.sendMulticast(request, tokens).join());
+            synchronized (this) {
+                if (!released) {
+                    held.add(complete);
+                    return result;
+                }
+            }
+            complete.run();
+            return result;
+        }
+
+        void releaseAll() {
+            List<Runnable> toComplete;
+            synchronized (this) {
+                released = true;
+                toComplete = new ArrayList<>(held);
+                held.clear();
+            }
+            toComplete.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.repository.ReminderFirestoreMapper;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReminderBackfillServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 10, 9, 0);
+
+    private final ReminderFirestoreMapper mapper = new ReminderFirestoreMapper();
+    private final ReminderBackfillService backfill = new ReminderBackfillService(null, mapper,
+            Clock.fixed(NOW.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault()));
+
+    @Test
+    void dueButUnsentReminderKeepsItsSchedule() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.DAILY, NOW.minusDays(3));
+        reminder.setNextExecution(NOW.withHour(8));
+
+        assertThat(backfill.recompute(document(mapper.convertToFirestoreMap(reminder)))).isNull();
+    }
+
+    @Test
+    void oncePastDueReminderKeepsItsSchedule() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.ONCE, NOW.minusDays(3));
+        reminder.setNextExecution(NOW.minusDays(1).withHour(8));
+
+        assertThat(backfill.recompute(document(mapper.convertToFirestoreMap(reminder)))).isNull();
+    }
+
+    @Test
+    void onceReminderThatFiredStaysWithoutNextExecution() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.ONCE, NOW.minusDays(3));
+        reminder.setLastTriggered(NOW.minusDays(2).withHour(8));
+
+        assertThat(backfill.recompute(document(mapper.convertToFirestoreMap(reminder)))).isNull();
+    }
+
+    @Test
+    void missingNextExecutionIsTheFirstOccurrenceAfterCreation() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.DAILY, NOW.minusDays(3).withHour(7));
+
+        ReminderBackfillService.PendingWrite write =
+                backfill.recompute(document(mapper.convertToFirestoreMap(reminder)));
+
+        // Still in the past: the scheduler sends it on its next run
+        assertThat(write).isNotNull();
+        assertThat(write.data().get("nextExecution")).isEqualTo(mapper.toTimestamp(NOW.minusDays(3).withHour(8)));
+    }
+
+    @Test
+    void malformedNextExecutionIsRecomputed() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.ONCE, NOW.minusDays(1).withHour(7));
+        Map<String, Object> data = mapper.convertToFirestoreMap(reminder);
+        data.put("nextExecution", "2025-03-09T08:00");
+
+        ReminderBackfillService.PendingWrite write = backfill.recompute(document(data));
+
+        assertThat(write).isNotNull();
+        assertThat(write.data().get("nextExecution")).isEqualTo(mapper.toTimestamp(NOW.minusDays(1).withHour(8)));
+    }
+
+    @Test
+    void missingTimestampsComeFromTheClock() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.DAILY, null);
+        reminder.setUpdatedAt(null);
+        reminder.setNextExecution(NOW.plusDays(1).withHour(8));
+
+        ReminderBackfillService.PendingWrite write =
+                backfill.recompute(document(mapper.convertToFirestoreMap(reminder)));
+
+        assertThat(write).isNotNull();
+        assertThat(write.data().get("createdAt")).isEqualTo(mapper.toTimestamp(NOW));
+        assertThat(write.data().get("updatedAt")).isEqualTo(mapper.toTimestamp(NOW));
+        assertThat(write.data().get("nextExecution")).isEqualTo(mapper.toTimestamp(NOW.plusDays(1).withHour(8)));
+    }
+
+    @Test
+    void staleFutureNextExecutionIsRecomputed() {
+        // Fired this morning; older logic stored a schedule three days out
+        Reminder reminder = reminder(Reminder.RepeatInterval.DAILY, NOW.minusDays(3));
+        reminder.setLastTriggered(NOW.withHour(8));
+        reminder.setNextExecution(NOW.plusDays(3).withHour(8));
+
+        ReminderBackfillService.PendingWrite write =
+                backfill.recompute(document(mapper.convertToFirestoreMap(reminder)));
+
+        assertThat(write).isNotNull();
+        assertThat(write.data().get("nextExecution")).isEqualTo(mapper.toTimestamp(NOW.plusDays(1).withHour(8)));
+    }
+
+    @Test
+    void currentFutureNextExecutionIsUnchanged() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.DAILY, NOW.minusDays(3));
+        reminder.setLastTriggered(NOW.withHour(8));
+        reminder.setNextExecution(NOW.plusDays(1).withHour(8));
+
+        assertThat(backfill.recompute(document(mapper.convertToFirestoreMap(reminder)))).isNull();
+    }
+
+    @Test
+    void inactiveReminderKeepsItsSchedule() {
+        Reminder reminder = reminder(Reminder.RepeatInterval.DAILY, NOW.minusDays(3));
+        reminder.setActive(false);
+        reminder.setLastTriggered(NOW.withHour(8));
+        reminder.setNextExecution(NOW.plusDays(3).withHour(8));
+
+        assertThat(backfill.recompute(document(mapper.convertToFirestoreMap(reminder)))).isNull();
+    }
+
+    private static Reminder reminder(Reminder.RepeatInterval repeatInterval, LocalDateTime createdAt) {
+        Reminder reminder = new Reminder();
+        reminder.setTitle("Alimentar a Luna");
+        reminder.setMessage("Hora de comer");
+        reminder.setScheduledTime(LocalTime.of(8, 0));
+        reminder.setRepeatInterval(repeatInterval);
+        reminder.setUserId("user-1");
+        reminder.setDeviceToken("token-1");
+        reminder.setCreatedAt(createdAt);
+        reminder.setUpdatedAt(createdAt);
+        return reminder;
+    }
+
+    /**
+     * A reminders document whose fields are read from the given map, as Firestore would
+     */
+    private static QueryDocumentSnapshot document(Map<String, Object> data) {
+        QueryDocumentSnapshot document = mock(QueryDocumentSnapshot.class);
+        when(document.getId()).thenReturn("reminder-1");
+        when(document.getData()).thenReturn(data);
+        when(document.get(anyString())).thenAnswer(call -> data.get(call.<String>getArgument(0)));
+        when(document.getString(anyString())).thenAnswer(call -> (String) data.get(call.<String>getArgument(0)));
+        when(document.getBoolean(anyString())).thenAnswer(call -> (Boolean) data.get(call.<String>getArgument(0)));
+        when(document.getTimestamp(anyString())).thenAnswer(call -> (Timestamp) data.get(call.<String>getArgument(0)));
+        return document;
+    }
+}
@@ -0,0 +1,181 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.AlreadyExistsException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Precondition;
+import com.google.cloud.firestore.WriteResult;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReminderIdempotencyServiceTest {
+
+    private final Firestore firestore = mock(Firestore.class);
+    private final DocumentReference keyDocument = mock(DocumentReference.class);
+    private final DocumentSnapshot keySnapshot = mock(DocumentSnapshot.class);
+    private final ReminderService reminderService = mock(ReminderService.class);
+    private final AtomicInteger creations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        CollectionReference collection = mock(CollectionReference.class);
+        when(firestore.collection("idempotencyKeys")).thenReturn(collection);
+        when(collection.document(anyString())).thenReturn(keyDocument);
+
+        WriteResult written = mock(WriteResult.class);
+        when(keyDocument.create(anyMap())).thenReturn(ApiFutures.immediateFuture(written));
+        when(keyDocument.update(anyMap())).thenReturn(ApiFutures.immediateFuture(written));
+        when(keyDocument.update(anyMap(), any(Precondition.class))).thenReturn(ApiFutures.immediateFuture(written));
+        when(keyDocument.delete()).thenReturn(ApiFutures.immediateFuture(written));
+        when(keyDocument.get()).thenReturn(ApiFutures.immediateFuture(keySnapshot));
+    }
+
+    @Test
+    void sameKeyOnTheSameNodeReplaysTheFirstReminder() throws Exception {
+        ReminderIdempotencyService service = service("memory");
+
+        ReminderIdempotencyService.IdempotentResult first = service.createOnce("u1", "key-1", creation("r1"));
+        ReminderIdempotencyService.IdempotentResult retry = service.createOnce("u1", "key-1", creation("r2"));
+
+        assertThat(first.isReplayed()).isFalse();
+        assertThat(retry.isReplayed()).isTrue();
+        assertThat(retry.getReminder().getId()).isEqualTo("r1");
+        assertThat(creations).hasValue(1);
+    }
+
+    @Test
+    void keysAreScopedPerUser() throws Exception {
+        ReminderIdempotencyService service = service("memory");
+
+        service.createOnce("u1", "key-1", creation("r1"));
+        ReminderIdempotencyService.IdempotentResult other = service.createOnce("u2", "key-1", creation("r2"));
+
+        assertThat(other.isReplayed()).isFalse();
+        assertThat(other.getReminder().getId()).isEqualTo("r2");
+    }
+
+    @Test
+    void freeKeyIsReservedThenCompleted() throws Exception {
+        ReminderIdempotencyService service = service("firestore");
+
+        ReminderIdempotencyService.IdempotentResult result = service.createOnce("u1", "key-1", creation("r1"));
+
+        assertThat(result.isReplayed()).isFalse();
+        ArgumentCaptor<Map<String, Object>> reservation = mapCaptor();
+        verify(keyDocument).create(reservation.capture());
+        assertThat(reservation.getValue()).containsEntry("status", "PENDING");
+        ArgumentCaptor<Map<String, Object>> completion = mapCaptor();
+        verify(keyDocument).update(completion.capture());
+        assertThat(completion.getValue()).containsEntry("status", "COMPLETED").containsEntry("reminderId", "r1");
+    }
+
+    @Test
+    void keyCompletedOnAnotherNodeReplaysItsReminder() throws Exception {
+        alreadyExists("COMPLETED", Timestamp.ofTimeSecondsAndNanos(Timestamp.now().getSeconds() + 3600, 0));
+        when(keySnapshot.getString("reminderId")).thenReturn("r1");
+        when(reminderService.getReminderById("r1")).thenReturn(reminder("r1"));
+
+        ReminderIdempotencyService.IdempotentResult result =
+                service("firestore").createOnce("u1", "key-1", creation("r2"));
+
+        assertThat(result.isReplayed()).isTrue();
+        assertThat(result.getReminder().getId()).isEqualTo("r1");
+        assertThat(creations).hasValue(0);
+    }
+
+    @Test
+    void keyReservedByARequestInProgressIsAConflict() {
+        alreadyExists("PENDING", Timestamp.ofTimeSecondsAndNanos(Timestamp.now().getSeconds() + 60, 0));
+
+        assertThatThrownBy(() -> service("firestore").createOnce("u1", "key-1", creation("r2")))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("still in progress");
+        assertThat(creations).hasValue(0);
+    }
+
+    @Test
+    void expiredReservationIsTakenOver() throws Exception {
+        Timestamp updated = Timestamp.ofTimeSecondsAndNanos(Timestamp.now().getSeconds() - 120, 0);
+        alreadyExists("PENDING", Timestamp.ofTimeSecondsAndNanos(Timestamp.now().getSeconds() - 60, 0));
+        when(keySnapshot.getUpdateTime()).thenReturn(updated);
+
+        ReminderIdempotencyService.IdempotentResult result =
+                service("firestore").createOnce("u1", "key-1", creation("r2"));
+
+        assertThat(result.isReplayed()).isFalse();
+        assertThat(result.getReminder().getId()).isEqualTo("r2");
+        // Only taken over if no other request changed the key since it was read
+        verify(keyDocument).update(anyMap(), any(Precondition.class));
+    }
+
+    @Test
+    void failedCreationReleasesTheKey() {
+        ReminderIdempotencyService service = service("firestore");
+
+        assertThatThrownBy(() -> service.createOnce("u1", "key-1", () -> {
+            throw new IllegalArgumentException("Pet not found");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        verify(keyDocument).delete();
+        verify(keyDocument, never()).update(anyMap());
+    }
+
+    private ReminderIdempotencyService service(String reminderStore) {
+        return new ReminderIdempotencyService(firestore, reminderService, 100, 24, 60, true, reminderStore);
+    }
+
+    private void alreadyExists(String status, Timestamp expiresAt) {
+        AlreadyExistsException exists = new AlreadyExistsException(new RuntimeException("exists"),
+                GrpcStatusCode.of(Status.Code.ALREADY_EXISTS), false);
+        when(keyDocument.create(anyMap())).thenReturn(ApiFutures.immediateFailedFuture(exists));
+        when(keySnapshot.exists()).thenReturn(true);
+        when(keySnapshot.getString("status")).thenReturn(status);
+        when(keySnapshot.getTimestamp("expiresAt")).thenReturn(expiresAt);
+    }
+
+    private Callable<Reminder> creation(String id) {
+        return () -> {
+            creations.incrementAndGet();
+            return reminder(id);
+        };
+    }
+
+    private static Reminder reminder(String id) {
+        Reminder reminder = new Reminder();
+        reminder.setId(id);
+        reminder.setTitle("Vacuna");
+        reminder.setMessage("Vacuna anual");
+        reminder.setScheduledTime(LocalTime.of(8, 0));
+        reminder.setRepeatInterval(Reminder.RepeatInterval.YEARLY);
+        reminder.setUserId("u1");
+        return reminder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Map<String, Object>> mapCaptor() {
+        return ArgumentCaptor.forClass(Map.class);
+    }
+}
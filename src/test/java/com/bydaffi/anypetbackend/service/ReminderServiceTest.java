@@ -0,0 +1,131 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.repository.InMemoryReminderStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReminderServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 10, 9, 0);
+    private static final LocalDateTime DUE = NOW.minusMinutes(1);
+
+    private final Clock clock = Clock.fixed(NOW.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    private final InMemoryReminderStore store = new InMemoryReminderStore();
+    private final SlowTransport transport = new SlowTransport();
+    private final DeliveryAnalyticsService deliveryAnalytics = new DeliveryAnalyticsService(null, clock, 1024, 60, false);
+
+    @Test
+    void sendsRejectedByAFullWindowAreRetriedUntilItFrees() throws Exception {
+        // Room for one send at a time, each taking 20 ms: the others are rejected and retried
+        ReminderService service = service(new PushNotificationService(transport, deliveryAnalytics, 1, 0), 5_000);
+        List<Reminder> reminders = List.of(dueReminder(), dueReminder(), dueReminder());
+
+        service.processDueReminders();
+
+        assertThat(transport.sent).hasSize(3);
+        for (Reminder reminder : reminders) {
+            Reminder stored = store.findById(reminder.getId()).orElseThrow();
+            assertThat(stored.getLastTriggered()).isEqualTo(NOW);
+            assertThat(stored.getNextExecution()).isEqualTo(NOW.plusDays(1).with(LocalTime.of(8, 0)));
+        }
+    }
+
+    @Test
+    void remindersStillRejectedAreReleasedInsteadOfWaitingForTheLease() throws Exception {
+        PushNotificationService push = new PushNotificationService(transport, deliveryAnalytics, 2, 0);
+        ReminderService service = service(push, 0);
+        Reminder reminder = dueReminder();
+
+        // A campaign holds the whole window
+        CompletableFuture<?> campaign = push.sendPushNotificationToMultipleDevicesAsync(request(), List.of("a", "b"));
+        service.processDueReminders();
+
+        Reminder stored = store.findById(reminder.getId()).orElseThrow();
+        assertThat(stored.getLastTriggered()).isNull();
+        assertThat(stored.getNextExecution()).isEqualTo(DUE);
+        assertThat(transport.sent).isEmpty();
+
+        // Due again for the next run, not after the 300 s lease
+        transport.releaseMulticasts();
+        campaign.get(1, TimeUnit.SECONDS);
+        service.processDueReminders();
+
+        assertThat(transport.sent).containsExactly(reminder.getDeviceToken());
+        assertThat(store.findById(reminder.getId()).orElseThrow().getLastTriggered()).isEqualTo(NOW);
+    }
+
+    private ReminderService service(PushNotificationService push, long retryTimeoutMillis) {
+        ReminderService service = new ReminderService(store, push, new PetNameResolver(null, 10, 30, 60), clock);
+        ReflectionTestUtils.setField(service, "dispatchBatchSize", 500);
+        ReflectionTestUtils.setField(service, "claimLeaseSeconds", 300L);
+        ReflectionTestUtils.setField(service, "rejectedRetryTimeoutMillis", retryTimeoutMillis);
+        return service;
+    }
+
+    private Reminder dueReminder() {
+        Reminder reminder = new Reminder();
+        reminder.setTitle("Alimentar a Luna");
+        reminder.setMessage("Hora de comer");
+        reminder.setScheduledTime(LocalTime.of(8, 0));
+        reminder.setRepeatInterval(Reminder.RepeatInterval.DAILY);
+        reminder.setUserId("user-1");
+        reminder.setDeviceToken("token-" + store.size());
+        reminder.setNextExecution(DUE);
+        reminder.setCreatedAt(NOW.minusDays(1));
+        reminder.setUpdatedAt(NOW.minusDays(1));
+        return store.create(reminder);
+    }
+
+    private static PushNotificationRequest request() {
+        PushNotificationRequest request = new PushNotificationRequest();
+        request.setMessage("Campaña");
+        return request;
+    }
+
+    /**
+     * Single sends take 20 ms; multicasts stay in flight until released
+     */
+    private static class SlowTransport extends InMemoryNotificationTransport {
+
+        private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        private final List<CompletableFuture<MulticastResult>> multicasts = new ArrayList<>();
+
+        SlowTransport() {
+            super(0);
+        }
+
+        @Override
+        public CompletableFuture<String> send(PushNotificationRequest request) {
+            return CompletableFuture.supplyAsync(() -> {
+                sent.add(request.getToken());
+                return "message-" + request.getToken();
+            }, CompletableFuture.delayedExecutor(20, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public synchronized CompletableFuture<MulticastResult> sendMulticast(PushNotificationRequest request,
+                                                                            List<String> tokens) {
+            CompletableFuture<MulticastResult> result = new CompletableFuture<>();
+            multicasts.add(result);
+            return result;
+        }
+
+        synchronized void releaseMulticasts() {
+            multicasts.forEach(multicast -> multicast.complete(new MulticastResult(List.of())));
+        }
+    }
+}
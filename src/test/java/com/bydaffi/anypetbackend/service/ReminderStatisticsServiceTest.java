@@ -0,0 +1,121 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.AggregateQuery;
+import com.google.cloud.firestore.AggregateQuerySnapshot;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReminderStatisticsServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2025, 3, 10, 9, 0);
+
+    private final Firestore firestore = mock(Firestore.class);
+    private final CollectionReference reminders = mock(CollectionReference.class);
+    private final Query query = mock(Query.class);
+    private final List<Object> equalityValues = new ArrayList<>();
+    private final List<Object> dueBefore = new ArrayList<>();
+
+    private Clock clock = clockAt(NOW);
+
+    @BeforeEach
+    void stubCountQueries() {
+        // Every filter narrows to the same query; each count() answers 1
+        when(firestore.collection("reminders")).thenReturn(reminders);
+        when(reminders.whereEqualTo(anyString(), any())).thenAnswer(call -> {
+            equalityValues.add(call.getArgument(1));
+            return query;
+        });
+        when(query.whereEqualTo(anyString(), any())).thenAnswer(call -> {
+            equalityValues.add(call.getArgument(1));
+            return query;
+        });
+        when(query.whereLessThanOrEqualTo(anyString(), any())).thenAnswer(call -> {
+            dueBefore.add(call.getArgument(1));
+            return query;
+        });
+
+        AggregateQuerySnapshot snapshot = mock(AggregateQuerySnapshot.class);
+        when(snapshot.getCount()).thenReturn(1L);
+        AggregateQuery count = mock(AggregateQuery.class);
+        when(count.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        when(query.count()).thenReturn(count);
+    }
+
+    @Test
+    void dueWindowAndGeneratedAtComeFromTheClock() throws Exception {
+        ReminderStatisticsService.ReminderStatistics statistics = service().getStatistics();
+
+        assertThat(statistics.getGeneratedAt()).isEqualTo(NOW);
+        assertThat(dueBefore).containsExactly(
+                Timestamp.of(java.util.Date.from(NOW.plusHours(1).atZone(ZoneId.systemDefault()).toInstant())));
+    }
+
+    @Test
+    void missingTokensAreTheValuesTheSenderSkips() throws Exception {
+        ReminderStatisticsService.ReminderStatistics statistics = service().getStatistics();
+
+        assertThat(equalityValues).contains(null, "", Reminder.NO_DEVICE_TOKEN);
+        assertThat(statistics.getWithoutDeviceToken()).isEqualTo(3);
+        for (Object value : new Object[]{null, "", Reminder.NO_DEVICE_TOKEN}) {
+            Reminder reminder = new Reminder();
+            reminder.setDeviceToken((String) value);
+            assertThat(reminder.hasDeviceToken()).isFalse();
+        }
+    }
+
+    @Test
+    void blankTokenIsStoredAsEmptySoItIsCounted() {
+        Reminder reminder = new Reminder();
+        reminder.setDeviceToken("   ");
+
+        reminder.normalizeDeviceToken();
+
+        assertThat(reminder.getDeviceToken()).isEmpty();
+        assertThat(reminder.hasDeviceToken()).isFalse();
+    }
+
+    @Test
+    void cachedStatisticsExpireByTheClock() throws Exception {
+        ReminderStatisticsService service = service();
+        service.getStatistics();
+        service.getStatistics();
+        verify(query, times(1)).whereLessThanOrEqualTo(anyString(), any());
+
+        clock = Clock.offset(clock, Duration.ofSeconds(16));
+        ReflectionTestUtils.setField(service, "clock", clock);
+        assertThat(service.getStatistics().getGeneratedAt()).isEqualTo(NOW.plusSeconds(16));
+        verify(query, times(2)).whereLessThanOrEqualTo(anyString(), any());
+    }
+
+    private ReminderStatisticsService service() {
+        ReminderStatisticsService service = new ReminderStatisticsService(firestore, clock);
+        ReflectionTestUtils.setField(service, "cacheTtlSeconds", 15L);
+        return service;
+    }
+
+    private static Clock clockAt(LocalDateTime now) {
+        return Clock.fixed(now.atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,432 @@
+package com.bydaffi.anypetbackend.service;
+
+import com.bydaffi.anypetbackend.util.SpooledMultipartFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class S3ServiceTest {
+
+    private static final String BUCKET = "anypet-test";
+    private static final String HASH = "b".repeat(64);
+    private static final String CONTENT_KEY = "users/u1/pets/" + HASH;
+    private static final String FULL_URL = "https://" + BUCKET + ".s3.us-east-1.amazonaws.com/users/u1/pets/full/"
+            + HASH + ".jpg";
+    private static final List<String> RENDITIONS = List.of("thumbnail", "full");
+
+    @TempDir
+    Path spoolDir;
+
+    private final S3Client s3Client = mock(S3Client.class);
+    // Signing is local, so a real presigner works offline; spied to count signatures
+    private final S3Presigner s3Presigner = spy(S3Presigner.builder()
+            .region(Region.US_EAST_1)
+            .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create("AKIDTEST", "secret")))
+            .build());
+    private final S3AsyncClient s3AsyncClient = mock(S3AsyncClient.class);
+    private final ImageHashIndex imageHashIndex = new ImageHashIndex(null, 100, 24);
+    private final List<String> putKeys = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<PutObjectResponse>> puts = new CopyOnWriteArrayList<>();
+    private S3Service s3Service;
+
+    @BeforeEach
+    void setUp() {
+        ImageCompressionService compression = new ImageCompressionService(new ImageMemoryBudget(64, 0));
+        ReflectionTestUtils.setField(compression, "compressionQuality", 0.85f);
+        ReflectionTestUtils.setField(compression, "renditions", new String[]{"thumbnail:40", "full:120"});
+        ReflectionTestUtils.setField(compression, "spoolDirectory", spoolDir.toString());
+
+        s3Service = new S3Service(s3Client, s3AsyncClient, compression, imageHashIndex,
+                s3Presigner, 100, 30);
+        ReflectionTestUtils.setField(s3Service, "bucketName", BUCKET);
+        ReflectionTestUtils.setField(s3Service, "region", "us-east-1");
+        ReflectionTestUtils.setField(s3Service, "maxSizeMB", 10);
+        ReflectionTestUtils.setField(s3Service, "cacheControl", "public, max-age=31536000, immutable");
+        ReflectionTestUtils.setField(s3Service, "spoolDirectory", spoolDir.toString());
+        ReflectionTestUtils.setField(s3Service, "directUploadExpiryMinutes", 15L);
+        ReflectionTestUtils.setField(s3Service, "presignedGetExpiryMinutes", 60L);
+
+        when(s3Client.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(DeleteObjectsResponse.builder().build());
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class)))
+                .thenAnswer(invocation -> CompletableFuture.failedFuture(NoSuchKeyException.builder().statusCode(404).build()));
+        when(s3AsyncClient.deleteObject(any(DeleteObjectRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()));
+        // Every PUT is held until the test completes it
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            CompletableFuture<PutObjectResponse> put = new CompletableFuture<>();
+            putKeys.add(invocation.<PutObjectRequest>getArgument(0).key());
+            puts.add(put);
+            return put;
+        });
+    }
+
+    @Test
+    void concurrentFirstUploadsOfTheSameImageUploadItOnce() throws Exception {
+        CompletableFuture<S3Service.UploadedImage> first = uploadAsync(7L);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 2);
+
+        CompletableFuture<S3Service.UploadedImage> second = uploadAsync(8L);
+        // The second upload waits for the reservation instead of uploading as well
+        await().during(Duration.ofMillis(300)).atMost(2, TimeUnit.SECONDS)
+                .until(() -> puts.size() == 2 && !second.isDone());
+
+        puts.forEach(put -> put.complete(PutObjectResponse.builder().build()));
+
+        assertThat(first.get(5, TimeUnit.SECONDS).isDeduplicated()).isFalse();
+        assertThat(second.get(5, TimeUnit.SECONDS).isDeduplicated()).isTrue();
+        assertThat(puts).hasSize(2);
+    }
+
+    @Test
+    void renditionsAreUploadedConcurrently() throws Exception {
+        CompletableFuture<S3Service.UploadedImage> upload = uploadAsync(7L);
+
+        // Both PUTs are issued before either completes
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 2);
+        assertThat(upload).isNotDone();
+        puts.forEach(put -> put.complete(PutObjectResponse.builder().build()));
+
+        S3Service.UploadedImage uploaded = upload.get(5, TimeUnit.SECONDS);
+        assertThat(putKeys).containsExactlyInAnyOrder(keyOf(uploaded.getImageUrl()), keyOf(uploaded.getThumbnailUrl()));
+        ArgumentCaptor<PutObjectRequest> request = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3AsyncClient, times(2)).putObject(request.capture(), any(AsyncRequestBody.class));
+        assertThat(request.getAllValues()).allSatisfy(put -> {
+            assertThat(put.contentType()).isEqualTo("image/jpeg");
+            assertThat(put.cacheControl()).isEqualTo("public, max-age=31536000, immutable");
+            assertThat(put.contentLength()).isPositive();
+        });
+    }
+
+    @Test
+    void renditionsAlreadyInTheBucketAreNotUploadedAgain() throws Exception {
+        when(s3AsyncClient.headObject(argThat((HeadObjectRequest head) -> head.key().contains("/full/"))))
+                .thenReturn(CompletableFuture.completedFuture(HeadObjectResponse.builder().build()));
+
+        CompletableFuture<S3Service.UploadedImage> upload = uploadAsync(7L);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 1);
+        puts.get(0).complete(PutObjectResponse.builder().build());
+
+        assertThat(upload.get(5, TimeUnit.SECONDS).isDeduplicated()).isFalse();
+        assertThat(putKeys).singleElement().asString().contains("/thumbnail/");
+    }
+
+    @Test
+    void failedUploadDeletesTheObjectsItCreated() throws IOException {
+        CompletableFuture<S3Service.UploadedImage> upload = uploadAsync(7L);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 2);
+
+        puts.get(0).complete(PutObjectResponse.builder().build());
+        puts.get(1).completeExceptionally(new IllegalStateException("connection reset"));
+
+        assertThatThrownBy(() -> upload.get(5, TimeUnit.SECONDS)).hasMessageContaining("connection reset");
+        ArgumentCaptor<DeleteObjectRequest> delete = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        verify(s3AsyncClient).deleteObject(delete.capture());
+        assertThat(delete.getValue().key()).isEqualTo(putKeys.get(0));
+        assertThat(spooled()).isEmpty();
+    }
+
+    @Test
+    void spoolFilesAreDeletedOnceUploaded() throws Exception {
+        CompletableFuture<S3Service.UploadedImage> uploaded = uploadAsync(7L);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 2);
+        assertThat(spooled()).hasSize(2);
+        puts.forEach(put -> put.complete(PutObjectResponse.builder().build()));
+        uploaded.get(5, TimeUnit.SECONDS);
+        assertThat(spooled()).isEmpty();
+    }
+
+    @Test
+    void failedUploadThatLostItsReservationDoesNotRollBack() throws Exception {
+        // Reservations expire at once, so the second upload takes over the first one's
+        ReflectionTestUtils.setField(imageHashIndex, "reservationTimeoutSeconds", 0L);
+
+        CompletableFuture<S3Service.UploadedImage> first = uploadAsync(7L);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 2);
+        CompletableFuture<S3Service.UploadedImage> second = uploadAsync(8L);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> puts.size() == 4);
+
+        puts.get(2).complete(PutObjectResponse.builder().build());
+        puts.get(3).complete(PutObjectResponse.builder().build());
+        assertThat(second.get(5, TimeUnit.SECONDS).isDeduplicated()).isFalse();
+
+        puts.get(0).complete(PutObjectResponse.builder().build());
+        puts.get(1).completeExceptionally(new IllegalStateException("connection reset"));
+
+        assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS)).hasMessageContaining("connection reset");
+        verify(s3AsyncClient, never()).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    @Test
+    void lastRecordDeletesEveryRendition() {
+        store(CONTENT_KEY, "7");
+
+        assertThat(s3Service.deleteImage(FULL_URL, 7L, "u1")).isTrue();
+
+        ArgumentCaptor<DeleteObjectsRequest> request = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3Client).deleteObjects(request.capture());
+        assertThat(request.getValue().delete().objects()).extracting(ObjectIdentifier::key)
+                .containsExactlyInAnyOrder("users/u1/pets/full/" + HASH + ".jpg",
+                        "users/u1/pets/thumbnail/" + HASH + ".jpg");
+    }
+
+    @Test
+    void repeatedDeleteOfTheSameRecordKeepsAnImageOthersUse() {
+        store(CONTENT_KEY, "7");
+        store(CONTENT_KEY, "8");
+
+        assertThat(s3Service.deleteImage(FULL_URL, 7L, "u1")).isFalse();
+        assertThat(s3Service.deleteImage(FULL_URL, 7L, "u1")).isFalse();
+
+        verify(s3Client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+        assertThat(s3Service.deleteImage(FULL_URL, 8L, "u1")).isTrue();
+    }
+
+    @Test
+    void imageWithoutIndexEntryIsKept() {
+        assertThat(s3Service.deleteImage(FULL_URL, 7L, "u1")).isFalse();
+
+        verify(s3Client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    @Test
+    void imagesOfOtherUsersAreNotDeleted() {
+        store(CONTENT_KEY, "7");
+
+        assertThat(s3Service.isImageOfUser(FULL_URL, "u2")).isFalse();
+        assertThatThrownBy(() -> s3Service.deleteImage(FULL_URL, 7L, "u2"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(s3Client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    @Test
+    void petImagesNeedTheEntityId() {
+        store(CONTENT_KEY, "7");
+
+        assertThatThrownBy(() -> s3Service.deleteImage(FULL_URL, null, "u1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(s3Client, never()).deleteObjects(any(DeleteObjectsRequest.class));
+    }
+
+    @Test
+    void profileImagesAreReleasedForTheUser() {
+        store("users/u1/profile/" + HASH, "u1");
+
+        assertThat(s3Service.deleteImage(FULL_URL.replace("/pets/", "/profile/"), null, "u1")).isTrue();
+    }
+
+    @Test
+    void directUploadIsSignedForTheUsersStagingPrefix() throws IOException {
+        S3Service.DirectUpload upload = s3Service.createDirectUpload("u1", "image/png", 1234);
+
+        assertThat(upload.getKey()).matches("users/u1/uploads/[0-9a-f-]{36}");
+        assertThat(upload.getMethod()).isEqualTo("PUT");
+        assertThat(upload.getUploadUrl())
+                .startsWith("https://" + BUCKET + ".s3.amazonaws.com/" + upload.getKey())
+                .contains("X-Amz-Expires=900");
+        assertThat(upload.getHeaders()).containsEntry("content-type", "image/png")
+                .containsEntry("content-length", "1234")
+                .containsEntry("x-amz-tagging", "staging=true")
+                .doesNotContainKey("host");
+    }
+
+    @Test
+    void directUploadRejectsNonImagesAndOversizedFiles() {
+        assertThatThrownBy(() -> s3Service.createDirectUpload("u1", "application/pdf", 1234))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> s3Service.createDirectUpload("u1", "image/png", 0))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> s3Service.createDirectUpload("u1", "image/png", 11L * 1024 * 1024))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds maximum allowed size");
+    }
+
+    @Test
+    void stagedUploadsOfOtherUsersAreRejected() {
+        String otherUsers = "users/u2/uploads/" + UUID.randomUUID();
+
+        assertThatThrownBy(() -> s3Service.checkStagedUpload(otherUsers, "u1"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Not a staged upload of this user");
+        assertThatThrownBy(() -> s3Service.downloadStagedUpload("users/u1/pets/full/" + HASH + ".jpg", "u1"))
+                .isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> s3Service.downloadStagedUpload("users/u1/uploads/../../u2/uploads/x", "u1"))
+                .isInstanceOf(IOException.class);
+        verify(s3Client, never()).headObject(any(HeadObjectRequest.class));
+        verify(s3Client, never()).getObject(any(GetObjectRequest.class));
+    }
+
+    @Test
+    void stagedUploadMustExistAndFitTheSizeLimit() {
+        String missing = "users/u1/uploads/" + UUID.randomUUID();
+        String oversized = "users/u1/uploads/" + UUID.randomUUID();
+        when(s3Client.headObject(any(HeadObjectRequest.class))).thenAnswer(invocation -> {
+            if (invocation.<HeadObjectRequest>getArgument(0).key().equals(missing)) {
+                throw S3Exception.builder().statusCode(404).build();
+            }
+            return HeadObjectResponse.builder().contentLength(11L * 1024 * 1024).build();
+        });
+
+        assertThatThrownBy(() -> s3Service.checkStagedUpload(missing, "u1"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Staged upload not found");
+        assertThatThrownBy(() -> s3Service.checkStagedUpload(oversized, "u1"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("exceeds maximum allowed size");
+    }
+
+    @Test
+    void stagedUploadIsDownloadedToTheSpoolDirectory() throws IOException {
+        String stagingKey = "users/u1/uploads/" + UUID.randomUUID();
+        byte[] png = gradientPng();
+        when(s3Client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<>(
+                GetObjectResponse.builder().contentLength((long) png.length).contentType("image/png").build(),
+                AbortableInputStream.create(new ByteArrayInputStream(png))));
+
+        try (SpooledMultipartFile file = s3Service.downloadStagedUpload(stagingKey, "u1")) {
+            assertThat(file.getSize()).isEqualTo(png.length);
+            assertThat(file.getContentType()).isEqualTo("image/png");
+            assertThat(file.getBytes()).isEqualTo(png);
+            assertThat(spooled()).hasSize(1);
+        }
+        assertThat(spooled()).isEmpty();
+    }
+
+    @Test
+    void presignedUrlIsReusedWithinTheReuseWindow() {
+        String first = s3Service.getPresignedUrl(FULL_URL);
+        String second = s3Service.getPresignedUrl(FULL_URL);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(first).contains("users/u1/pets/full/" + HASH + ".jpg").contains("X-Amz-Signature=");
+        verify(s3Presigner, times(1)).presignGetObject(any(GetObjectPresignRequest.class));
+    }
+
+    @Test
+    void presignedUrlIsValidForAtLeastTheConfiguredExpiry() {
+        Instant now = Instant.now();
+
+        S3Service.PresignedUrl url = s3Service.getPresignedUrls(List.of(FULL_URL), "u1").get(FULL_URL);
+
+        // Signed for the rest of the 30 minute reuse window plus the 60 minute expiry
+        assertThat(Instant.parse(url.getExpiresAt()))
+                .isAfterOrEqualTo(now.plus(Duration.ofMinutes(60)))
+                .isBeforeOrEqualTo(now.plus(Duration.ofMinutes(90)).plusSeconds(1));
+    }
+
+    @Test
+    void batchSigningKeepsOnlyTheUsersImagesInRequestOrder() {
+        String thumbnail = FULL_URL.replace("/full/", "/thumbnail/");
+        String otherUsers = FULL_URL.replace("/u1/", "/u2/");
+        String traversal = "https://" + BUCKET + ".s3.us-east-1.amazonaws.com/users/u1/../u2/pets/full/" + HASH + ".jpg";
+        s3Service.getPresignedUrl(FULL_URL);
+
+        Map<String, S3Service.PresignedUrl> urls = s3Service.getPresignedUrls(
+                Arrays.asList(thumbnail, otherUsers, null, traversal, "not a url", FULL_URL), "u1");
+
+        assertThat(urls.keySet()).containsExactly(thumbnail, FULL_URL);
+        // The full rendition was signed before and comes from the cache
+        verify(s3Presigner, times(2)).presignGetObject(any(GetObjectPresignRequest.class));
+    }
+
+    private void store(String contentKey, String recordId) {
+        ImageHashIndex.Reservation reservation = imageHashIndex.reserve(contentKey, RENDITIONS, recordId);
+        if (!reservation.stored()) {
+            imageHashIndex.commit(contentKey, RENDITIONS, recordId, reservation.token());
+        }
+    }
+
+    private List<Path> spooled() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.toList();
+        }
+    }
+
+    private static String keyOf(String url) {
+        return url.substring(("https://" + BUCKET + ".s3.us-east-1.amazonaws.com/").length());
+    }
+
+    private CompletableFuture<S3Service.UploadedImage> uploadAsync(long petId) {
+        MockMultipartFile file = new MockMultipartFile("file", "pet.png", "image/png", gradientPng());
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return s3Service.uploadPetProfileImage(file, petId, "u1");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static byte[] gradientPng() {
+        BufferedImage image = new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x * 255 / 160) << 16 | (y * 255 / 120) << 8 | 128);
+            }
+        }
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.bydaffi.anypetbackend.simulation;
+
+import com.bydaffi.anypetbackend.dto.PushNotificationRequest;
+import com.bydaffi.anypetbackend.service.InMemoryNotificationTransport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notification sink for simulations: counts sends instead of calling FCM, without keeping them.
+ */
+public class CountingNotificationTransport extends InMemoryNotificationTransport {
+
+    private final AtomicLong sentWithPetName = new AtomicLong();
+
+    public CountingNotificationTransport() {
+        super(0);
+    }
+
+    @Override
+    public CompletableFuture<String> send(PushNotificationRequest request) {
+        if (request.getPetName() != null) {
+            sentWithPetName.incrementAndGet();
+        }
+        return super.send(request);
+    }
+
+    public long getSentWithPetName() { return sentWithPetName.get(); }
+}
@@ -0,0 +1,96 @@
+package com.bydaffi.anypetbackend.simulation;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.repository.ReminderStore;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+
+/**
+ * ReminderStore decorator that counts store round trips and rows, and reports the dispatch lag
+ * (claim time minus due time) of every claimed reminder.
+ */
+public class CountingReminderStore implements ReminderStore {
+
+    private final ReminderStore delegate;
+    private final LongConsumer lagSecondsListener;
+
+    private long calls;
+    private long rows;
+
+    public CountingReminderStore(ReminderStore delegate, LongConsumer lagSecondsListener) {
+        this.delegate = delegate;
+        this.lagSecondsListener = lagSecondsListener;
+    }
+
+    @Override
+    public Reminder create(Reminder reminder) throws ExecutionException, InterruptedException {
+        count(1);
+        return delegate.create(reminder);
+    }
+
+    @Override
+    public Reminder save(Reminder reminder) throws ExecutionException, InterruptedException {
+        count(1);
+        return delegate.save(reminder);
+    }
+
+    @Override
+    public Optional<Reminder> findById(String id) throws ExecutionException, InterruptedException {
+        count(1);
+        return delegate.findById(id);
+    }
+
+    @Override
+    public boolean deleteById(String id) throws ExecutionException, InterruptedException {
+        count(1);
+        return delegate.deleteById(id);
+    }
+
+    @Override
+    public List<Reminder> findByUserId(String userId) throws ExecutionException, InterruptedException {
+        List<Reminder> reminders = delegate.findByUserId(userId);
+        count(reminders.size());
+        return reminders;
+    }
+
+    @Override
+    public List<Reminder> findActiveByUserId(String userId) throws ExecutionException, InterruptedException {
+        List<Reminder> reminders = delegate.findActiveByUserId(userId);
+        count(reminders.size());
+        return reminders;
+    }
+
+    @Override
+    public List<Reminder> claimDue(LocalDateTime now, int limit, LocalDateTime leaseUntil) throws ExecutionException, InterruptedException {
+        List<Reminder> claimed = delegate.claimDue(now, limit, leaseUntil);
+        count(claimed.size());
+        for (Reminder reminder : claimed) {
+            lagSecondsListener.accept(Duration.between(reminder.getNextExecution(), now).getSeconds());
+        }
+        return claimed;
+    }
+
+    @Override
+    public void markTriggered(List<Reminder> reminders) throws ExecutionException, InterruptedException {
+        count(reminders.size());
+        delegate.markTriggered(reminders);
+    }
+
+    private void count(long affectedRows) {
+        calls++;
+        rows += affectedRows;
+    }
+
+    public long getCalls() { return calls; }
+    public long getRows() { return rows; }
+
+    public void reset() {
+        calls = 0;
+        rows = 0;
+    }
+}
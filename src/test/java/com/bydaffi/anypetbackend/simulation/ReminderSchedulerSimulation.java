@@ -0,0 +1,190 @@
+package com.bydaffi.anypetbackend.simulation;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.bydaffi.anypetbackend.models.Reminder;
+import com.bydaffi.anypetbackend.repository.InMemoryReminderStore;
+import com.bydaffi.anypetbackend.service.DeliveryAnalyticsService;
+import com.bydaffi.anypetbackend.service.PetNameResolver;
+import com.bydaffi.anypetbackend.service.PushNotificationService;
+import com.bydaffi.anypetbackend.service.ReminderService;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replays hours of reminder scheduling in seconds.
+ *
+ * Runs the real ReminderService.processDueReminders() against an in-memory store, an in-memory
+ * notification sink and a virtual clock that advances one scheduler tick at a time. Reports dispatch
+ * lag percentiles, sends per tick and store operations per tick.
+ *
+ * Usage (after mvn test-compile):
+ *   java -cp target/test-classes:target/classes:&lt;test classpath&gt;
+ *       com.bydaffi.anypetbackend.simulation.ReminderSchedulerSimulation
+ *       --reminders=1000000 --hours=24 --tick-seconds=60 --batch-size=500 --seed=42
+ */
+public class ReminderSchedulerSimulation {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        int reminderCount = Integer.parseInt(options.getOrDefault("reminders", "1000000"));
+        int hours = Integer.parseInt(options.getOrDefault("hours", "24"));
+        int tickSeconds = Integer.parseInt(options.getOrDefault("tick-seconds", "60"));
+        int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "500"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        // Per-reminder logging would dominate the run time
+        ((Logger) LoggerFactory.getLogger("com.bydaffi.anypetbackend")).setLevel(Level.ERROR);
+
+        ZoneId zone = ZoneId.systemDefault();
+        VirtualClock clock = new VirtualClock(LocalDate.now(zone).atStartOfDay(zone).toInstant(), zone);
+
+        long[] lagHistogram = new long[24 * 3600 + 1];
+        CountingReminderStore store = new CountingReminderStore(new InMemoryReminderStore(),
+                lag -> lagHistogram[(int) Math.min(Math.max(lag, 0), lagHistogram.length - 1)]++);
+        CountingNotificationTransport notifications = new CountingNotificationTransport();
+        SimulatedPetNameResolver petNames = new SimulatedPetNameResolver();
+
+        DeliveryAnalyticsService deliveryAnalytics = new DeliveryAnalyticsService(null, clock, 1 << 20, hours * 60, false);
+
+        ReminderService reminderService = new ReminderService(store,
+                new PushNotificationService(notifications, deliveryAnalytics, Integer.MAX_VALUE, 0), petNames, clock);
+        ReflectionTestUtils.setField(reminderService, "dispatchBatchSize", batchSize);
+        ReflectionTestUtils.setField(reminderService, "claimLeaseSeconds", 300L);
+
+        // Populate
+        long populateStart = System.nanoTime();
+        SyntheticReminderPopulation population = new SyntheticReminderPopulation(seed, 0.1, 0.4);
+        for (int i = 0; i < reminderCount; i++) {
+            reminderService.createReminder(population.next(i));
+        }
+        System.out.printf("Created %,d reminders in %.1f s%n", reminderCount, (System.nanoTime() - populateStart) / 1e9);
+
+        // Replay
+        int ticks = hours * 3600 / tickSeconds;
+        long[] sendsPerTick = new long[ticks];
+        long[] storeCallsPerTick = new long[ticks];
+        long[] storeRowsPerTick = new long[ticks];
+        long[] wallNanosPerTick = new long[ticks];
+
+        long replayStart = System.nanoTime();
+        for (int tick = 0; tick < ticks; tick++) {
+            clock.advance(Duration.ofSeconds(tickSeconds));
+            store.reset();
+            long sentBefore = notifications.getSentCount();
+
+            long tickStart = System.nanoTime();
+            reminderService.processDueReminders();
+            wallNanosPerTick[tick] = System.nanoTime() - tickStart;
+            deliveryAnalytics.aggregate();
+
+            sendsPerTick[tick] = notifications.getSentCount() - sentBefore;
+            storeCallsPerTick[tick] = store.getCalls();
+            storeRowsPerTick[tick] = store.getRows();
+        }
+        double replaySeconds = (System.nanoTime() - replayStart) / 1e9;
+
+        System.out.println();
+        System.out.printf("Replayed %d h (%,d ticks of %d s) in %.1f s (%.0fx real time)%n",
+                hours, ticks, tickSeconds, replaySeconds, hours * 3600 / replaySeconds);
+        System.out.printf("Sends: %,d total, %,d with pet name, %,d pet lookups%n",
+                notifications.getSentCount(), notifications.getSentWithPetName(), petNames.getLookups());
+        System.out.printf("Dispatch lag (s): p50=%d p90=%d p99=%d p99.9=%d max=%d%n",
+                histogramPercentile(lagHistogram, 0.50), histogramPercentile(lagHistogram, 0.90),
+                histogramPercentile(lagHistogram, 0.99), histogramPercentile(lagHistogram, 0.999),
+                histogramPercentile(lagHistogram, 1.0));
+        DeliveryAnalyticsService.DeliveryReport hourly = deliveryAnalytics.getReport(hours * 60, 60);
+        System.out.printf("Delivery analytics: %,d reminder sends, %,d failed, busiest hour %,d sends, %,d outcomes dropped%n",
+                hourly.getTotal().getReminderSends(), hourly.getTotal().getFailed(),
+                hourly.getWindows().stream().mapToLong(DeliveryAnalyticsService.DeliveryWindow::getSent).max().orElse(0),
+                hourly.getDroppedOutcomes());
+        printDistribution("Sends per tick", sendsPerTick);
+        printDistribution("Store calls per tick", storeCallsPerTick);
+        printDistribution("Store rows per tick", storeRowsPerTick);
+        printDistribution("Tick processing (ms)", Arrays.stream(wallNanosPerTick).map(n -> n / 1_000_000).toArray());
+
+        int busiest = 0;
+        for (int tick = 1; tick < ticks; tick++) {
+            if (sendsPerTick[tick] > sendsPerTick[busiest]) {
+                busiest = tick;
+            }
+        }
+        System.out.printf("Busiest tick: %02d:%02d with %,d sends%n",
+                (busiest + 1) * tickSeconds / 3600 % 24, (busiest + 1) * tickSeconds / 60 % 60, sendsPerTick[busiest]);
+    }
+
+    private static void printDistribution(String name, long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf("%s: mean=%.1f p50=%d p95=%d p99=%d max=%d%n", name, mean,
+                percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                sorted.length > 0 ? sorted[sorted.length - 1] : 0);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long histogramPercentile(long[] histogram, double percentile) {
+        long total = Arrays.stream(histogram).sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int value = 0; value < histogram.length; value++) {
+            seen += histogram[value];
+            if (seen >= target) {
+                return value;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Pet name resolver that answers from memory and counts bulk lookups
+     */
+    private static class SimulatedPetNameResolver extends PetNameResolver {
+
+        private long lookups;
+
+        SimulatedPetNameResolver() {
+            super(null, 100_000, 30, 60);
+        }
+
+        @Override
+        protected Map<String, String> loadNames(Set<String> petIds) {
+            lookups++;
+            Map<String, String> names = new HashMap<>();
+            for (String petId : petIds) {
+                names.put(petId, "Mascota " + petId.substring(petId.indexOf('-') + 1));
+            }
+            return names;
+        }
+
+        long getLookups() { return lookups; }
+    }
+}
@@ -0,0 +1,123 @@
+package com.bydaffi.anypetbackend.simulation;
+
+import com.bydaffi.anypetbackend.models.Reminder;
+
+import java.time.LocalTime;
+import java.util.Random;
+
+/**
+ * Generates synthetic reminders with a realistic mix of schedules.
+ *
+ * Scheduled times cluster around feeding and walking hours (morning, midday, evening) and
+ * users mostly pick round times (:00, :30, :15/:45), which produces the per-minute bursts the
+ * scheduler sees in production. Repeat intervals are weighted towards DAILY.
+ */
+public class SyntheticReminderPopulation {
+
+    /**
+     * Peaks of the daily schedule distribution: hour of day, spread in minutes, weight
+     */
+    private static final double[][] DAILY_PEAKS = {
+            {7.5, 45, 0.35},
+            {13.0, 60, 0.15},
+            {19.0, 75, 0.35},
+            {22.0, 40, 0.05}
+    };
+
+    private final Random random;
+    private final double missingTokenRatio;
+    private final double withPetRatio;
+
+    public SyntheticReminderPopulation(long seed, double missingTokenRatio, double withPetRatio) {
+        this.random = new Random(seed);
+        this.missingTokenRatio = missingTokenRatio;
+        this.withPetRatio = withPetRatio;
+    }
+
+    public Reminder next(int index) {
+        Reminder reminder = new Reminder();
+        reminder.setTitle("Recordatorio " + index);
+        reminder.setMessage(random.nextBoolean() ? "Es hora de alimentar a tu mascota" : null);
+        reminder.setScheduledTime(nextScheduledTime());
+        reminder.setRepeatInterval(nextRepeatInterval());
+        reminder.setUserId("user-" + (index / 3));
+        reminder.setPetId(random.nextDouble() < withPetRatio ? "pet-" + (index / 2) : null);
+        reminder.setDeviceToken(random.nextDouble() < missingTokenRatio ? "no-token-available" : "token-" + index);
+        reminder.setActive(true);
+        return reminder;
+    }
+
+    private LocalTime nextScheduledTime() {
+        double roll = random.nextDouble();
+        int minuteOfDay;
+
+        double cumulative = 0;
+        double[] peak = null;
+        for (double[] candidate : DAILY_PEAKS) {
+            cumulative += candidate[2];
+            if (roll < cumulative) {
+                peak = candidate;
+                break;
+            }
+        }
+
+        if (peak == null) {
+            // Remaining reminders are spread uniformly over the day
+            minuteOfDay = random.nextInt(24 * 60);
+        } else {
+            minuteOfDay = (int) Math.round(peak[0] * 60 + random.nextGaussian() * peak[1]);
+            minuteOfDay = Math.floorMod(minuteOfDay, 24 * 60);
+        }
+
+        return LocalTime.of(minuteOfDay / 60, roundMinute(minuteOfDay % 60));
+    }
+
+    /**
+     * Most people choose round minutes
+     */
+    private int roundMinute(int minute) {
+        double roll = random.nextDouble();
+        if (roll < 0.45) {
+            return 0;
+        }
+        if (roll < 0.70) {
+            return 30;
+        }
+        if (roll < 0.85) {
+            return (minute / 15) * 15;
+        }
+        return minute;
+    }
+
+    private Reminder.RepeatInterval nextRepeatInterval() {
+        double roll = random.nextDouble();
+        if (roll < 0.55) {
+            return Reminder.RepeatInterval.DAILY;
+        }
+        if (roll < 0.65) {
+            return Reminder.RepeatInterval.WEEKLY;
+        }
+        if (roll < 0.73) {
+            return Reminder.RepeatInterval.ONCE;
+        }
+        if (roll < 0.78) {
+            return Reminder.RepeatInterval.MONTHLY;
+        }
+        if (roll < 0.80) {
+            return Reminder.RepeatInterval.YEARLY;
+        }
+        if (roll < 0.88) {
+            return Reminder.RepeatInterval.EVERY_12_HOURS;
+        }
+        if (roll < 0.93) {
+            return Reminder.RepeatInterval.EVERY_6_HOURS;
+        }
+        if (roll < 0.97) {
+            return Reminder.RepeatInterval.EVERY_4_HOURS;
+        }
+        if (roll < 0.99) {
+            return Reminder.RepeatInterval.EVERY_2_HOURS;
+        }
+        return Reminder.RepeatInterval.EVERY_HOUR;
+    }
+}
@@ -0,0 +1,39 @@
+package com.bydaffi.anypetbackend.simulation;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+
+/**
+ * Clock that only moves when the simulation advances it.
+ */
+public class VirtualClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    public VirtualClock(Instant start, ZoneId zone) {
+        this.instant = start;
+        this.zone = zone;
+    }
+
+    public void advance(Duration duration) {
+        instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(instant, zone);
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+}
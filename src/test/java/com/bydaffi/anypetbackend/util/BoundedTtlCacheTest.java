@@ -0,0 +1,121 @@
+package com.bydaffi.anypetbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BoundedTtlCacheTest {
+
+    private static final long HOUR = 3_600_000;
+
+    @Test
+    void returnsLiveEntries() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, HOUR);
+        cache.put("luna", "Luna");
+
+        assertThat(cache.get("luna")).isEqualTo("Luna");
+        assertThat(cache.get("max")).isNull();
+    }
+
+    @Test
+    void expiredEntryIsDroppedOnAccess() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, HOUR);
+        cache.put("luna", "Luna", 0);
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("luna")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void getAllSkipsMissingAndExpiredEntries() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, HOUR);
+        cache.putAll(Map.of("luna", "Luna", "max", "Max"));
+        cache.put("kira", "Kira", 0);
+
+        assertThat(cache.getAll(List.of("luna", "max", "kira", "toby")))
+                .containsExactlyInAnyOrderEntriesOf(Map.of("luna", "Luna", "max", "Max"));
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void perEntryTtlOverridesTheDefault() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, 0);
+        cache.put("luna", "Luna", HOUR);
+        cache.put("max", "Max");
+
+        assertThat(cache.get("luna")).isEqualTo("Luna");
+        assertThat(cache.get("max")).isNull();
+    }
+
+    @Test
+    void evictExpiredRemovesOnlyExpiredEntries() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, HOUR);
+        cache.put("luna", "Luna");
+        cache.put("max", "Max", 0);
+        cache.put("kira", "Kira", -1);
+
+        cache.evictExpired();
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.get("luna")).isEqualTo("Luna");
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntryWhenFull() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(2, HOUR);
+        cache.put("luna", "Luna");
+        cache.put("max", "Max");
+        // Reading luna makes max the least recently used entry
+        cache.get("luna");
+
+        cache.put("kira", "Kira");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.get("max")).isNull();
+        assertThat(cache.get("luna")).isEqualTo("Luna");
+        assertThat(cache.get("kira")).isEqualTo("Kira");
+    }
+
+    @Test
+    void getAllCountsAsUse() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(2, HOUR);
+        cache.put("luna", "Luna");
+        cache.put("max", "Max");
+        cache.getAll(List.of("luna"));
+
+        cache.put("kira", "Kira");
+
+        assertThat(cache.getAll(List.of("luna", "max", "kira"))).containsOnlyKeys("luna", "kira");
+    }
+
+    @Test
+    void replacingAnEntryRenewsItsTtl() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, HOUR);
+        cache.put("luna", "Luna", 0);
+        cache.put("luna", "Luna II");
+
+        assertThat(cache.get("luna")).isEqualTo("Luna II");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void removeReturnsThePreviousValue() {
+        BoundedTtlCache<String, String> cache = new BoundedTtlCache<>(10, HOUR);
+        cache.put("luna", "Luna");
+
+        assertThat(cache.remove("luna")).isEqualTo("Luna");
+        assertThat(cache.remove("luna")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void rejectsNonPositiveSize() {
+        assertThatThrownBy(() -> new BoundedTtlCache<String, String>(0, HOUR))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,155 @@
+package com.bydaffi.anypetbackend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeliveryOutcomeBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new DeliveryOutcomeBuffer(1).capacity()).isEqualTo(1);
+        assertThat(new DeliveryOutcomeBuffer(5).capacity()).isEqualTo(8);
+        assertThat(new DeliveryOutcomeBuffer(8).capacity()).isEqualTo(8);
+        assertThatThrownBy(() -> new DeliveryOutcomeBuffer(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void drainsOutcomesInPublicationOrder() {
+        DeliveryOutcomeBuffer buffer = new DeliveryOutcomeBuffer(8);
+        buffer.offer(1000, "reminder-1", 40, null);
+        buffer.offer(1001, null, 55, "UNAVAILABLE");
+
+        List<String> drained = new ArrayList<>();
+        int count = buffer.drain((timestamp, reminderId, latency, errorCode) ->
+                drained.add(timestamp + "/" + reminderId + "/" + latency + "/" + errorCode));
+
+        assertThat(count).isEqualTo(2);
+        assertThat(drained).containsExactly("1000/reminder-1/40/null", "1001/null/55/UNAVAILABLE");
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.drain((timestamp, reminderId, latency, errorCode) -> { })).isZero();
+    }
+
+    @Test
+    void wrapsAroundTheSlotsManyTimes() {
+        DeliveryOutcomeBuffer buffer = new DeliveryOutcomeBuffer(4);
+        List<Long> drained = new ArrayList<>();
+
+        long next = 0;
+        for (int round = 0; round < 100; round++) {
+            // Alternate partial and full fills so the write position lands on every slot
+            int batch = round % 4 + 1;
+            for (int i = 0; i < batch; i++) {
+                assertThat(buffer.offer(next, "reminder-" + next, next, null)).isTrue();
+                next++;
+            }
+            buffer.drain((timestamp, reminderId, latency, errorCode) -> {
+                assertThat(reminderId).isEqualTo("reminder-" + latency);
+                drained.add(latency);
+            });
+        }
+
+        assertThat(drained).hasSize((int) next);
+        for (int i = 0; i < drained.size(); i++) {
+            assertThat(drained.get(i)).isEqualTo(i);
+        }
+        assertThat(buffer.getDroppedCount()).isZero();
+    }
+
+    @Test
+    void dropsNewOutcomesWhenFullInsteadOfOverwriting() {
+        DeliveryOutcomeBuffer buffer = new DeliveryOutcomeBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i, null, i, null)).isTrue();
+        }
+
+        assertThat(buffer.offer(4, null, 4, null)).isFalse();
+        assertThat(buffer.offer(5, null, 5, null)).isFalse();
+        assertThat(buffer.getDroppedCount()).isEqualTo(2);
+        assertThat(buffer.size()).isEqualTo(4);
+
+        List<Long> drained = new ArrayList<>();
+        buffer.drain((timestamp, reminderId, latency, errorCode) -> drained.add(latency));
+        assertThat(drained).containsExactly(0L, 1L, 2L, 3L);
+
+        // Room again once drained
+        assertThat(buffer.offer(6, null, 6, null)).isTrue();
+        assertThat(buffer.size()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentProducersLoseNothingButCountedDrops() throws Exception {
+        int producers = 4;
+        int outcomesPerProducer = 50_000;
+        DeliveryOutcomeBuffer buffer = new DeliveryOutcomeBuffer(1024);
+        long[] lastSeen = new long[producers];
+        long[] drainedPerProducer = new long[producers];
+        Arrays.fill(lastSeen, -1);
+        List<String> orderViolations = new ArrayList<>();
+
+        // Producer index in the timestamp, per-producer sequence in the latency
+        DeliveryOutcomeBuffer.OutcomeConsumer consumer = (timestamp, reminderId, latency, errorCode) -> {
+            int producer = (int) timestamp;
+            if (latency <= lastSeen[producer]) {
+                orderViolations.add(producer + ":" + latency);
+            }
+            lastSeen[producer] = latency;
+            drainedPerProducer[producer]++;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean producing = new AtomicBoolean(true);
+        try {
+            List<Future<Long>> accepted = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int producer = p;
+                accepted.add(executor.submit(() -> {
+                    start.await();
+                    long count = 0;
+                    for (int i = 0; i < outcomesPerProducer; i++) {
+                        if (buffer.offer(producer, null, i, null)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+
+            start.countDown();
+            Thread drainer = new Thread(() -> {
+                while (producing.get()) {
+                    buffer.drain(consumer);
+                }
+            });
+            drainer.start();
+
+            long acceptedTotal = 0;
+            for (Future<Long> future : accepted) {
+                acceptedTotal += future.get(30, TimeUnit.SECONDS);
+            }
+            producing.set(false);
+            drainer.join();
+            buffer.drain(consumer);
+
+            long drainedTotal = Arrays.stream(drainedPerProducer).sum();
+            assertThat(drainedTotal).isEqualTo(acceptedTotal);
+            assertThat(acceptedTotal + buffer.getDroppedCount()).isEqualTo((long) producers * outcomesPerProducer);
+            assertThat(orderViolations).isEmpty();
+            assertThat(buffer.size()).isZero();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
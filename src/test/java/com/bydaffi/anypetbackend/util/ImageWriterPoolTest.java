@@ -0,0 +1,92 @@
+package com.bydaffi.anypetbackend.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageWriterPoolTest {
+
+    @AfterEach
+    void disposeWriters() {
+        ImageWriterPool.disposeAll();
+    }
+
+    @Test
+    void encodesReuseOneIdleWriter() throws IOException {
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_3BYTE_BGR);
+
+        byte[] first = encode(image, "jpg");
+        byte[] second = encode(image, "jpg");
+
+        assertThat(ImageIO.read(new ByteArrayInputStream(first)).getWidth()).isEqualTo(16);
+        assertThat(second).isEqualTo(first);
+        assertThat(ImageWriterPool.idleCount("jpg")).isEqualTo(1);
+    }
+
+    @Test
+    void idleWritersAreBoundedWhateverTheNumberOfThreads() throws Exception {
+        int threads = ImageWriterPool.MAX_IDLE_PER_FORMAT + 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<CompletableFuture<byte[]>> encodes = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                encodes.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                        return encode(new BufferedImage(256, 256, BufferedImage.TYPE_3BYTE_BGR), "png");
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(encodes.toArray(new CompletableFuture[0])).join();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(ImageWriterPool.idleCount("png")).isBetween(1, ImageWriterPool.MAX_IDLE_PER_FORMAT);
+    }
+
+    @Test
+    void disposeAllEmptiesThePool() throws IOException {
+        encode(new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR), "jpg");
+
+        ImageWriterPool.disposeAll();
+
+        assertThat(ImageWriterPool.idleCount("jpg")).isZero();
+        // Later encodes create a new writer
+        encode(new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR), "jpg");
+        assertThat(ImageWriterPool.idleCount("jpg")).isEqualTo(1);
+    }
+
+    @Test
+    void unknownFormatFails() {
+        assertThatThrownBy(() -> encode(new BufferedImage(8, 8, BufferedImage.TYPE_3BYTE_BGR), "no-such-format"))
+                .isInstanceOf(IOException.class);
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+            ImageWriterPool.write(image, format, 0.85f, output);
+        }
+        return bytes.toByteArray();
+    }
+}